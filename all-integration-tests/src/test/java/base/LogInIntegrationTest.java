@@ -131,7 +131,8 @@ public class LogInIntegrationTest {
 
         assertNotEquals(session1,session2,"服务端 session 应该发生了变化");
 
-        Mockito.verify(spyClient).acceptNotice(Mockito.any(Notice.class));
+        // 安全警告是异步推送的，不会阻塞新端的登录响应
+        Mockito.verify(spyClient, Mockito.timeout(3000)).acceptNotice(Mockito.any(Notice.class));
         clientNew.shutdown();
     }
 }
@@ -16,6 +16,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -59,20 +61,31 @@ public class LogOutIntegrationTest {
 
     @Test
     @DisplayName("测试正常手工登出")
-    void test_LogOut(){
+    void test_LogOut() throws InterruptedException {
         assertDoesNotThrow(()->client.logIn(157146,"abcde"),"登录时不该抛出业务异常");
         assertTrue(client.isOnline(),"登录成功后，客户端应该处于在线状态");
         assertTrue(sessionMap.checkExists(157146),"登录成功后，服务端应该能查询到该 session");
 
         assertDoesNotThrow(()->client.logOut(157146),"注销时不该抛出业务异常");
         assertFalse(client.isOnline(),"注销后，客户端不应该处于在线状态");
-        assertFalse(sessionMap.checkExists(157146),"注销后，服务端不应该能查询到该 session");
+        // 登出是 oneway 请求，只保证写出，服务端处理是异步的
+        assertTrue(waitUntilSessionRemoved(157146, 3000),"注销后，服务端不应该能查询到该 session");
+    }
+
+    private boolean waitUntilSessionRemoved(long userId, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (sessionMap.checkExists(userId)) {
+            if (System.currentTimeMillis() > deadline)
+                return false;
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
     }
 
 
     @Test
     @DisplayName("测试直接关闭客户端线程")
-    void test_LogOut_directly(){
+    void test_LogOut_directly() throws InterruptedException {
 
         Config newConfig = new DefaultClientConfig();
         newConfig.putConfig(ServerConfigNames.WAIT_RESPONSE_MILLIS,"3600000");
@@ -86,6 +99,7 @@ public class LogOutIntegrationTest {
 
         clientToClose.shutdown();
         assertFalse(clientToClose.isOnline(),"客户端直接关闭后，客户端不应该处于在线状态");
-        assertFalse(sessionMap.checkExists(157146),"客户端直接关闭后，服务端不应该能查询到该 session");
+        // 服务端是在 channelInactive 时异步移除 session 的
+        assertTrue(waitUntilSessionRemoved(157146, 3000),"客户端直接关闭后，服务端不应该能查询到该 session");
     }
 }
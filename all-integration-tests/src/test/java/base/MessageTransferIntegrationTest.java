@@ -1,7 +1,11 @@
 package base;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
 import me.yq.biz.domain.User;
+import me.yq.common.BaseResponse;
 import me.yq.common.BizCode;
+import me.yq.common.ResponseStatus;
 import me.yq.remoting.config.ClientConfigNames;
 import me.yq.remoting.config.DefaultClientConfig;
 import me.yq.remoting.config.DefaultServerConfig;
@@ -21,16 +25,18 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * 客户端消息转发集成测试，主要覆盖的功能点是：
  * 1.客户端 A 能成功发送消息
  * 2.客户端 B 能成功接收到客户端 A 发送的消息
  * 3.服务端能成功转发消息
+ * 4.异步发送消息，以及共享 IO 线程、业务线程的客户端收发消息
  * @author yq
  * @version v1.0 2023-04-04 09:53
  */
@@ -103,4 +109,39 @@ public class MessageTransferIntegrationTest {
         Mockito.verify(spyClientA,Mockito.times(messageCount)).acceptMsg(Mockito.any(User.class),Mockito.anyString());
         Mockito.verify(spyClientB,Mockito.times(messageCount)).acceptMsg(Mockito.any(User.class),Mockito.anyString());
     }
+
+    @Test
+    @DisplayName("测试客户端异步发送消息")
+    void test_sendMessageAsync() throws Exception {
+        BaseResponse response = spyClientA.sendMsgAsync(userB.getUserId(), "hello").get(3, TimeUnit.SECONDS);
+
+        assertEquals(ResponseStatus.SUCCESS, response.getStatus(), "服务端应该确认转发成功");
+        Mockito.verify(spyClientB, Mockito.timeout(3000)).acceptMsg(Mockito.any(User.class), Mockito.eq("hello"));
+    }
+
+    @Test
+    @DisplayName("测试共享 IO 线程、业务线程的客户端")
+    void test_sharedResources() throws Exception {
+        EventLoopGroup sharedWorkerGroup = new NioEventLoopGroup(1);
+        ThreadPoolExecutor sharedBizThreadPool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        Config clientConfig = new DefaultClientConfig();
+        clientConfig.putConfig(ClientConfigNames.HEARTBEAT_ENABLE, "false");
+        ChatClient sharedClient = new ChatClient(false, clientConfig, sharedWorkerGroup, sharedBizThreadPool);
+        sharedClient.registerBizProcessor(BizCode.Messaging.code(), new MessageReceivedProcessor(sharedClient));
+        sharedClient.start();
+
+        try {
+            sharedClient.logIn(680712, "rm-rf/@12345");
+            BaseResponse response = sharedClient.sendMsgAsync(userB.getUserId(), "hi").get(3, TimeUnit.SECONDS);
+            assertEquals(ResponseStatus.SUCCESS, response.getStatus());
+            Mockito.verify(spyClientB, Mockito.timeout(3000)).acceptMsg(Mockito.any(User.class), Mockito.eq("hi"));
+
+            sharedClient.shutdown();
+            assertFalse(sharedWorkerGroup.isShuttingDown(), "共享的 EventLoopGroup 不应该随客户端关闭");
+            assertFalse(sharedBizThreadPool.isShutdown(), "共享的业务线程池不应该随客户端关闭");
+        } finally {
+            sharedWorkerGroup.shutdownGracefully();
+            sharedBizThreadPool.shutdown();
+        }
+    }
 }
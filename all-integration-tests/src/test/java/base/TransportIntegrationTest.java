@@ -0,0 +1,102 @@
+package base;
+
+import io.netty.channel.Channel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseResponse;
+import me.yq.common.BizCode;
+import me.yq.common.ResponseStatus;
+import me.yq.remoting.config.ClientConfigNames;
+import me.yq.remoting.config.DefaultClientConfig;
+import me.yq.remoting.config.DefaultServerConfig;
+import me.yq.remoting.config.ServerConfigNames;
+import me.yq.remoting.processor.LogInProcessor;
+import me.yq.remoting.processor.MessageReceivedProcessor;
+import me.yq.remoting.processor.MessagingTransferProcessor;
+import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.support.Config;
+import me.yq.remoting.support.TransportType;
+import me.yq.remoting.utils.DirectThreadPool;
+import me.yq.support.ChatClient;
+import me.yq.support.ChatServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.Mockito;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IO 模型集成测试，主要覆盖的功能点是：
+ * 1.服务端和客户端分别按配置的 IO 模型（NIO / EPOLL / AUTO）启动，登录、互发消息都正常
+ * 2.实际使用的 channel 类型和期望一致：epoll 不可用（比如非 Linux）时，EPOLL 和 AUTO 都回退到 NIO
+ * 3.同一个端口上绑定多个监听 socket（SO_REUSEPORT）时，客户端都能正常建联、登录、收发消息
+ * @author yq
+ * @version v1.0 2023-05-25 11:20
+ */
+public class TransportIntegrationTest {
+
+    private final User userA = new User(157146, "abcde");
+    private final User userB = new User(909900, "123456");
+
+    @ParameterizedTest
+    @EnumSource(TransportType.class)
+    @DisplayName("测试不同 IO 模型下的登录和消息收发")
+    void test_transport(TransportType transport) throws Exception {
+        verifyLogInAndRelay(transport, 1);
+    }
+
+    @Test
+    @DisplayName("测试同一个端口上绑定多个监听 socket")
+    void test_multi_acceptor() throws Exception {
+        verifyLogInAndRelay(TransportType.AUTO, 4);
+    }
+
+    private void verifyLogInAndRelay(TransportType transport, int acceptorNum) throws Exception {
+        Config serverConfig = new DefaultServerConfig();
+        serverConfig.putConfig(ServerConfigNames.ACCEPTOR_NUM, String.valueOf(acceptorNum));
+        serverConfig.putConfig(ServerConfigNames.IDLE_CHECK_ENABLE, "false");
+        serverConfig.putConfig(ServerConfigNames.TRANSPORT_TYPE, transport.name());
+        ChatServer server = new ChatServer(false, serverConfig);
+        SessionMap sessionMap = server.getSessionMap();
+        server.registerBizProcessor(BizCode.LogInRequest.code(), new LogInProcessor(sessionMap, serverConfig));
+        server.registerBizProcessor(BizCode.Messaging.code(), new MessagingTransferProcessor(sessionMap, serverConfig, DirectThreadPool.getInstance()));
+        server.start();
+
+        ChatClient clientA = Mockito.spy(newClient(transport));
+        ChatClient clientB = Mockito.spy(newClient(transport));
+        clientA.registerBizProcessor(BizCode.Messaging.code(), new MessageReceivedProcessor(clientA));
+        clientB.registerBizProcessor(BizCode.Messaging.code(), new MessageReceivedProcessor(clientB));
+        try {
+            clientA.start();
+            clientB.start();
+            assertDoesNotThrow(() -> clientA.logIn(userA.getUserId(), userA.getPasswd()), "客户端 A 登录不该抛出异常");
+            assertDoesNotThrow(() -> clientB.logIn(userB.getUserId(), userB.getPasswd()), "客户端 B 登录不该抛出异常");
+
+            Class<? extends Channel> expected = transport != TransportType.NIO && Epoll.isAvailable() ?
+                    EpollSocketChannel.class : NioSocketChannel.class;
+            assertEquals(expected, clientA.getServerSession().getChannel().getClass(), "客户端使用的 channel 类型不正确");
+            assertEquals(expected, sessionMap.getSession(userA.getUserId()).getChannel().getClass(), "服务端使用的 channel 类型不正确");
+
+            BaseResponse response = clientA.sendMsgAsync(userB.getUserId(), "hello").get(3, TimeUnit.SECONDS);
+            assertEquals(ResponseStatus.SUCCESS, response.getStatus(), "服务端应该确认转发成功");
+            Mockito.verify(clientB, Mockito.timeout(3000)).acceptMsg(Mockito.any(User.class), Mockito.eq("hello"));
+        } finally {
+            clientA.shutdown();
+            clientB.shutdown();
+            server.shutdown();
+        }
+    }
+
+    private ChatClient newClient(TransportType transport) {
+        Config clientConfig = new DefaultClientConfig();
+        clientConfig.putConfig(ClientConfigNames.HEARTBEAT_ENABLE, "false");
+        clientConfig.putConfig(ClientConfigNames.TRANSPORT_TYPE, transport.name());
+        return new ChatClient(false, clientConfig);
+    }
+}
@@ -0,0 +1,155 @@
+package me.yq.benchmark;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.openjdk.jmh.Main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 基准测试报告工具，方便在不同版本之间对比热点路径的性能变化：<br/>
+ * 1.run：运行基准测试（label 之后的参数同 JMH），结果以 JSON 格式写入 results/&lt;label&gt;.json，label 通常使用版本号<br/>
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar me.yq.benchmark.BenchmarkReport run v1.0 YQCommandCodecBenchmark
+ * </pre>
+ * 2.compare：对比两份报告，逐项打印分数变化，性能下降超过阈值（默认 5%）的项会被标记出来，并以非 0 状态码退出
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar me.yq.benchmark.BenchmarkReport compare results/v1.0.json results/v1.1.json 5
+ * </pre>
+ *
+ * @author yq
+ * @version v1.0 2023-05-15 16:30
+ */
+public class BenchmarkReport {
+
+    private static final String RESULT_DIR = "results";
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 5;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            printUsage();
+            return;
+        }
+
+        switch (args[0]) {
+            case "run":
+                if (args.length < 2) {
+                    printUsage();
+                    return;
+                }
+                run(Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "compare":
+                if (args.length < 3) {
+                    printUsage();
+                    return;
+                }
+                double threshold = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_THRESHOLD_PERCENT;
+                boolean regressed = compare(args[1], args[2], threshold);
+                System.exit(regressed ? 1 : 0);
+                break;
+            default:
+                printUsage();
+        }
+    }
+
+    private static void run(String[] args) throws Exception {
+        String label = args[0];
+        String[] jmhArgs = Arrays.copyOfRange(args, 1, args.length);
+
+        File resultDir = new File(RESULT_DIR);
+        if (!resultDir.exists() && !resultDir.mkdirs())
+            throw new IOException("无法创建结果目录: " + resultDir.getAbsolutePath());
+
+        List<String> fullArgs = new ArrayList<>(Arrays.asList(jmhArgs));
+        fullArgs.add("-rf");
+        fullArgs.add("json");
+        fullArgs.add("-rff");
+        fullArgs.add(new File(resultDir, label + ".json").getPath());
+        Main.main(fullArgs.toArray(new String[0]));
+    }
+
+    /**
+     * 对比两份 JMH JSON 报告
+     *
+     * @param baseFile         基准报告
+     * @param currentFile      当前报告
+     * @param thresholdPercent 性能下降超过该百分比视为退化
+     * @return 是否存在退化
+     */
+    static boolean compare(String baseFile, String currentFile, double thresholdPercent) throws IOException {
+        Map<String, JSONObject> base = load(baseFile);
+        Map<String, JSONObject> current = load(currentFile);
+
+        boolean regressed = false;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Base", "Current", "Change");
+        for (Map.Entry<String, JSONObject> entry : current.entrySet()) {
+            JSONObject currentResult = entry.getValue();
+            JSONObject baseResult = base.get(entry.getKey());
+            JSONObject currentMetric = currentResult.getJSONObject("primaryMetric");
+            String unit = currentMetric.getString("scoreUnit");
+            double currentScore = currentMetric.getDoubleValue("score");
+
+            if (baseResult == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  %s%n", entry.getKey(), "-", currentScore, "new", unit);
+                continue;
+            }
+
+            double baseScore = baseResult.getJSONObject("primaryMetric").getDoubleValue("score");
+            double changePercent = baseScore == 0 ? 0 : (currentScore - baseScore) / baseScore * 100;
+            // 吞吐量越高越好，其余模式（平均耗时、采样、单次）越低越好
+            boolean higherIsBetter = "thrpt".equals(currentResult.getString("mode"));
+            double degradePercent = higherIsBetter ? -changePercent : changePercent;
+            boolean worse = degradePercent > thresholdPercent;
+            regressed |= worse;
+
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n",
+                    entry.getKey(), baseScore, currentScore, changePercent, unit, worse ? "  <== 退化" : "");
+        }
+
+        for (String removed : base.keySet()) {
+            if (!current.containsKey(removed))
+                System.out.printf("%-90s %14s %14s %9s%n", removed, "?", "-", "removed");
+        }
+        return regressed;
+    }
+
+    /**
+     * 读取报告，以 benchmark 名称 + 参数 作为每一项的 key
+     */
+    private static Map<String, JSONObject> load(String file) throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        JSONArray results = JSON.parseArray(json);
+
+        Map<String, JSONObject> byKey = new LinkedHashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            StringBuilder key = new StringBuilder(result.getString("benchmark"));
+            JSONObject params = result.getJSONObject("params");
+            if (params != null) {
+                // 参数排序，保证两份报告的 key 一致
+                new TreeMap<>(params).forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            }
+            byKey.put(key.toString(), result);
+        }
+        return byKey;
+    }
+
+    private static void printUsage() {
+        System.out.println("用法:");
+        System.out.println("  run <label> [jmh 参数...]                          运行基准测试，结果写入 results/<label>.json");
+        System.out.println("  compare <base.json> <current.json> [阈值百分比]    对比两份报告，默认阈值 " + DEFAULT_THRESHOLD_PERCENT + "%");
+    }
+}
@@ -0,0 +1,92 @@
+package me.yq.benchmark;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import com.caucho.hessian.io.JavaSerializer;
+import com.caucho.hessian.io.SerializerFactory;
+import me.yq.biz.Message;
+import me.yq.biz.domain.User;
+import me.yq.remoting.transport.serializer.Hessian2Serializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hessian2 序列化器复用流对象前后的对比：<br/>
+ * 1.legacy*：每次调用都新建 Hessian2Output / Hessian2Input、SerializerFactory 和 ByteArrayOutputStream（改造前的实现）<br/>
+ * 2.pooled*：当前的 {@link Hessian2Serializer}，序列化时线程内复用 Hessian2Output 和缓冲区；反序列化每次新建 Hessian2Input，
+ * 收益来自所有线程共享一个 SerializerFactory（类的反序列化器只创建一次）<br/>
+ * 主要关注 -prof gc 中的 gc.alloc.rate.norm（每次操作分配的字节数）。<br/>
+ * 运行：java -jar benchmarks/target/benchmarks.jar Hessian2SerializerBenchmark -prof gc
+ *
+ * @author yq
+ * @version v1.0 2023-05-17 10:30
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class Hessian2SerializerBenchmark {
+
+    private final Hessian2Serializer serializer = new Hessian2Serializer();
+
+    private Message message;
+
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        User from = new User(157146, "abcde", "张三", 20, "杭州", "个性签名", new ArrayList<>());
+        User to = new User(909900, "123456", "李四", 21, "上海", "个性签名", new ArrayList<>());
+        message = new Message(from, to, "你好，这是一条普通长度的聊天消息, hello world!");
+        serialized = serializer.serialize(message);
+    }
+
+    @Benchmark
+    public byte[] legacySerialize() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Hessian2Output output = new Hessian2Output(baos);
+        output.setSerializerFactory(new LegacySerializerFactory());
+        output.writeObject(message);
+        output.flush();
+        output.close();
+        return baos.toByteArray();
+    }
+
+    @Benchmark
+    public Object legacyDeserialize() throws IOException {
+        Hessian2Input input = new Hessian2Input(new ByteArrayInputStream(serialized));
+        input.setSerializerFactory(new LegacySerializerFactory());
+        Object result = input.readObject(Message.class);
+        input.close();
+        return result;
+    }
+
+    @Benchmark
+    public byte[] pooledSerialize() {
+        return serializer.serialize(message);
+    }
+
+    @Benchmark
+    public Object pooledDeserialize() {
+        return serializer.deserialize(serialized, Message.class);
+    }
+
+    /**
+     * 和改造前 Hessian2Serializer 内部的 SerializerFactory 一致，每次调用都会新建
+     */
+    private static class LegacySerializerFactory extends SerializerFactory {
+        @Override
+        protected com.caucho.hessian.io.Serializer getDefaultSerializer(Class cl) {
+            if (_defaultSerializer != null)
+                return _defaultSerializer;
+            return JavaSerializer.create(cl);
+        }
+    }
+}
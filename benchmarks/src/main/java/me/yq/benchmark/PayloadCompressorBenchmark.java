@@ -0,0 +1,104 @@
+package me.yq.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import me.yq.biz.Notice;
+import me.yq.biz.domain.Friend;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BizCode;
+import me.yq.remoting.codec.protocol.PayloadCompressor;
+import me.yq.remoting.codec.protocol.YQCommandCodec;
+import me.yq.remoting.command.DefaultRequestCommand;
+import me.yq.remoting.transport.serializer.CompactSerializer;
+import me.yq.remoting.transport.serializer.Serializer;
+import me.yq.remoting.transport.serializer.SerializerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * 消息体压缩的基准测试：比较不压缩、Deflate、Deflate + 预置字典三种方式下，编码一帧的吞吐和帧大小。<br/>
+ * 对象是服务端推送的通知和带好友列表的用户信息，帧大小在 setUp 时打印。<br/>
+ * 运行：java -jar benchmarks/target/benchmarks.jar PayloadCompressorBenchmark
+ *
+ * @author yq
+ * @version v1.0 2023-05-24 16:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadCompressorBenchmark {
+
+    @Param({"NONE", "DEFLATE", "DICTIONARY"})
+    private String mode;
+
+    @Param({"Notice", "User"})
+    private String objectType;
+
+    private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+
+    private YQCommandCodec codec;
+
+    private BaseRequest request;
+
+    /**
+     * 对端声明的字典 id，为 null 时不压缩
+     */
+    private Integer peerDictionaryId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Serializer serializer = SerializerFactory.getSerializer(CompactSerializer.CODE);
+        // 用另一批用户的通知训练字典，避免字典里恰好包含测试的消息
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            samples.add(serializer.serialize(new BaseRequest(BizCode.Noticing.code(), newNotice(1000 + i))));
+            samples.add(serializer.serialize(new BaseRequest(BizCode.Noticing.code(), newUser(2000 + i))));
+        }
+        byte[] dictionary = PayloadCompressor.trainDictionary(samples, 16 * 1024);
+
+        PayloadCompressor compressor = new PayloadCompressor(64, Deflater.DEFAULT_COMPRESSION,
+                "DICTIONARY".equals(mode) ? dictionary : null);
+        codec = new YQCommandCodec(false, compressor);
+        peerDictionaryId = "NONE".equals(mode) ? null : compressor.getDictionaryId();
+        request = new BaseRequest(BizCode.Noticing.code(), "Notice".equals(objectType) ? newNotice(157146) : newUser(157146));
+
+        System.out.println("\nmode=" + mode + ", objectType=" + objectType + ", frame size=" + encode() + " bytes");
+    }
+
+    @Benchmark
+    public int encode() {
+        DefaultRequestCommand command = new DefaultRequestCommand();
+        command.setSerialization(CompactSerializer.CODE);
+        command.setAppRequest(request);
+        ByteBuf out = allocator.directBuffer();
+        try {
+            codec.encode(command, out, peerDictionaryId);
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    private static Notice newNotice(long targetUid) {
+        Notice notice = new Notice(targetUid);
+        notice.setNoticeTitle("[下线警告]");
+        notice.setNoticeContent("检测到您的账号在另一处登录 ip [10.0." + targetUid % 256 + ".1]，如非本人操作，请立即修改密码！");
+        return notice;
+    }
+
+    private static User newUser(long userId) {
+        List<Friend> friendList = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            friendList.add(new Friend(userId + i + 1, "好友" + i));
+        return new User(userId, null, "张三", 20, "杭州", "个性签名", friendList);
+    }
+}
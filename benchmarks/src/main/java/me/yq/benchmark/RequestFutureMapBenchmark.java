@@ -0,0 +1,91 @@
+package me.yq.benchmark;
+
+import me.yq.remoting.command.DefaultResponseCommand;
+import me.yq.remoting.transport.DefaultRequestFuture;
+import me.yq.remoting.transport.RequestFutureMap;
+import me.yq.remoting.utils.StripedIntObjectMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RequestFutureMap 底层存储的基准测试：对比旧的 ConcurrentHashMap&lt;Integer, ?&gt; 和 原生 int key 的 StripedIntObjectMap。<br/>
+ * 预先放入 1k / 100k / 1M 个在途请求，多线程模拟一个请求的完整生命周期：登记 -> 响应到达时查找 -> 移除。<br/>
+ * {@link #requestFutureMap()} 则是真实的 {@link RequestFutureMap}：登记 future -> 提交响应 -> 获取响应并移除 future。<br/>
+ * 运行：java -jar benchmarks/target/benchmarks.jar RequestFutureMapBenchmark -prof gc
+ *
+ * @author yq
+ * @version v1.0 2023-05-09 10:12
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RequestFutureMapBenchmark {
+
+    /**
+     * 在途请求数
+     */
+    @Param({"1000", "100000", "1000000"})
+    private int inFlight;
+
+    private final Object future = new Object();
+
+    private final AtomicInteger idGenerator = new AtomicInteger();
+
+    private Map<Integer, Object> concurrentHashMap;
+
+    private StripedIntObjectMap<Object> stripedIntObjectMap;
+
+    private RequestFutureMap requestFutureMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        concurrentHashMap = new ConcurrentHashMap<>();
+        stripedIntObjectMap = new StripedIntObjectMap<>(4, 8);
+        requestFutureMap = new RequestFutureMap();
+        // 在途请求使用负数 id，和压测过程中新生成的 id 不冲突
+        for (int i = 1; i <= inFlight; i++) {
+            concurrentHashMap.put(-i, future);
+            stripedIntObjectMap.putIfAbsent(-i, future);
+            requestFutureMap.addNewFuture(new DefaultRequestFuture(-i, requestFutureMap));
+        }
+    }
+
+    /**
+     * 旧实现：containsKey + put，装箱 + 每个请求一个 Node
+     */
+    @Benchmark
+    public Object concurrentHashMap() {
+        Integer id = idGenerator.getAndIncrement();
+        if (!concurrentHashMap.containsKey(id))
+            concurrentHashMap.put(id, future);
+        Object found = concurrentHashMap.get(id);
+        concurrentHashMap.remove(id);
+        return found;
+    }
+
+    @Benchmark
+    public Object stripedIntObjectMap() {
+        int id = idGenerator.getAndIncrement();
+        stripedIntObjectMap.putIfAbsent(id, future);
+        Object found = stripedIntObjectMap.get(id);
+        stripedIntObjectMap.remove(id);
+        return found;
+    }
+
+    @Benchmark
+    public Object requestFutureMap() {
+        int id = idGenerator.getAndIncrement();
+        DefaultRequestFuture requestFuture = new DefaultRequestFuture(id, requestFutureMap);
+        requestFutureMap.addNewFuture(requestFuture);
+        requestFutureMap.commitResponseCommand(new DefaultResponseCommand(id));
+        return requestFuture.acquireAndClose(-1);
+    }
+}
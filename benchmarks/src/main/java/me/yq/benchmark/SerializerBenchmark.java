@@ -0,0 +1,106 @@
+package me.yq.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import me.yq.biz.Message;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseResponse;
+import me.yq.remoting.transport.serializer.Serializer;
+import me.yq.remoting.transport.serializer.SerializerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各个序列化器的基准测试，序列化对象覆盖 {@link Message}、{@link User}、{@link BaseResponse}：<br/>
+ * 1.serialize / deserialize：byte[] 形式的序列化和反序列化<br/>
+ * 2.serializeToByteBuf / deserializeFromByteBuf：编解码时实际使用的流式序列化和反序列化<br/>
+ * 序列化后的大小可以通过 -prof gc 的分配速率间接观察。<br/>
+ * 运行：java -jar benchmarks/target/benchmarks.jar SerializerBenchmark -prof gc
+ *
+ * @author yq
+ * @version v1.0 2023-05-15 15:05
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+    /**
+     * 序列化器代号，参考 {@link SerializerFactory}
+     */
+    @Param({"1", "2", "3", "4", "5", "6"})
+    private byte serializerCode;
+
+    @Param({"Message", "User", "BaseResponse"})
+    private String objectType;
+
+    private Serializer serializer;
+
+    private Object object;
+
+    private Class<?> objectClass;
+
+    private byte[] serialized;
+
+    private ByteBuf serializedBuf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = SerializerFactory.getSerializer(serializerCode);
+        // 构造完整的用户信息，包括好友列表
+        User from = new User(157146, "abcde", "张三", 20, "杭州", "个性签名", new ArrayList<>());
+        User to = new User(909900, "123456", "李四", 21, "上海", "个性签名", new ArrayList<>());
+        switch (objectType) {
+            case "Message":
+                object = new Message(from, to, "你好，这是一条普通长度的聊天消息, hello world!");
+                break;
+            case "User":
+                object = from;
+                break;
+            default:
+                object = new BaseResponse(new Message(from, to, "hello"));
+        }
+        objectClass = object.getClass();
+
+        serialized = serializer.serialize(object);
+        serializedBuf = PooledByteBufAllocator.DEFAULT.directBuffer(serialized.length);
+        serializedBuf.writeBytes(serialized);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serializedBuf.release();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(object);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized, objectClass);
+    }
+
+    @Benchmark
+    public int serializeToByteBuf() {
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.directBuffer();
+        try {
+            serializer.serialize(object, out);
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    @Benchmark
+    public Object deserializeFromByteBuf() {
+        // 反序列化会消费可读字节，每次从同一个起点读
+        return serializer.deserialize(serializedBuf.duplicate(), objectClass);
+    }
+}
@@ -0,0 +1,65 @@
+package me.yq.benchmark;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.remoting.config.DefaultServerConfig;
+import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.transport.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionMap 查找的基准测试：消息转发时每条消息都要根据用户 id 查一次目标用户的 channel，
+ * 多线程模拟不同在线人数下的查找（命中 / 不在线）。<br/>
+ * 运行：java -jar benchmarks/target/benchmarks.jar SessionMapBenchmark
+ *
+ * @author yq
+ * @version v1.0 2023-05-15 15:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(4)
+@State(Scope.Benchmark)
+public class SessionMapBenchmark {
+
+    /**
+     * 在线人数
+     */
+    @Param({"1000", "100000"})
+    private int online;
+
+    private SessionMap sessionMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionMap = SessionMap.getInstanceOrCreate(new DefaultServerConfig());
+        for (int i = 0; i < online; i++) {
+            sessionMap.addSession(new Session(i, new EmbeddedChannel(false, false)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionMap.removeAllUnSafe();
+    }
+
+    @Benchmark
+    public Channel getUserChannel() {
+        return sessionMap.getUserChannel(ThreadLocalRandom.current().nextInt(online));
+    }
+
+    @Benchmark
+    public boolean checkExists() {
+        return sessionMap.checkExists(ThreadLocalRandom.current().nextInt(online));
+    }
+
+    @Benchmark
+    public Channel getUserChannelOffline() {
+        return sessionMap.getUserChannel(online + ThreadLocalRandom.current().nextInt(online));
+    }
+}
@@ -0,0 +1,116 @@
+package me.yq.benchmark;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.remoting.config.DefaultServerConfig;
+import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.transport.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量断连的基准测试：模拟网络抖动时，大量在线用户的连接同时断开，服务端需要逐个根据 channel 移除 session。<br/>
+ * 对比旧的遍历查找（每次断开都要扫描所有 session，整体 O(n²)）和 channel 上的 session 反向索引（每次断开 O(1)）。<br/>
+ * 每次操作断开 {@link #DISCONNECTS} 个连接，然后重新登录回来，保持在线人数不变。<br/>
+ * 运行：java -jar benchmarks/target/benchmarks.jar SessionMassDisconnectBenchmark
+ *
+ * @author yq
+ * @version v1.0 2023-05-13 10:25
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SessionMassDisconnectBenchmark {
+
+    /**
+     * 每次操作断开的连接数
+     */
+    private static final int DISCONNECTS = 1000;
+
+    /**
+     * 在线人数
+     */
+    @Param({"10000", "100000", "500000"})
+    private int online;
+
+    private SessionMap sessionMap;
+
+    /**
+     * 旧实现使用的 map，用来复现遍历查找
+     */
+    private Map<Long, Session> scanMap;
+
+    private Session[] sessions;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionMap = SessionMap.getInstanceOrCreate(new DefaultServerConfig());
+        scanMap = new ConcurrentHashMap<>(online);
+        sessions = new Session[online];
+        for (int i = 0; i < online; i++) {
+            // 不注册任何 handler 的 channel，尽量减少 50w 个连接的内存占用
+            Session session = new Session(i, new EmbeddedChannel(false, false));
+            sessions[i] = session;
+            sessionMap.addSession(session);
+            scanMap.put((long) i, session);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionMap.removeAllUnSafe();
+    }
+
+    /**
+     * 旧实现：遍历所有 session，找到 channel 对应的那个
+     */
+    @Benchmark
+    public int scan() {
+        int removed = 0;
+        for (int i = 0; i < DISCONNECTS; i++) {
+            Session session = nextSession();
+            if (scanRemove(session.getChannel()) != null)
+                removed++;
+            scanMap.put(session.getUid(), session);
+        }
+        return removed;
+    }
+
+    @Benchmark
+    public int channelAttribute() {
+        int removed = 0;
+        for (int i = 0; i < DISCONNECTS; i++) {
+            Session session = nextSession();
+            if (sessionMap.removeSessionUnSafe(session.getChannel()) != null)
+                removed++;
+            sessionMap.addSession(session);
+        }
+        return removed;
+    }
+
+    private Session nextSession() {
+        Session session = sessions[cursor];
+        cursor = cursor + 1 == sessions.length ? 0 : cursor + 1;
+        return session;
+    }
+
+    private Long scanRemove(Channel channel) {
+        Collection<Session> values = scanMap.values();
+        for (Session session : values) {
+            if (session != null && session.getChannel() == channel) {
+                values.remove(session);
+                return session.getUid();
+            }
+        }
+        return null;
+    }
+}
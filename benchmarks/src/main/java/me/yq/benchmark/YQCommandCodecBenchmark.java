@@ -0,0 +1,130 @@
+package me.yq.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import me.yq.biz.Message;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BizCode;
+import me.yq.remoting.codec.protocol.YQCommandCodec;
+import me.yq.remoting.command.DefaultRequestCommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YQ 协议编解码的基准测试，覆盖不同大小的消息体和 v1 / v2 两种帧格式：<br/>
+ * 1.encode：业务对象直接序列化进池化 ByteBuf，并回填各个 len 字段<br/>
+ * 2.decodeCopy / decodeRetainedSlice：拷贝解码和零拷贝解码，只解出通信对象，不反序列化<br/>
+ * 3.decodeAndDeserialize：零拷贝解码后再反序列化出业务对象，即服务端收到一个请求的完整解码开销<br/>
+ * 运行：java -jar benchmarks/target/benchmarks.jar YQCommandCodecBenchmark -prof gc
+ *
+ * @author yq
+ * @version v1.0 2023-05-15 14:20
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class YQCommandCodecBenchmark {
+
+    /**
+     * 消息文本长度（字符数）
+     */
+    @Param({"64", "1024", "16384"})
+    private int payloadSize;
+
+    /**
+     * 协议版本，决定帧格式
+     */
+    @Param({"1", "2"})
+    private byte version;
+
+    private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+
+    private final YQCommandCodec copyCodec = new YQCommandCodec(false);
+
+    private final YQCommandCodec retainedSliceCodec = new YQCommandCodec(true);
+
+    private final List<Object> decoded = new ArrayList<>(1);
+
+    private BaseRequest request;
+
+    /**
+     * 预先编码好的一帧，解码时每次使用它的一个 retainedDuplicate
+     */
+    private ByteBuf frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        char[] text = new char[payloadSize];
+        Arrays.fill(text, 'x');
+        User from = new User(157146, "abcde");
+        User to = new User(909900, "123456");
+        request = new BaseRequest(BizCode.Messaging.code(), new Message(from, to, new String(text)), to.getUserId());
+
+        frame = allocator.directBuffer();
+        copyCodec.encode(newCommand(), frame);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        frame.release();
+    }
+
+    @Benchmark
+    public int encode() {
+        ByteBuf out = allocator.directBuffer();
+        try {
+            copyCodec.encode(newCommand(), out);
+            return out.readableBytes();
+        } finally {
+            out.release();
+        }
+    }
+
+    @Benchmark
+    public Object decodeCopy() {
+        DefaultRequestCommand command = decode(copyCodec);
+        command.release();
+        return command;
+    }
+
+    @Benchmark
+    public Object decodeRetainedSlice() {
+        DefaultRequestCommand command = decode(retainedSliceCodec);
+        command.release();
+        return command;
+    }
+
+    @Benchmark
+    public Object decodeAndDeserialize() {
+        DefaultRequestCommand command = decode(retainedSliceCodec);
+        command.deserialize();
+        return command.getAppRequest();
+    }
+
+    private DefaultRequestCommand newCommand() {
+        DefaultRequestCommand command = new DefaultRequestCommand();
+        command.setVersion(version);
+        command.setAppRequest(request);
+        return command;
+    }
+
+    private DefaultRequestCommand decode(YQCommandCodec codec) {
+        ByteBuf in = frame.retainedDuplicate();
+        try {
+            decoded.clear();
+            codec.decode(null, in, decoded);
+            return (DefaultRequestCommand) decoded.get(0);
+        } finally {
+            in.release();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package me.yq.benchmark.loadgen;
+
+import me.yq.biz.Message;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.common.ResponseStatus;
+import me.yq.remoting.transport.process.RequestProcessor;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 虚拟用户收到消息时的处理器：记录端到端的投递延迟。<br/>
+ * 发送端和接收端在同一个进程中，消息内容以计划发送时刻的 System.nanoTime() 开头（参考 {@link LoadGenerator#newPayload}），
+ * 从计划发送时刻开始计时，可以避免发送端被阻塞时漏记排队时间（coordinated omission）
+ *
+ * @author yq
+ * @version v1.0 2023-05-16 10:20
+ */
+public class DeliveryRecordingProcessor extends RequestProcessor {
+
+    private final Recorder deliveryLatency;
+
+    private final LongAdder delivered = new LongAdder();
+
+    public DeliveryRecordingProcessor(Recorder deliveryLatency) {
+        super(true);
+        this.deliveryLatency = deliveryLatency;
+    }
+
+    @Override
+    public BaseResponse doProcess(BaseRequest request) {
+        String msg = ((Message) request.getAppRequest()).getMsg();
+        long intendedNanos = Long.parseLong(msg.substring(0, msg.indexOf(LoadGenerator.PAYLOAD_SEPARATOR)));
+        deliveryLatency.recordValue(Math.max(0, System.nanoTime() - intendedNanos));
+        delivered.increment();
+        return new BaseResponse(ResponseStatus.SUCCESS);
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+}
@@ -0,0 +1,106 @@
+package me.yq.benchmark.loadgen;
+
+import me.yq.remoting.support.TransportType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 压测参数，命令行中以 key=value 的形式传入，未传入的使用默认值
+ *
+ * @author yq
+ * @version v1.0 2023-05-16 10:40
+ */
+public class LoadGenOptions {
+
+    /**
+     * 消息的扇出方式
+     */
+    public enum FanOut {
+        /**
+         * 用户两两配对，互相发消息
+         */
+        PAIR,
+        /**
+         * 每条消息随机发给一个其他用户
+         */
+        RANDOM,
+        /**
+         * 模拟群聊：同一个用户连续给 groupSize 个随机用户各发一条消息
+         */
+        GROUP
+    }
+
+    // 虚拟用户数
+    int users = 1000;
+    // 目标发送速率（条/秒，所有用户合计）
+    int rate = 10000;
+    // 压测时长（秒，不含预热）
+    int duration = 30;
+    // 预热时长（秒），预热期间的数据不计入结果
+    int warmup = 5;
+    // 消息扇出方式
+    FanOut fanOut = FanOut.PAIR;
+    // GROUP 扇出时每个群的人数
+    int groupSize = 10;
+    // 消息内容长度（字符数）
+    int payload = 64;
+    // 所有虚拟用户共享的 IO 线程数
+    int ioThreads = Runtime.getRuntime().availableProcessors();
+    // IO 模型，服务端（内嵌时）和虚拟用户共用
+    TransportType transport = TransportType.AUTO;
+    // 是否开启批量帧，服务端（内嵌时）和虚拟用户同时开启
+    boolean batch = false;
+    // 所有虚拟用户共享的业务线程数
+    int bizThreads = Runtime.getRuntime().availableProcessors();
+    // 是否在本进程中启动一个服务端，为 false 时连接 host:port 上已有的服务端（需要能接受任意虚拟用户登录）
+    boolean embedded = true;
+    String host = "127.0.0.1";
+    int port = 9088;
+    // 虚拟用户 id 的起始值
+    long firstUserId = 1_000_000L;
+
+    static LoadGenOptions parse(String[] args) {
+        Map<String, String> kv = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0)
+                throw new IllegalArgumentException("参数格式应该是 key=value: " + arg);
+            kv.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        LoadGenOptions options = new LoadGenOptions();
+        options.users = Integer.parseInt(kv.getOrDefault("users", String.valueOf(options.users)));
+        options.rate = Integer.parseInt(kv.getOrDefault("rate", String.valueOf(options.rate)));
+        options.duration = Integer.parseInt(kv.getOrDefault("duration", String.valueOf(options.duration)));
+        options.warmup = Integer.parseInt(kv.getOrDefault("warmup", String.valueOf(options.warmup)));
+        options.fanOut = FanOut.valueOf(kv.getOrDefault("fanOut", options.fanOut.name()).toUpperCase());
+        options.groupSize = Integer.parseInt(kv.getOrDefault("groupSize", String.valueOf(options.groupSize)));
+        options.payload = Integer.parseInt(kv.getOrDefault("payload", String.valueOf(options.payload)));
+        options.ioThreads = Integer.parseInt(kv.getOrDefault("ioThreads", String.valueOf(options.ioThreads)));
+        options.transport = TransportType.fromConfig(kv.getOrDefault("transport", options.transport.name()));
+        options.batch = Boolean.parseBoolean(kv.getOrDefault("batch", String.valueOf(options.batch)));
+        options.bizThreads = Integer.parseInt(kv.getOrDefault("bizThreads", String.valueOf(options.bizThreads)));
+        options.embedded = Boolean.parseBoolean(kv.getOrDefault("embedded", String.valueOf(options.embedded)));
+        options.host = kv.getOrDefault("host", options.host);
+        options.port = Integer.parseInt(kv.getOrDefault("port", String.valueOf(options.port)));
+        options.firstUserId = Long.parseLong(kv.getOrDefault("firstUserId", String.valueOf(options.firstUserId)));
+
+        if (options.users < 2)
+            throw new IllegalArgumentException("至少需要 2 个虚拟用户");
+        if (options.fanOut == FanOut.GROUP && options.groupSize >= options.users)
+            throw new IllegalArgumentException("群人数需要小于虚拟用户数");
+        if (options.rate <= 0 || options.duration <= 0 || options.warmup < 0)
+            throw new IllegalArgumentException("rate、duration 必须大于 0，warmup 不能小于 0");
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return "users=" + users + ", rate=" + rate + "/s, duration=" + duration + "s, warmup=" + warmup + "s"
+                + ", fanOut=" + fanOut + (fanOut == FanOut.GROUP ? "(" + groupSize + ")" : "")
+                + ", payload=" + payload + ", ioThreads=" + ioThreads + ", bizThreads=" + bizThreads
+                + ", transport=" + transport.resolve() + ", batch=" + batch
+                + ", server=" + (embedded ? "embedded:" + port : host + ":" + port);
+    }
+}
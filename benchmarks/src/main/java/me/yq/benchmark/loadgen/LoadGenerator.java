@@ -0,0 +1,305 @@
+package me.yq.benchmark.loadgen;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.netty.channel.EventLoopGroup;
+import me.yq.common.BizCode;
+import me.yq.common.ResponseStatus;
+import me.yq.remoting.config.ClientConfigNames;
+import me.yq.remoting.config.DefaultClientConfig;
+import me.yq.remoting.config.DefaultServerConfig;
+import me.yq.remoting.config.ServerConfigNames;
+import me.yq.remoting.processor.MessagingTransferProcessor;
+import me.yq.remoting.support.Config;
+import me.yq.remoting.utils.NamedThreadFactory;
+import me.yq.support.ChatClient;
+import me.yq.support.ChatServer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 端到端压测工具：在一个进程内模拟大量用户，所有虚拟用户共享同一组 IO 线程和业务线程，
+ * 登录后按给定的速率和扇出方式互相发消息，统计吞吐量以及 HdrHistogram 延迟分位数：<br/>
+ * 1.ack 延迟：从计划发送时刻到收到服务端转发确认<br/>
+ * 2.投递延迟：从计划发送时刻到目标用户收到消息<br/>
+ * 两者都以计划发送时刻为起点（而不是实际发送时刻），发送端跟不上时排队的时间也会被统计进来。<br/>
+ * 运行（参数均为可选的 key=value，参考 {@link LoadGenOptions}）：
+ * <pre>
+ *     mvn -B package -pl benchmarks -am -DskipTests -Dassembly.skipAssembly=true
+ *     java -cp benchmarks/target/benchmarks.jar me.yq.benchmark.loadgen.LoadGenerator users=2000 rate=20000 fanOut=GROUP groupSize=10
+ * </pre>
+ *
+ * @author yq
+ * @version v1.0 2023-05-16 11:00
+ */
+public class LoadGenerator {
+
+    /**
+     * 消息内容中，计划发送时刻和填充内容之间的分隔符
+     */
+    static final char PAYLOAD_SEPARATOR = ':';
+
+    private static final long LOGIN_TIMEOUT_SECONDS = 120;
+
+    private static final long DRAIN_TIMEOUT_MILLIS = 3000;
+
+    private final LoadGenOptions options;
+
+    private final Recorder ackLatency = new Recorder(3);
+
+    private final Recorder deliveryLatency = new Recorder(3);
+
+    private final DeliveryRecordingProcessor deliveryProcessor = new DeliveryRecordingProcessor(deliveryLatency);
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder acked = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    private final String padding;
+
+    private ChatServer server;
+
+    private EventLoopGroup sharedWorkerGroup;
+
+    private ThreadPoolExecutor sharedBizThreadPool;
+
+    private final List<ChatClient> clients = new ArrayList<>();
+
+    public LoadGenerator(LoadGenOptions options) {
+        this.options = options;
+        StringBuilder sb = new StringBuilder(options.payload);
+        for (int i = 0; i < options.payload; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        this.padding = sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 成千上万个用户的登录日志没有意义，只保留告警
+        ((Logger) LoggerFactory.getLogger("me.yq")).setLevel(Level.WARN);
+
+        LoadGenOptions options = LoadGenOptions.parse(args);
+        System.out.println("压测参数: " + options);
+
+        LoadGenerator loadGenerator = new LoadGenerator(options);
+        try {
+            loadGenerator.setUp();
+            loadGenerator.run();
+        } finally {
+            loadGenerator.tearDown();
+        }
+    }
+
+    //================== 准备 ==================
+
+    private void setUp() throws InterruptedException {
+        if (options.embedded)
+            startEmbeddedServer();
+
+        sharedWorkerGroup = options.transport.newEventLoopGroup(options.ioThreads, new NamedThreadFactory("LoadGen-Worker", true));
+        sharedBizThreadPool = new ThreadPoolExecutor(options.bizThreads, options.bizThreads, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("LoadGen-Biz", true));
+
+        long begin = System.nanoTime();
+        ExecutorService loginPool = Executors.newFixedThreadPool(32, new NamedThreadFactory("LoadGen-Login", true));
+        List<Future<ChatClient>> logins = new ArrayList<>(options.users);
+        for (int i = 0; i < options.users; i++) {
+            long userId = options.firstUserId + i;
+            logins.add(loginPool.submit(() -> newVirtualUser(userId)));
+        }
+        loginPool.shutdown();
+        if (!loginPool.awaitTermination(LOGIN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            throw new IllegalStateException("虚拟用户登录超时！");
+
+        for (Future<ChatClient> login : logins) {
+            try {
+                clients.add(login.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("虚拟用户登录失败！", e.getCause());
+            }
+        }
+        System.out.printf("%d 个虚拟用户已登录，耗时 %d ms%n", clients.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+    }
+
+    private void startEmbeddedServer() {
+        Config serverConfig = new DefaultServerConfig();
+        serverConfig.putConfig(ServerConfigNames.SERVER_PORT, String.valueOf(options.port));
+        serverConfig.putConfig(ServerConfigNames.TRANSPORT_TYPE, options.transport.name());
+        serverConfig.putConfig(ServerConfigNames.BATCH_ENABLE, String.valueOf(options.batch));
+        server = new ChatServer(false, serverConfig);
+        server.registerBizProcessor(BizCode.LogInRequest.code(), new VirtualUserLogInProcessor(server.getSessionMap()));
+        server.registerBizProcessor(BizCode.Messaging.code(),
+                new MessagingTransferProcessor(server.getSessionMap(), serverConfig, server.getBizThreadPool()));
+        server.start();
+    }
+
+    private ChatClient newVirtualUser(long userId) {
+        Config clientConfig = new DefaultClientConfig();
+        clientConfig.putConfig(ClientConfigNames.HEARTBEAT_ENABLE, "false");
+        clientConfig.putConfig(ClientConfigNames.REMOTE_SERVER_HOST, options.host);
+        clientConfig.putConfig(ClientConfigNames.REMOTE_SERVER_PORT, String.valueOf(options.port));
+        clientConfig.putConfig(ClientConfigNames.BATCH_ENABLE, String.valueOf(options.batch));
+
+        ChatClient client = new ChatClient(false, clientConfig, sharedWorkerGroup, sharedBizThreadPool);
+        client.registerBizProcessor(BizCode.Messaging.code(), deliveryProcessor);
+        client.start();
+        client.logIn(userId, "");
+        return client;
+    }
+
+    //================== 压测 ==================
+
+    private void run() throws InterruptedException {
+        Thread sender = new Thread(this::sendLoop, "LoadGen-Sender");
+        sender.setDaemon(true);
+        sender.start();
+
+        // 预热，丢弃预热期间的数据
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmup));
+        ackLatency.reset();
+        deliveryLatency.reset();
+        long sentBase = sent.sum(), ackedBase = acked.sum(), failedBase = failed.sum(), deliveredBase = deliveryProcessor.getDelivered();
+
+        Histogram ackTotal = new Histogram(3);
+        Histogram deliveryTotal = new Histogram(3);
+        Histogram ackInterval = null;
+        Histogram deliveryInterval = null;
+        long lastAcked = acked.sum(), lastDelivered = deliveryProcessor.getDelivered();
+        long begin = System.nanoTime();
+        System.out.printf("%6s %12s %12s %10s %14s %14s%n", "秒", "ack/s", "投递/s", "失败", "ack p99(µs)", "投递 p99(µs)");
+        for (int second = 1; second <= options.duration; second++) {
+            LockSupport.parkNanos(begin + TimeUnit.SECONDS.toNanos(second) - System.nanoTime());
+            ackInterval = ackLatency.getIntervalHistogram(ackInterval);
+            deliveryInterval = deliveryLatency.getIntervalHistogram(deliveryInterval);
+            ackTotal.add(ackInterval);
+            deliveryTotal.add(deliveryInterval);
+
+            long nowAcked = acked.sum(), nowDelivered = deliveryProcessor.getDelivered();
+            System.out.printf("%6d %12d %12d %10d %14.1f %14.1f%n", second, nowAcked - lastAcked, nowDelivered - lastDelivered,
+                    failed.sum() - failedBase, micros(ackInterval.getValueAtPercentile(99)), micros(deliveryInterval.getValueAtPercentile(99)));
+            lastAcked = nowAcked;
+            lastDelivered = nowDelivered;
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        long sentCount = sent.sum() - sentBase;
+
+        // 停止发送，等待在途的消息
+        running.set(false);
+        sender.join();
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (acked.sum() + failed.sum() < sent.sum() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.println("================== 压测结果 ==================");
+        System.out.println("参数: " + options);
+        System.out.printf("发送: %d 条，服务端确认: %d 条，投递: %d 条，失败: %d 条%n",
+                sentCount, acked.sum() - ackedBase, deliveryProcessor.getDelivered() - deliveredBase, failed.sum() - failedBase);
+        System.out.printf("吞吐量: 发送 %.0f 条/秒，确认 %.0f 条/秒，投递 %.0f 条/秒%n",
+                sentCount / seconds, ackTotal.getTotalCount() / seconds, deliveryTotal.getTotalCount() / seconds);
+        printPercentiles("ack 延迟", ackTotal);
+        printPercentiles("投递延迟", deliveryTotal);
+    }
+
+    /**
+     * 以固定速率发送消息，每条消息都有一个计划发送时刻，延迟从计划发送时刻开始统计
+     */
+    private void sendLoop() {
+        int fanWidth = options.fanOut == LoadGenOptions.FanOut.GROUP ? options.groupSize : 1;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        long start = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        int senderIndex = 0;
+        for (long seq = 0; running.get(); seq++) {
+            long intendedNanos = start + seq * intervalNanos;
+            long waitNanos = intendedNanos - System.nanoTime();
+            if (waitNanos > 0)
+                LockSupport.parkNanos(waitNanos);
+
+            // 同一个群消息的 fanWidth 条消息由同一个用户发出
+            if (seq % fanWidth == 0)
+                senderIndex = (int) ((seq / fanWidth) % clients.size());
+            ChatClient from = clients.get(senderIndex);
+            long targetUserId = options.firstUserId + pickTarget(senderIndex, random);
+
+            sent.increment();
+            try {
+                from.sendMsgAsync(targetUserId, newPayload(intendedNanos)).whenComplete((response, cause) -> {
+                    if (cause == null && response.getStatus() == ResponseStatus.SUCCESS) {
+                        ackLatency.recordValue(Math.max(0, System.nanoTime() - intendedNanos));
+                        acked.increment();
+                    } else {
+                        failed.increment();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // channel 不可写等同步异常
+                failed.increment();
+            }
+        }
+    }
+
+    private int pickTarget(int senderIndex, ThreadLocalRandom random) {
+        if (options.fanOut == LoadGenOptions.FanOut.PAIR) {
+            int partner = senderIndex ^ 1;
+            // 用户数为奇数时，最后一个用户和第一个用户配对
+            return partner < clients.size() ? partner : 0;
+        }
+        int target = random.nextInt(clients.size() - 1);
+        return target >= senderIndex ? target + 1 : target;
+    }
+
+    String newPayload(long intendedNanos) {
+        return intendedNanos + String.valueOf(PAYLOAD_SEPARATOR) + padding;
+    }
+
+    //================== 结束 ==================
+
+    private void tearDown() {
+        running.set(false);
+        // 关闭时每个虚拟用户都会打印一遍断连日志
+        ((Logger) LoggerFactory.getLogger("me.yq")).setLevel(Level.OFF);
+        for (ChatClient client : clients) {
+            try {
+                client.shutdown();
+            } catch (Exception e) {
+                // 压测结束，忽略关闭时的异常
+            }
+        }
+        if (sharedWorkerGroup != null)
+            sharedWorkerGroup.shutdownGracefully();
+        if (sharedBizThreadPool != null)
+            sharedBizThreadPool.shutdownNow();
+        if (server != null)
+            server.shutdown();
+    }
+
+    private static void printPercentiles(String name, Histogram histogram) {
+        System.out.printf("%s(µs): p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f (样本 %d)%n", name,
+                micros(histogram.getValueAtPercentile(50)),
+                micros(histogram.getValueAtPercentile(90)),
+                micros(histogram.getValueAtPercentile(99)),
+                micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getMaxValue()),
+                histogram.getTotalCount());
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
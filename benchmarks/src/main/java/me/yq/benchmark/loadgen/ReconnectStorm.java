@@ -0,0 +1,186 @@
+package me.yq.benchmark.loadgen;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.*;
+import me.yq.remoting.config.DefaultServerConfig;
+import me.yq.remoting.config.ServerConfigNames;
+import me.yq.remoting.support.Config;
+import me.yq.remoting.support.TransportType;
+import me.yq.remoting.utils.NamedThreadFactory;
+import me.yq.support.ChatServer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 重连风暴压测：模拟发布或者网络抖动之后，大量客户端在同一时刻向服务端发起重连。<br/>
+ * 每一轮在本机回环地址上一次性发起 connections 个连接（不登录，只测建联），统计：<br/>
+ * 1.服务端 accept 完所有连接的耗时和 accept 速率<br/>
+ * 2.客户端的建联延迟分位数。accept 队列溢出时内核会丢弃 SYN，客户端要等 1 秒以上的重传，会直接体现在 p99 和 max 上<br/>
+ * 3.建联失败（超时）的连接数<br/>
+ * 可以对比不同的监听 socket 数（SO_REUSEPORT）和 backlog 下的表现。运行（参数均为可选的 key=value）：
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar me.yq.benchmark.loadgen.ReconnectStorm connections=20000 acceptors=4 backlog=4096
+ * </pre>
+ * 注意：单个客户端 IP 的临时端口有限（参考 net.ipv4.ip_local_port_range），连接数过大时需要调大它
+ *
+ * @author yq
+ * @version v1.0 2023-05-25 15:30
+ */
+public class ReconnectStorm {
+
+    // 每一轮同时发起的连接数
+    private int connections = 10000;
+    // 风暴轮数，每轮结束后断开所有连接再开始下一轮
+    private int rounds = 3;
+    // 服务端同一个端口上的监听 socket 数
+    private int acceptors = 1;
+    // 服务端 accept 队列长度
+    private int backlog = 4096;
+    private TransportType transport = TransportType.AUTO;
+    // 客户端 IO 线程数
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private int port = 9099;
+    // 单个连接的建联超时时间
+    private int connectTimeoutMillis = 10000;
+
+    private final LongAdder accepted = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger("me.yq")).setLevel(Level.WARN);
+        ((Logger) LoggerFactory.getLogger("io.netty")).setLevel(Level.WARN);
+
+        ReconnectStorm storm = parse(args);
+        System.out.println("压测参数: " + storm);
+        storm.run();
+    }
+
+    private void run() throws InterruptedException {
+        Config serverConfig = new DefaultServerConfig();
+        serverConfig.putConfig(ServerConfigNames.SERVER_PORT, String.valueOf(port));
+        serverConfig.putConfig(ServerConfigNames.TRANSPORT_TYPE, transport.name());
+        serverConfig.putConfig(ServerConfigNames.ACCEPTOR_NUM, String.valueOf(acceptors));
+        serverConfig.putConfig(ServerConfigNames.SO_BACKLOG, String.valueOf(backlog));
+        serverConfig.putConfig(ServerConfigNames.IDLE_CHECK_ENABLE, "false");
+        ChatServer server = new ChatServer(false, serverConfig);
+        server.registerCustomHandlersAhead("AcceptCounter", AcceptCounter::new);
+        server.start();
+
+        EventLoopGroup clientGroup = transport.newEventLoopGroup(ioThreads, new NamedThreadFactory("Storm-Client", true));
+        Bootstrap bootstrap = new Bootstrap()
+                .group(clientGroup)
+                .channel(transport.socketChannelClass())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        // 只测建联，客户端不需要任何 handler
+                    }
+                });
+        try {
+            for (int round = 1; round <= rounds; round++)
+                runRound(round, bootstrap);
+        } finally {
+            clientGroup.shutdownGracefully().awaitUninterruptibly();
+            server.shutdown();
+        }
+    }
+
+    private void runRound(int round, Bootstrap bootstrap) throws InterruptedException {
+        Recorder connectLatency = new Recorder(3);
+        LongAdder failed = new LongAdder();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        List<Channel> channels = Collections.synchronizedList(new ArrayList<>(connections));
+        CountDownLatch done = new CountDownLatch(connections);
+        accepted.reset();
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            long start = System.nanoTime();
+            ChannelFuture future = bootstrap.connect("127.0.0.1", port);
+            future.addListener(f -> {
+                if (f.isSuccess()) {
+                    connectLatency.recordValue(System.nanoTime() - start);
+                    channels.add(future.channel());
+                } else {
+                    failed.increment();
+                    firstFailure.compareAndSet(null, f.cause());
+                }
+                done.countDown();
+            });
+        }
+        done.await(connectTimeoutMillis * 2L, TimeUnit.MILLISECONDS);
+        long expectedAccepted = connections - failed.sum();
+        while (accepted.sum() < expectedAccepted && System.nanoTime() - begin < TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis * 3L))
+            TimeUnit.MILLISECONDS.sleep(1);
+        long elapsedNanos = System.nanoTime() - begin;
+
+        Histogram histogram = connectLatency.getIntervalHistogram();
+        System.out.printf("第 %d 轮：服务端 accept %d 个连接耗时 %d ms（%.0f 个/秒），失败 %d 个，建联延迟(ms): p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                round, accepted.sum(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                accepted.sum() * 1e9 / elapsedNanos, failed.sum(),
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6);
+        if (firstFailure.get() != null)
+            System.out.println("建联失败的原因（之一）: " + firstFailure.get());
+
+        synchronized (channels) {
+            for (Channel channel : channels)
+                channel.close();
+            for (Channel channel : channels)
+                channel.closeFuture().awaitUninterruptibly();
+        }
+        // 给服务端一点时间处理断连，再开始下一轮
+        TimeUnit.SECONDS.sleep(1);
+    }
+
+    /**
+     * 放在服务端 pipeline 的最前面，统计 accept 完成的连接数
+     */
+    private class AcceptCounter extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            accepted.increment();
+            super.channelActive(ctx);
+        }
+    }
+
+    private static ReconnectStorm parse(String[] args) {
+        Map<String, String> kv = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0)
+                throw new IllegalArgumentException("参数格式应该是 key=value: " + arg);
+            kv.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        ReconnectStorm storm = new ReconnectStorm();
+        storm.connections = Integer.parseInt(kv.getOrDefault("connections", String.valueOf(storm.connections)));
+        storm.rounds = Integer.parseInt(kv.getOrDefault("rounds", String.valueOf(storm.rounds)));
+        storm.acceptors = Integer.parseInt(kv.getOrDefault("acceptors", String.valueOf(storm.acceptors)));
+        storm.backlog = Integer.parseInt(kv.getOrDefault("backlog", String.valueOf(storm.backlog)));
+        storm.transport = TransportType.fromConfig(kv.getOrDefault("transport", storm.transport.name()));
+        storm.ioThreads = Integer.parseInt(kv.getOrDefault("ioThreads", String.valueOf(storm.ioThreads)));
+        storm.port = Integer.parseInt(kv.getOrDefault("port", String.valueOf(storm.port)));
+        storm.connectTimeoutMillis = Integer.parseInt(kv.getOrDefault("connectTimeoutMillis", String.valueOf(storm.connectTimeoutMillis)));
+        return storm;
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + connections + ", rounds=" + rounds + ", acceptors=" + acceptors + ", backlog=" + backlog
+                + ", transport=" + transport.resolve() + ", ioThreads=" + ioThreads + ", port=" + port;
+    }
+}
@@ -0,0 +1,33 @@
+package me.yq.benchmark.loadgen;
+
+import me.yq.biz.LogInRequest;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.transport.Session;
+import me.yq.remoting.transport.process.RequestProcessor;
+
+/**
+ * 压测用的登录处理器：不校验账号密码（mock 的用户库里只有几个用户），任何虚拟用户都可以直接登录，
+ * 其余和 {@link me.yq.remoting.processor.LogInProcessor} 一样，会把用户的 session 记录下来，消息转发依赖它
+ *
+ * @author yq
+ * @version v1.0 2023-05-16 10:05
+ */
+public class VirtualUserLogInProcessor extends RequestProcessor {
+
+    private final SessionMap sessionMap;
+
+    public VirtualUserLogInProcessor(SessionMap sessionMap) {
+        super(true);
+        this.sessionMap = sessionMap;
+    }
+
+    @Override
+    public BaseResponse doProcess(BaseRequest request) {
+        User user = ((LogInRequest) request.getAppRequest()).getUser();
+        sessionMap.addSession(new Session(user.getUserId(), getChannelLocal().get()));
+        return new BaseResponse(new User(user.getUserId()));
+    }
+}
@@ -3,28 +3,37 @@ package me.yq.remoting;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
 import me.yq.common.BaseRequest;
 import me.yq.common.BaseResponse;
+import me.yq.common.ResponseStatus;
+import me.yq.remoting.codec.protocol.CommandBatcher;
+import me.yq.remoting.codec.protocol.PayloadCompressor;
 import me.yq.remoting.codec.protocol.ProtocolCodec;
+import me.yq.remoting.codec.protocol.YQCommandCodec;
+import me.yq.remoting.command.DefaultResponseCommand;
 import me.yq.remoting.config.ClientConfigNames;
 import me.yq.remoting.connection.ClientHeartbeatHandler;
 import me.yq.remoting.connection.ClientSideConnectionHandler;
 import me.yq.remoting.support.ChannelAttributes;
+import me.yq.remoting.support.TransportType;
 import me.yq.remoting.transport.Callback;
 import me.yq.remoting.transport.CommandSendingDelegate;
+import me.yq.remoting.transport.PendingSendQueue;
 import me.yq.remoting.transport.RequestFutureMap;
+import me.yq.remoting.transport.RequestTimeoutWheel;
 import me.yq.remoting.transport.Session;
 import me.yq.remoting.transport.process.CommandHandler;
 import me.yq.remoting.utils.NamedThreadFactory;
 import me.yq.support.ChatClient;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
 
 
 @Slf4j
@@ -37,13 +46,34 @@ public class RemotingClient {
 
     private Bootstrap clientBootstrap;
 
-    private final EventLoopGroup workerGroup = new NioEventLoopGroup(
-            Runtime.getRuntime().availableProcessors() * 2,
-            new NamedThreadFactory("Client-Worker", true)
-    );
+    /**
+     * 独享的 EventLoopGroup 在启动时按配置的 IO 模型创建，参考 {@link TransportType}
+     */
+    private EventLoopGroup workerGroup;
+
+    /**
+     * workerGroup 是否由本客户端创建，只有自己创建的才需要在关闭时一并关闭
+     */
+    private final boolean ownWorkerGroup;
+
+    /**
+     * 解压服务端发来的压缩消息体，启动时按配置加载字典
+     */
+    private PayloadCompressor payloadCompressor;
 
     public RemotingClient(ChatClient chatClient) {
+        this(chatClient, null);
+    }
+
+    /**
+     * @param chatClient        所属的聊天客户端
+     * @param sharedWorkerGroup 多个客户端共享的 EventLoopGroup（比如压测时一个进程内模拟大量用户），
+     *                          为 null 时创建一个独享的 EventLoopGroup。共享的 EventLoopGroup 不会随客户端关闭
+     */
+    public RemotingClient(ChatClient chatClient, EventLoopGroup sharedWorkerGroup) {
         this.client = chatClient;
+        this.ownWorkerGroup = sharedWorkerGroup == null;
+        this.workerGroup = sharedWorkerGroup;
     }
 
 
@@ -54,33 +84,32 @@ public class RemotingClient {
 
         // 启动时一定需要 try-catch，netty 在启动时随时可能会报错！！！
         try {
+            RequestTimeoutWheel.configure(
+                    client.getConfig().getLong(ClientConfigNames.TIMEOUT_WHEEL_TICK_MILLIS),
+                    client.getConfig().getInt(ClientConfigNames.TIMEOUT_WHEEL_SIZE));
+
+            // 共享的 EventLoopGroup 由创建方决定 IO 模型，channel 的类型要和它保持一致
+            TransportType transport;
+            if (ownWorkerGroup) {
+                transport = TransportType.fromConfig(client.getConfig().getValue(ClientConfigNames.TRANSPORT_TYPE)).resolve();
+                workerGroup = transport.newEventLoopGroup(Runtime.getRuntime().availableProcessors() * 2, new NamedThreadFactory("Client-Worker", true));
+            } else {
+                transport = TransportType.of(workerGroup);
+            }
+
             Bootstrap bootstrap = new Bootstrap();
-            bootstrap.channel(NioSocketChannel.class);
+            bootstrap.channel(transport.socketChannelClass());
             bootstrap.group(workerGroup);
             bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
             bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3 * 1000); // 建联超时时间 3 秒
             bootstrap.option(ChannelOption.TCP_NODELAY, true); // 禁止粘包
-            bootstrap.option(ChannelOption.ALLOCATOR, new PooledByteBufAllocator(true)); // 默认使用 1.池化 2.直接 mem
-
-            LoggingHandler loggingHandler = new LoggingHandler(LogLevel.DEBUG);
-            ClientHeartbeatHandler heartbeatHandler = new ClientHeartbeatHandler(this.client);
-            CommandHandler commandHandler = new CommandHandler(this.client.getUserProcessor());
-            ClientSideConnectionHandler clientSideConnectionHandler = new ClientSideConnectionHandler(this.client);
-            bootstrap.handler(new ChannelInitializer<NioSocketChannel>() {
-                @Override
-                protected void initChannel(NioSocketChannel ch) {
-                    ChannelPipeline pipeline = ch.pipeline();
-                    pipeline.addLast("LoggingHandler", loggingHandler);
-                    pipeline.addLast("ProtocolCodec", new ProtocolCodec());
-                    if (client.getConfig().getBoolean(ClientConfigNames.HEARTBEAT_ENABLE)){
-                        Integer idleSeconds = client.getConfig().getInt(ClientConfigNames.HEARTBEAT_IDLE_SECONDS);
-                        pipeline.addLast("IdleStateHandler", new IdleStateHandler(0, 0, idleSeconds));
-                        pipeline.addLast("ServerHeartbeatHandler", heartbeatHandler);
-                    }
-                    pipeline.addLast("CommandHandler", commandHandler);
-                    pipeline.addLast("ClientSideConnectionHandler", clientSideConnectionHandler);
-                }
-            });
+            bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                    client.getConfig().getInt(ClientConfigNames.WRITE_BUFFER_LOW_WATER_MARK),
+                    client.getConfig().getInt(ClientConfigNames.WRITE_BUFFER_HIGH_WATER_MARK)));
+            // 默认使用 1.池化 2.直接 mem；共享 IO 线程的多个客户端也共享同一个内存池，否则每个客户端都会单独占用若干个 chunk
+            bootstrap.option(ChannelOption.ALLOCATOR, ownWorkerGroup ? new PooledByteBufAllocator(true) : PooledByteBufAllocator.DEFAULT);
+
+            bootstrap.handler(newChannelInitializer());
             clientBootstrap = bootstrap;
 
             connectToServer();
@@ -91,6 +120,58 @@ public class RemotingClient {
 
     }
 
+    /**
+     * 创建连接的 pipeline 初始化器，同时按配置创建解压用的压缩器
+     *
+     * @return 连接的初始化器
+     */
+    ChannelInitializer<Channel> newChannelInitializer() {
+        int pendingSendCapacity = client.getConfig().getInt(ClientConfigNames.PENDING_SEND_QUEUE_CAPACITY);
+        PendingSendQueue.OverflowPolicy overflowPolicy =
+                PendingSendQueue.OverflowPolicy.valueOf(client.getConfig().getValue(ClientConfigNames.PENDING_SEND_OVERFLOW_POLICY));
+        long parkMillis = client.getConfig().getLong(ClientConfigNames.PENDING_SEND_PARK_MILLIS);
+        // 客户端发出的消息体不压缩，阈值和级别用默认值即可
+        PayloadCompressor compressor = new PayloadCompressor(PayloadCompressor.DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION,
+                PayloadCompressor.loadDictionary(client.getConfig().getValue(ClientConfigNames.COMPRESSION_DICTIONARY_PATH)),
+                client.getConfig().getInt(ClientConfigNames.COMPRESSION_MAX_RAW_LENGTH));
+        // 登录时没有声明能解压，服务端就不会发来压缩帧，收到了直接拒绝
+        boolean requireDeclaredCompression = !client.getConfig().getBoolean(ClientConfigNames.COMPRESSION_ENABLE);
+        this.payloadCompressor = compressor;
+
+        LoggingHandler loggingHandler = new LoggingHandler(LogLevel.DEBUG);
+        ClientHeartbeatHandler heartbeatHandler = new ClientHeartbeatHandler(this.client);
+        CommandHandler commandHandler = new CommandHandler(this.client.getUserProcessor());
+        ClientSideConnectionHandler clientSideConnectionHandler = new ClientSideConnectionHandler(this.client);
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ChannelPipeline pipeline = ch.pipeline();
+                // 放在最靠近 head 的位置，保证所有的 flush 都会经过合并
+                if (client.getConfig().getBoolean(ClientConfigNames.FLUSH_CONSOLIDATION_ENABLE))
+                    pipeline.addLast("FlushConsolidationHandler", new FlushConsolidationHandler(
+                            client.getConfig().getInt(ClientConfigNames.FLUSH_CONSOLIDATION_MAX_FLUSHES),
+                            client.getConfig().getBoolean(ClientConfigNames.FLUSH_CONSOLIDATION_WHEN_NO_READ)));
+                pipeline.addLast("LoggingHandler", loggingHandler);
+                boolean zeroCopyDecode = client.getConfig().getBoolean(ClientConfigNames.ZERO_COPY_DECODE_ENABLE);
+                pipeline.addLast("ProtocolCodec", new ProtocolCodec(new YQCommandCodec(zeroCopyDecode, compressor, requireDeclaredCompression)));
+                if (client.getConfig().getBoolean(ClientConfigNames.BATCH_ENABLE))
+                    pipeline.addLast("CommandBatcher", new CommandBatcher(
+                            client.getConfig().getLong(ClientConfigNames.BATCH_WINDOW_MICROS),
+                            client.getConfig().getInt(ClientConfigNames.BATCH_MAX_COMMANDS)));
+                if (client.getConfig().getBoolean(ClientConfigNames.HEARTBEAT_ENABLE)){
+                    Integer idleSeconds = client.getConfig().getInt(ClientConfigNames.HEARTBEAT_IDLE_SECONDS);
+                    pipeline.addLast("IdleStateHandler", new IdleStateHandler(0, 0, idleSeconds));
+                    pipeline.addLast("ServerHeartbeatHandler", heartbeatHandler);
+                }
+                // 服务端处理不过来时，不可写期间发出的请求先排队
+                if (pendingSendCapacity > 0)
+                    pipeline.addLast("PendingSendQueue", new PendingSendQueue(pendingSendCapacity, overflowPolicy, parkMillis));
+                pipeline.addLast("CommandHandler", commandHandler);
+                pipeline.addLast("ClientSideConnectionHandler", clientSideConnectionHandler);
+            }
+        };
+    }
+
     public void shutdown(long timeoutMillis) {
 
         if (timeoutMillis < 0)
@@ -100,8 +181,10 @@ public class RemotingClient {
         RequestFutureMap requestFutureMap = serverChannel.attr(ChannelAttributes.CHANNEL_REQUEST_FUTURE_MAP).get();
         requestFutureMap.removeAllFuturesSafe(timeoutMillis);
 
-        serverChannel.close();
-        workerGroup.shutdownGracefully();
+        // 等待 channel 真正关闭，保证 shutdown 返回后连接状态已经是断开的
+        serverChannel.close().awaitUninterruptibly();
+        if (ownWorkerGroup && workerGroup != null)
+            workerGroup.shutdownGracefully();
     }
 
     /**
@@ -146,6 +229,9 @@ public class RemotingClient {
         this.serverSession = new Session(channelFuture.channel());
         // 心跳计数置 0
         serverChannel.attr(ChannelAttributes.HEARTBEAT_COUNT).set(0);
+        // 发给服务端的请求按配置的序列化方式和协议版本编码
+        serverChannel.attr(ChannelAttributes.CHANNEL_SERIALIZATION).set(client.getConfig().getByte(ClientConfigNames.DEFAULT_SERIALIZATION));
+        serverChannel.attr(ChannelAttributes.CHANNEL_PROTOCOL_VERSION).set(client.getConfig().getByte(ClientConfigNames.DEFAULT_PROTOCOL_VERSION));
     }
 
     /**
@@ -167,6 +253,17 @@ public class RemotingClient {
     }
 
 
+    /**
+     * 异步发送请求，响应到达时 IO 线程会直接完成返回的 future，超时时间为 WAIT_RESPONSE_MILLIS
+     */
+    public CompletableFuture<BaseResponse> sendRequestAsync(BaseRequest request) {
+        return CommandSendingDelegate.sendRequestCompletable(
+                this.serverSession.getChannel(),
+                request,
+                client.getConfig().getLong(ClientConfigNames.WAIT_RESPONSE_MILLIS));
+    }
+
+
     public BaseResponse sendRequestSync(BaseRequest request) {
         return CommandSendingDelegate.sendRequestSync(
                 this.serverSession.getChannel(),
@@ -174,14 +271,43 @@ public class RemotingClient {
                 client.getConfig().getLong(ClientConfigNames.WAIT_RESPONSE_MILLIS));
     }
 
-    public void sendRequestOneway(BaseRequest request) {
-        CommandSendingDelegate.sendRequestOneway(
-                this.serverSession.getChannel(),
+    /**
+     * 发送登录请求。服务端会在登录时协商序列化方式和协议版本，并用协商的结果编码登录响应，
+     * 登录成功后，客户端发出的请求也改用登录响应的序列化方式和协议版本，这样服务端转发消息时可以原样转发
+     */
+    public BaseResponse sendLogInRequest(BaseRequest request) {
+        Channel serverChannel = this.serverSession.getChannel();
+        DefaultResponseCommand responseCommand = CommandSendingDelegate.sendRequestSyncForCommand(
+                serverChannel,
                 request,
                 client.getConfig().getLong(ClientConfigNames.WAIT_RESPONSE_MILLIS));
+        if (responseCommand == null)
+            return null;
+
+        BaseResponse response = responseCommand.getAppResponse();
+        if (response.getStatus() == ResponseStatus.SUCCESS) {
+            serverChannel.attr(ChannelAttributes.CHANNEL_SERIALIZATION).set(responseCommand.getSerialization());
+            serverChannel.attr(ChannelAttributes.CHANNEL_PROTOCOL_VERSION).set(responseCommand.getVersion());
+        }
+        return response;
+    }
+
+    /**
+     * 单向发送请求。SEND_ONEWAY_CONFIRM_MILLIS 大于 0 时会等待消息写出（confirmed write），否则直接 fire-and-forget
+     */
+    public void sendRequestOneway(BaseRequest request) {
+        long confirmMillis = client.getConfig().getLong(ClientConfigNames.SEND_ONEWAY_CONFIRM_MILLIS);
+        if (confirmMillis > 0)
+            CommandSendingDelegate.sendRequestOneway(this.serverSession.getChannel(), request, confirmMillis);
+        else
+            CommandSendingDelegate.sendRequestOneway(this.serverSession.getChannel(), request);
     }
 
     public Session getServerSession() {
         return serverSession;
     }
+
+    public PayloadCompressor getPayloadCompressor() {
+        return payloadCompressor;
+    }
 }
@@ -13,10 +13,15 @@ public class ClientConfigNames {
 
 
 
+    // IO 模型：NIO / EPOLL / AUTO，epoll 不可用时回退到 NIO。和其他客户端共享 IO 线程时以共享的 EventLoopGroup 为准
+    public static final String TRANSPORT_TYPE = "TRANSPORT_TYPE";
+
     // 默认序列化方式
     public static final String DEFAULT_SERIALIZATION = "DEFAULT_SERIALIZATION"; // means hessian2
     // 默认协议版本
     public static final String DEFAULT_PROTOCOL_VERSION = "DEFAULT_PROTOCOL_VERSION";
+    // 客户端能接收的序列化方式，逗号分隔，越靠前越优先。登录时告知服务端，服务端发来的消息会使用其中第一个服务端也支持的
+    public static final String SUPPORTED_SERIALIZATIONS = "SUPPORTED_SERIALIZATIONS";
     // 默认心跳间隔
     public static final String HEARTBEAT_IDLE_SECONDS = "HEARTBEAT_IDLE_SECONDS";
     // 默认心跳最大失败次数
@@ -27,8 +32,42 @@ public class ClientConfigNames {
     public static final String SHUTDOWN_TIMEOUT_MILLIS = "SHUTDOWN_TIMEOUT_MILLIS";
     // 等待响应消息超时时间
     public static final String WAIT_RESPONSE_MILLIS = "WAIT_RESPONSE_MILLIS";
-    // 发送 oneway 请求，忙等以确认请求正常发出 的等待超时时间
+    // 发送 oneway 请求，等待请求写出确认的超时时间，<= 0 表示不等待（fire-and-forget）
     public static final String SEND_ONEWAY_CONFIRM_MILLIS = "SEND_ONEWAY_CONFIRM_MILLIS";
+    // 接收压缩消息体开启，登录时告知服务端，服务端会压缩发来的较大的消息体
+    public static final String COMPRESSION_ENABLE = "COMPRESSION_ENABLE";
+    // 压缩字典的文件路径，为 none 时不使用字典。需要和服务端使用同一个字典文件，否则服务端压缩时不会使用字典
+    public static final String COMPRESSION_DICTIONARY_PATH = "COMPRESSION_DICTIONARY_PATH";
+    // 解压后的消息体最大字节数，服务端声明的原始长度超过该值时拒绝解压
+    public static final String COMPRESSION_MAX_RAW_LENGTH = "COMPRESSION_MAX_RAW_LENGTH";
+    // 零拷贝解码开启（消息体直接引用入站 ByteBuf，反序列化后释放）
+    public static final String ZERO_COPY_DECODE_ENABLE = "ZERO_COPY_DECODE_ENABLE";
+    // 请求超时时间轮 每格时间跨度
+    public static final String TIMEOUT_WHEEL_TICK_MILLIS = "TIMEOUT_WHEEL_TICK_MILLIS";
+    // 请求超时时间轮 格数
+    public static final String TIMEOUT_WHEEL_SIZE = "TIMEOUT_WHEEL_SIZE";
+    // 批量帧开启（把发往同一个连接的多个通信对象聚合成一帧写出），需要对端也能解码批量帧
+    public static final String BATCH_ENABLE = "BATCH_ENABLE";
+    // 批量帧 聚合窗口（微秒），收到 flush 后最多等这么久再写出；为 0 时只聚合 IO 线程中已经排队的写出
+    public static final String BATCH_WINDOW_MICROS = "BATCH_WINDOW_MICROS";
+    // 批量帧 一帧最多装多少个通信对象
+    public static final String BATCH_MAX_COMMANDS = "BATCH_MAX_COMMANDS";
+    // 出站缓冲区 高水位字节数，超过后 channel 变为不可写
+    public static final String WRITE_BUFFER_HIGH_WATER_MARK = "WRITE_BUFFER_HIGH_WATER_MARK";
+    // 出站缓冲区 低水位字节数，回落到该值以下后 channel 恢复可写
+    public static final String WRITE_BUFFER_LOW_WATER_MARK = "WRITE_BUFFER_LOW_WATER_MARK";
+    // 待发送队列容量，channel 不可写时发送的消息在队列中排队，恢复可写后写出；<= 0 表示不排队，不可写时直接报错
+    public static final String PENDING_SEND_QUEUE_CAPACITY = "PENDING_SEND_QUEUE_CAPACITY";
+    // 待发送队列 满了之后的处理策略：DROP_OLDEST / REJECT / PARK
+    public static final String PENDING_SEND_OVERFLOW_POLICY = "PENDING_SEND_OVERFLOW_POLICY";
+    // 待发送队列 PARK 策略下发送线程最多等待的时间
+    public static final String PENDING_SEND_PARK_MILLIS = "PENDING_SEND_PARK_MILLIS";
+    // flush 合并开启（突发写出时合并多次 flush，减少 write 系统调用）
+    public static final String FLUSH_CONSOLIDATION_ENABLE = "FLUSH_CONSOLIDATION_ENABLE";
+    // flush 合并 最多合并多少次显式 flush 后强制真正 flush 一次
+    public static final String FLUSH_CONSOLIDATION_MAX_FLUSHES = "FLUSH_CONSOLIDATION_MAX_FLUSHES";
+    // flush 合并 没有读事件进行时（业务线程写出）是否也进行合并，开启后 flush 会推迟到 eventLoop 的下一个任务中执行
+    public static final String FLUSH_CONSOLIDATION_WHEN_NO_READ = "FLUSH_CONSOLIDATION_WHEN_NO_READ";
 
 
 
@@ -11,8 +11,10 @@ public class DefaultClientConfig extends Config {
     {
         putConfig(ClientConfigNames.REMOTE_SERVER_HOST,"localhost");
         putConfig(ClientConfigNames.REMOTE_SERVER_PORT,"9088");
+        putConfig(ClientConfigNames.TRANSPORT_TYPE,"AUTO");
         putConfig(ClientConfigNames.DEFAULT_SERIALIZATION,"1");
         putConfig(ClientConfigNames.DEFAULT_PROTOCOL_VERSION,"1");
+        putConfig(ClientConfigNames.SUPPORTED_SERIALIZATIONS,"5,4,6,1");
         putConfig(ClientConfigNames.HEARTBEAT_IDLE_SECONDS,"5");
         putConfig(ClientConfigNames.HEARTBEAT_MAX_FAIL_COUNT,"3");
         putConfig(ClientConfigNames.SHUTDOWN_TIMEOUT_MILLIS,"5000");
@@ -22,5 +24,22 @@ public class DefaultClientConfig extends Config {
         putConfig(ClientConfigNames.HEARTBEAT_ENABLE,"true");
         putConfig(ClientConfigNames.WAIT_RESPONSE_MILLIS,"3000");
         putConfig(ClientConfigNames.SEND_ONEWAY_CONFIRM_MILLIS,"3000");
+        putConfig(ClientConfigNames.COMPRESSION_ENABLE,"true");
+        putConfig(ClientConfigNames.COMPRESSION_DICTIONARY_PATH,"none");
+        putConfig(ClientConfigNames.COMPRESSION_MAX_RAW_LENGTH,"16777216");
+        putConfig(ClientConfigNames.ZERO_COPY_DECODE_ENABLE,"true");
+        putConfig(ClientConfigNames.TIMEOUT_WHEEL_TICK_MILLIS,"10");
+        putConfig(ClientConfigNames.TIMEOUT_WHEEL_SIZE,"512");
+        putConfig(ClientConfigNames.BATCH_ENABLE,"false");
+        putConfig(ClientConfigNames.BATCH_WINDOW_MICROS,"0");
+        putConfig(ClientConfigNames.BATCH_MAX_COMMANDS,"64");
+        putConfig(ClientConfigNames.WRITE_BUFFER_HIGH_WATER_MARK,"65536");
+        putConfig(ClientConfigNames.WRITE_BUFFER_LOW_WATER_MARK,"32768");
+        putConfig(ClientConfigNames.PENDING_SEND_QUEUE_CAPACITY,"1024");
+        putConfig(ClientConfigNames.PENDING_SEND_OVERFLOW_POLICY,"REJECT");
+        putConfig(ClientConfigNames.PENDING_SEND_PARK_MILLIS,"1000");
+        putConfig(ClientConfigNames.FLUSH_CONSOLIDATION_ENABLE,"true");
+        putConfig(ClientConfigNames.FLUSH_CONSOLIDATION_MAX_FLUSHES,"256");
+        putConfig(ClientConfigNames.FLUSH_CONSOLIDATION_WHEN_NO_READ,"false");
     }
 }
@@ -51,6 +51,8 @@ public class ClientHeartbeatHandler extends ChannelInboundHandlerAdapter {
 
             log.info("检测到空闲，开始发送心跳！当前已经连续心跳失败次数[{}]", currentCount.get());
             HeartbeatCommand heartbeat = new HeartbeatCommand();
+            // 按登录时协商的协议版本发送，v2 的心跳帧更小
+            heartbeat.setVersion(ChannelAttributes.protocolVersionOf(ctx.channel()));
             ctx.channel().attr(ChannelAttributes.EXPECTED_HEARTBEAT_RESPONSE_ID).set(heartbeat.getMessageId());
 
             ctx.writeAndFlush(heartbeat).addListener(
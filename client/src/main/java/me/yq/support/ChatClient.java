@@ -1,5 +1,6 @@
 package me.yq.support;
 
+import io.netty.channel.EventLoopGroup;
 import lombok.extern.slf4j.Slf4j;
 import me.yq.biz.LogInRequest;
 import me.yq.biz.LogOutRequest;
@@ -20,11 +21,13 @@ import me.yq.remoting.config.DefaultClientConfig;
 import me.yq.remoting.processor.MessageReceivedProcessor;
 import me.yq.remoting.processor.NoticeFromServerProcessor;
 import me.yq.remoting.support.Config;
+import me.yq.remoting.support.DefaultConfig;
 import me.yq.remoting.transport.Callback;
 import me.yq.remoting.transport.Session;
 import me.yq.remoting.transport.process.RequestProcessor;
 import me.yq.remoting.transport.process.UserProcessor;
 import me.yq.remoting.utils.NamedThreadFactory;
+import me.yq.remoting.utils.StringUtils;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -49,6 +52,11 @@ public class ChatClient extends Stateful {
 
     private final ThreadPoolExecutor bizThreadPool;
 
+    /**
+     * bizThreadPool 是否由本客户端创建，只有自己创建的才需要在关闭时一并关闭
+     */
+    private final boolean ownBizThreadPool;
+
     private final UserProcessor userProcessor;
 
     /**
@@ -69,11 +77,23 @@ public class ChatClient extends Stateful {
      *                             即无需手工配置并使用默认配置。为 false 手工配置，一般是 定制化、或者做测试测试的场景。
      */
     public ChatClient(boolean useDefaultProcessors,Config config) {
+        this(useDefaultProcessors, config, null, null);
+    }
+
+    /**
+     * 构造一个和其他客户端共享 IO 线程、业务线程的 chat client，用于在一个进程内模拟大量用户（比如压测）。
+     * 共享的资源不会随客户端关闭，由创建方负责关闭
+     *
+     * @param sharedWorkerGroup    共享的 EventLoopGroup，为 null 时创建独享的
+     * @param sharedBizThreadPool  共享的业务线程池，为 null 时创建独享的
+     */
+    public ChatClient(boolean useDefaultProcessors, Config config, EventLoopGroup sharedWorkerGroup, ThreadPoolExecutor sharedBizThreadPool) {
         this.useDefaultProcessors = useDefaultProcessors;
         this.config = Objects.requireNonNull(config);
-        this.bizThreadPool = initBizThreadPool();
+        this.ownBizThreadPool = sharedBizThreadPool == null;
+        this.bizThreadPool = ownBizThreadPool ? initBizThreadPool() : sharedBizThreadPool;
         this.userProcessor = initUserProcessor();
-        this.remotingClient = initRemoting();
+        this.remotingClient = new RemotingClient(this, sharedWorkerGroup);
     }
 
 
@@ -130,11 +150,6 @@ public class ChatClient extends Stateful {
         return userProcessor;
     }
 
-    private RemotingClient initRemoting(){
-        return new RemotingClient(this);
-    }
-
-
 
     //************** biz method *************
     @Override
@@ -149,7 +164,8 @@ public class ChatClient extends Stateful {
         remotingClient.shutdown(config.getLong(ClientConfigNames.SHUTDOWN_TIMEOUT_MILLIS));
 
         // 关闭 biz pool
-        bizThreadPool.shutdown();
+        if (ownBizThreadPool)
+            bizThreadPool.shutdown();
 
         log.info("客户端已关闭");
     }
@@ -186,9 +202,16 @@ public class ChatClient extends Stateful {
 
             LogInRequest logInRequest = new LogInRequest();
             logInRequest.setUser(new User(userId, passwd));
+            // 告知服务端本客户端能接收的序列化方式和协议版本，服务端推送消息时据此选择
+            logInRequest.setSupportedSerializations(parseSerializations(config.getValue(ClientConfigNames.SUPPORTED_SERIALIZATIONS)));
+            logInRequest.setProtocolVersion(DefaultConfig.LATEST_PROTOCOL_VERSION);
+            if (config.getBoolean(ClientConfigNames.COMPRESSION_ENABLE)) {
+                logInRequest.setCompressionSupported(true);
+                logInRequest.setCompressionDictionaryId(remotingClient.getPayloadCompressor().getDictionaryId());
+            }
 
             BaseRequest request = new BaseRequest(BizCode.LogInRequest.code(), logInRequest);
-            BaseResponse response = remotingClient.sendRequestSync(request);
+            BaseResponse response = remotingClient.sendLogInRequest(request);
 
             if (response.getStatus() != ResponseStatus.SUCCESS)
                 throw new BusinessException("登陆失败！原因: " + response.getReturnMsg(), (Throwable) response.getAppResponse());
@@ -210,6 +233,16 @@ public class ChatClient extends Stateful {
         }
     }
 
+    private static byte[] parseSerializations(String value) {
+        if (StringUtils.hasNoLength(value))
+            return null;
+        String[] codes = value.split(",");
+        byte[] serializations = new byte[codes.length];
+        for (int i = 0; i < codes.length; i++)
+            serializations[i] = Byte.parseByte(codes[i].trim());
+        return serializations;
+    }
+
     /**
      * 登出
      *
@@ -243,7 +276,8 @@ public class ChatClient extends Stateful {
         User to = new User(targetUserId);
         Message message = new Message(from, to, msg);
         messageMap.put(message.getMessageId(), message);
-        BaseRequest request = new BaseRequest(BizCode.Messaging.code(), message);
+        // 目标用户 id 作为路由 id 写入协议头，服务端不需要反序列化消息就可以转发
+        BaseRequest request = new BaseRequest(BizCode.Messaging.code(), message, targetUserId);
 
 
         this.remotingClient.sendRequestCallback(request, new Callback() {
@@ -280,6 +314,21 @@ public class ChatClient extends Stateful {
         });
     }
 
+    /**
+     * 异步向好友发送信息，不会阻塞调用线程，也不会记录待确认的消息，由调用方自行处理返回的 future。<br/>
+     * future 在服务端确认转发后完成，超时时间为 WAIT_RESPONSE_MILLIS
+     *
+     * @param targetUserId 好友 id
+     * @param msg          消息内容
+     * @return 服务端的转发结果
+     */
+    public CompletableFuture<BaseResponse> sendMsgAsync(long targetUserId, String msg) {
+        checkState();
+
+        Message message = new Message(new User(getCurrentUser().getUserId()), new User(targetUserId), msg);
+        return this.remotingClient.sendRequestAsync(new BaseRequest(BizCode.Messaging.code(), message, targetUserId));
+    }
+
     /**
      * 已经发送的消息，但是对方还未回应，已经回应的会被移除
      */
@@ -0,0 +1,140 @@
+package me.yq.remoting;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.remoting.config.ClientConfigNames;
+import me.yq.remoting.config.DefaultClientConfig;
+import me.yq.remoting.support.Config;
+import me.yq.remoting.transport.Session;
+import me.yq.support.ChatClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RemotingClient 测试类，主要覆盖的功能点：
+ * 1. 开启 flush 合并时，FlushConsolidationHandler 位于 ProtocolCodec 靠近 head 的一侧
+ * 2. 开启 flush 合并时，读事件中发起的多次 flush 推迟到 channelReadComplete，合并成一次；读事件之外的 flush 按默认配置立即下发
+ * 3. 关闭 flush 合并时，读事件中的每次 flush 也都原样下发
+ *
+ * @author yq
+ * @version v1.0 2023-05-27 10:40
+ */
+class RemotingClientTest {
+
+    /**
+     * 收到它的读事件时，模拟处理响应的过程中连续写出多条数据
+     */
+    private static final String READ_MARKER = "read";
+
+    private static final int WRITES_PER_READ = 5;
+
+    private final Config config = new DefaultClientConfig();
+
+    /**
+     * 到达 head 的 flush 次数，也就是真正触发写出系统调用的次数
+     */
+    private final AtomicInteger flushCount = new AtomicInteger();
+
+    private EmbeddedChannel channel;
+
+    @AfterEach
+    void tearDown() {
+        if (channel != null)
+            channel.finishAndReleaseAll();
+    }
+
+    @Test
+    @DisplayName("测试 flush 合并器位于协议编解码器之前")
+    void test_flush_consolidation_placement() {
+        channel = newChannel();
+
+        List<String> names = channel.pipeline().names();
+        assertTrue(names.contains("FlushConsolidationHandler"), "默认应该开启 flush 合并");
+        assertTrue(names.indexOf("FlushConsolidationHandler") < names.indexOf("ProtocolCodec"),
+                "flush 合并器应该位于协议编解码器靠近 head 的一侧");
+    }
+
+    @Test
+    @DisplayName("测试开启时读事件中的多次 flush 合并成一次")
+    void test_flush_consolidated_when_enabled() {
+        channel = newChannel();
+
+        channel.pipeline().fireChannelRead(READ_MARKER);
+        assertEquals(0, flushCount.get(), "读事件中的 flush 应该推迟到 channelReadComplete");
+        channel.pipeline().fireChannelReadComplete();
+        assertEquals(1, flushCount.get(), WRITES_PER_READ + " 次 flush 应该合并成 1 次");
+        assertOutbound(WRITES_PER_READ);
+
+        // 客户端默认不合并读事件之外的 flush
+        channel.writeAndFlush(Unpooled.buffer(4).writeInt(0));
+        assertEquals(2, flushCount.get(), "读事件之外的 flush 应该立即下发");
+        assertOutbound(1);
+    }
+
+    @Test
+    @DisplayName("测试关闭时每次 flush 都原样下发")
+    void test_flush_untouched_when_disabled() {
+        config.putConfig(ClientConfigNames.FLUSH_CONSOLIDATION_ENABLE, "false");
+        channel = newChannel();
+
+        assertFalse(channel.pipeline().names().contains("FlushConsolidationHandler"), "关闭时不应该添加 flush 合并器");
+        channel.pipeline().fireChannelRead(READ_MARKER);
+        assertEquals(WRITES_PER_READ, flushCount.get(), "每次 flush 都应该立即下发");
+        channel.pipeline().fireChannelReadComplete();
+        assertEquals(WRITES_PER_READ, flushCount.get());
+        assertOutbound(WRITES_PER_READ);
+    }
+
+    /**
+     * 用客户端真实的初始化器搭建 pipeline，在 head 一侧统计 flush 次数，
+     * 并在 flush 合并器之后截住 {@link #READ_MARKER}，模拟读事件中的连续写出
+     */
+    private EmbeddedChannel newChannel() {
+        config.putConfig(ClientConfigNames.HEARTBEAT_ENABLE, "false");
+        ChatClient client = Mockito.mock(ChatClient.class);
+        Mockito.when(client.getConfig()).thenReturn(config);
+        Mockito.when(client.getServerSession()).thenReturn(new Session(new EmbeddedChannel()));
+
+        EmbeddedChannel ch = new EmbeddedChannel(new RemotingClient(client).newChannelInitializer());
+        ch.pipeline().addFirst("FlushCounter", new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushCount.incrementAndGet();
+                super.flush(ctx);
+            }
+        });
+        ch.pipeline().addAfter("LoggingHandler", "ReadWriter", new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                if (!READ_MARKER.equals(msg)) {
+                    super.channelRead(ctx, msg);
+                    return;
+                }
+                for (int i = 0; i < WRITES_PER_READ; i++)
+                    ctx.channel().writeAndFlush(Unpooled.buffer(4).writeInt(i));
+            }
+        });
+        return ch;
+    }
+
+    private void assertOutbound(int expectedCount) {
+        for (int i = 0; i < expectedCount; i++) {
+            ByteBuf out = channel.readOutbound();
+            assertNotNull(out, "应该写出第 " + i + " 条数据");
+            assertEquals(i, out.readInt());
+            out.release();
+        }
+        assertNull(channel.readOutbound());
+    }
+}
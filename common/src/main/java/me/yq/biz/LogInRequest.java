@@ -10,6 +10,27 @@ import me.yq.biz.domain.User;
 public class LogInRequest {
     private User user;
 
+    /**
+     * 客户端支持的序列化方式，按客户端的偏好排序（越靠前越优先），服务端会选择第一个自己也支持的，
+     * 之后服务端发给该客户端的消息都使用这种序列化方式。为 null 时服务端使用默认的序列化方式
+     */
+    private byte[] supportedSerializations;
+
+    /**
+     * 客户端支持的最高协议版本，服务端会选择双方都支持的最高版本。为 0 时表示客户端没有声明，使用默认的协议版本
+     */
+    private byte protocolVersion;
+
+    /**
+     * 客户端是否能解压服务端发来的压缩消息体
+     */
+    private boolean compressionSupported;
+
+    /**
+     * 客户端持有的压缩字典 id，和服务端的字典一致时，服务端压缩时会使用字典。为 0 时表示客户端没有字典
+     */
+    private int compressionDictionaryId;
+
     public LogInRequest() {
     }
 
@@ -24,4 +45,36 @@ public class LogInRequest {
     public void setUser(User user) {
         this.user = user;
     }
+
+    public byte[] getSupportedSerializations() {
+        return supportedSerializations;
+    }
+
+    public void setSupportedSerializations(byte[] supportedSerializations) {
+        this.supportedSerializations = supportedSerializations;
+    }
+
+    public byte getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    public void setProtocolVersion(byte protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    public boolean isCompressionSupported() {
+        return compressionSupported;
+    }
+
+    public void setCompressionSupported(boolean compressionSupported) {
+        this.compressionSupported = compressionSupported;
+    }
+
+    public int getCompressionDictionaryId() {
+        return compressionDictionaryId;
+    }
+
+    public void setCompressionDictionaryId(int compressionDictionaryId) {
+        this.compressionDictionaryId = compressionDictionaryId;
+    }
 }
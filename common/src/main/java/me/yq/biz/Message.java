@@ -12,7 +12,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class Message  {
 
-    private final int messageId = MSG_ID_GENERATOR.incrementAndGet();
+    private final int messageId;
     private static final AtomicInteger MSG_ID_GENERATOR = new AtomicInteger(0);
 
     private final User fromUser;
@@ -25,10 +25,18 @@ public class Message  {
 
 
     public Message(User fromUser, User toUser, String msg) {
+        this(MSG_ID_GENERATOR.incrementAndGet(), fromUser, toUser, msg, System.currentTimeMillis());
+    }
+
+    /**
+     * 按已有的消息 id 和发送时间还原一条消息，一般只在反序列化时使用
+     */
+    public Message(int messageId, User fromUser, User toUser, String msg, long sendTimestamp) {
+        this.messageId = messageId;
         this.fromUser = fromUser;
         this.toUser = toUser;
         this.msg = msg;
-        this.sendTimestamp = System.currentTimeMillis();
+        this.sendTimestamp = sendTimestamp;
     }
 
     public User getFromUser() {
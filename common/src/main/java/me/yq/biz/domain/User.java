@@ -95,8 +95,11 @@ public class User {
         this.signature = signature;
     }
 
+    /**
+     * @return 只读的好友列表，没有设置过好友列表时返回 null
+     */
     public List<Friend> getFriendList() {
-        return Collections.unmodifiableList(friendList);
+        return friendList == null ? null : Collections.unmodifiableList(friendList);
     }
 
     public void setFriendList(List<Friend> friendList) {
@@ -6,17 +6,37 @@ package me.yq.common;
  * @version v1.0 2023-02-16 10:54 AM
  */
 public class BaseRequest extends BaseTransferObject{
+
+    /**
+     * 没有路由 id
+     */
+    public static final long NO_ROUTING_ID = -1;
+
     private final byte bizCode;
 
+    /**
+     * 路由 id，比如消息转发的目标用户 id。会同 bizCode 一起写入协议头，接收方不需要反序列化就可以做路由
+     */
+    private long routingId = NO_ROUTING_ID;
+
     public BaseRequest(byte bizCode, Object appRequest) {
+        this(bizCode, appRequest, NO_ROUTING_ID);
+    }
+
+    public BaseRequest(byte bizCode, Object appRequest, long routingId) {
         super(appRequest);
         this.bizCode = bizCode;
+        this.routingId = routingId;
     }
 
     public byte getBizCode() {
         return bizCode;
     }
 
+    public long getRoutingId() {
+        return routingId;
+    }
+
     public Object getAppRequest(){
         return this.getObjToSend();
     }
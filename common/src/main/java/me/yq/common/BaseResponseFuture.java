@@ -1,32 +1,59 @@
 package me.yq.common;
 
-import me.yq.remoting.command.DefaultResponseCommand;
-import me.yq.remoting.transport.RequestFuture;
+import me.yq.common.exception.BusinessException;
+import me.yq.common.exception.SystemException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * 基础响应类的 future，可以通过该类对象获取 future 响应结果，用于异步调用的场景
+ * 基础响应类的 future，可以通过该类对象获取 future 响应结果，用于异步调用的场景。<br/>
+ * 内部由 {@link CompletableFuture} 承载，既可以阻塞式获取，也可以通过 {@link #toCompletableFuture()} 进行非阻塞的编排
  * @author yq
  * @version v1.0 2023-04-10 21:22
  */
 public class BaseResponseFuture {
 
-    private final RequestFuture requestFuture;
+    private final CompletableFuture<BaseResponse> promise;
 
     private BaseResponse response;
 
-    public BaseResponseFuture(RequestFuture requestFuture) {
-        this.requestFuture = requestFuture;
+    public BaseResponseFuture(CompletableFuture<BaseResponse> promise) {
+        this.promise = promise;
     }
 
     /**
      * 获取响应结果，如果超时，则返回 null
-     * @param timeoutMillis 超时时间
+     * @param timeoutMillis 超时时间，为 -1 时，表示无限等待
      * @return 响应结果
      */
     public BaseResponse get(long timeoutMillis){
-        DefaultResponseCommand responseCommand = requestFuture.acquireAndClose(timeoutMillis);
-        responseCommand.deserialize();
-        return responseCommand.getAppResponse();
+        try {
+            if (timeoutMillis == -1)
+                return promise.get();
+            return promise.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 结束掉 future，之后到达的响应会被直接丢弃
+            promise.completeExceptionally(new BusinessException("等待响应超时！"));
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BusinessException)
+                throw (BusinessException) cause;
+            else if (cause instanceof SystemException)
+                throw (SystemException) cause;
+            else
+                throw new SystemException("获取响应失败！", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("等待响应时被中断！", e);
+        }
+    }
+
+    public CompletableFuture<BaseResponse> toCompletableFuture() {
+        return promise;
     }
 
     public BaseResponse getResponse() {
@@ -17,6 +17,14 @@ public enum BizCode {
 
     private final byte code;
 
+    // code -> 业务码，按请求路由时使用
+    private static final BizCode[] LOOKUP = new BizCode[256];
+
+    static {
+        for (BizCode value : values())
+            LOOKUP[value.code & 0xFF] = value;
+    }
+
     BizCode(byte code) {
         this.code = code;
     }
@@ -26,11 +34,7 @@ public enum BizCode {
     }
 
     public static BizCode lookup(byte code) {
-        for (BizCode value : BizCode.values()) {
-            if (value.code() == code)
-                return value;
-        }
-        return null;
+        return LOOKUP[code & 0xFF];
     }
 
     public static boolean isLegalBizCode(byte code) {
@@ -16,6 +16,14 @@ public enum ResponseStatus {
 
     private final byte code;
 
+    // code -> 响应状态
+    private static final ResponseStatus[] LOOKUP = new ResponseStatus[256];
+
+    static {
+        for (ResponseStatus value : values())
+            LOOKUP[value.code & 0xFF] = value;
+    }
+
     ResponseStatus(byte code) {
         this.code = code;
     }
@@ -25,11 +33,7 @@ public enum ResponseStatus {
     }
 
     public static ResponseStatus lookup(byte code) {
-        for (ResponseStatus value : ResponseStatus.values()) {
-            if (value.code() == code)
-                return value;
-        }
-        return null;
+        return LOOKUP[code & 0xFF];
     }
 
     public static boolean isLegalBizCode(byte code) {
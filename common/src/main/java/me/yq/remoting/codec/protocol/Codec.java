@@ -17,6 +17,13 @@ public interface Codec {
      */
     void encode(Serializable in, ByteBuf out);
 
+    /**
+     * 带上下文的编码，编码结果依赖 channel 状态（比如是否压缩）的编解码器可以覆盖该方法
+     */
+    default void encode(ChannelHandlerContext ctx, Serializable in, ByteBuf out) {
+        encode(in, out);
+    }
+
     void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out);
 
 }
@@ -0,0 +1,149 @@
+package me.yq.remoting.codec.protocol;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.PromiseNotifier;
+import me.yq.remoting.command.BatchCommand;
+import me.yq.remoting.command.RemotingCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站聚合器：把发往同一个 channel 的通信对象攒成一个批量帧（{@link BatchCommand}）再交给编码器，
+ * 高频连接上大量小消息可以合并成一次编码、一次 write 系统调用。<br/>
+ * 聚合的时机是 flush：收到 flush 时并不立即下发，而是推迟到聚合窗口结束（windowMicros 为 0 时是 eventLoop 的下一个任务），
+ * 窗口内陆续到来的通信对象（比如业务线程提交到 eventLoop 排队中的写出任务）都会进入同一个批量帧；
+ * 攒满 maxBatchSize 个时会提前下发。只攒到一个时按普通帧写出，不增加额外开销。<br/>
+ * 必须放在 {@link ProtocolCodec} 靠近 tail 的一侧，需要对端能解码批量帧。每个 channel 一个，<font color="red"><b>must not be @Sharable<b/><font/>
+ *
+ * @author yq
+ * @version v1.0 2023-05-26 16:50
+ */
+public class CommandBatcher extends ChannelOutboundHandlerAdapter {
+
+    private final long windowMicros;
+
+    private final int maxBatchSize;
+
+    private final List<RemotingCommand> pendingCommands = new ArrayList<>();
+
+    private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+
+    /**
+     * 聚合窗口内是否收到过 flush
+     */
+    private boolean flushRequested;
+
+    /**
+     * 是否已经安排了窗口结束时的下发任务
+     */
+    private boolean flushScheduled;
+
+    private ChannelHandlerContext ctx;
+
+    private final Runnable flushTask = () -> {
+        flushScheduled = false;
+        if (flushRequested)
+            flushNow(ctx);
+    };
+
+    /**
+     * @param windowMicros 聚合窗口（微秒），为 0 时只聚合 eventLoop 中已经排队的写出
+     * @param maxBatchSize 一个批量帧最多装多少个通信对象
+     */
+    public CommandBatcher(long windowMicros, int maxBatchSize) {
+        if (windowMicros < 0 || maxBatchSize < 2)
+            throw new IllegalArgumentException("非法的批量参数: windowMicros=" + windowMicros + ", maxBatchSize=" + maxBatchSize);
+        this.windowMicros = windowMicros;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof RemotingCommand) || msg instanceof BatchCommand) {
+            // 不认识的消息原样放行，但是要排在已经攒下的通信对象之后，保证写出顺序
+            writePending(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+
+        pendingCommands.add((RemotingCommand) msg);
+        pendingPromises.add(promise);
+        if (pendingCommands.size() >= maxBatchSize) {
+            writePending(ctx);
+            if (flushRequested) {
+                flushRequested = false;
+                ctx.flush();
+            }
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (pendingCommands.isEmpty()) {
+            ctx.flush();
+            return;
+        }
+
+        flushRequested = true;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            if (windowMicros > 0)
+                ctx.executor().schedule(flushTask, windowMicros, TimeUnit.MICROSECONDS);
+            else
+                ctx.executor().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushNow(ctx);
+        super.close(ctx, promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushNow(ctx);
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        flushRequested = false;
+        writePending(ctx);
+        ctx.flush();
+    }
+
+    /**
+     * 把攒下的通信对象交给编码器：只有一个时按普通帧写出，多个时装进一个批量帧，批量帧的写出结果会通知到每个通信对象的 promise
+     */
+    private void writePending(ChannelHandlerContext ctx) {
+        int size = pendingCommands.size();
+        if (size == 0)
+            return;
+
+        if (size == 1) {
+            ctx.write(pendingCommands.get(0), pendingPromises.get(0));
+        } else {
+            BatchCommand batch = new BatchCommand(new ArrayList<>(pendingCommands));
+            batch.setVersion(pendingCommands.get(0).getVersion());
+            // void promise 不接受通知，不需要登记
+            List<ChannelPromise> promises = new ArrayList<>(size);
+            for (ChannelPromise promise : pendingPromises)
+                if (!promise.isVoid())
+                    promises.add(promise);
+            ChannelPromise batchPromise = ctx.newPromise();
+            if (!promises.isEmpty())
+                batchPromise.addListener(new PromiseNotifier<>(promises.toArray(new ChannelPromise[0])));
+            ctx.write(batch, batchPromise);
+        }
+        pendingCommands.clear();
+        pendingPromises.clear();
+    }
+}
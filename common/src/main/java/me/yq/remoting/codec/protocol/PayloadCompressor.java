@@ -0,0 +1,375 @@
+package me.yq.remoting.codec.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+import me.yq.common.exception.SystemException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * YQ 协议的消息体压缩（Deflate）。压缩过的帧在 serialize 字段的最高位打上 {@link #COMPRESSED_FLAG}，
+ * 消息体变为：4 字节的原始长度 + zlib 格式的压缩数据。<br/>
+ * 聊天消息大多很短，直接压缩往往得不偿失，所以：<br/>
+ * 1. 只有消息体不小于 threshold 时才尝试压缩，压缩后没有变小就保留原文<br/>
+ * 2. 可以预置一个双方共享的字典（参考 {@link #trainDictionary}），同类消息的公共部分（类名、字段结构等）直接引用字典，
+ * 短消息也能压缩得比较好。zlib 格式本身会带上字典的 adler32 作为字典 id，解压时据此校验双方的字典是否一致<br/>
+ * Deflater/Inflater 和读写用的缓冲区都是线程私有的（所有实例共用），一个实例可以被所有 channel 共享。
+ * 压缩和解压都发生在 IO 线程中，IO 线程退出时会 end() 掉它们，立即释放 zlib 的堆外内存，不用等 finalizer
+ *
+ * @author yq
+ * @version v1.0 2023-05-24 14:10
+ */
+public class PayloadCompressor {
+
+    /**
+     * serialize 字段的最高位，表示消息体经过了压缩。序列化器代号因此不能超过 127
+     */
+    public static final byte COMPRESSED_FLAG = (byte) 0x80;
+
+    /**
+     * 没有字典时的字典 id
+     */
+    public static final int NO_DICTIONARY = 0;
+
+    /**
+     * 配置中表示不使用字典的字典路径（配置项不允许为空）
+     */
+    public static final String NO_DICTIONARY_PATH = "none";
+
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    /**
+     * 解压后的消息体默认最多 16M
+     */
+    public static final int DEFAULT_MAX_RAW_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * Deflate 的最大压缩比约为 1032:1（每个最短 2 bit 的匹配最多展开成 258 字节），
+     * 声明的原始长度超过压缩数据长度的这个倍数，说明长度字段是伪造的
+     */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    /**
+     * Deflate 的窗口只有 32K，更大的字典没有意义
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    /**
+     * 线程私有的缓冲区超过这个大小就不再保留，避免偶尔的大消息长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final int threshold;
+
+    private final int level;
+
+    private final byte[] dictionary;
+
+    private final int dictionaryId;
+
+    private final int maxRawLength;
+
+    private static final FastThreadLocal<Workspace> WORKSPACE = new FastThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+
+        @Override
+        protected void onRemoval(Workspace workspace) {
+            workspace.end();
+        }
+    };
+
+    /**
+     * @param threshold  消息体小于该字节数时不压缩
+     * @param level      压缩级别 0-9，-1 表示 Deflate 的默认级别
+     * @param dictionary 预置字典，为 null 时不使用字典
+     */
+    public PayloadCompressor(int threshold, int level, byte[] dictionary) {
+        this(threshold, level, dictionary, DEFAULT_MAX_RAW_LENGTH);
+    }
+
+    /**
+     * @param threshold    消息体小于该字节数时不压缩
+     * @param level        压缩级别 0-9，-1 表示 Deflate 的默认级别
+     * @param dictionary   预置字典，为 null 时不使用字典
+     * @param maxRawLength 解压时允许的最大原始长度，对端声明的原始长度超过它时直接拒绝，不会按声明的长度分配内存
+     */
+    public PayloadCompressor(int threshold, int level, byte[] dictionary, int maxRawLength) {
+        if (maxRawLength <= 0)
+            throw new IllegalArgumentException("解压后的最大长度必须大于 0: " + maxRawLength);
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("非法的压缩级别: " + level);
+        if (dictionary != null && (dictionary.length == 0 || dictionary.length > MAX_DICTIONARY_SIZE))
+            throw new IllegalArgumentException("压缩字典的大小应该在 1 ~ " + MAX_DICTIONARY_SIZE + " 字节之间");
+
+        this.threshold = threshold;
+        this.level = level;
+        this.dictionary = dictionary;
+        this.dictionaryId = dictionary == null ? NO_DICTIONARY : adler32(dictionary);
+        this.maxRawLength = maxRawLength;
+    }
+
+    /**
+     * 不使用字典、默认阈值和级别的压缩器
+     */
+    public PayloadCompressor() {
+        this(DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION, null);
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return 本端字典的 id（adler32），没有字典时为 {@link #NO_DICTIONARY}
+     */
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * @return 对端的字典和本端一致时返回 true，此时压缩可以使用字典
+     */
+    public boolean sharesDictionaryWith(int peerDictionaryId) {
+        return dictionary != null && peerDictionaryId == dictionaryId;
+    }
+
+    /**
+     * 原地压缩 buf 中 [index, index + length) 的内容，压缩成功时这段内容被替换为 原始长度 + 压缩数据，
+     * 并把 writerIndex 移到压缩数据的末尾。调用方需要保证这段内容位于 buf 可写部分的最后
+     *
+     * @param useDictionary 是否使用字典，只有对端持有同一个字典时才能使用
+     * @return 压缩之后的长度；压缩后没有变小时返回 -1，buf 保持不变
+     */
+    public int compress(ByteBuf buf, int index, int length, boolean useDictionary) {
+        Workspace ws = WORKSPACE.get();
+        byte[] input = ws.input(length);
+        buf.getBytes(index, input, 0, length);
+
+        Deflater deflater = ws.deflater(level);
+        deflater.reset();
+        if (useDictionary)
+            deflater.setDictionary(dictionary);
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+
+        // 加上 4 字节的原始长度之后必须比原文短，输出缓冲区满了还没压完就说明不值得压缩
+        byte[] output = ws.output(length);
+        int limit = length - 4;
+        int compressedLen = 0;
+        while (!deflater.finished() && compressedLen < limit)
+            compressedLen += deflater.deflate(output, compressedLen, limit - compressedLen);
+        boolean worthy = deflater.finished() && compressedLen < limit;
+        ws.releaseIfOversized(length);
+        if (!worthy)
+            return -1;
+
+        buf.writerIndex(index);
+        buf.writeInt(length);
+        buf.writeBytes(output, 0, compressedLen);
+        return compressedLen + 4;
+    }
+
+    /**
+     * 读出并解压 in 中接下来 length 字节的压缩内容，in 的 readerIndex 恰好前进 length。<br/>
+     * 原始长度来自对端，分配内存之前先用 maxRawLength 和 Deflate 的最大压缩比校验，防止伪造的长度字段撑爆内存
+     *
+     * @return 解压后的原始消息体
+     */
+    public byte[] decompress(ByteBuf in, int length) {
+        int rawLen = in.readInt();
+        int compressedLen = length - 4;
+        if (rawLen < 0 || compressedLen < 0)
+            throw new SystemException("压缩消息体的长度字段非法: " + rawLen);
+        if (rawLen > maxRawLength)
+            throw new SystemException("压缩消息体声明的原始长度 " + rawLen + " 超过上限 " + maxRawLength);
+        if ((long) rawLen > (long) compressedLen * MAX_DEFLATE_RATIO)
+            throw new SystemException("压缩消息体声明的原始长度 " + rawLen + " 超出压缩数据 " + compressedLen + " 字节能解压出的最大长度");
+
+        Workspace ws = WORKSPACE.get();
+        byte[] input;
+        int offset;
+        if (in.hasArray()) {
+            input = in.array();
+            offset = in.arrayOffset() + in.readerIndex();
+        } else {
+            input = ws.input(compressedLen);
+            offset = 0;
+            in.getBytes(in.readerIndex(), input, 0, compressedLen);
+        }
+        in.skipBytes(compressedLen);
+
+        Inflater inflater = ws.inflater();
+        inflater.reset();
+        inflater.setInput(input, offset, compressedLen);
+        byte[] raw = new byte[rawLen];
+        int inflated = 0;
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(raw, inflated, rawLen - inflated);
+                inflated += n;
+                if (n > 0)
+                    continue;
+                if (inflater.needsDictionary()) {
+                    if (!sharesDictionaryWith(inflater.getAdler()))
+                        throw new SystemException("消息体使用了本端没有的压缩字典: " + inflater.getAdler());
+                    inflater.setDictionary(dictionary);
+                } else if (inflater.needsInput() || inflated == rawLen) {
+                    // 数据截断了，或者解压出来的内容比声明的原始长度更长
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new SystemException("消息体解压失败: " + e.getMessage(), e);
+        } finally {
+            ws.releaseIfOversized(compressedLen);
+        }
+
+        if (!inflater.finished() || inflated != rawLen)
+            throw new SystemException("消息体解压失败，解压后的长度和声明的原始长度 " + rawLen + " 不一致");
+        return raw;
+    }
+
+    /**
+     * 从文件中加载预置字典
+     *
+     * @param path 字典文件路径，为空或者为 {@link #NO_DICTIONARY_PATH} 时表示不使用字典
+     * @return 字典内容，不使用字典时返回 null
+     */
+    public static byte[] loadDictionary(String path) {
+        if (path == null || path.trim().isEmpty() || NO_DICTIONARY_PATH.equalsIgnoreCase(path.trim()))
+            return null;
+        try {
+            return Files.readAllBytes(Paths.get(path.trim()));
+        } catch (IOException e) {
+            throw new SystemException("压缩字典加载失败: " + path, e);
+        }
+    }
+
+    /**
+     * 用一批有代表性的消息体（比如线上抓取的通知、用户信息序列化之后的结果）训练字典。<br/>
+     * 训练方式很朴素：去重后依次拼接，超出 maxSize 时只保留最后的部分。Deflate 引用距离越近编码越短，
+     * 所以越常见的样本应该排在越后面
+     *
+     * @param samples 样本，按出现频率从低到高排列
+     * @param maxSize 字典的最大字节数，不能超过 {@link #MAX_DICTIONARY_SIZE}
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int maxSize) {
+        if (maxSize <= 0 || maxSize > MAX_DICTIONARY_SIZE)
+            throw new IllegalArgumentException("压缩字典的大小应该在 1 ~ " + MAX_DICTIONARY_SIZE + " 字节之间");
+
+        Set<ByteArrayKey> distinct = new LinkedHashSet<>();
+        for (byte[] sample : samples)
+            distinct.add(new ByteArrayKey(sample));
+
+        byte[] dictionary = new byte[maxSize];
+        int pos = maxSize;
+        ByteArrayKey[] ordered = distinct.toArray(new ByteArrayKey[0]);
+        for (int i = ordered.length - 1; i >= 0 && pos > 0; i--) {
+            byte[] sample = ordered[i].bytes;
+            int n = Math.min(sample.length, pos);
+            System.arraycopy(sample, sample.length - n, dictionary, pos - n, n);
+            pos -= n;
+        }
+        if (pos == maxSize)
+            throw new IllegalArgumentException("训练压缩字典至少需要一个非空样本");
+        return Arrays.copyOfRange(dictionary, pos, maxSize);
+    }
+
+    private static int adler32(byte[] bytes) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(bytes, 0, bytes.length);
+        return (int) adler32.getValue();
+    }
+
+    private static final class ByteArrayKey {
+        private final byte[] bytes;
+
+        ByteArrayKey(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ByteArrayKey && Arrays.equals(bytes, ((ByteArrayKey) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+    }
+
+    /**
+     * 线程私有的压缩工具和缓冲区
+     */
+    private static final class Workspace {
+        private Deflater deflater;
+        private int deflaterLevel;
+        private Inflater inflater;
+        private byte[] input = new byte[1024];
+        private byte[] output = new byte[1024];
+
+        Deflater deflater(int level) {
+            // 同一个进程里的压缩器几乎总是同一个级别，级别不同时才换一个
+            if (deflater == null || deflaterLevel != level) {
+                if (deflater != null)
+                    deflater.end();
+                deflater = new Deflater(level);
+                deflaterLevel = level;
+            }
+            return deflater;
+        }
+
+        Inflater inflater() {
+            if (inflater == null)
+                inflater = new Inflater();
+            return inflater;
+        }
+
+        byte[] input(int size) {
+            if (input.length < size)
+                input = new byte[size];
+            return input;
+        }
+
+        byte[] output(int size) {
+            if (output.length < size)
+                output = new byte[size];
+            return output;
+        }
+
+        /**
+         * 释放 Deflater/Inflater 占用的 zlib 堆外内存
+         */
+        void end() {
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+
+        void releaseIfOversized(int size) {
+            if (size > MAX_RETAINED_BUFFER) {
+                input = new byte[1024];
+                output = new byte[1024];
+            }
+        }
+    }
+}
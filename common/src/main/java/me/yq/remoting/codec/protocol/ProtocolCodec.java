@@ -30,7 +30,7 @@ public class ProtocolCodec extends ByteToMessageCodec<RemotingCommand> {
 
     @Override
     protected void encode(ChannelHandlerContext ctx, RemotingCommand msg, ByteBuf out) {
-        codec.encode(msg,out);
+        codec.encode(ctx,msg,out);
     }
 
     @Override
@@ -5,6 +5,9 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 import me.yq.remoting.command.*;
+import me.yq.remoting.support.ChannelAttributes;
+import me.yq.remoting.support.DefaultConfig;
+import me.yq.remoting.utils.VarIntUtils;
 
 import java.io.Serializable;
 import java.util.List;
@@ -35,6 +38,19 @@ import java.util.List;
  * <p>注：蚂蚁金服开源的 bolt 框架提供的 bolt 协议设计非常巧妙，
  * 直接将 3 个 len 合在一起，可以直接去掉 totalSize 字段</p>
  * </pre>
+ * 以上是 v1 的帧格式。v2（version 为 2）去掉了 total-content-size，message-id 和两个 len 改为 varint（参考 {@link VarIntUtils}）
+ * 并集中放在 header 之前，心跳这样的空帧只有 7 ~ 11 个字节（v1 固定 20 个）：
+ * <pre>
+ * +----------+-----------+------------+------------+-------------+-------------+--------------+----------+-----------+
+ * |magic-bits|  version  |    cmd     |  serialize | message-id  | header-len  | content-len  | header.. | content.. |
+ * |    1     |     1     |     1      |     1      | varint(1-5) | varint(1-5) | varint(1-5)  |          |           |
+ * +----------+-----------+------------+------------+-------------+-------------+--------------+----------+-----------+
+ * </pre>
+ * 解码时按 version 字段区分，两种格式可以混在同一个连接上，方便滚动升级：登录之前一律用 v1，
+ * 登录时协商出双方都支持的最高版本（参考 {@link DefaultConfig#LATEST_PROTOCOL_VERSION}）。<br/>
+ * serialize 的最高位是压缩标记，置位时 content 是压缩过的，格式参考 {@link PayloadCompressor}<br/>
+ * cmd 为 {@link CommandCode#Batch} 时是批量帧：message-id 为帧的个数，没有 header，content 是若干个完整的 YQ 帧首尾相连，
+ * 解码时逐个拆出来，参考 {@link BatchCommand}
  *
  * @author yq
  * @version v1.0 2023-02-12 17:32
@@ -44,77 +60,280 @@ public class YQCommandCodec implements Codec {
 
     private static final byte MAGIC_CODE = 0b0101_0101;
 
+    public static final byte PROTOCOL_V1 = 1;
+
+    public static final byte PROTOCOL_V2 = 2;
 
     /**
-     * 控制字段的最小长度，解包时必须满足该长度才认为允许本次解包，否则继续积累数据！<br/>
+     * v2 控制字段的最大长度：4 个定长字节 + 3 个最长 5 字节的 varint
+     */
+    private static final int V2_MAX_CTRL_LEN = 4 + 5 * 3;
+
+    /**
+     * v1 控制字段的最小长度，解包时必须满足该长度才认为允许本次解包，否则继续积累数据！<br/>
      */
     private final short lowestLen =
             1/*magic-code*/ + 1/*version*/ + 1/*cmd*/ + 1/*serialize*/
                     + 4/*message-id*/ + 4/*total-content-size*/
                     + 4/*header-len*/ + 4/*content-len*/;
 
+    /**
+     * 零拷贝解码模式：开启后，header 和 content 不再拷贝为 byte[]，而是以 retained slice 的方式直接引用入站的池化 ByteBuf，
+     * 由 {@link RemotingCommand#deserialize()} 或 {@link RemotingCommand#release()} 负责释放
+     */
+    private final boolean retainedSliceDecode;
+
+    /**
+     * 消息体压缩器。解码时用它解压带压缩标记的帧；编码时只对登录时声明了能解压的 channel 压缩，
+     * 参考 {@link ChannelAttributes#CHANNEL_COMPRESSION}
+     */
+    private final PayloadCompressor compressor;
+
+    /**
+     * 为 true 时只解压 channel 上声明过压缩能力（{@link ChannelAttributes#CHANNEL_COMPRESSION}）的对端发来的压缩帧，
+     * 其余的压缩帧直接拒绝。服务端按 channel 协商，开启；客户端的压缩能力是自己在登录时声明的，声明了才关闭
+     */
+    private final boolean requireDeclaredCompression;
+
+    public YQCommandCodec() {
+        this(false);
+    }
+
+    public YQCommandCodec(boolean retainedSliceDecode) {
+        this(retainedSliceDecode, new PayloadCompressor());
+    }
+
+    public YQCommandCodec(boolean retainedSliceDecode, PayloadCompressor compressor) {
+        this(retainedSliceDecode, compressor, false);
+    }
+
+    public YQCommandCodec(boolean retainedSliceDecode, PayloadCompressor compressor, boolean requireDeclaredCompression) {
+        this.retainedSliceDecode = retainedSliceDecode;
+        this.compressor = compressor;
+        this.requireDeclaredCompression = requireDeclaredCompression;
+    }
+
 
     /**
-     * 协议编码，可以把 Command 对象装入 netty 的 ByteBuf
+     * 协议编码，可以把 Command 对象装入 netty 的 ByteBuf。如果 Command 尚未序列化，
+     * 业务对象会在这里被直接序列化进 out，随后回填各个 len 字段
      *
      * @param in  待序列化对象，应该是 Command 对象，该对象的所有字段被序列化成 bytes
      * @param out 装入序列化结果的 ByteBuf 对象
      */
     @Override
     public void encode(Serializable in, ByteBuf out) {
-        if (in instanceof RemotingCommand) {
-            RemotingCommand command = (RemotingCommand) in;
-
-            //   0          1           2            3            4
-            //   +----------+-----------+------------+------------+
-            //   |magic-bits|  version  |    cmd     |  serialize |
-            //   +----------+-----------+------------+------------+
-            //   |                  message-id                    |
-            //   +------------------------------------------------+
-            //   |                  total-content-size            |
-            //   +------------------------------------------------+
-            //   |                  header-len                    |
-            //   +------------------------------------------------+
-            //   |                                                |
-            //   |                  header ...                    |
-            //   |                                                |
-            //   +------------------------------------------------+
-            //   |                  content-len                   |
-            //   +---------------------+--------------------------+
-            //   |                                                |
-            //   |                  content...                    |
-            //   |                                                |
-            //   +------------------------------------------------+
-
-            // control fields
-            out.writeByte(MAGIC_CODE);
-            out.writeByte(command.getVersion());
-            out.writeByte(command.getCmd().code());
-            out.writeByte(command.getSerialization());
-            out.writeInt(command.getMessageId());
-            out.writeInt(command.computeTotalSize());
+        encode(in, out, null);
+    }
+
+    /**
+     * 同 {@link #encode(Serializable, ByteBuf)}，对端能解压时，超过阈值的消息体会被压缩
+     */
+    @Override
+    public void encode(ChannelHandlerContext ctx, Serializable in, ByteBuf out) {
+        encode(in, out, ctx == null ? null : ctx.channel().attr(ChannelAttributes.CHANNEL_COMPRESSION).get());
+    }
+
+    /**
+     * 按对端的压缩能力编码，帧格式由通信对象的协议版本决定
+     *
+     * @param peerDictionaryId 对端声明的压缩字典 id，为 null 时表示对端不接受压缩
+     */
+    public void encode(Serializable in, ByteBuf out, Integer peerDictionaryId) {
+        if (!(in instanceof RemotingCommand)) {
+            log.error("待编码的参数必须是 RemotingCommand 的子类，请检查参数!");
+            return;
+        }
 
+        RemotingCommand command = (RemotingCommand) in;
+        if (command.getVersion() >= PROTOCOL_V2)
+            encodeV2(command, out, peerDictionaryId);
+        else if (command instanceof BatchCommand)
+            encodeBatchV1((BatchCommand) command, out, peerDictionaryId);
+        else
+            encodeV1(command, out, peerDictionaryId);
+    }
+
+    private void encodeV1(RemotingCommand command, ByteBuf out, Integer peerDictionaryId) {
+        //   0          1           2            3            4
+        //   +----------+-----------+------------+------------+
+        //   |magic-bits|  version  |    cmd     |  serialize |
+        //   +----------+-----------+------------+------------+
+        //   |                  message-id                    |
+        //   +------------------------------------------------+
+        //   |                  total-content-size            |
+        //   +------------------------------------------------+
+        //   |                  header-len                    |
+        //   +------------------------------------------------+
+        //   |                                                |
+        //   |                  header ...                    |
+        //   |                                                |
+        //   +------------------------------------------------+
+        //   |                  content-len                   |
+        //   +---------------------+--------------------------+
+        //   |                                                |
+        //   |                  content...                    |
+        //   |                                                |
+        //   +------------------------------------------------+
+
+        // control fields
+        out.writeByte(MAGIC_CODE);
+        out.writeByte(command.getVersion());
+        out.writeByte(command.getCmd().code());
+        int serializationIndex = out.writerIndex();
+        out.writeByte(command.getSerialization());
+        out.writeInt(command.getMessageId());
+        // 各个 len 字段先占位，header、content 直接序列化进 out 之后再回填
+        int totalSizeIndex = out.writerIndex();
+        out.writeInt(0);
+
+        int headerLenIndex;
+        int headerBytesLen;
+        int contentLenIndex;
+        int msgBytesLen;
+        try {
             // header fields
-            int headerBytesLen = command.getHeaderBytesLen();
-            out.writeInt(headerBytesLen);
-            if (headerBytesLen > 0)
-                out.writeBytes(command.getHeaderBytes());
+            headerLenIndex = out.writerIndex();
+            out.writeInt(0);
+            command.writeHeaders(out);
+            headerBytesLen = out.writerIndex() - headerLenIndex - 4;
 
             // msg content fields
-            int msgBytesLen = command.getMsgBytesLen();
-            out.writeInt(msgBytesLen);
-            if (msgBytesLen > 0)
-                out.writeBytes(command.getContentBytes());
+            contentLenIndex = out.writerIndex();
+            out.writeInt(0);
+            command.writeContent(out);
+            msgBytesLen = out.writerIndex() - contentLenIndex - 4;
+        } finally {
+            // 出站的通信对象写完即可释放其持有的 ByteBuf（比如原样转发的消息体）
+            command.release();
+        }
+
+        int compressedLen = compressIfWorthy(out, contentLenIndex + 4, msgBytesLen, peerDictionaryId);
+        if (compressedLen > 0) {
+            msgBytesLen = compressedLen;
+            out.setByte(serializationIndex, command.getSerialization() | PayloadCompressor.COMPRESSED_FLAG);
+        }
+
+        // back-patch len fields
+        out.setInt(totalSizeIndex, headerBytesLen + msgBytesLen);
+        out.setInt(headerLenIndex, headerBytesLen);
+        out.setInt(contentLenIndex, msgBytesLen);
+    }
+
+    /**
+     * v1 批量帧编码：控制字段之后，把每个通信对象按普通帧依次编码进 content
+     */
+    private void encodeBatchV1(BatchCommand batch, ByteBuf out, Integer peerDictionaryId) {
+        out.writeByte(MAGIC_CODE);
+        out.writeByte(batch.getVersion());
+        out.writeByte(CommandCode.Batch.code());
+        out.writeByte(0);
+        out.writeInt(batch.getCommands().size());
+        int totalSizeIndex = out.writerIndex();
+        out.writeInt(0);
+        out.writeInt(0);
+        int contentLenIndex = out.writerIndex();
+        out.writeInt(0);
+
+        encodeFrames(batch, out, peerDictionaryId);
+
+        int contentLen = out.writerIndex() - contentLenIndex - 4;
+        out.setInt(totalSizeIndex, contentLen);
+        out.setInt(contentLenIndex, contentLen);
+    }
+
+    /**
+     * v2 编码。header、content 长度在序列化之前未知，而 varint 的宽度又取决于长度，所以先按最大宽度给控制字段留出空间，
+     * 写完 header、content 之后再把实际的控制字段紧贴着 header 写回去：<br/>
+     * 1. 本帧位于 out 的开头（绝大多数情况）：直接把 readerIndex 移到控制字段的起点，跳过多留的空间，没有任何拷贝<br/>
+     * 2. 否则（比如批量帧中的帧）：控制字段写在帧的起点，header、content 整体前移
+     */
+    private void encodeV2(RemotingCommand command, ByteBuf out, Integer peerDictionaryId) {
+        int frameStart = out.writerIndex();
+        out.writeZero(V2_MAX_CTRL_LEN);
+        int bodyStart = out.writerIndex();
+
+        byte serialization;
+        int messageId;
+        int headerLen;
+        int contentLen;
+        if (command instanceof BatchCommand) {
+            serialization = 0;
+            messageId = ((BatchCommand) command).getCommands().size();
+            headerLen = 0;
+            encodeFrames((BatchCommand) command, out, peerDictionaryId);
+            contentLen = out.writerIndex() - bodyStart;
+        } else {
+            serialization = command.getSerialization();
+            messageId = command.getMessageId();
+            try {
+                command.writeHeaders(out);
+                headerLen = out.writerIndex() - bodyStart;
+                command.writeContent(out);
+                contentLen = out.writerIndex() - bodyStart - headerLen;
+            } finally {
+                command.release();
+            }
 
+            int compressedLen = compressIfWorthy(out, bodyStart + headerLen, contentLen, peerDictionaryId);
+            if (compressedLen > 0) {
+                contentLen = compressedLen;
+                serialization |= PayloadCompressor.COMPRESSED_FLAG;
+            }
+        }
+
+        int ctrlLen = 4 + VarIntUtils.varIntSize(messageId) + VarIntUtils.varIntSize(headerLen) + VarIntUtils.varIntSize(contentLen);
+        int bodyLen = out.writerIndex() - bodyStart;
+        int ctrlStart;
+        if (frameStart == out.readerIndex()) {
+            ctrlStart = bodyStart - ctrlLen;
+            out.readerIndex(ctrlStart);
         } else {
-            log.error("待编码的参数必须是 RemotingCommand 的子类，请检查参数!");
+            ctrlStart = frameStart;
+            out.setBytes(frameStart + ctrlLen, out, bodyStart, bodyLen);
+            out.writerIndex(frameStart + ctrlLen + bodyLen);
         }
 
+        int index = ctrlStart;
+        out.setByte(index++, MAGIC_CODE);
+        out.setByte(index++, command.getVersion());
+        out.setByte(index++, command.getCmd().code());
+        out.setByte(index++, serialization);
+        index += VarIntUtils.setVarInt(out, index, messageId);
+        index += VarIntUtils.setVarInt(out, index, headerLen);
+        VarIntUtils.setVarInt(out, index, contentLen);
+    }
+
+    /**
+     * 把批量帧中的每个通信对象按普通帧依次编码进 out
+     */
+    private void encodeFrames(BatchCommand batch, ByteBuf out, Integer peerDictionaryId) {
+        List<RemotingCommand> commands = batch.getCommands();
+        int encoded = 0;
+        try {
+            for (; encoded < commands.size(); encoded++)
+                encode(commands.get(encoded), out, peerDictionaryId);
+        } finally {
+            // 编码失败时，还没编码的通信对象也要释放
+            for (int i = encoded + 1; i < commands.size(); i++)
+                commands.get(i).release();
+        }
+    }
+
+    /**
+     * 消息体就在 out 的末尾，对端能解压并且超过阈值时原地压缩
+     *
+     * @return 压缩后的长度，没有压缩时返回 -1
+     */
+    private int compressIfWorthy(ByteBuf out, int contentIndex, int contentLen, Integer peerDictionaryId) {
+        if (peerDictionaryId == null || contentLen < compressor.getThreshold())
+            return -1;
+        return compressor.compress(out, contentIndex, contentLen, compressor.sharesDictionaryWith(peerDictionaryId));
     }
 
 
     /**
-     * 协议解码，负责将 ByteBuf 解析成业务层可以识别的对象
+     * 协议解码，负责将 ByteBuf 解析成业务层可以识别的对象，按 version 字段区分帧格式，v1、v2 的帧可以同时解码
      *
      * @param in  待解码的 ByteBuf 对象
      * @param out 解码结果，一般只会是 Command 对象
@@ -131,101 +350,174 @@ public class YQCommandCodec implements Codec {
                 return;
             }
 
-            //==========================================
-            // part1 read control fields
-            //==========================================
-            if (in.readableBytes() + 1 < this.lowestLen) { //确保 totalContentSize 能读出来
-                in.resetReaderIndex();
-                log.warn("尝试按 YQ 协议解包，但是内容长度没有达到协议的最小长度！");
-                return;
-            }
+            byte version = in.getByte(in.readerIndex());
+            if (version > DefaultConfig.LATEST_PROTOCOL_VERSION)
+                throw new RuntimeException("不支持的协议版本: " + version);
+            if (version >= PROTOCOL_V2)
+                decodeV2(ctx, in, out);
+            else
+                decodeV1(ctx, in, out);
 
-            byte version = in.readByte();
-            byte cmd = in.readByte();
-            if (!CommandCode.isLegalCmd(cmd))
-                throw new RuntimeException("不支持的请求类型: " + cmd);
-            byte serialization = in.readByte();
-            int msgId = in.readInt();
-            int totalContentSize = in.readInt();
+        } catch (Throwable t) {
+            throw new RuntimeException("解码过程中遭遇问题: " + t.getMessage(),t);
+        }
+
+    }
+
+    private void decodeV1(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        //==========================================
+        // part1 read control fields
+        //==========================================
+        if (in.readableBytes() + 1 < this.lowestLen) { //确保 totalContentSize 能读出来
+            in.resetReaderIndex();
+            // 半包是 TCP 流的常态，不需要告警
+            log.debug("尝试按 YQ 协议解包，但是内容长度没有达到协议的最小长度！");
+            return;
+        }
 
-            if (in.readableBytes() < totalContentSize + 4 + 4) { //确保 header、object(及其长度标记) 能读出来
+        byte version = in.readByte();
+        byte cmd = in.readByte();
+        if (!CommandCode.isLegalCmd(cmd))
+            throw new RuntimeException("不支持的请求类型: " + cmd);
+        byte serialization = in.readByte();
+        int msgId = in.readInt();
+        int totalContentSize = in.readInt();
+
+        if (in.readableBytes() < totalContentSize + 4 + 4) { //确保 header、object(及其长度标记) 能读出来
+            in.resetReaderIndex();
+            return;
+        }
+
+        // content-len 在 header 之后，先看一眼，读 content 之前跳过
+        int headerLen = in.readInt();
+        int contentLen = in.getInt(in.readerIndex() + headerLen);
+        readFrame(ctx, in, version, cmd, serialization, msgId, headerLen, 4, contentLen, out);
+    }
+
+    private void decodeV2(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < 3) {
+            in.resetReaderIndex();
+            return;
+        }
+
+        // message-id、header-len、content-len 三个 varint 都收齐了才开始读
+        int index = in.readerIndex() + 3;
+        for (int i = 0; i < 3; i++) {
+            int varIntLen = VarIntUtils.readableVarIntSize(in, index);
+            if (varIntLen < 0) {
                 in.resetReaderIndex();
                 return;
             }
+            index += varIntLen;
+        }
 
-            //==========================================
-            // part2 read content fields
-            //==========================================
-            byte[] header = null;
-            int headerLen = in.readInt();
-            if (headerLen > 0){
-                header = new byte[headerLen];
-                in.readBytes(header);
-            }
-
-            byte[] msg = null;
-            int msgLen = in.readInt();
-            if (msgLen > 0){
-                msg = new byte[msgLen];
-                in.readBytes(msg);
-            }
+        byte version = in.readByte();
+        byte cmd = in.readByte();
+        if (!CommandCode.isLegalCmd(cmd))
+            throw new RuntimeException("不支持的请求类型: " + cmd);
+        byte serialization = in.readByte();
+        int msgId = VarIntUtils.readVarInt(in);
+        int headerLen = VarIntUtils.readVarInt(in);
+        int contentLen = VarIntUtils.readVarInt(in);
+        if (headerLen < 0 || contentLen < 0 || headerLen + contentLen < 0)
+            throw new RuntimeException("长度字段非法: header-len=" + headerLen + ", content-len=" + contentLen);
+
+        if (in.readableBytes() < headerLen + contentLen) {
+            in.resetReaderIndex();
+            return;
+        }
 
-            //==========================================
-            // part3 assembly the real msg
-            //==========================================
-            if (cmd == CommandCode.Biz_Request.code()){
-                RemotingCommand command = new DefaultRequestCommand();
+        readFrame(ctx, in, version, cmd, serialization, msgId, headerLen, 0, contentLen, out);
+    }
 
-                // put ctrl flags
-                command.setVersion(version);
-                command.setCmd(CommandCode.Biz_Request);
-                command.setSerialization(serialization);
-                command.setMessageId(msgId);
+    /**
+     * 控制字段读完、并且确认整帧都已经到达之后，读出 header、content，组装成通信对象
+     *
+     * @param gapAfterHeader header 和 content 之间需要跳过的字节数（v1 的 content-len 字段）
+     */
+    private void readFrame(ChannelHandlerContext ctx, ByteBuf in, byte version, byte cmd, byte serialization, int msgId,
+                           int headerLen, int gapAfterHeader, int contentLen, List<Object> out) {
+        if (cmd == CommandCode.Batch.code()) {
+            in.skipBytes(headerLen + gapAfterHeader); // 批量帧没有 header
+            decodeFrames(ctx, in.readSlice(contentLen), msgId, out);
+            return;
+        }
 
-                // put data
+        //==========================================
+        // part2 assembly the real msg
+        //==========================================
+        RemotingCommand command;
+        if (cmd == CommandCode.Biz_Request.code())
+            command = new DefaultRequestCommand(msgId);
+        else if (cmd == CommandCode.Biz_Response.code())
+            command = new DefaultResponseCommand(msgId);
+        else if (cmd == CommandCode.Heartbeat.code())
+            command = new HeartbeatCommand(msgId);
+        else
+            command = new HeartbeatAckCommand(msgId);
+
+        // put ctrl flags
+        boolean compressed = (serialization & PayloadCompressor.COMPRESSED_FLAG) != 0;
+        if (compressed && requireDeclaredCompression && !compressionDeclared(ctx))
+            throw new RuntimeException("对端没有声明压缩能力，却发来了压缩帧");
+        command.setVersion(version);
+        command.setSerialization((byte) (serialization & ~PayloadCompressor.COMPRESSED_FLAG));
+
+        //==========================================
+        // part3 read content fields
+        //==========================================
+        if (headerLen > 0) {
+            if (retainedSliceDecode)
+                command.setHeaderBuf(in.readRetainedSlice(headerLen));
+            else {
+                byte[] header = new byte[headerLen];
+                in.readBytes(header);
                 command.setHeaderBytes(header);
-                command.setContentBytes(msg);
-                out.add(command);
             }
-            else if (cmd == CommandCode.Biz_Response.code()){
-                RemotingCommand command = new DefaultResponseCommand();
-
-                // put ctrl flags
-                command.setVersion(version);
-                command.setCmd(CommandCode.Biz_Request);
-                command.setSerialization(serialization);
-                command.setMessageId(msgId);
+        }
 
-                // put data
-                command.setHeaderBytes(header);
+        in.skipBytes(gapAfterHeader);
+        if (contentLen > 0) {
+            // 解压之后的消息体和未压缩的帧没有区别，可以照常原样转发（转发时按目标 channel 重新决定是否压缩）
+            if (compressed)
+                command.setContentBytes(compressor.decompress(in, contentLen));
+            else if (retainedSliceDecode)
+                command.setContentBuf(in.readRetainedSlice(contentLen));
+            else {
+                byte[] msg = new byte[contentLen];
+                in.readBytes(msg);
                 command.setContentBytes(msg);
-                out.add(command);
             }
-            else if (cmd == CommandCode.Heartbeat.code()) {
-                RemotingCommand command = new HeartbeatCommand();
+        }
 
-                command.setVersion(version);
-                command.setCmd(CommandCode.Heartbeat);
-                command.setSerialization(serialization);
-                command.setMessageId(msgId);
+        out.add(command);
+    }
 
-                out.add(command);
-            }
-            else if (cmd == CommandCode.HeartbeatAck.code()){
-                RemotingCommand command = new HeartbeatAckCommand();
 
-                command.setVersion(version);
-                command.setCmd(CommandCode.HeartbeatAck);
-                command.setSerialization(serialization);
-                command.setMessageId(msgId);
+    private static boolean compressionDeclared(ChannelHandlerContext ctx) {
+        return ctx != null && ctx.channel().attr(ChannelAttributes.CHANNEL_COMPRESSION).get() != null;
+    }
 
-                out.add(command);
-            }
 
-        } catch (Throwable t) {
-            throw new RuntimeException("解码过程中遭遇问题: " + t.getMessage(),t);
+    /**
+     * 批量帧解码：把 content 中的每一帧拆出来，作为独立的通信对象依次放入 out，后续 handler 逐个收到。
+     * 批量帧中不允许再嵌套批量帧，否则伪造的层层嵌套会让解码无限递归
+     *
+     * @param frames     批量帧的 content
+     * @param frameCount 批量帧声明的帧个数
+     */
+    private void decodeFrames(ChannelHandlerContext ctx, ByteBuf frames, int frameCount, List<Object> out) {
+        for (int i = 0; i < frameCount; i++) {
+            // magic-code、version 之后就是 cmd，v1、v2 相同
+            if (frames.readableBytes() > 2 && frames.getByte(frames.readerIndex() + 2) == CommandCode.Batch.code())
+                throw new IllegalStateException("批量帧中的第 " + (i + 1) + " 帧不能是批量帧");
+            int sizeBefore = out.size();
+            decode(ctx, frames, out);
+            if (out.size() == sizeBefore)
+                throw new IllegalStateException("批量帧中的第 " + (i + 1) + " 帧不完整");
         }
-
+        if (frames.isReadable())
+            throw new IllegalStateException("批量帧的帧个数和内容长度不一致");
     }
 
 
@@ -0,0 +1,50 @@
+package me.yq.remoting.command;
+
+import java.util.List;
+
+/**
+ * 批量帧，把发往同一个 channel 的多个通信对象装进一帧写出，省掉多次 write 系统调用和逐帧的出站处理。<br/>
+ * 批量帧只在传输层存在：由 {@link me.yq.remoting.codec.protocol.CommandBatcher} 在出站时聚合，
+ * 解码时拆回一个个独立的通信对象交给后续 handler，业务层感知不到。message-id 字段记录的是帧中通信对象的个数
+ *
+ * @author yq
+ * @version v1.0 2023-05-26 16:30
+ */
+public class BatchCommand extends RemotingCommand {
+
+    private final List<RemotingCommand> commands;
+
+    public BatchCommand(List<RemotingCommand> commands) {
+        super(CommandCode.Batch, commands.size());
+        this.commands = commands;
+    }
+
+    public List<RemotingCommand> getCommands() {
+        return commands;
+    }
+
+    /**
+     * 释放帧中所有通信对象持有的 ByteBuf
+     */
+    @Override
+    public void release() {
+        for (RemotingCommand command : commands)
+            command.release();
+    }
+
+    @Override
+    protected void serializeHeaders() {
+    }
+
+    @Override
+    protected void serializeContent() {
+    }
+
+    @Override
+    protected void deserializeHeaders() {
+    }
+
+    @Override
+    protected void deserializeContent() {
+    }
+}
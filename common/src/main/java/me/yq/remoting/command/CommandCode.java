@@ -2,7 +2,8 @@ package me.yq.remoting.command;
 
 /**
  * 消息类型枚举 <br/>
- * <p>目前消息只支持两种类型：1.普通业务消息 2.心跳消息
+ * <p>目前消息只支持三种类型：1.普通业务消息 2.心跳消息 3.批量帧（一帧中装着多条完整的业务消息或心跳消息，
+ * 只在传输层存在，解码时会拆开，参考 {@link BatchCommand}）
  *
  * @author yq
  * @version v1.0 2023-02-12 23:58
@@ -14,10 +15,23 @@ public enum CommandCode {
 
 
     Biz_Request((byte) 11),
-    Biz_Response((byte) 12);
+    Biz_Response((byte) 12),
+
+
+    Batch((byte) 21);
 
     private final byte cmd;
 
+    /**
+     * 以无符号的 cmd 为下标的查找表，解码每一帧时只需要一次数组读取，不再遍历 values()（每次都会拷贝数组）
+     */
+    private static final CommandCode[] LOOKUP = new CommandCode[256];
+
+    static {
+        for (CommandCode value : values())
+            LOOKUP[value.cmd & 0xFF] = value;
+    }
+
     CommandCode(byte cmd) {
         this.cmd = cmd;
     }
@@ -26,12 +40,8 @@ public enum CommandCode {
         return cmd;
     }
 
-    public static CommandCode lookup(byte cmd){
-        for (CommandCode value : CommandCode.values()) {
-            if (value.cmd == cmd)
-                return value;
-        }
-        return null;
+    public static CommandCode lookup(byte cmd) {
+        return LOOKUP[cmd & 0xFF];
     }
 
     public static boolean isLegalCmd(byte cmd){
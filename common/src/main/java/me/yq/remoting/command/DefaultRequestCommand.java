@@ -1,21 +1,46 @@
 package me.yq.remoting.command;
 
+import io.netty.buffer.ByteBuf;
 import me.yq.common.BaseRequest;
 import me.yq.remoting.transport.serializer.Serializer;
 import me.yq.remoting.transport.serializer.SerializerFactory;
 
+import java.nio.ByteBuffer;
+
 /**
- * 基础通信请求对象
+ * 基础通信请求对象。<br/>
+ * 消息头中携带了路由信息（业务码 + 路由 id），接收方可以在不反序列化消息体的情况下完成路由，格式如下 (宽度单位: byte)
+ * <pre>
+ * 0          1                                      9
+ * +----------+--------------------------------------+
+ * | biz-code |              routing-id              |
+ * +----------+--------------------------------------+
+ * </pre>
+ * 没有消息头的请求（比如老版本的客户端）仍然可以通过反序列化消息体来完成路由
  * @author yq
  * @version v1.0 2023-02-16 1:55 PM
  */
 public class DefaultRequestCommand extends RemotingCommand{
 
+    /**
+     * 路由消息头的长度
+     */
+    public static final int ROUTING_HEADER_LEN = 1/*biz-code*/ + 8/*routing-id*/;
+
     /**
      * 业务传输对象
      */
     private BaseRequest appRequest;
 
+    /**
+     * 是否已经从消息头中解析出了路由信息
+     */
+    private boolean routingHeaderDecoded;
+
+    private byte bizCode;
+
+    private long routingId = BaseRequest.NO_ROUTING_ID;
+
 
     public DefaultRequestCommand() {
         super(CommandCode.Biz_Request);
@@ -26,7 +51,22 @@ public class DefaultRequestCommand extends RemotingCommand{
     }
 
     protected void serializeHeaders(){
+        if (getAppRequest() == null)
+            return;
 
+        this.setHeaderBytes(ByteBuffer.allocate(ROUTING_HEADER_LEN)
+                .put(getAppRequest().getBizCode())
+                .putLong(getAppRequest().getRoutingId())
+                .array());
+    }
+
+    @Override
+    protected void serializeHeaders(ByteBuf out) {
+        if (getAppRequest() == null)
+            return;
+
+        out.writeByte(getAppRequest().getBizCode());
+        out.writeLong(getAppRequest().getRoutingId());
     }
 
 
@@ -41,23 +81,103 @@ public class DefaultRequestCommand extends RemotingCommand{
         this.setContentBytes(contentBytes);
     }
 
+    @Override
+    protected void serializeContent(ByteBuf out) {
+        boolean hasContent = getAppRequest() != null;
+        if (!hasContent)
+            return;
+
+        Serializer serializer = SerializerFactory.getSerializer(this.getSerialization());
+        serializer.serialize(getAppRequest(), out);
+    }
+
 
     protected void deserializeHeaders() {
+        decodeRoutingHeader();
+    }
+
+    /**
+     * 从消息头中解析路由信息，不会消费也不会释放消息头，可以在反序列化之前多次调用
+     *
+     * @return 消息头中是否携带了路由信息
+     */
+    public boolean decodeRoutingHeader() {
+        if (routingHeaderDecoded)
+            return true;
+
+        ByteBuf headerBuf = getHeaderBuf();
+        if (headerBuf != null && headerBuf.readableBytes() >= ROUTING_HEADER_LEN) {
+            int index = headerBuf.readerIndex();
+            this.bizCode = headerBuf.getByte(index);
+            this.routingId = headerBuf.getLong(index + 1);
+            this.routingHeaderDecoded = true;
+        } else if (headerBuf == null && getHeaderBytesLen() >= ROUTING_HEADER_LEN) {
+            ByteBuffer header = ByteBuffer.wrap(getHeaderBytes());
+            this.bizCode = header.get();
+            this.routingId = header.getLong();
+            this.routingHeaderDecoded = true;
+        }
+        return routingHeaderDecoded;
     }
 
 
     protected void deserializeContent() {
-        boolean hasContent = getContentBytes() != null && getMsgBytesLen() > 0;
-        if (!hasContent)
+        if (!hasContent())
             return;
 
         byte serialization = this.getSerialization();
         Serializer serializer = SerializerFactory.getSerializer(serialization);
-        BaseRequest result = serializer.deserialize(this.getContentBytes(), BaseRequest.class);
+        // 零拷贝解码时，序列化器直接从 ByteBuf 中读取，不再额外拷贝出 byte[]
+        BaseRequest result = getContentBuf() != null ?
+                serializer.deserialize(getContentBuf(), BaseRequest.class) :
+                serializer.deserialize(this.getContentBytes(), BaseRequest.class);
         this.setAppRequest(result);
     }
 
 
+    /**
+     * 生成一个用于原样转发的通信对象：使用新的消息 id，协议版本、序列化方式、消息头、消息体均保持不变，
+     * 编码时直接写出，不会再次序列化。<br/>
+     * 零拷贝解码得到的 ByteBuf 切片的所有权会转移给新的通信对象（当前对象不再持有），由编码器在写出后释放
+     *
+     * @return 转发用的通信对象
+     */
+    public DefaultRequestCommand newRelayCommand() {
+        DefaultRequestCommand relayCommand = new DefaultRequestCommand();
+        relayCommand.setVersion(this.getVersion());
+        relayCommand.setSerialization(this.getSerialization());
+
+        if (getHeaderBuf() != null) {
+            relayCommand.setHeaderBuf(getHeaderBuf());
+            this.setHeaderBuf(null);
+        } else {
+            relayCommand.setHeaderBytes(getHeaderBytes());
+        }
+
+        if (getContentBuf() != null) {
+            relayCommand.setContentBuf(getContentBuf());
+            this.setContentBuf(null);
+        } else if (getContentBytes() != null) {
+            relayCommand.setContentBytes(getContentBytes());
+        }
+        return relayCommand;
+    }
+
+
+    /**
+     * 消息头中的业务码，需要先调用 {@link #decodeRoutingHeader()}
+     */
+    public byte getBizCode() {
+        return bizCode;
+    }
+
+    /**
+     * 消息头中的路由 id，需要先调用 {@link #decodeRoutingHeader()}
+     */
+    public long getRoutingId() {
+        return routingId;
+    }
+
     public BaseRequest getAppRequest() {
         return appRequest;
     }
@@ -1,5 +1,6 @@
 package me.yq.remoting.command;
 
+import io.netty.buffer.ByteBuf;
 import me.yq.common.BaseResponse;
 import me.yq.remoting.transport.serializer.Serializer;
 import me.yq.remoting.transport.serializer.SerializerFactory;
@@ -40,6 +41,16 @@ public class DefaultResponseCommand extends RemotingCommand{
         this.setContentBytes(contentBytes);
     }
 
+    @Override
+    protected void serializeContent(ByteBuf out) {
+        boolean hasContent = getAppResponse() != null;
+        if (!hasContent)
+            return;
+
+        Serializer serializer = SerializerFactory.getSerializer(this.getSerialization());
+        serializer.serialize(getAppResponse(), out);
+    }
+
     @Override
     protected void deserializeHeaders() {
 
@@ -47,13 +58,15 @@ public class DefaultResponseCommand extends RemotingCommand{
 
     @Override
     protected void deserializeContent() {
-        boolean hasContent = getContentBytes() != null && getMsgBytesLen() > 0;
-        if (!hasContent)
+        if (!hasContent())
             return;
 
         byte serialization = this.getSerialization();
         Serializer serializer = SerializerFactory.getSerializer(serialization);
-        BaseResponse result = serializer.deserialize(this.getContentBytes(), BaseResponse.class);
+        // 零拷贝解码时，序列化器直接从 ByteBuf 中读取，不再额外拷贝出 byte[]
+        BaseResponse result = getContentBuf() != null ?
+                serializer.deserialize(getContentBuf(), BaseResponse.class) :
+                serializer.deserialize(this.getContentBytes(), BaseResponse.class);
         this.setAppResponse(result);
     }
 
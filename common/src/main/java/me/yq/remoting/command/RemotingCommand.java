@@ -1,5 +1,7 @@
 package me.yq.remoting.command;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import me.yq.common.exception.SystemException;
 import me.yq.remoting.support.DefaultConfig;
 import me.yq.remoting.transport.RequestFutureMap;
@@ -16,6 +18,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 1.基本信息字段  ——  存储通信对象的基本信息
  * 2.传输记录字段  ——  编解码后
  * </p>
+ * <p>
+ * 传输记录字段有两种形态：<br/>
+ * 1.byte[] 形态：编码前序列化得到的字节数组，或者按拷贝方式解码得到的字节数组<br/>
+ * 2.ByteBuf 形态：按零拷贝方式解码时，直接持有入站 ByteBuf 的 retained slice，
+ * 在 {@link #deserialize()} 完成后（无论成功与否）会被释放；如果通信对象不会被反序列化（比如请求被拒绝、响应已超时），
+ * 持有者必须手动调用 {@link #release()}，否则会造成池化内存泄漏
+ * </p>
  * @author yq
  * @version v1.0 2023-02-12 11:13
  */
@@ -59,6 +68,16 @@ public abstract class RemotingCommand implements Serializable {
      */
     private byte[] contentBytes;
 
+    /**
+     * 消息头，零拷贝解码时直接引用入站 ByteBuf 的切片
+     */
+    private transient ByteBuf headerBuf;
+
+    /**
+     * 消息体，零拷贝解码时直接引用入站 ByteBuf 的切片
+     */
+    private transient ByteBuf contentBuf;
+
 
     public RemotingCommand(CommandCode cmd) {
         this(cmd, MESSAGE_ID_GENERATOR.getAndIncrement());
@@ -85,6 +104,8 @@ public abstract class RemotingCommand implements Serializable {
     }
 
     public byte[] getHeaderBytes() {
+        if (headerBytes == null && headerBuf != null)
+            return ByteBufUtil.getBytes(headerBuf);
         return headerBytes;
     }
 
@@ -93,11 +114,26 @@ public abstract class RemotingCommand implements Serializable {
     }
 
     public int getHeaderBytesLen() {
+        if (headerBuf != null)
+            return headerBuf.readableBytes();
         return headerBytes == null ? 0 : headerBytes.length;
     }
 
+    public ByteBuf getHeaderBuf() {
+        return headerBuf;
+    }
+
+    public void setHeaderBuf(ByteBuf headerBuf) {
+        this.headerBuf = headerBuf;
+    }
 
+    /**
+     * 获取消息体字节数组。如果当前是零拷贝解码得到的通信对象，会从 ByteBuf 中拷贝一份出来，
+     * 反序列化请直接使用 {@link #getContentBuf()}
+     */
     public byte[] getContentBytes() {
+        if (contentBytes == null && contentBuf != null)
+            return ByteBufUtil.getBytes(contentBuf);
         return contentBytes;
     }
 
@@ -106,9 +142,40 @@ public abstract class RemotingCommand implements Serializable {
     }
 
     public int getMsgBytesLen() {
+        if (contentBuf != null)
+            return contentBuf.readableBytes();
         return contentBytes == null ? 0 : contentBytes.length;
     }
 
+    public ByteBuf getContentBuf() {
+        return contentBuf;
+    }
+
+    public void setContentBuf(ByteBuf contentBuf) {
+        this.contentBuf = contentBuf;
+    }
+
+    /**
+     * 是否携带了待反序列化的消息体
+     */
+    public boolean hasContent() {
+        return getMsgBytesLen() > 0;
+    }
+
+    /**
+     * 释放零拷贝解码时持有的 ByteBuf 切片，可以重复调用
+     */
+    public void release() {
+        if (headerBuf != null) {
+            headerBuf.release();
+            headerBuf = null;
+        }
+        if (contentBuf != null) {
+            contentBuf.release();
+            contentBuf = null;
+        }
+    }
+
     public CommandCode getCmd() {
         return cmd;
     }
@@ -162,9 +229,61 @@ public abstract class RemotingCommand implements Serializable {
     abstract protected void serializeContent();
 
 
+    // ========= 流式序列化 =========
+    /**
+     * 编码时将消息头写入 out。如果之前已经序列化过（或者是解码得到的通信对象），直接写入已有的字节；
+     * 否则交由子类直接序列化进 out
+     *
+     * @param out 编码器分配的 ByteBuf
+     */
+    public void writeHeaders(ByteBuf out) {
+        if (headerBuf != null)
+            out.writeBytes(headerBuf, headerBuf.readerIndex(), headerBuf.readableBytes());
+        else if (headerBytes != null)
+            out.writeBytes(headerBytes);
+        else
+            streamSerialize(() -> serializeHeaders(out));
+    }
+
+    /**
+     * 编码时将消息体写入 out。如果之前已经序列化过（或者是解码得到的通信对象），直接写入已有的字节；
+     * 否则交由子类直接序列化进 out，这样每个出站消息只会被序列化一次，且直接落在池化内存中
+     *
+     * @param out 编码器分配的 ByteBuf
+     */
+    public void writeContent(ByteBuf out) {
+        if (contentBuf != null)
+            out.writeBytes(contentBuf, contentBuf.readerIndex(), contentBuf.readableBytes());
+        else if (contentBytes != null)
+            out.writeBytes(contentBytes);
+        else
+            streamSerialize(() -> serializeContent(out));
+    }
+
+    private void streamSerialize(Runnable serializeAction) {
+        try {
+            serializeAction.run();
+        } catch (Throwable t) {
+            throw new SystemException("序列化时出现异常! 原因: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * 将业务对象头直接序列化进 out，子类应该可选地实现
+     */
+    protected void serializeHeaders(ByteBuf out) {
+    }
+
+    /**
+     * 将业务对象直接序列化进 out，子类应该可选地实现
+     */
+    protected void serializeContent(ByteBuf out) {
+    }
+
+
     // ========= 反序列化 =========
     /**
-     * 将 RemotingCommand 通信对象，将业务对象反序列化出来
+     * 将 RemotingCommand 通信对象，将业务对象反序列化出来。反序列化结束后会释放零拷贝解码持有的 ByteBuf
      */
     public void deserialize(){
         try {
@@ -175,6 +294,8 @@ public abstract class RemotingCommand implements Serializable {
         } catch (Throwable t) {
             t.printStackTrace();
             throw new SystemException("反序列化时出现异常! 原因: " + t.getMessage(), t);
+        } finally {
+            release();
         }
     }
 
@@ -1,7 +1,10 @@
 package me.yq.remoting.support;
 
+import io.netty.channel.Channel;
 import io.netty.util.AttributeKey;
+import me.yq.remoting.transport.PendingSendQueue;
 import me.yq.remoting.transport.RequestFutureMap;
+import me.yq.remoting.transport.Session;
 
 /**
  * @author yq
@@ -18,6 +21,34 @@ public class ChannelAttributes {
      */
     public static final AttributeKey<ChannelState> CHANNEL_STATE = AttributeKey.valueOf("CHANNEL_STATE");
 
+    /**
+     * channel 所属的 session，作为 session 的反向索引，根据 channel 查找 session 时不需要遍历所有 session
+     */
+    public static final AttributeKey<Session> CHANNEL_SESSION = AttributeKey.valueOf("CHANNEL_SESSION");
+
+    /**
+     * 发往该 channel 的通信对象使用的序列化方式。客户端在连接时按配置设置，服务端在登录时和客户端协商，
+     * 参考 {@link #serializationOf(Channel)}
+     */
+    public static final AttributeKey<Byte> CHANNEL_SERIALIZATION = AttributeKey.valueOf("CHANNEL_SERIALIZATION");
+
+    /**
+     * 发往该 channel 的通信对象使用的协议版本，设置时机同 {@link #CHANNEL_SERIALIZATION}
+     */
+    public static final AttributeKey<Byte> CHANNEL_PROTOCOL_VERSION = AttributeKey.valueOf("CHANNEL_PROTOCOL_VERSION");
+
+    /**
+     * 对端能解压的压缩字典 id（没有字典时为 0）。为 null 表示对端不接受压缩，发往该 channel 的消息体不会被压缩。
+     * 服务端在登录时根据客户端的声明设置，参考 {@link me.yq.remoting.codec.protocol.PayloadCompressor}
+     */
+    public static final AttributeKey<Integer> CHANNEL_COMPRESSION = AttributeKey.valueOf("CHANNEL_COMPRESSION");
+
+    /**
+     * channel 的待发送队列，channel 不可写时发送的消息在这里排队。为 null 表示没有开启写出背压，
+     * 参考 {@link me.yq.remoting.transport.PendingSendQueue}
+     */
+    public static final AttributeKey<PendingSendQueue> CHANNEL_PENDING_SEND_QUEUE = AttributeKey.valueOf("CHANNEL_PENDING_SEND_QUEUE");
+
     /**
      * 当前心跳次数
      */
@@ -28,6 +59,21 @@ public class ChannelAttributes {
      */
     public final static AttributeKey<Integer> EXPECTED_HEARTBEAT_RESPONSE_ID = AttributeKey.valueOf("EXPECTED_HEARTBEAT_RESPONSE_ID");
 
+    /**
+     * @return 发往该 channel 时应该使用的序列化方式，没有协商过时使用默认的序列化方式
+     */
+    public static byte serializationOf(Channel channel) {
+        Byte serialization = channel.attr(CHANNEL_SERIALIZATION).get();
+        return serialization == null ? DefaultConfig.DEFAULT_SERIALIZATION : serialization;
+    }
+
+    /**
+     * @return 发往该 channel 时应该使用的协议版本，没有协商过时使用默认的协议版本
+     */
+    public static byte protocolVersionOf(Channel channel) {
+        Byte version = channel.attr(CHANNEL_PROTOCOL_VERSION).get();
+        return version == null ? DefaultConfig.DEFAULT_PROTOCOL_VERSION : version;
+    }
 
     /**
      * 用来表示 channel 的状态 <br/>
@@ -6,4 +6,6 @@ public class DefaultConfig {
 
     public static final byte DEFAULT_SERIALIZATION = (byte) 1; // hessian2
     public static final byte DEFAULT_PROTOCOL_VERSION = (byte) 1;
+    // 当前能够编解码的最高协议版本，登录协商时不会超过该版本。2 为 varint 长度的紧凑帧，参考 YQCommandCodec
+    public static final byte LATEST_PROTOCOL_VERSION = (byte) 2;
 }
@@ -0,0 +1,77 @@
+package me.yq.remoting.support;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 通信层使用的 IO 模型<br/>
+ * 1. NIO：JDK 的 NIO，任何平台都可用<br/>
+ * 2. EPOLL：netty 的 native epoll，只在 Linux 上可用，系统调用更少、不产生额外的垃圾，并且支持 SO_REUSEPORT 等 Linux 专有选项<br/>
+ * 3. AUTO：epoll 可用时用 epoll，否则用 NIO<br/>
+ * 指定 EPOLL 但是 native 库加载失败（比如非 Linux、缺少对应架构的 jar）时，会告警并回退到 NIO，不会导致启动失败
+ *
+ * @author yq
+ * @version v1.0 2023-05-25 10:15
+ */
+@Slf4j
+public enum TransportType {
+    NIO,
+    EPOLL,
+    AUTO;
+
+    /**
+     * @param value 配置值，忽略大小写
+     */
+    public static TransportType fromConfig(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的 IO 模型: " + value + "，可选值为 NIO / EPOLL / AUTO");
+        }
+    }
+
+    /**
+     * @return 外部传入的 EventLoopGroup 对应的 IO 模型，channel 的类型必须和它一致
+     */
+    public static TransportType of(EventLoopGroup group) {
+        return group instanceof EpollEventLoopGroup ? EPOLL : NIO;
+    }
+
+    /**
+     * @return 当前环境下实际使用的 IO 模型，只会是 NIO 或 EPOLL
+     */
+    public TransportType resolve() {
+        if (this == NIO)
+            return NIO;
+        if (Epoll.isAvailable())
+            return EPOLL;
+        if (this == EPOLL)
+            log.warn("epoll 不可用，回退到 NIO！原因: {}", String.valueOf(Epoll.unavailabilityCause()));
+        return NIO;
+    }
+
+    public EventLoopGroup newEventLoopGroup(int nThreads, ThreadFactory threadFactory) {
+        return resolve() == EPOLL ?
+                new EpollEventLoopGroup(nThreads, threadFactory) :
+                new NioEventLoopGroup(nThreads, threadFactory);
+    }
+
+    public Class<? extends ServerChannel> serverChannelClass() {
+        return resolve() == EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public Class<? extends SocketChannel> socketChannelClass() {
+        return resolve() == EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+}
@@ -3,11 +3,10 @@ package me.yq.remoting.transport;
 import me.yq.remoting.command.DefaultResponseCommand;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.ScheduledFuture;
 
 /**
  * 需要进行回调的 RequestFuture 实现，采用非阻塞的方式获取响应结果，同时执行回调函数。
- * 该类型的 future 一般在后台会有一个定时任务，用以检测该异步 future 是否已经超时。
+ * 该类型的 future 一般会在请求超时时间轮中提交超时任务，参考 {@link RequestTimeoutWheel}
  * @author yq
  * @version v1.0 2023-04-10 22:49
  */
@@ -17,8 +16,6 @@ public class CallbackCarryingRequestFuture extends RequestFuture {
 
     private final Callback callback;
 
-    private ScheduledFuture<?> scheduledFuture;
-
     public CallbackCarryingRequestFuture(int messageId, RequestFutureMap belongsTo, Callback callback) {
         super(messageId,belongsTo);
         this.callback = callback;
@@ -28,15 +25,17 @@ public class CallbackCarryingRequestFuture extends RequestFuture {
         return responseCommand;
     }
 
-    public void putResponse(DefaultResponseCommand responseCommand) {
-
-        if (scheduledFuture != null)
-            scheduledFuture.cancel(true);
-
+    @Override
+    protected void onResponse(DefaultResponseCommand responseCommand) {
         this.responseCommand = responseCommand;
         onCallback();
     }
 
+    @Override
+    protected void onExpired() {
+        onCallback();
+    }
+
     /**
      * 调用回调函数（如果有的话）
      */
@@ -61,9 +60,4 @@ public class CallbackCarryingRequestFuture extends RequestFuture {
 
     }
 
-    public void setScheduledFuture(ScheduledFuture<?> scheduledFuture) {
-        this.scheduledFuture = scheduledFuture;
-    }
-
-
 }
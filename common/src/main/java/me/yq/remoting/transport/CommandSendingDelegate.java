@@ -1,6 +1,7 @@
 package me.yq.remoting.transport;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 import me.yq.common.BaseRequest;
@@ -10,12 +11,9 @@ import me.yq.common.exception.SystemException;
 import me.yq.remoting.command.DefaultRequestCommand;
 import me.yq.remoting.command.DefaultResponseCommand;
 import me.yq.remoting.support.ChannelAttributes;
-import me.yq.remoting.utils.NamedThreadFactory;
 
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -27,18 +25,6 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class CommandSendingDelegate {
 
-    /**
-     * 用于传递 IO 线程是否发消息成功的标志。在阻塞式发送的情况下可以准确传递。
-     * 后期增加异步发送方式的情况下可能需要再考虑下。
-     */
-    private static final ThreadLocal<SendState> SEND_SUCCESS_RECORD = ThreadLocal.withInitial(SendState::new);
-
-    /**
-     * 后台调度线程池，专用于监控异步调用的情况下，请求是否超时
-     */
-    private static final ScheduledExecutorService TimeoutChecker = new ScheduledThreadPoolExecutor(1,new NamedThreadFactory("TimeoutChecker",true));
-
-
     //================== 发送请求 ==================
     /**
      * 同步发送请求，实际上是对异步调用的改造，手工在这里等待。
@@ -49,7 +35,20 @@ public class CommandSendingDelegate {
      * @return 响应数据
      */
     public static BaseResponse sendRequestSync(Channel channel, BaseRequest request, long timeoutMillis) {
-        RequestFuture future = internalSendRequestAsync(channel, request,null);
+        DefaultResponseCommand responseCommand = sendRequestSyncForCommand(channel, request, timeoutMillis);
+        return responseCommand == null ? null : responseCommand.getAppResponse();
+    }
+
+    /**
+     * 同 {@link #sendRequestSync}，但是返回已经反序列化的响应通信对象，调用方可以拿到协议头中的信息（比如响应的序列化方式）
+     *
+     * @param channel       接收消息的 channel
+     * @param request       待发送的业务信息
+     * @param timeoutMillis 等待响应超时时间
+     * @return 已经反序列化的响应通信对象
+     */
+    public static DefaultResponseCommand sendRequestSyncForCommand(Channel channel, BaseRequest request, long timeoutMillis) {
+        RequestFuture future = internalSendRequestAsync(channel, request, timeoutMillis, null);
 
         DefaultResponseCommand responseCommand = future.acquireAndClose(timeoutMillis);
 
@@ -57,45 +56,78 @@ public class CommandSendingDelegate {
             return null;
 
         responseCommand.deserialize();
-        return responseCommand.getAppResponse();
+        return responseCommand;
     }
 
     /**
      * 异步发送请求，发送完之后会得到一个 future，可以通过 future 获取响应。
      * @param channel 接收消息的 channel
      * @param request 待发送的业务信息
-     * @return future，该 future 可以阻塞式获取响应
+     * @return future，该 future 可以阻塞式获取响应，也可以转换成 CompletableFuture 进行编排
      */
     public static BaseResponseFuture sendRequestAsync(Channel channel, BaseRequest request) {
-        RequestFuture future = internalSendRequestAsync(channel, request, null);
-        return new BaseResponseFuture(future);
+        return new BaseResponseFuture(sendRequestCompletable(channel, request, -1));
     }
 
-
     /**
-     * 异步发送请求。在该方法中，会将请求序列化，并发送到远程端。
-     * 发出的请求会放在 channel attr 中，等待响应到来之时，会将响应提交，并告诉 biz thread 去处理 callback。
+     * 异步发送请求，返回一个 CompletableFuture。响应到达时，IO 线程会直接完成该 future，
+     * 超时则由超时时间轮以 {@link me.yq.common.exception.BusinessException} 异常完成，整个过程不会阻塞任何业务线程。<br/>
+     * 注意：非 async 的后续回调会在 IO 线程中执行，耗时的处理请使用 xxxAsync(fn, executor)
      *
      * @param channel       接收消息的 channel
      * @param request       待发送的业务信息
-     * @param timeoutMillis 等待响应超时时间，为 -1 表示用不超时
-     * @param callback      回调函数
+     * @param timeoutMillis 等待响应超时时间，为 -1 表示永不超时
+     * @return 响应的 future
+     */
+    public static CompletableFuture<BaseResponse> sendRequestCompletable(Channel channel, BaseRequest request, long timeoutMillis) {
+        ensureChannelHealthy(channel);
 
+        DefaultRequestCommand requestCommand = wrapRequestCommand(channel, request);
+        RequestFutureMap futureMapInChannel = channel.attr(ChannelAttributes.CHANNEL_REQUEST_FUTURE_MAP).get();
+        CompletableRequestFuture future = new CompletableRequestFuture(requestCommand.getMessageId(), futureMapInChannel);
+        internalSendRequest(channel, requestCommand, future, timeoutMillis);
+        return future.getPromise();
+    }
+
+    /**
+     * 原样转发一个已经编码好的请求通信对象（参考 {@link DefaultRequestCommand#newRelayCommand()}），不会再进行序列化，
+     * 协议版本改为目标 channel 的协议版本。
+     * 其余行为同 {@link #sendRequestCompletable}。relayCommand 持有的 ByteBuf 会在编码后释放，发送失败时也会被释放
+     *
+     * @param channel       接收消息的 channel
+     * @param relayCommand  待转发的请求通信对象
+     * @param timeoutMillis 等待响应超时时间，为 -1 表示永不超时
+     * @return 响应的 future
      */
-    public static void sendRequestCallback(Channel channel, BaseRequest request, long timeoutMillis, Callback callback) {
+    public static CompletableFuture<BaseResponse> relayRequestCompletable(Channel channel, DefaultRequestCommand relayCommand, long timeoutMillis) {
+        try {
+            ensureChannelHealthy(channel);
+        } catch (SystemException e) {
+            relayCommand.release();
+            throw e;
+        }
 
-        RequestFuture future = internalSendRequestAsync(channel, request, callback);
+        // 帧格式按目标 channel 协商的协议版本，消息体原样写出
+        relayCommand.setVersion(ChannelAttributes.protocolVersionOf(channel));
+        RequestFutureMap futureMapInChannel = channel.attr(ChannelAttributes.CHANNEL_REQUEST_FUTURE_MAP).get();
+        CompletableRequestFuture future = new CompletableRequestFuture(relayCommand.getMessageId(), futureMapInChannel);
+        internalSendRequest(channel, relayCommand, future, timeoutMillis);
+        return future.getPromise();
+    }
 
-        // 提交超时检测任务
-        ScheduledFuture<?> scheduledFuture = TimeoutChecker.schedule(() -> {
-            // 超时前再确认下是否已经有响应了
-            DefaultResponseCommand responseCommand = future.acquireAndClose(0);
-            if (responseCommand == null)
-                callback.onTimeout();
 
-        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    /**
+     * 异步发送请求。在该方法中，会将请求发送到远程端（序列化在编码时进行）。
+     * 发出的请求会放在 channel attr 中，等待响应到来之时，会将响应提交，并告诉 biz thread 去处理 callback。
+     *
+     * @param channel       接收消息的 channel
+     * @param request       待发送的业务信息
+     * @param timeoutMillis 等待响应超时时间，为 -1 表示用不超时
+     * @param callback      回调函数，超时后会调用 {@link Callback#onTimeout()}
 
-        ((CallbackCarryingRequestFuture)future).setScheduledFuture(scheduledFuture);
+     */
+    public static void sendRequestCallback(Channel channel, BaseRequest request, long timeoutMillis, Callback callback) {
+        internalSendRequestAsync(channel, request, timeoutMillis, Objects.requireNonNull(callback));
     }
 
 
@@ -106,24 +138,44 @@ public class CommandSendingDelegate {
      *
      * @param channel 待发送请求的 channel
      * @param request 待发送的请求
+     * @param timeoutMillis 等待响应超时时间，大于 0 时会在超时时间轮中登记超时任务
      * @param callback 回调函数，该参数决定了获取的 future 的类型是 普通的阻塞式 future 还是 callback 形式
      * @return 请求的 future
      */
-    private static RequestFuture internalSendRequestAsync(Channel channel, BaseRequest request, Callback callback) {
+    private static RequestFuture internalSendRequestAsync(Channel channel, BaseRequest request, long timeoutMillis, Callback callback) {
         ensureChannelHealthy(channel);
 
-        DefaultRequestCommand requestCommand = wrapSerializedRequestCommand(request);
+        DefaultRequestCommand requestCommand = wrapRequestCommand(channel, request);
         int requestId = requestCommand.getMessageId();
         RequestFutureMap futureMapInChannel = channel.attr(ChannelAttributes.CHANNEL_REQUEST_FUTURE_MAP).get();
         RequestFuture future = callback == null ?
                 new DefaultRequestFuture(requestId,futureMapInChannel) :
                 new CallbackCarryingRequestFuture(requestId, futureMapInChannel,callback);
+        internalSendRequest(channel, requestCommand, future, timeoutMillis);
+        return future;
+    }
+
+    /**
+     * 登记 future 并写出请求，写出失败时直接以失败响应完成 future
+     *
+     * @param channel        待发送请求的 channel
+     * @param requestCommand 待发送的请求
+     * @param future         请求对应的 future
+     * @param timeoutMillis  等待响应超时时间，大于 0 时会在超时时间轮中登记超时任务
+     */
+    private static void internalSendRequest(Channel channel, DefaultRequestCommand requestCommand, RequestFuture future, long timeoutMillis) {
+        int requestId = requestCommand.getMessageId();
+        RequestFutureMap futureMapInChannel = channel.attr(ChannelAttributes.CHANNEL_REQUEST_FUTURE_MAP).get();
         futureMapInChannel.addNewFuture(future);
+        if (timeoutMillis > 0)
+            future.scheduleTimeout(timeoutMillis);
 
         try {
-            channel.writeAndFlush(requestCommand).addListener(
+            write(channel, requestCommand).addListener(
                     f -> {
                         if (!f.isSuccess()) {
+                            // 没能走到编码器的通信对象，需要在这里释放其持有的 ByteBuf
+                            requestCommand.release();
                             String errMsg = "消息发送失败!  异常信息： " + f.cause().getMessage();
                             future.putFailedResponse(f.cause());
                             futureMapInChannel.removeSuchFuture(requestId);
@@ -132,70 +184,77 @@ public class CommandSendingDelegate {
                     }
             );
         } catch (Exception e) {
+            requestCommand.release();
             future.putFailedResponse(e);
         }
-        return future;
     }
 
 
 
     /**
-     * 单向发送请求，这种发送方式并不关心请求结果如何。该方式虽然不会等待结果，但是等待消息的成功发送。
+     * 单向发送请求（fire-and-forget），既不关心请求结果，也不等待消息写出，调用耗时仅为一次入队。
+     * 写出失败时只会记录日志，如果调用方关心写出结果，可以使用返回的 future 自行添加监听或等待。
      *
      * @param channel 接收消息的 channel
      * @param request 待发送的业务信息
+     * @return 写出结果的 future
      */
-    public static void sendRequestOneway(Channel channel, BaseRequest request, long timeoutMillis) {
+    public static ChannelFuture sendRequestOneway(Channel channel, BaseRequest request) {
 
         ensureChannelHealthy(channel);
 
-        final SendState sendState = SEND_SUCCESS_RECORD.get();
-        channel.writeAndFlush(wrapSerializedRequestCommand(request)).addListener(
+        return write(channel, wrapRequestCommand(channel, request)).addListener(
                 future -> {
-                    if (!future.isSuccess()) {
-                        sendState.setState(SendStates.FAILED);
-                        sendState.setThrowable(future.cause());
-                    } else
-                        sendState.setState(SendStates.SUCCESS);
+                    if (!future.isSuccess())
+                        log.error("发送消息失败：[{}]\n异常信息：{}", request.getAppRequest(), future.cause().getMessage());
                 }
         );
+    }
 
-        // 不停等待10ms 直到超时或者发送状态是成功
-        long start = System.currentTimeMillis();
-        while (System.currentTimeMillis() - start < timeoutMillis) {
-            if (sendState.getState() == SendStates.SUCCESS)
-                return;
-            try {
-                TimeUnit.MILLISECONDS.sleep(5);
-            } catch (InterruptedException ignored) {
-            }
-        }
+    /**
+     * 单向发送请求，并确认写出（confirmed write）。这种发送方式并不关心请求结果如何，但是会阻塞等待消息被成功写出，
+     * 等待直接挂在 netty 的 ChannelFuture 上，写出完成即返回，没有轮询。<br/>
+     * 注意：不能在 IO 线程中调用，否则 netty 会直接抛出 BlockingOperationException
+     *
+     * @param channel       接收消息的 channel
+     * @param request       待发送的业务信息
+     * @param timeoutMillis 等待写出的超时时间
+     * @throws SystemException 写出失败或者超时
+     */
+    public static void sendRequestOneway(Channel channel, BaseRequest request, long timeoutMillis) {
 
-        if (sendState.getState() == SendStates.FAILED) {
-            String errMsg = "发送消息失败：[" + request.getAppRequest() + "]\n异常信息：" + sendState.getThrowable().getMessage();
-            log.error(errMsg);
-            throw new SystemException(errMsg, sendState.getThrowable());
-        } else if (sendState.getState() == SendStates.SENT) {
+        ChannelFuture future = sendRequestOneway(channel, request);
+
+        if (!future.awaitUninterruptibly(timeoutMillis)) {
             String errMsg = "发送消息超时：[" + request.getAppRequest() + "]";
             log.error(errMsg);
             throw new SystemException(errMsg);
         }
+
+        if (!future.isSuccess()) {
+            String errMsg = "发送消息失败：[" + request.getAppRequest() + "]\n异常信息：" + future.cause().getMessage();
+            throw new SystemException(errMsg, future.cause());
+        }
     }
 
 
     /**
-     * 根据业务请求消息，生成一个已经序列化后的通信对象。该方法通常在即将进行远程通信时调用，
-     * 可以将原始的业务请求对象，包装成一个通信对象。
+     * 根据业务请求消息，生成一个通信对象。该方法通常在即将进行远程通信时调用，
+     * 可以将原始的业务请求对象，包装成一个通信对象。<br/>
+     * 注意：这里不再提前序列化，业务对象会在 IO 线程编码时直接序列化进出站的池化 ByteBuf，
+     * 参考 {@link me.yq.remoting.codec.protocol.YQCommandCodec#encode}
+     *
+     * 序列化方式和协议版本取 channel 上协商的结果，参考 {@link ChannelAttributes#serializationOf}
      *
+     * @param channel 接收消息的 channel
      * @param request 待包装的业务对象
-     * @return 已经序列化后的远程通信对象
+     * @return 远程通信对象
      */
-    private static DefaultRequestCommand wrapSerializedRequestCommand(BaseRequest request) {
+    private static DefaultRequestCommand wrapRequestCommand(Channel channel, BaseRequest request) {
         DefaultRequestCommand requestCommand = new DefaultRequestCommand();
+        requestCommand.setSerialization(ChannelAttributes.serializationOf(channel));
+        requestCommand.setVersion(ChannelAttributes.protocolVersionOf(channel));
         requestCommand.setAppRequest(request);
-        //log.info("序列化前的请求对象：{}\n序列化前时间:{}", request, CommonUtils.now());
-        requestCommand.serialize();
-        //log.info("序列化后时间:{}",  CommonUtils.now());
         return requestCommand;
     }
 
@@ -214,7 +273,12 @@ public class CommandSendingDelegate {
 
         ensureChannelHealthy(ctx.channel());
 
-        ctx.writeAndFlush(wrapSerializedResponseCommand(reqId, response)).addListener(
+        DefaultResponseCommand responseCommand = wrapResponseCommand(ctx.channel(), reqId, response);
+        PendingSendQueue pendingSendQueue = PendingSendQueue.of(ctx.channel());
+        ChannelFuture writeFuture = pendingSendQueue == null ?
+                ctx.writeAndFlush(responseCommand) :
+                pendingSendQueue.write(responseCommand, ctx.newPromise());
+        writeFuture.addListener(
                 future -> {
                     if (!future.isSuccess()) {
                         String errMsg = "消息发送失败!  异常信息： " + future.cause().getMessage();
@@ -225,22 +289,40 @@ public class CommandSendingDelegate {
     }
 
     /**
-     * 可以将原始响应对象包装成一个 通信响应对象
+     * 可以将原始响应对象包装成一个 通信响应对象，序列化同样推迟到编码时进行
      *
+     * @param channel  接收响应的 channel
      * @param reqId    请求id，表示这个通信响应对象是对哪个请求的响应
      * @param response 待包装的业务对象
-     * @return 已经序列化后的远程通信对象
+     * @return 远程通信对象
      */
-    private static DefaultResponseCommand wrapSerializedResponseCommand(int reqId, BaseResponse response) {
+    private static DefaultResponseCommand wrapResponseCommand(Channel channel, int reqId, BaseResponse response) {
         DefaultResponseCommand responseCommand = new DefaultResponseCommand(reqId);
+        responseCommand.setSerialization(ChannelAttributes.serializationOf(channel));
+        responseCommand.setVersion(ChannelAttributes.protocolVersionOf(channel));
         responseCommand.setAppResponse(response);
-        responseCommand.serialize();
         return responseCommand;
     }
 
 
+    /**
+     * 写出并 flush 一个通信对象。channel 开启了写出背压时交给其待发送队列，不可写时排队而不是直接写进出站缓冲区，
+     * 参考 {@link PendingSendQueue}
+     *
+     * @param channel 接收消息的 channel
+     * @param command 待写出的通信对象
+     * @return 写出结果的 future
+     */
+    private static ChannelFuture write(Channel channel, Object command) {
+        PendingSendQueue pendingSendQueue = PendingSendQueue.of(channel);
+        return pendingSendQueue == null ?
+                channel.writeAndFlush(command) :
+                pendingSendQueue.write(command, channel.newPromise());
+    }
+
     /**
      * 检测 channel 装态是否正常，是否可以发送消息。如果不可以发送消息，则本方法会直接报错。
+     * channel 不可写时，开启了写出背压的 channel 会排队发送，没有开启的直接报错
      *
      * @param channel 待发送消息的 channel
      * @throws SystemException channel 状态相关的异常
@@ -248,45 +330,7 @@ public class CommandSendingDelegate {
     private static void ensureChannelHealthy(Channel channel) throws SystemException {
         if (channel == null || !channel.isActive())
             throw new SystemException(new IllegalStateException("当前无法发送消息，请检查 channel 状态: " + channel));
-        else if (!channel.isWritable())
+        else if (!channel.isWritable() && PendingSendQueue.of(channel) == null)
             throw new SystemException(new IllegalStateException("写入太多可能已经造成了 oom？请检查 channel 状态:" + channel));
     }
-
-
-    /**
-     * 用于记录消息发送状态的类，主要用于包装消息的发送状态
-     */
-    private static class SendState {
-        private SendStates state = SendStates.SENT;
-
-        private Throwable throwable;
-
-        public SendStates getState() {
-            return state;
-        }
-
-        public void setState(SendStates state) {
-            this.state = state;
-        }
-
-        public Throwable getThrowable() {
-            return throwable;
-        }
-
-        public void setThrowable(Throwable throwable) {
-            this.throwable = throwable;
-        }
-    }
-
-    /**
-     * 消息发送状态枚举，存在三种情况：
-     * 1.SENT     已进行发送
-     * 2.SUCCESS  发送成功
-     * 3.FAILED   发送失败
-     */
-    private enum SendStates {
-        SENT,
-        SUCCESS,
-        FAILED
-    }
 }
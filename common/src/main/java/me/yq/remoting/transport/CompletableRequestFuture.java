@@ -0,0 +1,68 @@
+package me.yq.remoting.transport;
+
+import me.yq.common.BaseResponse;
+import me.yq.common.exception.BusinessException;
+import me.yq.remoting.command.DefaultResponseCommand;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 基于 {@link CompletableFuture} 的 RequestFuture 实现，响应到达时直接在 IO 线程中完成 future，不占用任何业务线程。<br/>
+ * 1.收到响应：反序列化后以 {@link BaseResponse} 正常完成；发送失败或者反序列化失败则异常完成<br/>
+ * 2.超时：由超时时间轮触发，以 {@link BusinessException} 异常完成<br/>
+ * 3.调用方主动 cancel / complete：future 会从 RequestFutureMap 中移除，之后到达的响应会被直接丢弃<br/>
+ * 注意：默认情况下，后续的 thenApply / whenComplete 等非 async 的回调会在 IO 线程中执行，
+ * 耗时的后续处理请使用 xxxAsync(fn, executor) 切换到业务线程池
+ *
+ * @author yq
+ * @version v1.0 2023-05-11 10:36
+ */
+public class CompletableRequestFuture extends RequestFuture {
+
+    private final CompletableFuture<BaseResponse> promise = new CompletableFuture<>();
+
+    public CompletableRequestFuture(int messageId, RequestFutureMap belongsTo) {
+        super(messageId, belongsTo);
+        // 调用方提前结束了 future（cancel、自行设置超时等），这里同步结束掉 RequestFuture，取消超时任务并从 map 中移除
+        promise.whenComplete((response, cause) -> {
+            if (!isDone())
+                expire();
+        });
+    }
+
+    /**
+     * 对于 completable 形式的 future，响应只能通过 {@link #getPromise()} 获取
+     */
+    @Override
+    protected DefaultResponseCommand acquireResponse(long timeoutMillis) {
+        throw new UnsupportedOperationException("请通过 getPromise() 获取响应");
+    }
+
+    @Override
+    protected void onResponse(DefaultResponseCommand responseCommand) {
+        close();
+
+        if (responseCommand.getThrowable() != null) {
+            responseCommand.release();
+            promise.completeExceptionally(responseCommand.getThrowable());
+            return;
+        }
+
+        try {
+            responseCommand.deserialize();
+        } catch (Throwable t) {
+            promise.completeExceptionally(t);
+            return;
+        }
+        promise.complete(responseCommand.getAppResponse());
+    }
+
+    @Override
+    protected void onExpired() {
+        promise.completeExceptionally(new BusinessException("等待响应超时！"));
+    }
+
+    public CompletableFuture<BaseResponse> getPromise() {
+        return promise;
+    }
+}
@@ -13,7 +13,9 @@ import java.util.concurrent.TimeUnit;
  */
 public class DefaultRequestFuture extends RequestFuture {
 
-    private DefaultResponseCommand responseCommand;
+    private volatile DefaultResponseCommand responseCommand;
+
+    private volatile boolean expired;
 
     private final CountDownLatch latch = new CountDownLatch(1);
 
@@ -28,24 +30,38 @@ public class DefaultRequestFuture extends RequestFuture {
      * @return 业务响应
      */
     protected DefaultResponseCommand acquireResponse(long timeoutMillis) {
-        // 在超时时间内做等待
+        // 在超时时间内做等待，时间轮到期时同样会唤醒这里
         try {
             if (timeoutMillis == -1)
                 latch.await();
-            else {
-                boolean ok = latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
-                if (!ok)
-                    throw new BusinessException("等待响应超时！");
-            }
+            else if (!latch.await(timeoutMillis, TimeUnit.MILLISECONDS))
+                expire();
         } catch (InterruptedException ignored) {
         }
 
+        if (expired)
+            throw new BusinessException("等待响应超时！");
+
+        // 超时的同时响应到达了，响应方已经抢先完成了 future，稍等一下就能拿到
+        if (responseCommand == null && isDone()) {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {
+            }
+        }
         return responseCommand;
     }
 
 
-    public void putResponse(DefaultResponseCommand responseCommand) {
+    @Override
+    protected void onResponse(DefaultResponseCommand responseCommand) {
         this.responseCommand = responseCommand;
         this.latch.countDown(); // 保证请求处结束阻塞
     }
+
+    @Override
+    protected void onExpired() {
+        this.expired = true;
+        this.latch.countDown();
+    }
 }
@@ -0,0 +1,260 @@
+package me.yq.remoting.transport;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import lombok.extern.slf4j.Slf4j;
+import me.yq.common.exception.SystemException;
+import me.yq.remoting.support.ChannelAttributes;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 写出背压：channel 不可写（出站缓冲区超过高水位）时，待发送的消息先进入本队列排队，
+ * 缓冲区回落到低水位以下、channel 重新可写时（channelWritabilityChanged）再按序写出。<br/>
+ * 队列有界，满了之后按 {@link OverflowPolicy} 处理。被丢弃或者拒绝的消息，其写出 promise 会以 {@link SystemException} 失败，
+ * 发送方挂在 promise 上的监听（释放 ByteBuf、以失败响应完成请求 future 等）照常生效。<br/>
+ * 本 handler 每个 channel 一个，添加到 pipeline 时把自己登记到 {@link ChannelAttributes#CHANNEL_PENDING_SEND_QUEUE}，
+ * 发送方通过 {@link CommandSendingDelegate} 间接使用。入队可能发生在任意业务线程，写出只发生在 IO 线程
+ *
+ * @author yq
+ * @version v1.0 2023-05-26 10:40
+ */
+@Slf4j
+public class PendingSendQueue extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 队列满了之后的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 丢弃队头（最早入队）的消息，新消息入队。适合只关心最新状态的推送
+         */
+        DROP_OLDEST,
+        /**
+         * 拒绝新消息，队列保持不变
+         */
+        REJECT,
+        /**
+         * 发送线程阻塞等待队列腾出空间，超过等待时间仍然没有空间则拒绝。
+         * 注意：在 IO 线程中发送时不能阻塞，会直接按 REJECT 处理
+         */
+        PARK
+    }
+
+    private final int capacity;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final long parkMillis;
+
+    /**
+     * 所有对 pending 的访问都在 this 上同步，只有 channel 不可写时才会走到这里，锁竞争不大
+     */
+    private final ArrayDeque<PendingSend> pending = new ArrayDeque<>();
+
+    private Channel channel;
+
+    private final Runnable drainTask = this::drain;
+
+    // ================ 统计 ================
+    private final LongAdder enqueuedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private volatile int maxDepth;
+
+    /**
+     * @param capacity       队列容量
+     * @param overflowPolicy 队列满了之后的处理策略
+     * @param parkMillis     {@link OverflowPolicy#PARK} 策略下，发送线程最多等待多久
+     */
+    public PendingSendQueue(int capacity, OverflowPolicy overflowPolicy, long parkMillis) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("非法的待发送队列容量: " + capacity);
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.parkMillis = parkMillis;
+    }
+
+    /**
+     * @return channel 上的待发送队列，没有开启写出背压时返回 null
+     */
+    public static PendingSendQueue of(Channel channel) {
+        return channel.attr(ChannelAttributes.CHANNEL_PENDING_SEND_QUEUE).get();
+    }
+
+    /**
+     * 写出一条消息。channel 可写并且没有排队的消息时直接写出；否则进入队列排队，保证同一个 channel 上的写出顺序
+     *
+     * @param msg     待写出的通信对象
+     * @param promise 写出结果
+     * @return promise 本身
+     */
+    public ChannelFuture write(Object msg, ChannelPromise promise) {
+        if (channel.isWritable() && isEmpty())
+            return channel.writeAndFlush(msg, promise);
+
+        PendingSend dropped = null;
+        synchronized (this) {
+            if (pending.size() >= capacity) {
+                switch (overflowPolicy) {
+                    case DROP_OLDEST:
+                        dropped = pending.pollFirst();
+                        droppedCount.increment();
+                        break;
+                    case PARK:
+                        if (!channel.eventLoop().inEventLoop() && awaitSpace())
+                            break;
+                        // fall through
+                    default:
+                        rejectedCount.increment();
+                        promise.tryFailure(new SystemException("待发送队列已满（" + capacity + "），消息被拒绝: " + channel));
+                        return promise;
+                }
+            }
+            pending.addLast(new PendingSend(msg, promise));
+            enqueuedCount.increment();
+            if (pending.size() > maxDepth)
+                maxDepth = pending.size();
+        }
+
+        if (dropped != null)
+            dropped.promise.tryFailure(new SystemException("待发送队列已满（" + capacity + "），最早的消息被丢弃: " + channel));
+
+        // 入队之前 channel 可能已经恢复可写，对应的 channelWritabilityChanged 事件已经错过了，需要主动排空一次
+        if (channel.isWritable())
+            channel.eventLoop().execute(drainTask);
+        return promise;
+    }
+
+    /**
+     * 在 this 上等待队列腾出空间，调用时必须持有 this 的锁
+     *
+     * @return 等待期间队列腾出了空间返回 true，超时或者 channel 关闭返回 false
+     */
+    private boolean awaitSpace() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(parkMillis);
+        try {
+            while (pending.size() >= capacity && channel.isActive()) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0)
+                    return false;
+                wait(remainingMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return pending.size() < capacity;
+    }
+
+    /**
+     * 在 IO 线程中，趁 channel 可写把排队的消息按序写出，写到再次不可写为止
+     */
+    private void drain() {
+        boolean written = false;
+        while (channel.isWritable()) {
+            PendingSend next;
+            synchronized (this) {
+                next = pending.pollFirst();
+                if (next == null)
+                    break;
+                notifyAll();
+            }
+            channel.write(next.msg, next.promise);
+            written = true;
+        }
+        if (written)
+            channel.flush();
+    }
+
+    /**
+     * 让排队中的消息全部失败，channel 关闭时调用
+     */
+    private void failAll(Throwable cause) {
+        ArrayDeque<PendingSend> failed;
+        synchronized (this) {
+            failed = new ArrayDeque<>(pending);
+            pending.clear();
+            notifyAll();
+        }
+        for (PendingSend send : failed)
+            send.promise.tryFailure(cause);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.channel = ctx.channel();
+        channel.attr(ChannelAttributes.CHANNEL_PENDING_SEND_QUEUE).set(this);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable())
+            drain();
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        int depth = getDepth();
+        if (depth > 0)
+            log.warn("channel 已关闭，{} 条排队中的消息发送失败: {}", depth, ctx.channel());
+        failAll(new SystemException(new ClosedChannelException()));
+        super.channelInactive(ctx);
+    }
+
+    private synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * @return 当前排队中的消息数
+     */
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    /**
+     * @return 排队深度的历史最大值
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return 累计入队的消息数
+     */
+    public long getEnqueuedCount() {
+        return enqueuedCount.sum();
+    }
+
+    /**
+     * @return 累计因 {@link OverflowPolicy#DROP_OLDEST} 被丢弃的消息数
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return 累计被拒绝的消息数（包括 {@link OverflowPolicy#PARK} 等待超时的）
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private static final class PendingSend {
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        PendingSend(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
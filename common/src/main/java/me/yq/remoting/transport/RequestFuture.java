@@ -1,9 +1,11 @@
 package me.yq.remoting.transport;
 
+import io.netty.util.Timeout;
 import me.yq.common.BaseResponse;
 import me.yq.remoting.command.DefaultResponseCommand;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 调用任务 future 类，用于等待响应
@@ -17,6 +19,16 @@ public abstract class RequestFuture {
      */
     private final WeakReference<RequestFutureMap> belongsTo;
 
+    /**
+     * future 是否已经结束（收到响应 或者 超时），响应和超时可能同时发生，只有先到的一方生效
+     */
+    private final AtomicBoolean done = new AtomicBoolean(false);
+
+    /**
+     * 时间轮中的超时任务，收到响应时直接取消
+     */
+    private volatile Timeout timeout;
+
     public RequestFuture(int messageId, RequestFutureMap belongsTo) {
         this.messageId = messageId;
         this.belongsTo = new WeakReference<>(belongsTo);
@@ -40,7 +52,63 @@ public abstract class RequestFuture {
         putResponse(createFailedCommand(t));
     }
 
-    public abstract void putResponse(DefaultResponseCommand responseCommand);
+    /**
+     * 放入响应。如果 future 已经超时，响应会被直接丢弃
+     *
+     * @param responseCommand 通信层响应对象
+     */
+    public void putResponse(DefaultResponseCommand responseCommand) {
+        if (!done.compareAndSet(false, true)) {
+            responseCommand.release();
+            return;
+        }
+
+        Timeout t = this.timeout;
+        if (t != null && t.cancel())
+            RequestTimeoutWheel.getInstance().recordCompleted();
+
+        onResponse(responseCommand);
+    }
+
+    /**
+     * 收到响应时的处理，只会被调用一次
+     */
+    protected abstract void onResponse(DefaultResponseCommand responseCommand);
+
+    /**
+     * 在时间轮中提交超时任务，需要在请求发出之前调用，保证响应到达时能取消掉超时任务
+     *
+     * @param timeoutMillis 超时时间
+     */
+    void scheduleTimeout(long timeoutMillis) {
+        this.timeout = RequestTimeoutWheel.getInstance().newTimeout(this, timeoutMillis);
+    }
+
+    /**
+     * 超时处理，时间轮到期 或者 等待方等待超时都会走到这里。如果已经收到响应，则什么都不做
+     */
+    void expire() {
+        if (!done.compareAndSet(false, true))
+            return;
+
+        Timeout t = this.timeout;
+        if (t != null) {
+            t.cancel();
+            RequestTimeoutWheel.getInstance().recordExpired();
+        }
+
+        close();
+        onExpired();
+    }
+
+    /**
+     * 超时时的处理，只会被调用一次
+     */
+    protected abstract void onExpired();
+
+    public boolean isDone() {
+        return done.get();
+    }
 
     public int getMessageId() {
         return messageId;
@@ -73,6 +141,7 @@ public abstract class RequestFuture {
         response.setReturnMsg("获取响应失败！ 错误信息: " + t.getMessage());
         DefaultResponseCommand responseCommand = new DefaultResponseCommand(messageId);
         responseCommand.setAppResponse(response);
+        responseCommand.setThrowable(t);
         return responseCommand;
     }
 }
@@ -3,9 +3,8 @@ package me.yq.remoting.transport;
 import lombok.extern.slf4j.Slf4j;
 import me.yq.remoting.command.DefaultResponseCommand;
 import me.yq.remoting.transport.process.CommandHandler;
+import me.yq.remoting.utils.StripedIntObjectMap;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -13,7 +12,9 @@ import java.util.concurrent.TimeUnit;
  * - 请求处理器会在此进行 countdown 等待，响应处理器会告知哪个请求已经等待完毕<br/>
  * - 会在此记录请求的 id，以实现线上乱序传输！提升效率！<br/>
  * 该类的设计，参考了 sofa-bolt 中的 invokeFuture。 该类对象将会是 "channel local" 类型，也就是说，
- * 每个 channel 都应该会有请求记录器，进行请求的记录和响应的等待。
+ * 每个 channel 都应该会有请求记录器，进行请求的记录和响应的等待。<br/>
+ * 内部使用原生 int 为 key 的分段 map，消息 id 不需要装箱，记录请求时也不会为每个请求分配 Node。
+ * 由于每个 channel 都有一份，分段数和初始容量都取得比较小。
  *
  * @author yq
  * @version v1.0 2023-02-21 15:08
@@ -21,7 +22,11 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public final class RequestFutureMap {
 
-    private final Map<Integer, RequestFuture> futureMap = new ConcurrentHashMap<>();
+    private static final int STRIPES = 4;
+
+    private static final int INITIAL_CAPACITY_PER_STRIPE = 8;
+
+    private final StripedIntObjectMap<RequestFuture> futureMap = new StripedIntObjectMap<>(STRIPES, INITIAL_CAPACITY_PER_STRIPE);
 
     /**
      * 记录发出的请求，以保证收到响应时，能发给对应的业务处理处。<br/>
@@ -29,9 +34,8 @@ public final class RequestFutureMap {
      * @param future 请求 future
      */
     public void addNewFuture(RequestFuture future) {
-        if (futureMap.containsKey(future.getMessageId()))
+        if (futureMap.putIfAbsent(future.getMessageId(), future) != null)
             throw new RuntimeException("重复的请求 id：" + future.getMessageId());
-        futureMap.put(future.getMessageId(),future);
     }
 
     /**
@@ -42,9 +46,11 @@ public final class RequestFutureMap {
         int msgId = responseCommand.getMessageId();
         RequestFuture requestFuture = futureMap.get(msgId);
 
-        // == null 表示该响应早已失效（可能是超时）
-        if (requestFuture == null)
+        // == null 表示该响应早已失效（可能是超时），不会再被反序列化，需要释放零拷贝解码持有的 ByteBuf
+        if (requestFuture == null) {
+            responseCommand.release();
             return;
+        }
 
         requestFuture.putResponse(responseCommand);
     }
@@ -100,7 +106,7 @@ public final class RequestFutureMap {
      * @return 如果当前有正在处理的请求，则返回 true
      */
     public boolean hasRequestFuture() {
-        return futureMap.size() > 0;
+        return !futureMap.isEmpty();
     }
 
 
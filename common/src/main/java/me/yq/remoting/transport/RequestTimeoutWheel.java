@@ -0,0 +1,138 @@
+package me.yq.remoting.transport;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+import me.yq.remoting.utils.NamedThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求超时调度器，基于 netty 的 {@link HashedWheelTimer} 时间轮实现。<br/>
+ * 所有需要超时检测的 {@link RequestFuture} 共用一个时间轮：插入和取消都是 O(1) 的，
+ * 取消只是打个标记，不会像 ScheduledThreadPoolExecutor 那样争抢同一把堆锁。
+ * 代价是超时精度只能到 tick 级别，对于请求超时来说完全可以接受。<br/>
+ * 同时记录了 已完成 / 已超时 的请求数，可以用来观测超时情况。
+ *
+ * @author yq
+ * @version v1.0 2023-05-06 10:21
+ */
+@Slf4j
+public final class RequestTimeoutWheel {
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static volatile RequestTimeoutWheel instance;
+
+    private final long tickMillis;
+
+    private final int wheelSize;
+
+    private final HashedWheelTimer timer;
+
+    /**
+     * 提交到时间轮的请求数
+     */
+    private final LongAdder scheduledCount = new LongAdder();
+
+    /**
+     * 在超时前收到响应，取消了超时任务的请求数
+     */
+    private final LongAdder completedCount = new LongAdder();
+
+    /**
+     * 超时的请求数
+     */
+    private final LongAdder expiredCount = new LongAdder();
+
+    private RequestTimeoutWheel(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0)
+            throw new IllegalArgumentException("非法的时间轮参数, tickMillis: " + tickMillis + ", wheelSize: " + wheelSize);
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.timer = new HashedWheelTimer(
+                new NamedThreadFactory("RequestTimeoutWheel", true),
+                tickMillis,
+                TimeUnit.MILLISECONDS,
+                wheelSize);
+    }
+
+    /**
+     * 按配置初始化时间轮，需要在发出第一个请求之前调用。时间轮是进程级共享的，
+     * 如果已经按其他参数初始化过，则沿用已有的时间轮
+     *
+     * @param tickMillis 每一格的时间跨度
+     * @param wheelSize  时间轮的格数
+     */
+    public static synchronized void configure(long tickMillis, int wheelSize) {
+        if (instance == null) {
+            instance = new RequestTimeoutWheel(tickMillis, wheelSize);
+            return;
+        }
+        if (instance.tickMillis != tickMillis || instance.wheelSize != wheelSize)
+            log.warn("请求超时时间轮已经按 tick={}ms, size={} 初始化，忽略新的配置 tick={}ms, size={}",
+                    instance.tickMillis, instance.wheelSize, tickMillis, wheelSize);
+    }
+
+    public static RequestTimeoutWheel getInstance() {
+        RequestTimeoutWheel wheel = instance;
+        if (wheel == null) {
+            synchronized (RequestTimeoutWheel.class) {
+                if (instance == null)
+                    instance = new RequestTimeoutWheel(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+                wheel = instance;
+            }
+        }
+        return wheel;
+    }
+
+    /**
+     * 为 future 提交一个超时任务，到期后会调用 {@link RequestFuture#expire()}
+     *
+     * @param future        待检测的 future
+     * @param timeoutMillis 超时时间
+     * @return 超时任务的句柄，收到响应后可以直接取消
+     */
+    Timeout newTimeout(RequestFuture future, long timeoutMillis) {
+        scheduledCount.increment();
+        return timer.newTimeout(t -> future.expire(), timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void recordCompleted() {
+        completedCount.increment();
+    }
+
+    void recordExpired() {
+        expiredCount.increment();
+    }
+
+    public long getScheduledCount() {
+        return scheduledCount.sum();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * 当前仍在时间轮中等待的超时任务数
+     */
+    public long getPendingCount() {
+        return timer.pendingTimeouts();
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public int getWheelSize() {
+        return wheelSize;
+    }
+}
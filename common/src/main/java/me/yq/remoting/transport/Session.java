@@ -34,6 +34,7 @@ public class Session {
 
         this.uid = uid;
         this.channel = channel;
+        channel.attr(ChannelAttributes.CHANNEL_SESSION).set(this);
     }
 
 
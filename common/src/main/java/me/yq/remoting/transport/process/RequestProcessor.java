@@ -7,6 +7,7 @@ import me.yq.common.BaseRequest;
 import me.yq.common.BaseResponse;
 import me.yq.common.ResponseStatus;
 import me.yq.common.exception.SystemException;
+import me.yq.remoting.command.DefaultRequestCommand;
 import me.yq.remoting.transport.CommandSendingDelegate;
 
 import java.util.List;
@@ -67,7 +68,7 @@ public abstract class RequestProcessor {
         channelLocal.set(ctx.channel());
 
         // 2.处理 pre 扩展点
-        processTasks(preTasks);
+        processPreTasks();
 
         try {
             // 3.处理业务
@@ -93,6 +94,35 @@ public abstract class RequestProcessor {
 
 
         // 6.处理 post 扩展点
+        processPostTasks();
+    }
+
+    /**
+     * 在反序列化之前，直接处理原始的请求通信对象，此时只有消息头中的路由信息可用
+     * （参考 {@link DefaultRequestCommand#getBizCode()}、{@link DefaultRequestCommand#getRoutingId()}）。
+     * 适用于准入控制、消息转发等不需要（或者暂时不需要）解析消息体的场景。<br/>
+     * 返回 true 表示请求已经处理完毕，不会再进行反序列化和 {@link #processRequest}，此时由本方法负责释放 requestCommand；
+     * 默认返回 false，继续走反序列化后的常规处理流程
+     *
+     * @param ctx            当前 channelHandlerContext
+     * @param requestCommand 尚未反序列化的请求通信对象
+     * @return 是否已经处理完毕
+     */
+    public boolean processRawRequest(ChannelHandlerContext ctx, DefaultRequestCommand requestCommand) {
+        return false;
+    }
+
+    /**
+     * 处理 pre 扩展点，覆写 {@link #processRawRequest} 自行完成处理的子类也需要调用
+     */
+    protected void processPreTasks() {
+        processTasks(preTasks);
+    }
+
+    /**
+     * 处理 post 扩展点，覆写 {@link #processRawRequest} 自行完成处理的子类也需要调用
+     */
+    protected void processPostTasks() {
         processTasks(postTasks);
     }
 
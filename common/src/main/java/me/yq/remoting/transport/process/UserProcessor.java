@@ -12,12 +12,15 @@ import me.yq.remoting.command.RemotingCommand;
 import me.yq.remoting.support.ChannelAttributes;
 import me.yq.remoting.transport.CommandSendingDelegate;
 import me.yq.remoting.transport.RequestFutureMap;
+import me.yq.remoting.utils.StripedExecutor;
 
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * requestProcessor 聚合对象，持有业务处理器和对应业务码的映射。
@@ -30,26 +33,35 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class UserProcessor {
 
 
-    private ThreadPoolExecutor bizThreadPool;
+    /**
+     * 业务线程池。如果是 {@link StripedExecutor}，同一个 channel 的请求会按到达顺序串行处理
+     */
+    private Executor bizExecutor;
 
     private final Map<Byte, RequestProcessor> bizProcessors = new ConcurrentHashMap<>(8);
 
+    /**
+     * 以无符号业务码为下标的处理器表，每个请求路由时查找，避免 Map 查找时的装箱
+     */
+    private final AtomicReferenceArray<RequestProcessor> processorTable = new AtomicReferenceArray<>(256);
+
 
     /**
-     * 记录当前正在处理的请求数
+     * 记录当前已经接收、还没有处理完的请求数，包括在业务线程池中排队的请求
      */
     private final AtomicInteger currentRequestCounts = new AtomicInteger(0);
 
 
-    public UserProcessor(ThreadPoolExecutor bizThreadPool) {
-        this.bizThreadPool = Objects.requireNonNull(bizThreadPool);
+    public UserProcessor(Executor bizExecutor) {
+        this.bizExecutor = Objects.requireNonNull(bizExecutor);
     }
 
 
     public void registerBizProcessor(byte code, RequestProcessor processor) {
-        RequestProcessor processorOld = this.bizProcessors.put(code, Objects.requireNonNull(processor));
+        RequestProcessor processorOld = this.bizProcessors.putIfAbsent(code, Objects.requireNonNull(processor));
         if (processorOld != null)
             throw new UnsupportedOperationException("不允许重复注册 processors");
+        this.processorTable.set(code & 0xFF, processor);
     }
 
     public void processCommand(ChannelHandlerContext ctx, RemotingCommand command) {
@@ -74,9 +86,11 @@ public class UserProcessor {
         // 当系统处理停机状态时，不会再处理客户端发来的新请求
         ChannelAttributes.ChannelState channelState = ctx.channel().attr(ChannelAttributes.CHANNEL_STATE).get();
         if (channelState == ChannelAttributes.ChannelState.CANNOT_REQUEST) {
+            requestCommand.release();
             BaseResponse response = new BaseResponse(ResponseStatus.SERVER_ERROR, "系统正在停机，无法接收请求！", null);
             CommandSendingDelegate.sendResponseOneway(ctx, requestCommand.getMessageId(), response);
         } else if (channelState == ChannelAttributes.ChannelState.CLOSED) {
+            requestCommand.release();
             // todo 后面这个地方应该是 do noting，打这个日志是方便测试
             log.warn("检测到 closed 状态的 channel 仍然发来信息! 请检查 channel 状态变更为 closed 后的代码逻辑");
         }
@@ -84,37 +98,77 @@ public class UserProcessor {
         // process in BIZ thread
         else if (channelState == null /* request for the first time */
                 || channelState == ChannelAttributes.ChannelState.CAN_REQUEST) {
-            this.bizThreadPool.execute(() -> {
-                // 每次处理请求时，请求计数+1
-                try{
-                    this.currentRequestCounts.incrementAndGet();
+            // 请求进入业务线程池时就计数，而不是开始执行时，排队中的请求也要计入，优雅停机时才会等它们处理完
+            this.currentRequestCounts.incrementAndGet();
+            Runnable task = () -> {
+                try {
                     doProcessRequest(ctx, requestCommand);
-                }finally {
+                } finally {
                     this.currentRequestCounts.decrementAndGet();
                 }
-
-            });
+            };
+            boolean accepted = true;
+            try {
+                if (this.bizExecutor instanceof StripedExecutor)
+                    // 以 channel 为 key，同一个用户发来的请求按到达顺序串行处理，保证消息按序转发
+                    accepted = ((StripedExecutor) this.bizExecutor).execute(ctx.channel(), task);
+                else
+                    this.bizExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                accepted = false;
+            }
+            if (!accepted)
+                rejectRequest(ctx, requestCommand);
         }
     }
 
     /**
-     * 反序列化请求，并找到对应的业务处理器，开始真正地处理业务请求
+     * 业务线程池拒绝了请求（队列已满、已经关闭）。请求没能进入业务线程，也就不会被反序列化，
+     * 这里需要释放掉零拷贝解码持有的 ByteBuf，并告知客户端服务端繁忙，否则客户端要一直等到请求超时
+     */
+    private void rejectRequest(ChannelHandlerContext ctx, DefaultRequestCommand requestCommand) {
+        this.currentRequestCounts.decrementAndGet();
+        requestCommand.release();
+        log.warn("业务线程池繁忙，拒绝来自 {} 的请求", ctx.channel());
+        BaseResponse response = new BaseResponse(ResponseStatus.FAILED, "服务端繁忙，请稍后再试！", null);
+        CommandSendingDelegate.sendResponseOneway(ctx, requestCommand.getMessageId(), response);
+    }
+
+    /**
+     * 找到对应的业务处理器，开始真正地处理业务请求。
+     * 优先根据消息头中的业务码路由，处理器可以在反序列化之前直接处理原始请求；消息头中没有路由信息时，反序列化后再路由
      */
     private void doProcessRequest(ChannelHandlerContext ctx, DefaultRequestCommand requestCommand) {
 
-        // 1. 反序列化
+        // 1. 根据消息头查找对应的业务处理器，不需要反序列化
+        RequestProcessor processor = null;
+        if (requestCommand.decodeRoutingHeader()) {
+            processor = lookupProcessor(requestCommand.getBizCode(), requestCommand);
+            if (processor.processRawRequest(ctx, requestCommand))
+                return;
+        }
+
+        // 2. 反序列化
         requestCommand.deserialize();
         BaseRequest request = requestCommand.getAppRequest();
 
-        // 2. 查找对应的业务处理器
-        RequestProcessor processor = this.bizProcessors.get(request.getBizCode());
+        // 3. 消息头中没有路由信息，根据反序列化的结果查找业务处理器
         if (processor == null)
-            throw new SystemException("未找到交易码[" + request.getBizCode() + "]的处理器！请检查交易码的合法性或者是否设计并装配了该类型交易的处理器");
+            processor = lookupProcessor(request.getBizCode(), requestCommand);
 
-        // 3. 业务处理
+        // 4. 业务处理
         processor.processRequest(ctx, requestCommand.getMessageId(), request);
     }
 
+    private RequestProcessor lookupProcessor(byte bizCode, DefaultRequestCommand requestCommand) {
+        RequestProcessor processor = this.processorTable.get(bizCode & 0xFF);
+        if (processor == null) {
+            requestCommand.release();
+            throw new SystemException("未找到交易码[" + bizCode + "]的处理器！请检查交易码的合法性或者是否设计并装配了该类型交易的处理器");
+        }
+        return processor;
+    }
+
     /**
      * 处理业务响应
      *
@@ -133,12 +187,12 @@ public class UserProcessor {
     }
 
 
-    public void setBizThreadPool(ThreadPoolExecutor bizThreadPool) {
-        this.bizThreadPool = bizThreadPool;
+    public void setBizExecutor(Executor bizExecutor) {
+        this.bizExecutor = bizExecutor;
     }
 
-    public ThreadPoolExecutor getBizThreadPool() {
-        return bizThreadPool;
+    public Executor getBizExecutor() {
+        return bizExecutor;
     }
 
     public Map<Byte, RequestProcessor> getBizProcessors() {
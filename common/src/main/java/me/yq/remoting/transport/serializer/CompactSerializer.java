@@ -0,0 +1,280 @@
+package me.yq.remoting.transport.serializer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import me.yq.biz.LogInRequest;
+import me.yq.biz.LogOutRequest;
+import me.yq.biz.Message;
+import me.yq.biz.Notice;
+import me.yq.biz.domain.Friend;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.common.ResponseStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static me.yq.remoting.utils.VarIntUtils.*;
+
+/**
+ * 针对核心 IM 对象手写的紧凑二进制序列化器<br/>
+ * 每个对象以 1 个字节的类型标记开头，后面按固定顺序写字段：整数用 varint（有符号的 long 先做 zigzag），
+ * 字符串为 varint 长度前缀 + UTF-8 字节，不写类名，也不用反射。<br/>
+ * 支持的类型：{@link BaseRequest}、{@link BaseResponse}、{@link Message}、{@link Notice}、{@link User}、
+ * {@link LogInRequest}、{@link LogOutRequest}。其他类型（比如异常）用 hessian2 序列化，以 4 字节长度前缀嵌入。<br/>
+ * 注意：字段的顺序就是协议，只能在末尾追加新的类型标记，不能修改已有类型的字段顺序
+ *
+ * @author yq
+ * @version v1.0 2023-05-18 10:30
+ */
+public class CompactSerializer implements Serializer {
+
+    public static final byte CODE = (byte) 5;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_BASE_REQUEST = 1;
+    private static final byte TAG_BASE_RESPONSE = 2;
+    private static final byte TAG_MESSAGE = 3;
+    private static final byte TAG_NOTICE = 4;
+    private static final byte TAG_USER = 5;
+    private static final byte TAG_LOG_IN_REQUEST = 6;
+    private static final byte TAG_LOG_OUT_REQUEST = 7;
+    // 不认识的类型，交给 hessian2
+    private static final byte TAG_FALLBACK = 127;
+
+    /**
+     * 请求、响应对象最多嵌套的层数。正常的业务对象最多两层，伪造的层层嵌套会让反序列化递归到栈溢出
+     */
+    private static final int MAX_NESTING_DEPTH = 8;
+
+    private final Serializer fallback = new Hessian2Serializer();
+
+    @Override
+    public byte[] serialize(Object object) {
+        ByteBuf buf = Unpooled.buffer(128);
+        try {
+            serialize(object, buf);
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Override
+    public void serialize(Object object, ByteBuf out) {
+        writeObject(out, object);
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return deserialize(Unpooled.wrappedBuffer(bytes), clazz);
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf buf, Class<T> clazz) {
+        try {
+            return clazz.cast(readObject(buf, 0));
+        } catch (IndexOutOfBoundsException e) {
+            throw new RuntimeException("compact 反序列化失败，数据不完整: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte code() {
+        return CODE;
+    }
+
+    private void writeObject(ByteBuf out, Object object) {
+        if (object == null) {
+            out.writeByte(TAG_NULL);
+        } else if (object instanceof BaseRequest) {
+            BaseRequest request = (BaseRequest) object;
+            out.writeByte(TAG_BASE_REQUEST);
+            out.writeByte(request.getBizCode());
+            writeSignedVarLong(out, request.getRoutingId());
+            writeObject(out, request.getAppRequest());
+        } else if (object instanceof BaseResponse) {
+            BaseResponse response = (BaseResponse) object;
+            out.writeByte(TAG_BASE_RESPONSE);
+            out.writeByte(response.getStatus().code());
+            writeString(out, response.getReturnMsg());
+            writeObject(out, response.getAppResponse());
+        } else if (object instanceof Message) {
+            Message message = (Message) object;
+            out.writeByte(TAG_MESSAGE);
+            writeVarInt(out, message.getMessageId());
+            writeVarLong(out, message.getSendTimestamp());
+            writeUser(out, message.getFromUser());
+            writeUser(out, message.getToUser());
+            writeString(out, message.getMsg());
+        } else if (object instanceof Notice) {
+            Notice notice = (Notice) object;
+            out.writeByte(TAG_NOTICE);
+            writeSignedVarLong(out, notice.getAcceptId());
+            writeString(out, notice.getNoticeTitle());
+            writeString(out, notice.getNoticeContent());
+        } else if (object instanceof User) {
+            out.writeByte(TAG_USER);
+            writeUser(out, (User) object);
+        } else if (object instanceof LogInRequest) {
+            LogInRequest logInRequest = (LogInRequest) object;
+            out.writeByte(TAG_LOG_IN_REQUEST);
+            writeUser(out, logInRequest.getUser());
+            writeBytes(out, logInRequest.getSupportedSerializations());
+            out.writeByte(logInRequest.getProtocolVersion());
+            out.writeBoolean(logInRequest.isCompressionSupported());
+            out.writeInt(logInRequest.getCompressionDictionaryId());
+        } else if (object instanceof LogOutRequest) {
+            out.writeByte(TAG_LOG_OUT_REQUEST);
+            writeUser(out, ((LogOutRequest) object).getUser());
+        } else {
+            out.writeByte(TAG_FALLBACK);
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            fallback.serialize(object, out);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+    }
+
+    /**
+     * @param depth 当前对象所在的嵌套层数，顶层为 0
+     */
+    private Object readObject(ByteBuf in, int depth) {
+        byte tag = in.readByte();
+        if ((tag == TAG_BASE_REQUEST || tag == TAG_BASE_RESPONSE) && depth >= MAX_NESTING_DEPTH)
+            throw new CorruptedFrameException("请求、响应对象的嵌套层数超过 " + MAX_NESTING_DEPTH);
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_BASE_REQUEST: {
+                byte bizCode = in.readByte();
+                long routingId = readSignedVarLong(in);
+                return new BaseRequest(bizCode, readObject(in, depth + 1), routingId);
+            }
+            case TAG_BASE_RESPONSE: {
+                ResponseStatus status = Objects.requireNonNull(ResponseStatus.lookup(in.readByte()), "未知的响应状态");
+                String returnMsg = readString(in);
+                Object appResponse = readObject(in, depth + 1);
+                BaseResponse response = appResponse == null ? new BaseResponse(status) : new BaseResponse(appResponse);
+                response.setStatus(status);
+                response.setReturnMsg(returnMsg);
+                return response;
+            }
+            case TAG_MESSAGE: {
+                int messageId = readVarInt(in);
+                long sendTimestamp = readVarLong(in);
+                User fromUser = readUser(in);
+                User toUser = readUser(in);
+                return new Message(messageId, fromUser, toUser, readString(in), sendTimestamp);
+            }
+            case TAG_NOTICE: {
+                long acceptId = readSignedVarLong(in);
+                return new Notice(acceptId, readString(in), readString(in));
+            }
+            case TAG_USER:
+                return readUser(in);
+            case TAG_LOG_IN_REQUEST: {
+                LogInRequest logInRequest = new LogInRequest(readUser(in));
+                logInRequest.setSupportedSerializations(readBytes(in));
+                logInRequest.setProtocolVersion(in.readByte());
+                logInRequest.setCompressionSupported(in.readBoolean());
+                logInRequest.setCompressionDictionaryId(in.readInt());
+                return logInRequest;
+            }
+            case TAG_LOG_OUT_REQUEST:
+                return new LogOutRequest(readUser(in));
+            case TAG_FALLBACK: {
+                int length = in.readInt();
+                Object result = fallback.deserialize(in.slice(in.readerIndex(), length), Object.class);
+                in.skipBytes(length);
+                return result;
+            }
+            default:
+                throw new RuntimeException("compact 反序列化失败，未知的类型标记: " + tag);
+        }
+    }
+
+    /**
+     * 用户信息：1 字节的存在标记，userId、密码、昵称、年龄、地址、签名，最后是好友数 + 1（0 表示好友列表为 null）和每个好友
+     */
+    private void writeUser(ByteBuf out, User user) {
+        if (user == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        writeSignedVarLong(out, user.getUserId());
+        writeString(out, user.getPasswd());
+        writeString(out, user.getName());
+        writeVarInt(out, user.getAge());
+        writeString(out, user.getAddress());
+        writeString(out, user.getSignature());
+
+        List<Friend> friendList = user.getFriendList();
+        if (friendList == null) {
+            out.writeByte(0);
+            return;
+        }
+        writeVarInt(out, friendList.size() + 1);
+        for (Friend friend : friendList) {
+            writeSignedVarLong(out, friend.getFriendId());
+            writeString(out, friend.getName());
+        }
+    }
+
+    private User readUser(ByteBuf in) {
+        if (in.readByte() == 0)
+            return null;
+        User user = new User(readSignedVarLong(in));
+        user.setPasswd(readString(in));
+        user.setName(readString(in));
+        user.setAge(readVarInt(in));
+        user.setAddress(readString(in));
+        user.setSignature(readString(in));
+
+        int friendCount = readVarInt(in) - 1;
+        if (friendCount >= 0) {
+            // 每个好友至少占 2 个字节，好友数超过剩余字节数一定是非法数据，不能按它预分配
+            checkLength(in, friendCount, "好友数");
+            List<Friend> friendList = new ArrayList<>(friendCount);
+            for (int i = 0; i < friendCount; i++)
+                friendList.add(new Friend(readSignedVarLong(in), readString(in)));
+            user.setFriendList(friendList);
+        }
+        return user;
+    }
+
+    /**
+     * 字节数组：长度 + 1（0 表示 null）和原始字节
+     */
+    private void writeBytes(ByteBuf out, byte[] bytes) {
+        if (bytes == null) {
+            out.writeByte(0);
+            return;
+        }
+        writeVarInt(out, bytes.length + 1);
+        out.writeBytes(bytes);
+    }
+
+    private byte[] readBytes(ByteBuf in) {
+        int length = readVarInt(in) - 1;
+        if (length < 0)
+            return null;
+        checkLength(in, length, "字节数组长度");
+        byte[] bytes = new byte[length];
+        in.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 长度、个数来自对端，按它分配内存之前必须确认没有超出剩余的可读字节数，否则几个字节的恶意数据就能申请到 GB 级别的内存
+     */
+    private static void checkLength(ByteBuf in, int length, String what) {
+        if (length > in.readableBytes())
+            throw new CorruptedFrameException(what + "超出可读字节数: " + length);
+    }
+}
@@ -4,13 +4,21 @@ import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
 import com.caucho.hessian.io.JavaSerializer;
 import com.caucho.hessian.io.SerializerFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
- * hessian2 序列化反序列化器
+ * hessian2 序列化反序列化器。<br/>
+ * 所有线程共享同一个 {@link SerializerFactory}（内部的类序列化器缓存都是并发安全的），不再重复反射构建类序列化器。
+ * 每个线程复用一个 Hessian2Output 以及 byte[] 序列化时的缓冲区，每次序列化只需要重置引用表；
+ * Hessian2Input 则每次反序列化都新建，原因参考 {@link #deserialize(InputStream, Class)}
  * @author yq
  * @version v1.0 2023-02-24 09:18
  */
@@ -18,55 +26,80 @@ public class Hessian2Serializer implements Serializer{
 
     public static final byte CODE = (byte) 1;
 
+    /**
+     * 线程复用的缓冲区超过这个大小后不再保留，避免偶尔的大消息让每个线程都长期占着一大块内存
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final SerializerFactory SERIALIZER_FACTORY = new MySerializerFactory();
+
+    private static final ThreadLocal<HessianStreams> LOCAL_STREAMS = ThreadLocal.withInitial(HessianStreams::new);
+
     @Override
     public byte[] serialize(Object object) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Hessian2Output hessian2Output = new Hessian2Output(baos);
+        HessianStreams streams = HessianStreams.acquire();
+        try {
+            ReusableByteArrayOutputStream buffer = streams.buffer;
+            buffer.reset();
+            serialize(streams.output, object, buffer);
+            byte[] result = buffer.toByteArray();
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE)
+                streams.buffer = new ReusableByteArrayOutputStream();
+            return result;
+        } finally {
+            streams.release();
+        }
+    }
+
+    @Override
+    public void serialize(Object object, ByteBuf out) {
+        HessianStreams streams = HessianStreams.acquire();
+        try {
+            serialize(streams.output, object, new ByteBufOutputStream(out));
+        } finally {
+            streams.release();
+        }
+    }
+
+    private void serialize(Hessian2Output hessian2Output, Object object, OutputStream out) {
+        hessian2Output.init(out);
         try {
-            // GenericSerializerFactory 不强制要求实现 jdk 的 序列化able 接口
-            hessian2Output.setSerializerFactory(new MySerializerFactory());
             hessian2Output.writeObject(object);
+            // 把 hessian2Output 内部缓冲刷入目标流
+            hessian2Output.flush();
         } catch (IOException e) {
             throw new RuntimeException("hessian2 序列化失败！异常信息： " + e.getMessage());
-        }finally {
-            try {
-                baos.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            try {
-                hessian2Output.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        } finally {
+            // 清空引用表、内部缓冲，并且不再持有目标流
+            hessian2Output.init(null);
         }
-        return baos.toByteArray();
     }
 
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
-        T result;
-        ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-        Hessian2Input hessian2Input = new Hessian2Input(bais);
+        return deserialize(new ByteArrayInputStream(bytes), clazz);
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf buf, Class<T> clazz) {
+        return deserialize(new ByteBufInputStream(buf), clazz);
+    }
+
+    /**
+     * Hessian2Input 不能复用：它的 init 只会重置引用表、类定义表，不会清掉内部 256 字节的预读缓冲。
+     * 上一个消息体末尾没有读完的字节（比如对端在消息体后面多塞了数据）会被当成下一个消息体的开头，
+     * 同一个线程上的下一个请求就会被解析成错误的对象。所以每次都新建一个，类反序列化器仍然缓存在共享的 SerializerFactory 中
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T deserialize(InputStream in, Class<T> clazz) {
+        Hessian2Input hessian2Input = new Hessian2Input(in);
+        hessian2Input.setSerializerFactory(SERIALIZER_FACTORY);
         try {
-            hessian2Input.setSerializerFactory(new MySerializerFactory());
-            result = (T) hessian2Input.readObject(clazz);
+            return (T) hessian2Input.readObject(clazz);
         } catch (IOException e) {
             throw new RuntimeException("hessian2 反序列化失败！异常信息： " + e.getMessage());
-        }finally {
-            try {
-                bais.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            try {
-                hessian2Input.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
         }
-        return result;
     }
 
     @Override
@@ -74,6 +107,59 @@ public class Hessian2Serializer implements Serializer{
         return CODE;
     }
 
+    /**
+     * 每个线程复用的序列化流对象
+     */
+    private static class HessianStreams {
+
+        private final Hessian2Output output = new Hessian2Output();
+
+        private ReusableByteArrayOutputStream buffer = new ReusableByteArrayOutputStream();
+
+        /**
+         * 是否正在被使用。同一个线程重入（比如在某个对象的序列化过程中又触发了序列化）时，不能复用正在使用的流
+         */
+        private boolean inUse;
+
+        private final boolean pooled;
+
+        private HessianStreams() {
+            this(true);
+        }
+
+        private HessianStreams(boolean pooled) {
+            this.pooled = pooled;
+            output.setSerializerFactory(SERIALIZER_FACTORY);
+        }
+
+        static HessianStreams acquire() {
+            HessianStreams streams = LOCAL_STREAMS.get();
+            if (streams.inUse)
+                return new HessianStreams(false);
+            streams.inUse = true;
+            return streams;
+        }
+
+        void release() {
+            if (pooled)
+                inUse = false;
+        }
+    }
+
+    /**
+     * 可以重复使用的 ByteArrayOutputStream
+     */
+    private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+        ReusableByteArrayOutputStream() {
+            super(256);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
     /**
      * 取消 被序列化对象 实现 Serializable 的约束。参考：{@link SerializerFactory#getDefaultSerializer(Class)}
      */
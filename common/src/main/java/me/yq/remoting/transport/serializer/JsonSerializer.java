@@ -1,7 +1,9 @@
 package me.yq.remoting.transport.serializer;
 
 import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONObject;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
 
 import java.nio.charset.StandardCharsets;
 
@@ -16,15 +18,39 @@ public class JsonSerializer implements Serializer {
 
     @Override
     public byte[] serialize(Object object) {
-        String json = JSON.toJSONString(object);
-        return json.getBytes(StandardCharsets.UTF_8);
+        // 直接输出 UTF-8 字节，不经过中间的 String
+        return JSON.toJSONBytes(object);
+    }
+
+    @Override
+    public void serialize(Object object, ByteBuf out) {
+        JSON.writeTo(new ByteBufOutputStream(out), object);
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return deserialize(bytes, 0, bytes.length, clazz);
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf buf, Class<T> clazz) {
+        int length = buf.readableBytes();
+        T result;
+        if (buf.hasArray())
+            // 堆内存直接解析底层数组
+            result = deserialize(buf.array(), buf.arrayOffset() + buf.readerIndex(), length, clazz);
+        else
+            result = deserialize(ByteBufUtil.getBytes(buf, buf.readerIndex(), length, false), 0, length, clazz);
+        buf.skipBytes(length);
+        return result;
+    }
+
+    /**
+     * 直接按 UTF-8 字节解析，不再先解码成 String
+     */
+    private <T> T deserialize(byte[] bytes, int offset, int length, Class<T> clazz) {
         try {
-            String json = new String(bytes,StandardCharsets.UTF_8);
-            return JSONObject.parseObject(json,clazz);
+            return JSON.parseObject(bytes, offset, length, StandardCharsets.UTF_8, clazz);
         } catch (Exception e) {
             throw new RuntimeException("序列化时出现异常: " + e.getMessage(),e);
         }
@@ -0,0 +1,76 @@
+package me.yq.remoting.transport.serializer;
+
+import com.alibaba.fastjson2.JSONB;
+import com.alibaba.fastjson2.JSONFactory;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.JSONWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * fastjson2 JSONB（二进制 json）序列化反序列化器<br/>
+ * 和 {@link JsonSerializer} 一样不依赖对象的 schema，但数字、字符串长度都是二进制编码，解析时不需要逐个字符扫描文本。<br/>
+ * 为了还原 Object 类型的字段（比如 {@link me.yq.common.BaseRequest} 中的业务请求），序列化时会写入类名，
+ * 反序列化时只允许 me.yq 包下的类和 fastjson2 内置的基础类型，防止任意类被实例化
+ *
+ * @author yq
+ * @version v1.0 2023-05-18 15:40
+ */
+public class JsonbSerializer implements Serializer {
+
+    public static final byte CODE = (byte) 6;
+
+    private static final JSONWriter.Feature[] WRITER_FEATURES = {
+            JSONWriter.Feature.WriteClassName,
+            // 按字段序列化，不要求有 getter / setter，final 字段也能还原
+            JSONWriter.Feature.FieldBased,
+            // 异常对象的 cause 默认指向自身
+            JSONWriter.Feature.ReferenceDetection,
+            JSONWriter.Feature.NotWriteHashMapArrayListClassName
+    };
+
+    private static final JSONReader.Feature[] READER_FEATURES = {
+            JSONReader.Feature.FieldBased,
+            JSONReader.Feature.UseDefaultConstructorAsPossible
+    };
+
+    private static final JSONReader.AutoTypeBeforeHandler AUTO_TYPE_FILTER = JSONReader.autoTypeFilter(true, "me.yq.");
+
+    @Override
+    public byte[] serialize(Object object) {
+        return JSONB.toBytes(object, WRITER_FEATURES);
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return deserialize(bytes, 0, bytes.length, clazz);
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf buf, Class<T> clazz) {
+        int length = buf.readableBytes();
+        T result;
+        if (buf.hasArray())
+            // 堆内存直接解析底层数组，不拷贝
+            result = deserialize(buf.array(), buf.arrayOffset() + buf.readerIndex(), length, clazz);
+        else
+            result = deserialize(ByteBufUtil.getBytes(buf, buf.readerIndex(), length, false), 0, length, clazz);
+        buf.skipBytes(length);
+        return result;
+    }
+
+    private <T> T deserialize(byte[] bytes, int offset, int length, Class<T> clazz) {
+        try {
+            JSONReader.Context context = JSONFactory.createReadContext(READER_FEATURES);
+            context.config(AUTO_TYPE_FILTER);
+            return JSONB.parseObject(bytes, offset, length, clazz, context);
+        } catch (Exception e) {
+            throw new RuntimeException("jsonb 反序列化时出现异常: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte code() {
+        return CODE;
+    }
+}
@@ -3,7 +3,11 @@ package me.yq.remoting.transport.serializer;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import lombok.SneakyThrows;
+import org.objenesis.strategy.StdInstantiatorStrategy;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -22,6 +26,8 @@ public class KryoSerializer implements Serializer{
         Kryo kryo = new Kryo();
         kryo.setReferences(true);// 支持循环引用（不过默认值也就是true）
         kryo.setRegistrationRequired(false);// 关闭注册行为
+        // Message、BaseResponse 等没有无参构造器，没有时跳过构造器直接创建对象
+        kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
         return kryo;
     });
 
@@ -36,6 +42,14 @@ public class KryoSerializer implements Serializer{
         return baos.toByteArray();
     }
 
+    @Override
+    public void serialize(Object object, ByteBuf out) {
+        Kryo kryo = localKryo.get();
+        Output output = new Output(new ByteBufOutputStream(out));
+        kryo.writeClassAndObject(output,object);
+        output.close();
+    }
+
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
         Kryo kryo = localKryo.get();
@@ -45,6 +59,13 @@ public class KryoSerializer implements Serializer{
         return (T) kryo.readClassAndObject(input);
     }
 
+    @Override
+    public <T> T deserialize(ByteBuf buf, Class<T> clazz) {
+        Kryo kryo = localKryo.get();
+        Input input = new Input(new ByteBufInputStream(buf));
+        return (T) kryo.readClassAndObject(input);
+    }
+
     @Override
     public byte code() {
         return CODE;
@@ -0,0 +1,202 @@
+package me.yq.remoting.transport.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import me.yq.biz.LogInRequest;
+import me.yq.biz.LogOutRequest;
+import me.yq.biz.Message;
+import me.yq.biz.Notice;
+import me.yq.biz.domain.Friend;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.common.ResponseStatus;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * 注册模式的 kryo 序列化器<br/>
+ * 和 {@link KryoSerializer} 相比：<br/>
+ * 1.核心的传输对象都按固定的 id 注册，序列化时只写一个 varint 的 id，不再写完整类名（其他类型仍然写类名，不强制注册）<br/>
+ * 2.线程内复用 Output / Input，序列化直接写入 ByteBuf，反序列化直接读 ByteBuf 的底层数组或 nio buffer，不再经过中间的字节流<br/>
+ * 注意：通信双方的注册表必须一致，已有的 id 不能修改，只能在末尾追加
+ *
+ * @author yq
+ * @version v1.0 2023-05-17 14:20
+ */
+public class RegisteredKryoSerializer implements Serializer {
+
+    public static final byte CODE = (byte) 4;
+
+    /**
+     * 注册 id 的起始值，小于它的 id 留给 kryo 内置的基本类型
+     */
+    private static final int FIRST_REGISTRATION_ID = 100;
+
+    private static final int OUTPUT_BUFFER_SIZE = 4 * 1024;
+
+    // 超过这个大小的缓冲区用完就丢弃，防止偶尔的大对象让线程一直持有大数组
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private static final ThreadLocal<KryoContext> LOCAL_CONTEXT = ThreadLocal.withInitial(KryoContext::new);
+
+    @Override
+    public byte[] serialize(Object object) {
+        KryoContext context = LOCAL_CONTEXT.get();
+        Output output = context.output;
+        output.setOutputStream(null);
+        try {
+            context.kryo.writeClassAndObject(output, object);
+            return output.toBytes();
+        } finally {
+            context.trimOutput();
+        }
+    }
+
+    @Override
+    public void serialize(Object object, ByteBuf out) {
+        KryoContext context = LOCAL_CONTEXT.get();
+        Output output = context.output;
+        context.sink.target = out;
+        // 缓冲区写满时会 flush 到 ByteBuf，不会扩容
+        output.setOutputStream(context.sink);
+        try {
+            context.kryo.writeClassAndObject(output, object);
+            output.flush();
+        } finally {
+            output.setOutputStream(null);
+            context.sink.target = null;
+            context.trimOutput();
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        KryoContext context = LOCAL_CONTEXT.get();
+        Input input = context.input;
+        input.setBuffer(bytes);
+        try {
+            return (T) context.kryo.readClassAndObject(input);
+        } finally {
+            input.setBuffer(EMPTY_BYTES);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf buf, Class<T> clazz) {
+        KryoContext context = LOCAL_CONTEXT.get();
+        int readerIndex = buf.readerIndex();
+        int length = buf.readableBytes();
+
+        // 堆内存直接读底层数组；由多段内存组成的 ByteBuf 只能先拷贝成一个数组
+        if (buf.hasArray() || buf.nioBufferCount() != 1) {
+            byte[] array;
+            int offset;
+            if (buf.hasArray()) {
+                array = buf.array();
+                offset = buf.arrayOffset() + readerIndex;
+            } else {
+                array = ByteBufUtil.getBytes(buf, readerIndex, length, false);
+                offset = 0;
+            }
+            Input input = context.input;
+            input.setBuffer(array, offset, length);
+            try {
+                T result = (T) context.kryo.readClassAndObject(input);
+                buf.readerIndex(readerIndex + input.position() - offset);
+                return result;
+            } finally {
+                input.setBuffer(EMPTY_BYTES);
+            }
+        }
+
+        // 直接内存：读 nio buffer 视图
+        ByteBufferInput input = context.byteBufferInput;
+        input.setBuffer(buf.nioBuffer(readerIndex, length));
+        try {
+            T result = (T) context.kryo.readClassAndObject(input);
+            buf.readerIndex(readerIndex + input.position());
+            return result;
+        } finally {
+            input.setBuffer(EMPTY_BYTES);
+        }
+    }
+
+    @Override
+    public byte code() {
+        return CODE;
+    }
+
+    /**
+     * 按固定顺序注册核心传输对象，id 从 {@link #FIRST_REGISTRATION_ID} 开始依次递增
+     */
+    static void registerClasses(Kryo kryo) {
+        int id = FIRST_REGISTRATION_ID;
+        kryo.register(BaseRequest.class, id++);
+        kryo.register(BaseResponse.class, id++);
+        kryo.register(ResponseStatus.class, id++);
+        kryo.register(Message.class, id++);
+        kryo.register(Notice.class, id++);
+        kryo.register(User.class, id++);
+        kryo.register(Friend.class, id++);
+        kryo.register(LogInRequest.class, id++);
+        kryo.register(LogOutRequest.class, id++);
+        kryo.register(ArrayList.class, id++);
+        kryo.register(LinkedList.class, id);
+    }
+
+    /**
+     * 每个线程独享的 kryo 及其输入输出对象
+     */
+    private static class KryoContext {
+        private final Kryo kryo = new Kryo();
+
+        private final Output output = new Output(OUTPUT_BUFFER_SIZE, -1);
+
+        private final Input input = new Input();
+
+        private final ByteBufferInput byteBufferInput = new ByteBufferInput();
+
+        private final ByteBufSink sink = new ByteBufSink();
+
+        KryoContext() {
+            // 异常对象的 cause 默认指向自身，需要开启引用跟踪
+            kryo.setReferences(true);
+            kryo.setRegistrationRequired(false);
+            // Message、BaseResponse 等没有无参构造器，优先用无参构造器，没有时跳过构造器直接创建对象
+            kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            registerClasses(kryo);
+        }
+
+        void trimOutput() {
+            if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE)
+                output.setBuffer(new byte[OUTPUT_BUFFER_SIZE], -1);
+        }
+    }
+
+    /**
+     * 把 kryo Output 的缓冲区写入 ByteBuf 的适配器，可以复用
+     */
+    private static class ByteBufSink extends OutputStream {
+        private ByteBuf target;
+
+        @Override
+        public void write(int b) {
+            target.writeByte(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            target.writeBytes(b, off, len);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package me.yq.remoting.transport.serializer;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
 /**
  * 序列化器接口
  * @author yq
@@ -9,8 +12,30 @@ public interface Serializer {
 
     byte[] serialize(Object object);
 
+    /**
+     * 流式序列化，直接将对象序列化进 out（通常是编码阶段拿到的池化直接内存），避免中间的 byte[]。<br/>
+     * 默认实现仍然会先序列化为 byte[] 再写入，支持流式写入的序列化器应该覆盖该方法
+     *
+     * @param object 待序列化对象
+     * @param out    序列化结果的写入位置，从 writerIndex 开始写
+     */
+    default void serialize(Object object, ByteBuf out) {
+        out.writeBytes(serialize(object));
+    }
+
     <T> T deserialize(byte[] bytes,Class<T> clazz);
 
+    /**
+     * 直接从 ByteBuf 中反序列化，主要用于零拷贝解码的场景。该方法会消费掉 buf 中的可读字节，但不会释放 buf。<br/>
+     * 默认实现仍然会拷贝出 byte[]，支持流式读取的序列化器应该覆盖该方法
+     *
+     * @param buf   待反序列化的字节
+     * @param clazz 目标类型
+     */
+    default <T> T deserialize(ByteBuf buf, Class<T> clazz) {
+        return deserialize(ByteBufUtil.getBytes(buf), clazz);
+    }
+
     /**
      * 获取序列化器的 code
      */
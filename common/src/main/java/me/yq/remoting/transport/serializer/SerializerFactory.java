@@ -1,33 +1,48 @@
 package me.yq.remoting.transport.serializer;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import me.yq.remoting.codec.protocol.PayloadCompressor;
+
+import java.util.Arrays;
 
 /**
- * 序列化器工厂，可以根据 序列化器代号(code) 获取序列化器
+ * 序列化器工厂，可以根据 序列化器代号(code) 获取序列化器<br/>
+ * 每次序列化、反序列化都要查找一次，所以用按无符号 code 下标索引的数组保存，查找只有一次数组读取，也没有装箱。
+ * 注册时复制一份新数组再替换（注册只发生在启动阶段，次数很少）
  *
  * @author yq
  * @version v1.0 2023-02-13 9:25 AM
  */
 public class SerializerFactory {
-    private static final Map<Byte, Serializer> SERIALIZER_MAP = new ConcurrentHashMap<>(10);
+    private static volatile Serializer[] serializerTable = new Serializer[256];
 
     static {
-        SERIALIZER_MAP.put(Hessian2Serializer.CODE,new Hessian2Serializer());
-        SERIALIZER_MAP.put(JsonSerializer.CODE,new JsonSerializer());
-        SERIALIZER_MAP.put(KryoSerializer.CODE,new KryoSerializer());
+        registerSerializer(Hessian2Serializer.CODE,new Hessian2Serializer());
+        registerSerializer(JsonSerializer.CODE,new JsonSerializer());
+        registerSerializer(KryoSerializer.CODE,new KryoSerializer());
+        registerSerializer(RegisteredKryoSerializer.CODE,new RegisteredKryoSerializer());
+        registerSerializer(CompactSerializer.CODE,new CompactSerializer());
+        registerSerializer(JsonbSerializer.CODE,new JsonbSerializer());
     }
 
-    public static void registerSerializer(byte code, Serializer serializer) {
-        if (SERIALIZER_MAP.containsKey(code))
+    public static synchronized void registerSerializer(byte code, Serializer serializer) {
+        if ((code & PayloadCompressor.COMPRESSED_FLAG) != 0)
+            throw new RuntimeException("序列化器代号不能超过 127，最高位是协议中的压缩标记!");
+        if (serializerTable[code & 0xFF] != null)
             throw new RuntimeException("序列化器存在重复!");
-        SERIALIZER_MAP.put(code, serializer);
+        Serializer[] table = Arrays.copyOf(serializerTable, serializerTable.length);
+        table[code & 0xFF] = serializer;
+        serializerTable = table;
+    }
+
+    public static boolean hasSerializer(byte code) {
+        return serializerTable[code & 0xFF] != null;
     }
 
     public static Serializer getSerializer(byte code) {
-        if (!SERIALIZER_MAP.containsKey(code))
+        Serializer serializer = serializerTable[code & 0xFF];
+        if (serializer == null)
             throw new RuntimeException("序列化器不存在!");
-        return SERIALIZER_MAP.get(code);
+        return serializer;
     }
 
 }
@@ -0,0 +1,258 @@
+package me.yq.remoting.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 key 分段串行执行的线程池。<br/>
+ * 1.固定数量的工作线程，每个线程独占一个有界队列（一个分段），不会像 SynchronousQueue 线程池那样在突发流量下疯狂创建线程<br/>
+ * 2.同一个 key 的任务总是落在同一个分段，按提交顺序串行执行；不同的 key 则分散到各个分段上并行执行<br/>
+ * 3.分段队列满了之后，按照 {@link RejectPolicy} 处理<br/>
+ * 不带 key 提交的任务（{@link #execute(Runnable)}）会被轮流分配到各个分段上，不保证顺序
+ *
+ * @author yq
+ * @version v1.0 2023-05-12 14:08
+ */
+@Slf4j
+public final class StripedExecutor extends AbstractExecutorService {
+
+    /**
+     * 分段队列满了之后的拒绝策略
+     */
+    public enum RejectPolicy {
+        /**
+         * 抛出 {@link RejectedExecutionException}
+         */
+        ABORT,
+        /**
+         * 由提交任务的线程直接执行。注意：这会打破同一个 key 的执行顺序，并且可能会阻塞 IO 线程
+         */
+        CALLER_RUNS,
+        /**
+         * 直接丢弃，{@link #execute(Object, Runnable)} 返回 false，由调用方做善后处理
+         */
+        DISCARD
+    }
+
+    private final Stripe[] stripes;
+
+    private final RejectPolicy rejectPolicy;
+
+    private final AtomicInteger roundRobin = new AtomicInteger(0);
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+
+    private final CountDownLatch terminated;
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param stripeNum     分段数，即工作线程数
+     * @param queueCapacity 每个分段的队列容量
+     * @param rejectPolicy  队列满了之后的拒绝策略
+     * @param threadFactory 工作线程工厂
+     */
+    public StripedExecutor(int stripeNum, int queueCapacity, RejectPolicy rejectPolicy, ThreadFactory threadFactory) {
+        if (stripeNum <= 0 || queueCapacity <= 0)
+            throw new IllegalArgumentException("非法的参数, stripeNum: " + stripeNum + ", queueCapacity: " + queueCapacity);
+
+        this.rejectPolicy = Objects.requireNonNull(rejectPolicy);
+        this.stripes = new Stripe[stripeNum];
+        this.terminated = new CountDownLatch(stripeNum);
+        for (int i = 0; i < stripeNum; i++) {
+            stripes[i] = new Stripe(queueCapacity);
+            Thread worker = threadFactory.newThread(stripes[i]);
+            worker.start();
+            stripes[i].worker = worker;
+        }
+    }
+
+    /**
+     * 按 key 提交任务，同一个 key 的任务会按提交顺序串行执行
+     *
+     * @param key  分段依据，比如 channel、用户 id
+     * @param task 任务
+     * @return 任务是否被接收（被执行或者已入队），只有 {@link RejectPolicy#DISCARD} 策略下才会返回 false
+     * @throws RejectedExecutionException 线程池已关闭，或者 {@link RejectPolicy#ABORT} 策略下队列已满
+     */
+    public boolean execute(Object key, Runnable task) {
+        return dispatch(stripeFor(key), task);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        int index = (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % stripes.length;
+        dispatch(stripes[index], task);
+    }
+
+    private Stripe stripeFor(Object key) {
+        int h = key.hashCode();
+        // 打散 hashCode 的高位，避免 key 的 hashCode 只有高位不同时都落到同一个分段
+        h ^= (h >>> 16);
+        return stripes[(h & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    private boolean dispatch(Stripe stripe, Runnable task) {
+        Objects.requireNonNull(task);
+        if (shutdown)
+            throw new RejectedExecutionException("线程池已经关闭！");
+
+        if (stripe.queue.offer(task)) {
+            // 入队前检查之后可能并发地关闭了线程池，工作线程也可能已经退出，任务留在队列中就再也不会执行了。
+            // 移除成功说明任务还没有被取走，按关闭拒绝；移除失败说明工作线程已经取走了它，一定会执行
+            if (shutdown && stripe.queue.remove(task))
+                throw new RejectedExecutionException("线程池已经关闭！");
+            return true;
+        }
+
+        rejectedCount.incrementAndGet();
+        switch (rejectPolicy) {
+            case CALLER_RUNS:
+                task.run();
+                return true;
+            case DISCARD:
+                return false;
+            default:
+                throw new RejectedExecutionException("任务队列已满！当前排队任务数: " + stripe.queue.size());
+        }
+    }
+
+    //================== 监控指标 ==================
+
+    public int getStripeNum() {
+        return stripes.length;
+    }
+
+    /**
+     * @return 所有分段中排队等待执行的任务总数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Stripe stripe : stripes) {
+            depth += stripe.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return 排队最多的分段的排队任务数，可以用来发现热点 key
+     */
+    public int getMaxStripeQueueDepth() {
+        int max = 0;
+        for (Stripe stripe : stripes) {
+            max = Math.max(max, stripe.queue.size());
+        }
+        return max;
+    }
+
+    /**
+     * @return 因为队列已满而触发拒绝策略的次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getCompletedCount() {
+        long completed = 0;
+        for (Stripe stripe : stripes) {
+            completed += stripe.completed.get();
+        }
+        return completed;
+    }
+
+    //================== 生命周期 ==================
+
+    /**
+     * 不再接收新任务，已经入队的任务会继续执行完
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> remaining = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.queue.drainTo(remaining);
+            stripe.worker.interrupt();
+        }
+        return remaining;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+
+    /**
+     * 一个分段：一个工作线程 + 一个有界队列
+     */
+    private final class Stripe implements Runnable {
+
+        /**
+         * 关闭后，工作线程最多在这个时间之后发现并退出
+         */
+        private static final long POLL_MILLIS = 100;
+
+        private final BlockingQueue<Runnable> queue;
+
+        private final AtomicLong completed = new AtomicLong(0);
+
+        private Thread worker;
+
+        Stripe(int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Runnable task = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (task == null) {
+                        // 关闭后还要确认队列已经空了才退出，和 dispatch 中入队后的再次检查配合，保证被接收的任务都会执行
+                        if (shutdown && queue.isEmpty())
+                            break;
+                        continue;
+                    }
+
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        log.error("任务执行出现异常！", t);
+                    }
+                    completed.incrementAndGet();
+                }
+            } catch (InterruptedException ignored) {
+                // shutdownNow
+            } finally {
+                terminated.countDown();
+            }
+        }
+    }
+}
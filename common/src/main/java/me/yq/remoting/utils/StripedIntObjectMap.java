@@ -0,0 +1,129 @@
+package me.yq.remoting.utils;
+
+import io.netty.util.collection.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 以 int 为 key 的分段并发 map。<br/>
+ * 每个分段是一个 netty 的 {@link IntObjectHashMap}（开放寻址、key 为原生 int），由分段自身的锁保护：
+ * 1.key 不需要装箱，put / get / remove 不会为每个 entry 分配 Node 对象，只有扩容时才会分配数组
+ * 2.按 key 的低位选择分段，自增的消息 id 会被均匀地打散到各个分段上，降低锁竞争
+ * 3.putIfAbsent / remove 在分段锁内完成，是原子的
+ *
+ * @author yq
+ * @version v1.0 2023-05-08 20:16
+ */
+public final class StripedIntObjectMap<V> {
+
+    private final IntObjectHashMap<V>[] segments;
+
+    private final int mask;
+
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    /**
+     * @param stripes                   分段数，会向上取整到 2 的幂
+     * @param initialCapacityPerStripe 每个分段的初始容量
+     */
+    @SuppressWarnings("unchecked")
+    public StripedIntObjectMap(int stripes, int initialCapacityPerStripe) {
+        if (stripes <= 0 || initialCapacityPerStripe <= 0)
+            throw new IllegalArgumentException("非法的参数, stripes: " + stripes + ", initialCapacity: " + initialCapacityPerStripe);
+
+        int n = 1;
+        while (n < stripes)
+            n <<= 1;
+
+        this.segments = new IntObjectHashMap[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new IntObjectHashMap<>(initialCapacityPerStripe);
+        }
+        this.mask = n - 1;
+    }
+
+    private IntObjectHashMap<V> segmentFor(int key) {
+        return segments[key & mask];
+    }
+
+    public V get(int key) {
+        IntObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    /**
+     * 仅当 key 不存在时放入
+     *
+     * @return 已存在的 value；如果放入成功，则返回 null
+     */
+    public V putIfAbsent(int key, V value) {
+        IntObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            V existed = segment.get(key);
+            if (existed != null)
+                return existed;
+            segment.put(key, value);
+        }
+        size.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 移除 key
+     *
+     * @return 被移除的 value，不存在则返回 null
+     */
+    public V remove(int key) {
+        V removed;
+        IntObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            removed = segment.remove(key);
+        }
+        if (removed != null)
+            size.decrementAndGet();
+        return removed;
+    }
+
+    /**
+     * 仅当 key 当前对应的是 value 时才移除
+     *
+     * @return 是否移除成功
+     */
+    public boolean remove(int key, V value) {
+        IntObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.get(key) != value)
+                return false;
+            segment.remove(key);
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * 清空所有分段，并返回被清除的 value
+     */
+    public List<V> clear() {
+        List<V> removed = new ArrayList<>();
+        for (IntObjectHashMap<V> segment : segments) {
+            synchronized (segment) {
+                removed.addAll(segment.values());
+                segment.clear();
+            }
+        }
+        size.addAndGet(-removed.size());
+        return removed;
+    }
+}
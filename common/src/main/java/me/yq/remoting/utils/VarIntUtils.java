@@ -0,0 +1,131 @@
+package me.yq.remoting.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 变长整数（varint）的读写工具，每个字节低 7 位存数据，最高位表示后面是否还有字节，小的数字只占 1 个字节。<br/>
+ * 有符号数先做 zigzag 编码（0,-1,1,-2... 映射为 0,1,2,3...），避免负数总是占满字节
+ *
+ * @author yq
+ * @version v1.0 2023-05-18 10:05
+ */
+public class VarIntUtils {
+
+    public static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * 在 index 处写入 varint，不改变 writerIndex，调用方需要保证空间足够
+     *
+     * @return 写入的字节数
+     */
+    public static int setVarInt(ByteBuf out, int index, int value) {
+        int start = index;
+        while ((value & ~0x7F) != 0) {
+            out.setByte(index++, (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.setByte(index++, value);
+        return index - start;
+    }
+
+    /**
+     * 查看 index 处的 varint 是否已经完整，不改变 readerIndex，解码时用来判断半包
+     *
+     * @return varint 占用的字节数；可读字节不够时返回 -1
+     */
+    public static int readableVarIntSize(ByteBuf in, int index) {
+        int end = in.writerIndex();
+        for (int size = 1; size <= 5; size++, index++) {
+            if (index >= end)
+                return -1;
+            if (in.getByte(index) >= 0)
+                return size;
+        }
+        throw new CorruptedFrameException("varint 超过 5 个字节");
+    }
+
+    public static int readVarInt(ByteBuf in) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return result;
+        }
+        throw new CorruptedFrameException("varint 超过 5 个字节");
+    }
+
+    public static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(ByteBuf in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return result;
+        }
+        throw new CorruptedFrameException("varlong 超过 10 个字节");
+    }
+
+    public static void writeSignedVarLong(ByteBuf out, long value) {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readSignedVarLong(ByteBuf in) {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * @return value 按 varint 编码后占用的字节数
+     */
+    public static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * 写入字符串：varint 长度前缀 + UTF-8 字节。长度前缀为 0 表示 null，否则为 UTF-8 字节数 + 1
+     */
+    public static void writeString(ByteBuf out, String value) {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        int length = ByteBufUtil.utf8Bytes(value);
+        writeVarInt(out, length + 1);
+        ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+    }
+
+    public static String readString(ByteBuf in) {
+        int length = readVarInt(in) - 1;
+        if (length < 0)
+            return null;
+        if (length > in.readableBytes())
+            throw new CorruptedFrameException("字符串长度超出可读字节数: " + length);
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+}
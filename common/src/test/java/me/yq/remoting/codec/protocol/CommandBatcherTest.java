@@ -0,0 +1,108 @@
+package me.yq.remoting.codec.protocol;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.remoting.command.BatchCommand;
+import me.yq.remoting.command.DefaultRequestCommand;
+import me.yq.remoting.command.HeartbeatCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.ClosedChannelException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CommandBatcher 测试类，主要覆盖的功能点：
+ * 1. flush 之后推迟到下一个任务下发，期间写出的通信对象聚合成一个批量帧，写出结果通知到每个通信对象
+ * 2. 只攒到一个通信对象时按普通帧写出
+ * 3. 攒满 maxBatchSize 个时提前下发
+ * 4. 不认识的消息排在已经攒下的通信对象之后放行
+ * 5. channel 关闭前下发攒下的通信对象
+ *
+ * @author yq
+ * @version v1.0 2023-05-26 17:40
+ */
+class CommandBatcherTest {
+
+    private EmbeddedChannel channel;
+
+    @AfterEach
+    void tearDown() {
+        if (channel != null)
+            channel.finishAndReleaseAll();
+    }
+
+    @Test
+    @DisplayName("测试 flush 之后聚合成批量帧")
+    void test_aggregate_on_flush() {
+        channel = new EmbeddedChannel(new CommandBatcher(0, 64));
+
+        ChannelFuture first = channel.writeAndFlush(new DefaultRequestCommand());
+        ChannelFuture second = channel.writeAndFlush(new HeartbeatCommand());
+        assertNull(channel.readOutbound(), "flush 应该被推迟");
+        assertFalse(first.isDone());
+
+        channel.runPendingTasks();
+        BatchCommand batch = channel.readOutbound();
+        assertEquals(2, batch.getCommands().size());
+        assertEquals(2, batch.getMessageId(), "message-id 应该是帧的个数");
+        assertInstanceOf(HeartbeatCommand.class, batch.getCommands().get(1));
+        assertTrue(first.isSuccess() && second.isSuccess(), "批量帧的写出结果应该通知到每个通信对象");
+    }
+
+    @Test
+    @DisplayName("测试只有一个通信对象时按普通帧写出")
+    void test_single_command() {
+        channel = new EmbeddedChannel(new CommandBatcher(0, 64));
+
+        DefaultRequestCommand command = new DefaultRequestCommand();
+        channel.writeAndFlush(command);
+        channel.runPendingTasks();
+
+        assertSame(command, channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    @DisplayName("测试攒满之后提前下发")
+    void test_max_batch_size() {
+        channel = new EmbeddedChannel(new CommandBatcher(1000_000, 2));
+
+        channel.writeAndFlush(new DefaultRequestCommand());
+        channel.writeAndFlush(new DefaultRequestCommand());
+        BatchCommand batch = channel.readOutbound();
+        assertNotNull(batch, "攒满之后不应该等待聚合窗口结束");
+        assertEquals(2, batch.getCommands().size());
+
+        channel.writeAndFlush(new DefaultRequestCommand());
+        assertNull(channel.readOutbound(), "没有攒满时应该等待聚合窗口结束");
+    }
+
+    @Test
+    @DisplayName("测试不认识的消息按顺序放行")
+    void test_pass_through_other_msg() {
+        channel = new EmbeddedChannel(new CommandBatcher(0, 64));
+
+        DefaultRequestCommand command = new DefaultRequestCommand();
+        channel.write(command);
+        channel.writeAndFlush("raw");
+
+        assertSame(command, channel.readOutbound(), "攒下的通信对象应该先写出");
+        assertEquals("raw", channel.readOutbound());
+    }
+
+    @Test
+    @DisplayName("测试关闭前下发攒下的通信对象")
+    void test_flush_before_close() {
+        channel = new EmbeddedChannel(new CommandBatcher(1000_000, 64));
+
+        DefaultRequestCommand command = new DefaultRequestCommand();
+        ChannelFuture future = channel.writeAndFlush(command);
+        channel.close();
+
+        assertTrue(future.isDone(), "关闭前应该下发攒下的通信对象");
+        assertFalse(future.cause() instanceof ClosedChannelException, "通信对象应该在关闭之前写出");
+    }
+}
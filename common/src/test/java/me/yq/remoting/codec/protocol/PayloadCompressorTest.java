@@ -0,0 +1,181 @@
+package me.yq.remoting.codec.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocal;
+import me.yq.common.exception.SystemException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PayloadCompressor 测试类，主要覆盖的功能点：
+ * 1. 原地压缩并解压，内容一致，readerIndex 恰好前进压缩后的长度
+ * 2. 压缩后没有变小时保持原样
+ * 3. 使用字典时短消息压缩得更小，字典不一致时解压失败
+ * 4. 训练字典：去重拼接，超出大小时保留最后的部分
+ * 5. 声明的原始长度超过上限或者超出 Deflate 的最大压缩比时，分配内存之前直接拒绝
+ * 6. 线程私有的 Deflater/Inflater 被所有实例共用，级别不同的实例交替使用、线程本地变量被清理（IO 线程退出）之后都能正常工作
+ *
+ * @author yq
+ * @version v1.0 2023-05-24 15:30
+ */
+public class PayloadCompressorTest {
+
+    private static final String NOTICE_TEMPLATE = "[系统通知] 用户 %d 修改了个人资料：地址=杭州，签名=好好学习天天向上，好友数=%d";
+
+    @Test
+    @DisplayName("测试压缩和解压")
+    void compressAndDecompress() {
+        PayloadCompressor compressor = new PayloadCompressor();
+        byte[] raw = repeat(NOTICE_TEMPLATE, 20);
+
+        for (ByteBuf buf : new ByteBuf[]{Unpooled.buffer(), Unpooled.directBuffer()}) {
+            buf.writeInt(0xCAFE); // 消息体前面的其他内容
+            buf.writeBytes(raw);
+            int compressedLen = compressor.compress(buf, 4, raw.length, false);
+            assertTrue(compressedLen > 0 && compressedLen < raw.length / 2, "重复的内容应该能压缩");
+            assertEquals(4 + compressedLen, buf.writerIndex(), "writerIndex 应该在压缩数据的末尾");
+            buf.writeByte(0x7F); // 消息体后面的其他内容
+
+            assertEquals(0xCAFE, buf.readInt());
+            assertArrayEquals(raw, compressor.decompress(buf, compressedLen));
+            assertEquals(0x7F, buf.readByte(), "解压应该恰好消费压缩内容");
+            buf.release();
+        }
+    }
+
+    @Test
+    @DisplayName("测试不值得压缩时保持原样")
+    void incompressible() {
+        PayloadCompressor compressor = new PayloadCompressor();
+        byte[] raw = new byte[300];
+        new Random(7).nextBytes(raw);
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes(raw);
+
+        assertEquals(-1, compressor.compress(buf, 0, raw.length, false));
+        assertEquals(raw.length, buf.writerIndex());
+        assertArrayEquals(raw, Arrays.copyOf(buf.array(), raw.length), "没有压缩时内容不应该被改动");
+        buf.release();
+    }
+
+    @Test
+    @DisplayName("测试使用字典压缩")
+    void compressWithDictionary() {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            samples.add(String.format(NOTICE_TEMPLATE, 1000 + i, i).getBytes(StandardCharsets.UTF_8));
+        byte[] dictionary = PayloadCompressor.trainDictionary(samples, 4096);
+        PayloadCompressor withDictionary = new PayloadCompressor(0, Deflater.DEFAULT_COMPRESSION, dictionary);
+        assertTrue(withDictionary.sharesDictionaryWith(withDictionary.getDictionaryId()));
+        assertFalse(withDictionary.sharesDictionaryWith(PayloadCompressor.NO_DICTIONARY));
+
+        byte[] raw = String.format(NOTICE_TEMPLATE, 157146, 3).getBytes(StandardCharsets.UTF_8);
+        ByteBuf plain = Unpooled.buffer().writeBytes(raw);
+        ByteBuf dict = Unpooled.buffer().writeBytes(raw);
+        int plainLen = withDictionary.compress(plain, 0, raw.length, false);
+        int dictLen = withDictionary.compress(dict, 0, raw.length, true);
+        assertTrue(dictLen > 0, "使用字典时短消息也应该能压缩");
+        assertTrue(plainLen == -1 || dictLen < plainLen, "使用字典应该压缩得更小");
+
+        // 字典不一致（包括没有字典）时无法解压
+        ByteBuf copy = dict.copy();
+        PayloadCompressor otherDictionary = new PayloadCompressor(0, Deflater.DEFAULT_COMPRESSION, "other".getBytes(StandardCharsets.UTF_8));
+        assertThrows(SystemException.class, () -> otherDictionary.decompress(copy, dictLen));
+        ByteBuf copy2 = dict.copy();
+        assertThrows(SystemException.class, () -> new PayloadCompressor().decompress(copy2, dictLen));
+
+        assertArrayEquals(raw, withDictionary.decompress(dict, dictLen));
+        plain.release();
+        dict.release();
+        copy.release();
+        copy2.release();
+    }
+
+    @Test
+    @DisplayName("测试声明的原始长度过大时拒绝解压")
+    void rejectOversizedRawLength() {
+        byte[] raw = repeat(NOTICE_TEMPLATE, 20);
+        PayloadCompressor compressor = new PayloadCompressor(0, Deflater.DEFAULT_COMPRESSION, null, raw.length - 1);
+        ByteBuf buf = Unpooled.buffer().writeBytes(raw);
+        int compressedLen = compressor.compress(buf, 0, raw.length, false);
+        assertTrue(compressedLen > 0);
+        assertThrows(SystemException.class, () -> compressor.decompress(buf.duplicate(), compressedLen),
+                "真实的原始长度超过上限时也应该拒绝");
+        buf.release();
+
+        // 几个字节的压缩数据声明了 2G 的原始长度，超出 Deflate 的最大压缩比
+        ByteBuf forged = Unpooled.buffer().writeInt(Integer.MAX_VALUE).writeBytes(new byte[8]);
+        SystemException e = assertThrows(SystemException.class,
+                () -> new PayloadCompressor(0, Deflater.DEFAULT_COMPRESSION, null, Integer.MAX_VALUE).decompress(forged, 12));
+        assertTrue(e.getMessage().contains("最大长度"), "应该在分配内存之前按压缩比拒绝: " + e.getMessage());
+        forged.release();
+
+        ByteBuf overLimit = Unpooled.buffer().writeInt(PayloadCompressor.DEFAULT_MAX_RAW_LENGTH + 1).writeBytes(new byte[32 * 1024]);
+        e = assertThrows(SystemException.class, () -> new PayloadCompressor().decompress(overLimit, 4 + 32 * 1024));
+        assertTrue(e.getMessage().contains("超过上限"), "应该在分配内存之前按上限拒绝: " + e.getMessage());
+        overLimit.release();
+        assertThrows(IllegalArgumentException.class, () -> new PayloadCompressor(0, Deflater.DEFAULT_COMPRESSION, null, 0));
+    }
+
+    @Test
+    @DisplayName("测试共用的线程私有工作区")
+    void sharedWorkspace() throws InterruptedException {
+        byte[] raw = repeat(NOTICE_TEMPLATE, 20);
+        PayloadCompressor fast = new PayloadCompressor(0, Deflater.BEST_SPEED, null);
+        PayloadCompressor best = new PayloadCompressor(0, Deflater.BEST_COMPRESSION, null);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // IO 线程和它一样是 FastThreadLocalThread，退出时会清理线程本地变量
+        Thread thread = new DefaultThreadFactory("compressor-test").newThread(() -> {
+            try {
+                for (int i = 0; i < 3; i++) {
+                    for (PayloadCompressor compressor : new PayloadCompressor[]{fast, best}) {
+                        ByteBuf buf = Unpooled.buffer().writeBytes(raw);
+                        int compressedLen = compressor.compress(buf, 0, raw.length, false);
+                        assertArrayEquals(raw, compressor.decompress(buf, compressedLen));
+                        buf.release();
+                    }
+                    // end() 掉之后重新创建
+                    FastThreadLocal.removeAll();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNull(failure.get(), () -> "交替使用不同级别的压缩器不应该失败: " + failure.get());
+    }
+
+    @Test
+    @DisplayName("测试训练字典")
+    void trainDictionary() {
+        byte[] a = "aaaa".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "bbbb".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals("aaaabbbb".getBytes(StandardCharsets.UTF_8), PayloadCompressor.trainDictionary(Arrays.asList(a, b, a.clone()), 100),
+                "重复的样本只保留一份，按样本顺序拼接");
+        assertArrayEquals("abbbb".getBytes(StandardCharsets.UTF_8), PayloadCompressor.trainDictionary(Arrays.asList(a, b), 5),
+                "超出大小时保留最后的部分");
+        assertThrows(IllegalArgumentException.class, () -> PayloadCompressor.trainDictionary(Arrays.asList(a, b), 0));
+        assertThrows(IllegalArgumentException.class, () -> PayloadCompressor.trainDictionary(new ArrayList<>(), 100));
+    }
+
+    private static byte[] repeat(String template, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++)
+            sb.append(String.format(template, i, i));
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
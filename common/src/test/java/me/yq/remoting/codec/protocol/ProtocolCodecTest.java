@@ -3,13 +3,20 @@ package me.yq.remoting.codec.protocol;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.buffer.Unpooled;
+import me.yq.common.BaseRequest;
+import me.yq.remoting.command.CommandCode;
 import me.yq.remoting.command.DefaultRequestCommand;
+import me.yq.remoting.command.HeartbeatCommand;
+import me.yq.remoting.support.ChannelAttributes;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -21,6 +28,13 @@ import static org.junit.jupiter.api.Assertions.*;
  * 4.发生了半包，能够正确解码
  * 5.发生了粘包，能够正确解码
  * 6.发生了粘包和半包混合的情况，能够正确解码
+ * 7.零拷贝解码：通信对象持有入站 ByteBuf 的切片，反序列化之后释放
+ * 8.流式编码：未提前序列化的通信对象在编码时直接序列化进 ByteBuf，并正确回填长度字段
+ * 9.压缩：对端声明能解压时，超过阈值的消息体被压缩，解码后和原文一致；没有声明或者消息体太小时不压缩；
+ * 要求对端声明压缩能力时，没有声明的对端发来的压缩帧被拒绝
+ * 10.批量帧：多个通信对象聚合成一帧写出，解码时按原顺序拆回独立的通信对象，半包时等待数据收齐；批量帧中嵌套的批量帧被拒绝
+ * 11.v2 帧格式：varint 长度、没有 total-content-size，心跳帧只有 7 个字节；v1、v2 的帧混在同一个字节流中（逐字节到达）也能正确解码；
+ * v2 的批量帧（帧需要整体前移）和压缩正常
  */
 class ProtocolCodecTest {
 
@@ -211,4 +225,292 @@ class ProtocolCodecTest {
         }
 
     }
+
+
+    @Test
+    @DisplayName("测试零拷贝解码")
+    void test_retained_slice_decode() {
+        DefaultRequestCommand requestCommand = new DefaultRequestCommand();
+        requestCommand.setAppRequest(new BaseRequest((byte) 1, testContent));
+        requestCommand.serialize();
+
+        YQCommandCodec codec = new YQCommandCodec(true);
+        ByteBuf inbound = Unpooled.directBuffer();
+        codec.encode(requestCommand, inbound);
+
+        List<Object> out = new ArrayList<>();
+        codec.decode(null, inbound, out);
+        assertEquals(1, out.size(), "应该解码出一个通信对象");
+
+        DefaultRequestCommand received = (DefaultRequestCommand) out.get(0);
+        assertNotNull(received.getContentBuf(), "零拷贝解码时消息体应该是 ByteBuf 切片");
+        assertEquals(requestCommand.getMsgBytesLen(), received.getMsgBytesLen());
+        assertEquals(3, inbound.refCnt(), "消息头和消息体的切片都应该持有入站 ByteBuf 的引用");
+
+        received.deserialize();
+        assertNull(received.getContentBuf(), "反序列化之后切片应该被释放");
+        assertEquals(1, inbound.refCnt(), "反序列化之后应该归还入站 ByteBuf 的引用");
+        assertEquals(testContent, received.getAppRequest().getAppRequest(), "解码后的内容应该和编码前的内容一致");
+
+        inbound.release();
+    }
+
+    @Test
+    @DisplayName("测试从消息头中解析路由信息")
+    void test_routing_header() {
+        DefaultRequestCommand requestCommand = new DefaultRequestCommand();
+        requestCommand.setAppRequest(new BaseRequest((byte) 3, testContent, 157146L));
+
+        for (boolean retainedSliceDecode : new boolean[]{true, false}) {
+            YQCommandCodec codec = new YQCommandCodec(retainedSliceDecode);
+            ByteBuf inbound = Unpooled.directBuffer();
+            codec.encode(requestCommand, inbound);
+
+            List<Object> out = new ArrayList<>();
+            codec.decode(null, inbound, out);
+            DefaultRequestCommand received = (DefaultRequestCommand) out.get(0);
+
+            assertTrue(received.decodeRoutingHeader(), "消息头中应该携带路由信息");
+            assertEquals(3, received.getBizCode(), "消息头中的业务码不正确");
+            assertEquals(157146L, received.getRoutingId(), "消息头中的路由 id 不正确");
+            assertNull(received.getAppRequest(), "解析消息头不应该反序列化消息体");
+
+            received.deserialize();
+            assertEquals(157146L, received.getAppRequest().getRoutingId());
+            assertEquals(testContent, received.getAppRequest().getAppRequest());
+            inbound.release();
+        }
+    }
+
+    @Test
+    @DisplayName("测试编码时流式序列化")
+    void test_stream_serialize_encode() {
+        DefaultRequestCommand requestCommand = new DefaultRequestCommand();
+        requestCommand.setAppRequest(new BaseRequest((byte) 1, testContent));
+
+        // 不提前序列化，直接编码
+        clientChannel.writeOutbound(requestCommand);
+        assertDoesNotThrow(clientChannel::checkException,"编码后不应该有异常");
+        assertNull(requestCommand.getContentBytes(), "流式编码不应该产生中间的 byte[]");
+        Object sendByClient = clientChannel.outboundMessages().poll();
+
+        serverChannel.writeInbound(sendByClient);
+        assertDoesNotThrow(serverChannel::checkException,"解码后不应该有异常");
+        DefaultRequestCommand received = (DefaultRequestCommand) serverChannel.inboundMessages().poll();
+        assertNotNull(received, "解码后不应该为空");
+
+        received.deserialize();
+        assertEquals(testContent, received.getAppRequest().getAppRequest(), "解码后的内容应该和编码前的内容一致");
+    }
+
+    @Test
+    @DisplayName("测试消息体压缩")
+    void test_compression() {
+        StringBuilder longContent = new StringBuilder();
+        for (int i = 0; i < 50; i++)
+            longContent.append(testContent);
+
+        // 对端没有声明能解压，不压缩
+        ByteBuf plain = encodeThroughClient(longContent.toString());
+        assertEquals(0, plain.getByte(3) & PayloadCompressor.COMPRESSED_FLAG, "对端没有声明能解压时不应该压缩");
+
+        clientChannel.attr(ChannelAttributes.CHANNEL_COMPRESSION).set(PayloadCompressor.NO_DICTIONARY);
+        ByteBuf compressed = encodeThroughClient(longContent.toString());
+        assertNotEquals(0, compressed.getByte(3) & PayloadCompressor.COMPRESSED_FLAG, "超过阈值的消息体应该被压缩");
+        assertTrue(compressed.readableBytes() < plain.readableBytes() / 4, "重复的内容压缩后应该明显变小");
+
+        // 太小的消息体不压缩
+        ByteBuf tiny = encodeThroughClient("hi");
+        assertEquals(0, tiny.getByte(3) & PayloadCompressor.COMPRESSED_FLAG, "低于阈值的消息体不应该压缩");
+
+        ByteBuf[] frames = {plain, compressed, tiny};
+        String[] expected = {longContent.toString(), longContent.toString(), "hi"};
+        for (int i = 0; i < frames.length; i++) {
+            serverChannel.writeInbound(frames[i]);
+            assertDoesNotThrow(serverChannel::checkException, "解码后不应该有异常");
+            DefaultRequestCommand received = serverChannel.readInbound();
+            assertEquals(1, received.getSerialization(), "解码后的序列化方式不应该带压缩标记");
+            received.deserialize();
+            assertEquals(expected[i], received.getAppRequest().getAppRequest(), "解码后的内容应该和编码前的内容一致");
+        }
+    }
+
+    @Test
+    @DisplayName("测试拒绝没有声明压缩能力的对端发来的压缩帧")
+    void test_reject_undeclared_compression() {
+        StringBuilder longContent = new StringBuilder();
+        for (int i = 0; i < 50; i++)
+            longContent.append(testContent);
+        clientChannel.attr(ChannelAttributes.CHANNEL_COMPRESSION).set(PayloadCompressor.NO_DICTIONARY);
+        ByteBuf compressed = encodeThroughClient(longContent.toString());
+        assertNotEquals(0, compressed.getByte(3) & PayloadCompressor.COMPRESSED_FLAG);
+
+        EmbeddedChannel strictChannel = new EmbeddedChannel(
+                new ProtocolCodec(new YQCommandCodec(false, new PayloadCompressor(), true)));
+        strictChannel.attr(ChannelAttributes.CHANNEL_COMPRESSION).set(PayloadCompressor.NO_DICTIONARY);
+        strictChannel.writeInbound(compressed.retainedDuplicate());
+        assertDoesNotThrow(strictChannel::checkException, "声明过压缩能力的对端发来的压缩帧应该正常解码");
+        DefaultRequestCommand received = strictChannel.readInbound();
+        received.deserialize();
+        assertEquals(longContent.toString(), received.getAppRequest().getAppRequest());
+
+        strictChannel.attr(ChannelAttributes.CHANNEL_COMPRESSION).set(null);
+        assertThrows(Exception.class, () -> strictChannel.writeInbound(compressed), "没有声明压缩能力的对端发来的压缩帧应该被拒绝");
+        assertNull(strictChannel.readInbound());
+        strictChannel.finishAndReleaseAll();
+    }
+
+    @Test
+    @DisplayName("测试批量帧")
+    void test_batch_frame() {
+        clientChannel.pipeline().addLast(new CommandBatcher(0, 64));
+        for (int i = 0; i < 3; i++) {
+            DefaultRequestCommand requestCommand = new DefaultRequestCommand();
+            requestCommand.setContentBytes((testContent + i).getBytes(StandardCharsets.UTF_8));
+            clientChannel.write(requestCommand);
+        }
+        clientChannel.flush();
+        clientChannel.runPendingTasks();
+        assertDoesNotThrow(clientChannel::checkException, "编码后不应该有异常");
+        ByteBuf batch = clientChannel.readOutbound();
+        assertNull(clientChannel.readOutbound(), "3 个通信对象应该聚合成一帧");
+        assertEquals(CommandCode.Batch.code(), batch.getByte(2));
+
+        // 先喂半帧，应该等待数据收齐
+        serverChannel.writeInbound(batch.readRetainedSlice(batch.readableBytes() / 2));
+        assertNull(serverChannel.readInbound(), "半包时不应该解码出通信对象");
+        serverChannel.writeInbound(batch);
+        assertDoesNotThrow(serverChannel::checkException, "解码后不应该有异常");
+        for (int i = 0; i < 3; i++) {
+            DefaultRequestCommand received = serverChannel.readInbound();
+            assertNotNull(received, "批量帧应该拆成 3 个通信对象");
+            assertEquals(testContent + i, new String(received.getContentBytes(), StandardCharsets.UTF_8), "拆出来的顺序应该和写出顺序一致");
+        }
+        assertNull(serverChannel.readInbound());
+    }
+
+    @Test
+    @DisplayName("测试拒绝嵌套的批量帧")
+    void test_reject_nested_batch_frame() {
+        // 10 万层嵌套，逐层递归解码的话必然栈溢出
+        int levels = 100_000;
+        int batchCtrlLen = 20;
+        ByteBuf innermost = encodeThroughClient(testContent);
+        ByteBuf nested = Unpooled.buffer(levels * batchCtrlLen + innermost.readableBytes());
+        for (int i = 0; i < levels; i++) {
+            int contentLen = (levels - 1 - i) * batchCtrlLen + innermost.readableBytes();
+            nested.writeByte(0b0101_0101);
+            nested.writeByte(YQCommandCodec.PROTOCOL_V1);
+            nested.writeByte(CommandCode.Batch.code());
+            nested.writeByte(0);
+            nested.writeInt(1); // 帧个数
+            nested.writeInt(contentLen); // total-content-size
+            nested.writeInt(0); // header-len
+            nested.writeInt(contentLen);
+        }
+        nested.writeBytes(innermost);
+        innermost.release();
+
+        Exception e = assertThrows(Exception.class, () -> serverChannel.writeInbound(nested), "嵌套的批量帧应该被拒绝");
+        assertTrue(e.getMessage().contains("不能是批量帧"), "应该在递归之前拒绝: " + e.getMessage());
+        assertNull(serverChannel.readInbound());
+    }
+
+    @Test
+    @DisplayName("测试 v2 帧格式")
+    void test_v2_frame() {
+        HeartbeatCommand heartbeat = new HeartbeatCommand(5);
+        heartbeat.setVersion(YQCommandCodec.PROTOCOL_V2);
+        clientChannel.writeOutbound(heartbeat);
+        ByteBuf heartbeatFrame = clientChannel.readOutbound();
+        assertEquals(7, heartbeatFrame.readableBytes(), "v2 的心跳帧应该只有 7 个字节");
+
+        ByteBuf v1Frame = encodeThroughClient(testContent);
+        ByteBuf v2Frame = encodeThroughClient(testContent, YQCommandCodec.PROTOCOL_V2);
+        assertTrue(v2Frame.readableBytes() <= v1Frame.readableBytes() - 8, "v2 的控制字段应该明显更短");
+        v1Frame.release();
+
+        serverChannel.writeInbound(heartbeatFrame, v2Frame);
+        assertDoesNotThrow(serverChannel::checkException, "解码后不应该有异常");
+        HeartbeatCommand receivedHeartbeat = serverChannel.readInbound();
+        assertEquals(5, receivedHeartbeat.getMessageId());
+        assertEquals(YQCommandCodec.PROTOCOL_V2, receivedHeartbeat.getVersion());
+        DefaultRequestCommand received = serverChannel.readInbound();
+        assertEquals(YQCommandCodec.PROTOCOL_V2, received.getVersion(), "解码后应该保留协议版本");
+        received.deserialize();
+        assertEquals(testContent, received.getAppRequest().getAppRequest(), "解码后的内容应该和编码前的内容一致");
+    }
+
+    @Test
+    @DisplayName("测试 v1、v2 的帧混在同一个字节流中逐字节到达")
+    void test_v1_v2_mixed_stream() {
+        ByteBuf stream = Unpooled.buffer();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            String content = testContent + i;
+            ByteBuf frame = encodeThroughClient(content, i % 2 == 0 ? YQCommandCodec.PROTOCOL_V1 : YQCommandCodec.PROTOCOL_V2);
+            stream.writeBytes(frame);
+            frame.release();
+            expected.add(content);
+        }
+
+        while (stream.isReadable())
+            serverChannel.writeInbound(stream.readRetainedSlice(1));
+        stream.release();
+        assertDoesNotThrow(serverChannel::checkException, "解码后不应该有异常");
+
+        for (int i = 0; i < expected.size(); i++) {
+            DefaultRequestCommand received = serverChannel.readInbound();
+            assertNotNull(received, "第 " + i + " 帧应该解码出来");
+            assertEquals(i % 2 == 0 ? YQCommandCodec.PROTOCOL_V1 : YQCommandCodec.PROTOCOL_V2, received.getVersion());
+            received.deserialize();
+            assertEquals(expected.get(i), received.getAppRequest().getAppRequest(), "解码后的内容和顺序应该和编码前一致");
+        }
+        assertNull(serverChannel.readInbound());
+    }
+
+    @Test
+    @DisplayName("测试 v2 批量帧和压缩")
+    void test_v2_batch_with_compression() {
+        StringBuilder longContent = new StringBuilder();
+        for (int i = 0; i < 50; i++)
+            longContent.append(testContent);
+        String[] contents = {"hi", longContent.toString(), "bye"};
+
+        clientChannel.attr(ChannelAttributes.CHANNEL_COMPRESSION).set(PayloadCompressor.NO_DICTIONARY);
+        clientChannel.pipeline().addLast(new CommandBatcher(0, 64));
+        for (String content : contents) {
+            DefaultRequestCommand requestCommand = new DefaultRequestCommand();
+            requestCommand.setVersion(YQCommandCodec.PROTOCOL_V2);
+            requestCommand.setAppRequest(new BaseRequest((byte) 1, content));
+            clientChannel.writeAndFlush(requestCommand);
+        }
+        clientChannel.runPendingTasks();
+        assertDoesNotThrow(clientChannel::checkException, "编码后不应该有异常");
+        ByteBuf batch = clientChannel.readOutbound();
+        assertEquals(CommandCode.Batch.code(), batch.getByte(batch.readerIndex() + 2));
+        assertTrue(batch.readableBytes() < longContent.length(), "批量帧中的长消息体应该被压缩");
+
+        serverChannel.writeInbound(batch);
+        assertDoesNotThrow(serverChannel::checkException, "解码后不应该有异常");
+        for (String content : contents) {
+            DefaultRequestCommand received = serverChannel.readInbound();
+            received.deserialize();
+            assertEquals(content, received.getAppRequest().getAppRequest(), "解码后的内容和顺序应该和编码前一致");
+        }
+    }
+
+    private ByteBuf encodeThroughClient(String content) {
+        return encodeThroughClient(content, YQCommandCodec.PROTOCOL_V1);
+    }
+
+    private ByteBuf encodeThroughClient(String content, byte version) {
+        DefaultRequestCommand requestCommand = new DefaultRequestCommand();
+        requestCommand.setSerialization((byte) 1);
+        requestCommand.setVersion(version);
+        requestCommand.setAppRequest(new BaseRequest((byte) 1, content));
+        clientChannel.writeOutbound(requestCommand);
+        assertDoesNotThrow(clientChannel::checkException, "编码后不应该有异常");
+        return clientChannel.readOutbound();
+    }
 }
@@ -0,0 +1,50 @@
+package me.yq.remoting.command;
+
+import me.yq.common.BizCode;
+import me.yq.common.ResponseStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 协议中各种代号查找的测试类，主要覆盖的功能点：
+ * 1. CommandCode、BizCode、ResponseStatus 按 code 都能查找到自身
+ * 2. 遍历全部 256 个 byte 值（包括负数），未定义的 code 返回 null，且判断合法性的结果和查找一致
+ *
+ * @author yq
+ * @version v1.0 2023-05-19 10:40
+ */
+public class CommandCodeTest {
+
+    @Test
+    @DisplayName("测试按 code 查找枚举自身")
+    void lookupDefinedCodes() {
+        for (CommandCode value : CommandCode.values())
+            assertSame(value, CommandCode.lookup(value.code()));
+        for (BizCode value : BizCode.values())
+            assertSame(value, BizCode.lookup(value.code()));
+        for (ResponseStatus value : ResponseStatus.values())
+            assertSame(value, ResponseStatus.lookup(value.code()));
+    }
+
+    @Test
+    @DisplayName("测试遍历全部 byte 值查找")
+    void lookupAllBytes() {
+        int commandCodes = 0, bizCodes = 0, statuses = 0;
+        for (int i = Byte.MIN_VALUE; i <= Byte.MAX_VALUE; i++) {
+            byte code = (byte) i;
+            if (CommandCode.lookup(code) != null)
+                commandCodes++;
+            if (BizCode.lookup(code) != null)
+                bizCodes++;
+            if (ResponseStatus.lookup(code) != null)
+                statuses++;
+            assertEquals(CommandCode.lookup(code) != null, CommandCode.isLegalCmd(code));
+            assertEquals(BizCode.lookup(code) != null, BizCode.isLegalBizCode(code));
+        }
+        assertEquals(CommandCode.values().length, commandCodes);
+        assertEquals(BizCode.values().length, bizCodes);
+        assertEquals(ResponseStatus.values().length, statuses);
+    }
+}
@@ -0,0 +1,74 @@
+package me.yq.remoting.transport;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.common.BaseRequest;
+import me.yq.common.exception.SystemException;
+import me.yq.remoting.command.DefaultRequestCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CommandSendingDelegate 单向发送测试类，主要覆盖的功能点：
+ * 1. fire-and-forget 模式直接返回写出的 future，不等待
+ * 2. confirmed write 模式在写出成功后立即返回
+ * 3. confirmed write 模式在写出失败时抛出系统异常
+ *
+ * @author yq
+ * @version v1.0 2023-05-10 16:25
+ */
+class CommandSendingDelegateTest {
+
+    private EmbeddedChannel channel;
+
+    @AfterEach
+    void tearDown() {
+        if (channel != null)
+            channel.close();
+    }
+
+    @Test
+    @DisplayName("测试 fire-and-forget 单向发送")
+    void test_oneway_fire_and_forget() {
+        channel = new EmbeddedChannel();
+
+        ChannelFuture future = CommandSendingDelegate.sendRequestOneway(channel, new BaseRequest((byte) 1, "bye"));
+
+        assertNotNull(future);
+        assertTrue(future.isSuccess(), "消息应该已经写出");
+        DefaultRequestCommand sent = channel.readOutbound();
+        assertEquals("bye", sent.getAppRequest().getAppRequest());
+    }
+
+    @Test
+    @DisplayName("测试单向发送并确认写出")
+    void test_oneway_confirmed() {
+        channel = new EmbeddedChannel();
+
+        assertDoesNotThrow(() -> CommandSendingDelegate.sendRequestOneway(channel, new BaseRequest((byte) 1, "bye"), 1000));
+        assertNotNull(channel.readOutbound(), "消息应该已经写出");
+    }
+
+    @Test
+    @DisplayName("测试单向发送确认写出失败")
+    void test_oneway_confirmed_failed() {
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                promise.setFailure(new IOException("mock write failure"));
+            }
+        });
+
+        SystemException e = assertThrows(SystemException.class,
+                () -> CommandSendingDelegate.sendRequestOneway(channel, new BaseRequest((byte) 1, "bye"), 1000));
+        assertTrue(e.getMessage().contains("mock write failure"));
+    }
+}
@@ -0,0 +1,101 @@
+package me.yq.remoting.transport;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.common.BaseResponseFuture;
+import me.yq.common.exception.BusinessException;
+import me.yq.remoting.command.DefaultRequestCommand;
+import me.yq.remoting.command.DefaultResponseCommand;
+import me.yq.remoting.support.ChannelAttributes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompletableRequestFuture 测试类，主要覆盖的功能点：
+ * 1. 响应到达时 future 被直接完成，并且可以编排后续处理
+ * 2. 超时后 future 以业务异常完成，且 future 被移除
+ * 3. 调用方主动取消后，future 被移除，迟到的响应会被丢弃
+ * 4. BaseResponseFuture 阻塞获取超时时返回 null
+ *
+ * @author yq
+ * @version v1.0 2023-05-11 11:20
+ */
+class CompletableRequestFutureTest {
+
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel();
+        new Session(channel);
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.close();
+    }
+
+    @Test
+    @DisplayName("测试响应到达后完成 future")
+    void test_complete_on_response() throws Exception {
+        CompletableFuture<BaseResponse> future = CommandSendingDelegate.sendRequestCompletable(channel, new BaseRequest((byte) 1, "hello"), 1000);
+        CompletableFuture<String> composed = future.thenApply(response -> response.getAppResponse() + "!");
+        assertFalse(future.isDone(), "响应到达之前 future 不应该完成");
+
+        DefaultRequestCommand sent = channel.readOutbound();
+        DefaultResponseCommand responseCommand = new DefaultResponseCommand(sent.getMessageId());
+        responseCommand.setAppResponse(new BaseResponse("world"));
+        requestFutureMap().commitResponseCommand(responseCommand);
+
+        assertEquals("world!", composed.get(1, TimeUnit.SECONDS), "应该可以编排响应结果");
+        assertFalse(requestFutureMap().hasRequestFuture(), "完成的 future 应该被移除");
+    }
+
+    @Test
+    @DisplayName("测试等待响应超时")
+    void test_timeout() {
+        CompletableFuture<BaseResponse> future = CommandSendingDelegate.sendRequestCompletable(channel, new BaseRequest((byte) 1, "hello"), 50);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(3, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof BusinessException, "超时应该以业务异常完成");
+        assertFalse(requestFutureMap().hasRequestFuture(), "超时的 future 应该被移除");
+    }
+
+    @Test
+    @DisplayName("测试主动取消 future")
+    void test_cancel() {
+        CompletableFuture<BaseResponse> future = CommandSendingDelegate.sendRequestCompletable(channel, new BaseRequest((byte) 1, "hello"), -1);
+        DefaultRequestCommand sent = channel.readOutbound();
+
+        assertTrue(future.cancel(false));
+        assertFalse(requestFutureMap().hasRequestFuture(), "取消的 future 应该被移除");
+
+        DefaultResponseCommand responseCommand = new DefaultResponseCommand(sent.getMessageId());
+        responseCommand.setAppResponse(new BaseResponse("late"));
+        assertDoesNotThrow(() -> requestFutureMap().commitResponseCommand(responseCommand), "迟到的响应应该被直接丢弃");
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    @DisplayName("测试 BaseResponseFuture 获取响应超时")
+    void test_base_response_future_timeout() {
+        BaseResponseFuture future = CommandSendingDelegate.sendRequestAsync(channel, new BaseRequest((byte) 1, "hello"));
+
+        assertNull(future.get(50), "超时应该返回 null");
+        assertTrue(future.toCompletableFuture().isCompletedExceptionally());
+        assertFalse(requestFutureMap().hasRequestFuture(), "超时的 future 应该被移除");
+    }
+
+    private RequestFutureMap requestFutureMap() {
+        return channel.attr(ChannelAttributes.CHANNEL_REQUEST_FUTURE_MAP).get();
+    }
+}
@@ -0,0 +1,210 @@
+package me.yq.remoting.transport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.*;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import me.yq.common.BaseRequest;
+import me.yq.common.exception.SystemException;
+import me.yq.remoting.command.DefaultRequestCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PendingSendQueue 测试类，主要覆盖的功能点：
+ * 1. channel 可写时直接写出，不可写时排队，恢复可写后按序写出
+ * 2. 队列满了之后的三种处理策略：REJECT、DROP_OLDEST、PARK（等到空间 / 等待超时）
+ * 3. channel 关闭时排队中的消息全部失败
+ * 4. CommandSendingDelegate 在 channel 不可写时排队发送，而不是直接报错
+ *
+ * @author yq
+ * @version v1.0 2023-05-26 14:20
+ */
+class PendingSendQueueTest {
+
+    private EmbeddedChannel channel;
+
+    private EventLoopGroup group;
+
+    @AfterEach
+    void tearDown() {
+        if (channel != null)
+            channel.close();
+        if (group != null)
+            group.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).awaitUninterruptibly();
+    }
+
+    @Test
+    @DisplayName("测试不可写时排队，恢复可写后按序写出")
+    void test_queue_and_drain() {
+        PendingSendQueue queue = new PendingSendQueue(16, PendingSendQueue.OverflowPolicy.REJECT, 0);
+        channel = new EmbeddedChannel(queue);
+
+        assertTrue(queue.write("direct", channel.newPromise()).isSuccess(), "可写时应该直接写出");
+        assertEquals("direct", channel.readOutbound());
+
+        setWritable(false);
+        ChannelFuture first = queue.write("first", channel.newPromise());
+        ChannelFuture second = queue.write("second", channel.newPromise());
+        assertFalse(first.isDone(), "不可写时应该排队");
+        assertNull(channel.readOutbound());
+        assertEquals(2, queue.getDepth());
+
+        setWritable(true);
+        assertTrue(first.isSuccess() && second.isSuccess(), "恢复可写后应该写出");
+        assertEquals("first", channel.readOutbound());
+        assertEquals("second", channel.readOutbound());
+        assertEquals(0, queue.getDepth());
+        assertEquals(2, queue.getMaxDepth());
+        assertEquals(2, queue.getEnqueuedCount());
+    }
+
+    @Test
+    @DisplayName("测试队列满了之后拒绝新消息")
+    void test_overflow_reject() {
+        PendingSendQueue queue = new PendingSendQueue(1, PendingSendQueue.OverflowPolicy.REJECT, 0);
+        channel = new EmbeddedChannel(queue);
+        setWritable(false);
+
+        ChannelFuture queued = queue.write("queued", channel.newPromise());
+        ChannelFuture rejected = queue.write("rejected", channel.newPromise());
+
+        assertFalse(queued.isDone());
+        assertInstanceOf(SystemException.class, rejected.cause(), "队列满了之后新消息应该被拒绝");
+        assertEquals(1, queue.getRejectedCount());
+
+        setWritable(true);
+        assertEquals("queued", channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    @DisplayName("测试队列满了之后丢弃最早的消息")
+    void test_overflow_drop_oldest() {
+        PendingSendQueue queue = new PendingSendQueue(2, PendingSendQueue.OverflowPolicy.DROP_OLDEST, 0);
+        channel = new EmbeddedChannel(queue);
+        setWritable(false);
+
+        ChannelFuture oldest = queue.write("1", channel.newPromise());
+        queue.write("2", channel.newPromise());
+        queue.write("3", channel.newPromise());
+
+        assertInstanceOf(SystemException.class, oldest.cause(), "最早的消息应该被丢弃");
+        assertEquals(1, queue.getDroppedCount());
+
+        setWritable(true);
+        assertEquals("2", channel.readOutbound());
+        assertEquals("3", channel.readOutbound());
+    }
+
+    @Test
+    @DisplayName("测试 PARK 策略：等到队列腾出空间后入队")
+    void test_overflow_park_until_drained() throws Exception {
+        Channel local = newLocalChannel(new PendingSendQueue(1, PendingSendQueue.OverflowPolicy.PARK, 3000));
+        PendingSendQueue queue = PendingSendQueue.of(local);
+        setWritable(local, false);
+        queue.write("queued", local.newPromise());
+
+        group.schedule(() -> setWritable(local, true), 100, TimeUnit.MILLISECONDS);
+        long begin = System.nanoTime();
+        ChannelFuture parked = queue.write("parked", local.newPromise());
+
+        assertTrue(parked.await(3000), "腾出空间后应该入队并写出");
+        assertTrue(parked.isSuccess());
+        assertTrue(System.nanoTime() - begin >= TimeUnit.MILLISECONDS.toNanos(100), "发送线程应该等待过");
+        assertEquals(0, queue.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("测试 PARK 策略：等待超时后拒绝，IO 线程中发送时不等待")
+    void test_overflow_park_timeout() throws Exception {
+        Channel local = newLocalChannel(new PendingSendQueue(1, PendingSendQueue.OverflowPolicy.PARK, 200));
+        PendingSendQueue queue = PendingSendQueue.of(local);
+        setWritable(local, false);
+        queue.write("queued", local.newPromise());
+
+        long begin = System.nanoTime();
+        ChannelFuture parked = queue.write("parked", local.newPromise());
+        assertInstanceOf(SystemException.class, parked.cause(), "等待超时后应该被拒绝");
+        assertTrue(System.nanoTime() - begin >= TimeUnit.MILLISECONDS.toNanos(200), "应该等待到超时");
+
+        ChannelFuture inEventLoop = local.eventLoop().submit(() -> queue.write("io", local.newPromise())).get();
+        assertInstanceOf(SystemException.class, inEventLoop.cause(), "IO 线程中发送不应该等待");
+        assertEquals(2, queue.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("测试 channel 关闭时排队中的消息全部失败")
+    void test_fail_all_on_close() {
+        PendingSendQueue queue = new PendingSendQueue(16, PendingSendQueue.OverflowPolicy.REJECT, 0);
+        channel = new EmbeddedChannel(queue);
+        setWritable(false);
+
+        ChannelFuture queued = queue.write("queued", channel.newPromise());
+        channel.close();
+
+        assertNotNull(queued.cause(), "channel 关闭后排队中的消息应该失败");
+        assertEquals(0, queue.getDepth());
+    }
+
+    @Test
+    @DisplayName("测试不可写时通过 CommandSendingDelegate 排队发送")
+    void test_delegate_queues_when_unwritable() {
+        channel = new EmbeddedChannel(new PendingSendQueue(16, PendingSendQueue.OverflowPolicy.REJECT, 0));
+        setWritable(false);
+
+        ChannelFuture future = assertDoesNotThrow(
+                () -> CommandSendingDelegate.sendRequestOneway(channel, new BaseRequest((byte) 1, "bye")),
+                "开启写出背压后，不可写时不应该直接报错");
+        assertFalse(future.isDone());
+
+        setWritable(true);
+        assertTrue(future.isSuccess());
+        DefaultRequestCommand sent = channel.readOutbound();
+        assertEquals("bye", sent.getAppRequest().getAppRequest());
+    }
+
+    @Test
+    @DisplayName("测试没有开启写出背压时，不可写直接报错")
+    void test_delegate_throws_without_queue() {
+        channel = new EmbeddedChannel();
+        setWritable(false);
+
+        assertThrows(SystemException.class,
+                () -> CommandSendingDelegate.sendRequestOneway(channel, new BaseRequest((byte) 1, "bye")));
+    }
+
+    /**
+     * 通过用户自定义的可写位模拟出站缓冲区越过高水位 / 回落到低水位
+     */
+    private void setWritable(boolean writable) {
+        setWritable(channel, writable);
+        channel.runPendingTasks();
+    }
+
+    private static void setWritable(Channel ch, boolean writable) {
+        ch.unsafe().outboundBuffer().setUserDefinedWritability(1, writable);
+    }
+
+    /**
+     * 建立一个真实 IO 线程上的 local channel，PARK 只有在非 IO 线程中发送时才会等待
+     */
+    private Channel newLocalChannel(PendingSendQueue queue) throws InterruptedException {
+        group = new DefaultEventLoopGroup(1);
+        LocalAddress address = new LocalAddress("PendingSendQueueTest-" + System.nanoTime());
+        new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter())
+                .bind(address).sync();
+        return new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(queue)
+                .connect(address).sync().channel();
+    }
+}
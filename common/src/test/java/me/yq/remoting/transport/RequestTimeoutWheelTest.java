@@ -0,0 +1,134 @@
+package me.yq.remoting.transport;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.common.exception.BusinessException;
+import me.yq.remoting.command.DefaultRequestCommand;
+import me.yq.remoting.command.DefaultResponseCommand;
+import me.yq.remoting.support.ChannelAttributes;
+import me.yq.remoting.utils.DirectThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RequestTimeoutWheel 测试类，主要覆盖的功能点：
+ * 1. callback 请求超时后，时间轮能触发 onTimeout，并记录超时数
+ * 2. callback 请求在超时前收到响应，超时任务被取消，不会再触发 onTimeout，并记录完成数
+ * 3. 同步请求超时后抛出业务异常，且 future 被移除
+ *
+ * @author yq
+ * @version v1.0 2023-05-06 14:02
+ */
+class RequestTimeoutWheelTest {
+
+    private EmbeddedChannel channel;
+
+    private final RequestTimeoutWheel wheel = RequestTimeoutWheel.getInstance();
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel();
+        new Session(channel);
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.close();
+    }
+
+    @Test
+    @DisplayName("测试 callback 请求超时")
+    void test_callback_timeout() throws InterruptedException {
+        long expiredBefore = wheel.getExpiredCount();
+        CountDownLatch timeoutLatch = new CountDownLatch(1);
+        RecordingCallback callback = new RecordingCallback(timeoutLatch);
+
+        CommandSendingDelegate.sendRequestCallback(channel, new BaseRequest((byte) 1, "hello"), 50, callback);
+
+        assertTrue(timeoutLatch.await(3, TimeUnit.SECONDS), "时间轮应该触发超时回调");
+        assertEquals(1, callback.timeoutCount.get(), "超时回调只应该触发一次");
+        assertNull(callback.response.get(), "超时的请求不应该有响应");
+        assertTrue(wheel.getExpiredCount() > expiredBefore, "应该记录超时数");
+        assertFalse(requestFutureMap().hasRequestFuture(), "超时的 future 应该被移除");
+    }
+
+    @Test
+    @DisplayName("测试 callback 请求在超时前收到响应")
+    void test_callback_response_before_timeout() throws InterruptedException {
+        long completedBefore = wheel.getCompletedCount();
+        RecordingCallback callback = new RecordingCallback(new CountDownLatch(1));
+
+        CommandSendingDelegate.sendRequestCallback(channel, new BaseRequest((byte) 1, "hello"), 200, callback);
+        DefaultRequestCommand sent = channel.readOutbound();
+
+        DefaultResponseCommand responseCommand = new DefaultResponseCommand(sent.getMessageId());
+        responseCommand.setAppResponse(new BaseResponse("world"));
+        requestFutureMap().commitResponseCommand(responseCommand);
+
+        assertEquals("world", callback.response.get().getAppResponse(), "应该收到响应");
+        assertTrue(wheel.getCompletedCount() > completedBefore, "应该记录完成数");
+
+        // 等过超时时间，确认超时任务已被取消
+        TimeUnit.MILLISECONDS.sleep(400);
+        assertEquals(0, callback.timeoutCount.get(), "收到响应后不应该再触发超时");
+        assertFalse(requestFutureMap().hasRequestFuture(), "完成的 future 应该被移除");
+    }
+
+    @Test
+    @DisplayName("测试同步请求超时")
+    void test_sync_timeout() {
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> CommandSendingDelegate.sendRequestSync(channel, new BaseRequest((byte) 1, "hello"), 50));
+        assertTrue(e.getMessage().contains("超时"));
+        assertFalse(requestFutureMap().hasRequestFuture(), "超时的 future 应该被移除");
+    }
+
+    private RequestFutureMap requestFutureMap() {
+        return channel.attr(ChannelAttributes.CHANNEL_REQUEST_FUTURE_MAP).get();
+    }
+
+
+    private static class RecordingCallback implements Callback {
+
+        private final AtomicReference<BaseResponse> response = new AtomicReference<>();
+
+        private final AtomicInteger timeoutCount = new AtomicInteger();
+
+        private final CountDownLatch timeoutLatch;
+
+        RecordingCallback(CountDownLatch timeoutLatch) {
+            this.timeoutLatch = timeoutLatch;
+        }
+
+        @Override
+        public void onResponse(BaseResponse response) {
+            this.response.set(response);
+        }
+
+        @Override
+        public void onException(Throwable cause) {
+        }
+
+        @Override
+        public void onTimeout() {
+            timeoutCount.incrementAndGet();
+            timeoutLatch.countDown();
+        }
+
+        @Override
+        public Executor getExecutor() {
+            return DirectThreadPool.getInstance();
+        }
+    }
+}
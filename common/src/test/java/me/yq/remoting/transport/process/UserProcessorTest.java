@@ -11,6 +11,8 @@ import me.yq.remoting.support.ChannelAttributes;
 import me.yq.remoting.transport.DefaultRequestFuture;
 import me.yq.remoting.transport.RequestFuture;
 import me.yq.remoting.transport.RequestFutureMap;
+import me.yq.remoting.utils.NamedThreadFactory;
+import me.yq.remoting.utils.StripedExecutor;
 import me.yq.test.processors.SimpleEchoProcessor;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,10 +24,14 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -33,6 +39,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  * 1.能注册不同的处理器，并能够将不同的请求分发给对应的处理器
  * 2.能够正常将响应提交到 channel 中的 requestFutureMap 中，完成响应对请求的关联
  * 3.在停机状态下，拒收来自客户端的请求，并返回停机报错
+ * 4.根据消息头中的业务码路由，处理器可以在反序列化之前直接处理原始请求
+ * 5.在业务线程池中排队的请求也计入当前请求数，优雅停机时会等待它们
+ * 6.业务线程池拒绝请求（抛出异常或者直接丢弃）时，返回服务端繁忙的响应
  * @author yq
  * @version v1.0 2023-04-07 18:53
  */
@@ -95,6 +104,28 @@ class UserProcessorTest {
     }
 
 
+    @Test
+    @DisplayName("测试根据消息头路由并直接处理原始请求")
+    void processRawRequestCommand() {
+        Mockito.doAnswer(invocation -> {
+            Runnable task = invocation.getArgument(0);
+            task.run();
+            return null;
+        }).when(bizPool).execute(Mockito.any(Runnable.class));
+
+        RequestProcessor rawProcessor = Mockito.spy(new SimpleEchoProcessor());
+        Mockito.doReturn(true).when(rawProcessor).processRawRequest(Mockito.any(), Mockito.any());
+        userProcessor.registerBizProcessor((byte) 4, rawProcessor);
+
+        DefaultRequestCommand requestCommand = generateSerializedRequestCommand((byte) 4);
+        userProcessor.processCommand(ctx, requestCommand);
+
+        Mockito.verify(rawProcessor).processRawRequest(Mockito.any(), Mockito.eq(requestCommand));
+        Mockito.verify(rawProcessor, Mockito.never()).processRequest(Mockito.any(), Mockito.anyInt(), Mockito.any(BaseRequest.class));
+        assertEquals(4, requestCommand.getBizCode(), "应该从消息头中解析出业务码");
+    }
+
+
     @Test
     @DisplayName("测试响应的提交")
     void submitResponse() {
@@ -125,6 +156,74 @@ class UserProcessorTest {
 
 
 
+    @Test
+    @DisplayName("测试排队中的请求计入当前请求数")
+    void countQueuedRequests() {
+        // 任务只入队不执行，模拟在业务线程池中排队
+        AtomicReference<Runnable> queued = new AtomicReference<>();
+        Mockito.doAnswer(invocation -> {
+            queued.set(invocation.getArgument(0));
+            return null;
+        }).when(bizPool).execute(Mockito.any(Runnable.class));
+
+        userProcessor.processCommand(ctx, generateSerializedRequestCommand((byte) 1));
+        assertEquals(1, userProcessor.getCurrentRequestCounts().get(), "排队中的请求应该计入当前请求数");
+
+        queued.get().run();
+        assertEquals(0, userProcessor.getCurrentRequestCounts().get(), "请求处理完之后应该不再计数");
+    }
+
+    @Test
+    @DisplayName("测试业务线程池拒绝请求时返回繁忙响应")
+    void rejectRequestWhenBizPoolBusy() {
+        Mockito.doThrow(new RejectedExecutionException("busy")).when(bizPool).execute(Mockito.any(Runnable.class));
+
+        DefaultRequestCommand requestCommand = generateSerializedRequestCommand((byte) 1);
+        userProcessor.processCommand(ctx, requestCommand);
+
+        assertBusyResponse(requestCommand.getMessageId());
+        Mockito.verify(processor1, Mockito.never()).processRequest(Mockito.any(), Mockito.anyInt(), Mockito.any(BaseRequest.class));
+    }
+
+    @Test
+    @DisplayName("测试分段线程池丢弃请求时返回繁忙响应")
+    void rejectRequestWhenStripeDiscards() throws InterruptedException {
+        StripedExecutor stripedExecutor = new StripedExecutor(1, 1, StripedExecutor.RejectPolicy.DISCARD, new NamedThreadFactory("user-processor-test"));
+        userProcessor.setBizExecutor(stripedExecutor);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // 卡住唯一的工作线程并占满队列
+            stripedExecutor.execute(ctx.channel(), () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            assertTrue(started.await(3, TimeUnit.SECONDS));
+            stripedExecutor.execute(ctx.channel(), () -> {});
+
+            DefaultRequestCommand requestCommand = generateSerializedRequestCommand((byte) 1);
+            userProcessor.processCommand(ctx, requestCommand);
+
+            assertBusyResponse(requestCommand.getMessageId());
+        } finally {
+            release.countDown();
+            stripedExecutor.shutdownNow();
+        }
+    }
+
+    private void assertBusyResponse(int messageId) {
+        DefaultResponseCommand responseCommand = channel.readOutbound();
+        assertNotNull(responseCommand, "被拒绝的请求也应该有响应");
+        assertEquals(messageId, responseCommand.getMessageId(), "响应应该对应被拒绝的请求");
+        assertEquals(ResponseStatus.FAILED, responseCommand.getAppResponse().getStatus(), "响应状态不正确");
+        assertTrue(responseCommand.getAppResponse().getReturnMsg().contains("繁忙"), "响应信息不正确，应该告知服务端繁忙");
+        assertEquals(0, userProcessor.getCurrentRequestCounts().get(), "被拒绝的请求不应该计入当前请求数");
+    }
+
+
     private final RequestProcessor slowProcessor = new SimpleEchoProcessor(
             Collections.singletonList(
                     ()->{
@@ -0,0 +1,169 @@
+package me.yq.remoting.transport.serializer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import me.yq.biz.LogInRequest;
+import me.yq.biz.Message;
+import me.yq.biz.Notice;
+import me.yq.biz.domain.Friend;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.common.ResponseStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompactSerializer 测试类，主要覆盖的功能点：
+ * 1. 请求、响应、消息、通知、登录请求的序列化和反序列化，字段完整还原（包括消息 id、发送时间、负数的路由 id）
+ * 2. 不认识的类型回退到 hessian2，可以嵌套在请求和响应中
+ * 3. 序列化结果比 hessian2 小
+ * 4. 直接读写 ByteBuf，读完后 readerIndex 正确；数据不完整时抛出异常
+ * 5. 对端声明的好友数、字节数组长度超出剩余字节数时直接拒绝，不会按它预分配内存
+ * 6. 请求、响应对象嵌套过深时直接拒绝，不会递归到栈溢出
+ *
+ * @author yq
+ * @version v1.0 2023-05-18 11:20
+ */
+public class CompactSerializerTest {
+
+    private final CompactSerializer serializer = new CompactSerializer();
+
+    private Message newMessage() {
+        User from = new User(157146, "abcde", "张三", 20, "杭州", "个性签名",
+                new ArrayList<>(Arrays.asList(new Friend(909900, "李四"), new Friend(1, null))));
+        return new Message(from, new User(909900), "你好, hello");
+    }
+
+    @Test
+    @DisplayName("测试消息请求的序列化和反序列化")
+    void serializeAndDeserializeMessageRequest() {
+        Message message = newMessage();
+        BaseRequest request = new BaseRequest((byte) 3, message, 909900);
+
+        BaseRequest result = serializer.deserialize(serializer.serialize(request), BaseRequest.class);
+        assertEquals(3, result.getBizCode());
+        assertEquals(909900, result.getRoutingId());
+
+        Message messageResult = (Message) result.getAppRequest();
+        assertEquals(message.getMessageId(), messageResult.getMessageId());
+        assertEquals(message.getSendTimestamp(), messageResult.getSendTimestamp());
+        assertEquals("你好, hello", messageResult.getMsg());
+
+        User from = messageResult.getFromUser();
+        assertEquals(157146, from.getUserId());
+        assertEquals("abcde", from.getPasswd());
+        assertEquals("张三", from.getName());
+        assertEquals(20, from.getAge());
+        assertEquals("杭州", from.getAddress());
+        assertEquals("个性签名", from.getSignature());
+        assertEquals(message.getFromUser().getFriendList(), from.getFriendList());
+
+        User to = messageResult.getToUser();
+        assertEquals(909900, to.getUserId());
+        assertNull(to.getName());
+        assertNull(to.getFriendList(), "没有好友列表的用户还原后也应该没有好友列表");
+    }
+
+    @Test
+    @DisplayName("测试响应、通知、登录请求以及负数 id 的序列化和反序列化")
+    void serializeAndDeserializeOthers() {
+        BaseResponse response = new BaseResponse(new Notice(-5, "title", null));
+        BaseResponse responseResult = serializer.deserialize(serializer.serialize(response), BaseResponse.class);
+        assertEquals(ResponseStatus.SUCCESS, responseResult.getStatus());
+        assertEquals("success", responseResult.getReturnMsg());
+        Notice notice = (Notice) responseResult.getAppResponse();
+        assertEquals(-5, notice.getAcceptId());
+        assertEquals("title", notice.getNoticeTitle());
+        assertNull(notice.getNoticeContent());
+
+        BaseResponse empty = serializer.deserialize(serializer.serialize(new BaseResponse(ResponseStatus.OK_NO_NEED_RESPONSE)), BaseResponse.class);
+        assertEquals(ResponseStatus.OK_NO_NEED_RESPONSE, empty.getStatus());
+        assertNull(empty.getAppResponse());
+
+        BaseRequest logIn = new BaseRequest((byte) 1, new LogInRequest(new User(157146, "abcde")));
+        BaseRequest logInResult = serializer.deserialize(serializer.serialize(logIn), BaseRequest.class);
+        assertEquals(BaseRequest.NO_ROUTING_ID, logInResult.getRoutingId());
+        assertEquals("abcde", ((LogInRequest) logInResult.getAppRequest()).getUser().getPasswd());
+
+        assertNull(serializer.deserialize(serializer.serialize(null), Object.class));
+    }
+
+    @Test
+    @DisplayName("测试不认识的类型回退到 hessian2")
+    void fallbackToHessian2() {
+        BaseResponse failed = new BaseResponse(ResponseStatus.SERVER_ERROR, "服务端异常", new IllegalStateException("boom"));
+        BaseResponse failedResult = serializer.deserialize(serializer.serialize(failed), BaseResponse.class);
+        assertEquals(ResponseStatus.SERVER_ERROR, failedResult.getStatus());
+        assertEquals("服务端异常", failedResult.getReturnMsg());
+        assertEquals("boom", ((Throwable) failedResult.getAppResponse()).getMessage());
+
+        Map<String, Integer> map = new HashMap<>();
+        map.put("a", 1);
+        BaseRequest request = new BaseRequest((byte) 9, map);
+        assertEquals(map, serializer.deserialize(serializer.serialize(request), BaseRequest.class).getAppRequest());
+    }
+
+    @Test
+    @DisplayName("测试序列化结果比 hessian2 小")
+    void smallerThanHessian2() {
+        BaseRequest request = new BaseRequest((byte) 3, newMessage(), 909900);
+        assertTrue(serializer.serialize(request).length * 2 < new Hessian2Serializer().serialize(request).length);
+    }
+
+    @Test
+    @DisplayName("测试直接读写 ByteBuf，以及数据不完整时抛出异常")
+    void serializeAndDeserializeByteBuf() {
+        ByteBuf buf = Unpooled.directBuffer();
+        try {
+            serializer.serialize(newMessage(), buf);
+            int length = buf.readableBytes();
+            buf.writeByte(0x7e);
+
+            assertEquals("你好, hello", serializer.deserialize(buf, Message.class).getMsg());
+            assertEquals(1, buf.readableBytes(), "读完后 readerIndex 应该正好停在对象末尾");
+
+            buf.readerIndex(0).writerIndex(length - 1);
+            assertThrows(RuntimeException.class, () -> serializer.deserialize(buf, Message.class));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    @DisplayName("测试声明的个数和长度超出剩余字节数时拒绝")
+    void rejectOversizedCount() {
+        // 用户：存在标记、userId=0、5 个 null 字段（密码、昵称、年龄为 0、地址、签名），好友数 + 1 = Integer.MAX_VALUE
+        byte[] hugeFriendCount = {5, 1, 0, 0, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(CorruptedFrameException.class, () -> serializer.deserialize(hugeFriendCount, User.class));
+
+        // 登录请求：用户为 null，支持的序列化方式列表长度 + 1 = Integer.MAX_VALUE
+        byte[] hugeBytesLength = {6, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(CorruptedFrameException.class, () -> serializer.deserialize(hugeBytesLength, LogInRequest.class));
+    }
+
+    @Test
+    @DisplayName("测试请求、响应对象嵌套过深时拒绝")
+    void rejectDeepNesting() {
+        BaseRequest nested = new BaseRequest((byte) 1, new BaseResponse(ResponseStatus.SUCCESS, "ok", null));
+        BaseRequest result = serializer.deserialize(serializer.serialize(nested), BaseRequest.class);
+        assertEquals("ok", ((BaseResponse) result.getAppRequest()).getReturnMsg(), "正常的嵌套应该能还原");
+
+        // 每层 3 个字节：请求标记、bizCode、routingId=0，10 万层逐层递归的话必然栈溢出
+        int levels = 100_000;
+        ByteBuf buf = Unpooled.buffer(levels * 3 + 1);
+        for (int i = 0; i < levels; i++)
+            buf.writeByte(1).writeByte(1).writeByte(0);
+        buf.writeByte(0);
+        assertThrows(CorruptedFrameException.class, () -> serializer.deserialize(buf, BaseRequest.class));
+        buf.release();
+    }
+}
@@ -4,14 +4,25 @@ import me.yq.test.common.domain.Friend;
 import me.yq.test.common.domain.MyLinkedHashMap;
 import me.yq.test.common.domain.User;
 import org.junit.jupiter.api.DisplayName;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Hessian2Serializer 测试类，主要覆盖的功能：
  * 1. hessian2 序列化 和 反序列化
+ * 2. 复用线程内的流对象时，多次序列化互不影响（引用表、缓冲区会被重置），以及多线程并发序列化
+ * 3. 消息体末尾带有多余字节、或者消息体被截断时，不会影响同一个线程上的下一次反序列化
  */
 class Hessian2SerializerTest {
     private final Hessian2Serializer hessian2Serializer = new Hessian2Serializer();
@@ -46,4 +57,76 @@ class Hessian2SerializerTest {
         assertNull(result.getVar2(),"序列化后的集合子类的字段，不能反序列化出来");
         assertNull(result.getVar3(),"序列化后的集合子类的字段，不能反序列化出来");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("测试复用流对象时，多次序列化的结果互不影响")
+    void serializeRepeatedly() {
+        Friend friend = new Friend("zhangsan", 12);
+        User user = new User(222, friend);
+
+        byte[] first = hessian2Serializer.serialize(user);
+        hessian2Serializer.serialize(new User(333, new Friend("lisi", 13)));
+        byte[] second = hessian2Serializer.serialize(user);
+        assertArrayEquals(first, second, "同一个对象多次序列化的结果应该一致，上一次序列化的引用表不能影响下一次");
+
+        ByteBuf buf = Unpooled.buffer();
+        hessian2Serializer.serialize(user, buf);
+        assertArrayEquals(first, ByteBufUtil.getBytes(buf), "流式序列化和 byte[] 序列化的结果应该一致");
+
+        assertEquals(user, hessian2Serializer.deserialize(buf, User.class));
+        assertEquals(0, buf.readableBytes());
+        assertEquals(user, hessian2Serializer.deserialize(second, User.class));
+    }
+
+    @Test
+    @DisplayName("测试消息体末尾带有多余字节时，不影响下一次反序列化")
+    void deserializeAfterTrailingBytes() {
+        byte[] first = hessian2Serializer.serialize(new User(111, new Friend("zhangsan", 12)));
+        byte[] trailing = hessian2Serializer.serialize(new User(222, new Friend("lisi", 13)));
+        byte[] payload = new byte[first.length + trailing.length];
+        System.arraycopy(first, 0, payload, 0, first.length);
+        System.arraycopy(trailing, 0, payload, first.length, trailing.length);
+
+        assertEquals(111, hessian2Serializer.deserialize(payload, User.class).getId(), "只应该读出第一个对象");
+
+        User next = new User(333, new Friend("wangwu", 14));
+        assertEquals(next, hessian2Serializer.deserialize(hessian2Serializer.serialize(next), User.class),
+                "上一个消息体多余的字节不能被当成下一个消息体的开头");
+        assertEquals(next, hessian2Serializer.deserialize(Unpooled.wrappedBuffer(hessian2Serializer.serialize(next)), User.class));
+    }
+
+    @Test
+    @DisplayName("测试消息体被截断时反序列化失败，不影响下一次反序列化")
+    void deserializeAfterTruncatedPayload() {
+        User user = new User(111, new Friend("zhangsan", 12));
+        byte[] serialized = hessian2Serializer.serialize(user);
+        byte[] truncated = new byte[serialized.length / 2];
+        System.arraycopy(serialized, 0, truncated, 0, truncated.length);
+
+        assertThrows(RuntimeException.class, () -> hessian2Serializer.deserialize(truncated, User.class), "被截断的消息体应该反序列化失败");
+        assertEquals(user, hessian2Serializer.deserialize(serialized, User.class), "失败之后同一个线程还能正常反序列化");
+    }
+
+    @Test
+    @DisplayName("测试多线程并发序列化和反序列化")
+    void serializeConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int base = t * 10000;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        User user = new User(base + i, new Friend("friend" + i, i));
+                        assertEquals(user, hessian2Serializer.deserialize(hessian2Serializer.serialize(user), User.class));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package me.yq.remoting.transport.serializer;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import me.yq.test.common.domain.Friend;
 import me.yq.test.common.domain.User;
 import org.junit.jupiter.api.DisplayName;
@@ -13,6 +15,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 /**
  * JsonSerializer 测试类，主要覆盖的功能：
  * 1. json 序列化 和 反序列化
+ * 2. 直接从堆内存 / 直接内存的 ByteBuf 反序列化
  */
 class JsonSerializerTest {
     private final JsonSerializer jsonSerializer = new JsonSerializer();
@@ -48,4 +51,23 @@ class JsonSerializerTest {
         Friend friendResult = userResult.getFriend();
         assertEquals(friendResult.toString(),friendInUser.toString(),"序列化和反序列化的对象应该一致");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("测试直接从 ByteBuf 反序列化")
+    void deserializeFromByteBuf() {
+        User user = new User(222, new Friend("zhangsan", 12));
+        ByteBuf[] bufs = {Unpooled.buffer(), Unpooled.directBuffer()};
+        for (ByteBuf buf : bufs) {
+            try {
+                buf.writeByte(0);
+                jsonSerializer.serialize(user, buf);
+                buf.skipBytes(1);
+
+                assertEquals(user, jsonSerializer.deserialize(buf, User.class));
+                assertEquals(0, buf.readableBytes(), "反序列化后应该消费掉所有可读字节");
+            } finally {
+                buf.release();
+            }
+        }
+    }
+}
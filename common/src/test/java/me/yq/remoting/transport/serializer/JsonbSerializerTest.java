@@ -0,0 +1,90 @@
+package me.yq.remoting.transport.serializer;
+
+import com.alibaba.fastjson2.JSONB;
+import com.alibaba.fastjson2.JSONWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import me.yq.biz.Message;
+import me.yq.biz.Notice;
+import me.yq.biz.domain.Friend;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.common.ResponseStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JsonbSerializer 测试类，主要覆盖的功能点：
+ * 1. 请求、响应中 Object 类型的业务对象可以按原类型还原，包括没有无参构造器、只有 final 字段的类型和异常
+ * 2. 直接从堆内存 / 直接内存的 ByteBuf 反序列化
+ * 3. 不允许反序列化 me.yq 包以外的任意类型
+ *
+ * @author yq
+ * @version v1.0 2023-05-18 16:20
+ */
+public class JsonbSerializerTest {
+
+    private final JsonbSerializer serializer = new JsonbSerializer();
+
+    @Test
+    @DisplayName("测试请求、响应的序列化和反序列化")
+    void serializeAndDeserialize() {
+        User from = new User(157146, "abcde", "张三", 20, "杭州", "个性签名",
+                new ArrayList<>(Collections.singletonList(new Friend(909900, "李四"))));
+        Message message = new Message(from, new User(909900), "hello");
+        BaseRequest request = new BaseRequest((byte) 3, message, 909900);
+
+        BaseRequest requestResult = serializer.deserialize(serializer.serialize(request), BaseRequest.class);
+        assertEquals(909900, requestResult.getRoutingId());
+        Message messageResult = (Message) requestResult.getAppRequest();
+        assertEquals(message.getMessageId(), messageResult.getMessageId());
+        assertEquals("hello", messageResult.getMsg());
+        assertEquals(from.getFriendList(), messageResult.getFromUser().getFriendList());
+
+        BaseResponse response = new BaseResponse(new Notice(909900, "title", "content"));
+        BaseResponse responseResult = serializer.deserialize(serializer.serialize(response), BaseResponse.class);
+        assertEquals(ResponseStatus.SUCCESS, responseResult.getStatus());
+        assertEquals("content", ((Notice) responseResult.getAppResponse()).getNoticeContent());
+
+        BaseResponse failed = new BaseResponse(ResponseStatus.SERVER_ERROR, "服务端异常", new IllegalStateException("boom"));
+        BaseResponse failedResult = serializer.deserialize(serializer.serialize(failed), BaseResponse.class);
+        assertEquals(ResponseStatus.SERVER_ERROR, failedResult.getStatus());
+        assertEquals("boom", ((Throwable) failedResult.getAppResponse()).getMessage());
+    }
+
+    @Test
+    @DisplayName("测试直接从 ByteBuf 反序列化")
+    void deserializeFromByteBuf() {
+        BaseResponse response = new BaseResponse(new Notice(909900, "title", "content"));
+        ByteBuf[] bufs = {Unpooled.buffer(), Unpooled.directBuffer()};
+        for (ByteBuf buf : bufs) {
+            try {
+                buf.writeByte(0);
+                serializer.serialize(response, buf);
+                buf.skipBytes(1);
+
+                BaseResponse result = serializer.deserialize(buf, BaseResponse.class);
+                assertEquals("title", ((Notice) result.getAppResponse()).getNoticeTitle());
+                assertEquals(0, buf.readableBytes(), "反序列化后应该消费掉所有可读字节");
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("测试不允许反序列化 me.yq 包以外的任意类型")
+    void rejectUnknownAutoType() {
+        byte[] bytes = JSONB.toBytes(new BaseRequest((byte) 3, new Point(1, 2)),
+                JSONWriter.Feature.WriteClassName, JSONWriter.Feature.FieldBased);
+        RuntimeException e = assertThrows(RuntimeException.class, () -> serializer.deserialize(bytes, BaseRequest.class));
+        assertTrue(e.getMessage().contains("java.awt.Point"));
+    }
+}
@@ -0,0 +1,122 @@
+package me.yq.remoting.transport.serializer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import me.yq.biz.Message;
+import me.yq.biz.Notice;
+import me.yq.biz.domain.Friend;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
+import me.yq.common.ResponseStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RegisteredKryoSerializer 测试类，主要覆盖的功能点：
+ * 1. 注册类型（请求、响应、消息、通知）的序列化和反序列化，以及未注册类型的兼容
+ * 2. 注册类型不写类名，序列化结果比不注册的 kryo 更小
+ * 3. 直接读写堆内存 / 直接内存 ByteBuf，读完后 readerIndex 正确
+ * 4. 单个大对象超过输出缓冲区大小时的序列化
+ *
+ * @author yq
+ * @version v1.0 2023-05-17 15:10
+ */
+public class RegisteredKryoSerializerTest {
+
+    private final RegisteredKryoSerializer serializer = new RegisteredKryoSerializer();
+
+    private Message newMessage(String msg) {
+        User from = new User(157146, "abcde", "张三", 20, "杭州", "个性签名",
+                new ArrayList<>(Collections.singletonList(new Friend(909900, "李四"))));
+        User to = new User(909900);
+        return new Message(from, to, msg);
+    }
+
+    @Test
+    @DisplayName("测试请求、响应、通知的序列化和反序列化")
+    void serializeAndDeserialize() {
+        Message message = newMessage("hello");
+        BaseRequest request = new BaseRequest((byte) 3, message, 909900);
+
+        BaseRequest requestResult = serializer.deserialize(serializer.serialize(request), BaseRequest.class);
+        assertEquals(3, requestResult.getBizCode());
+        assertEquals(909900, requestResult.getRoutingId());
+        Message messageResult = (Message) requestResult.getAppRequest();
+        assertEquals("hello", messageResult.getMsg());
+        assertEquals(message.getMessageId(), messageResult.getMessageId());
+        assertEquals(message.getFromUser(), messageResult.getFromUser());
+        assertEquals("张三", messageResult.getFromUser().getName());
+        assertEquals(new Friend(909900, "李四"), messageResult.getFromUser().queryFriend(909900));
+
+        BaseResponse response = new BaseResponse(new Notice(909900, "title", "content"));
+        BaseResponse responseResult = serializer.deserialize(serializer.serialize(response), BaseResponse.class);
+        assertEquals(ResponseStatus.SUCCESS, responseResult.getStatus());
+        assertEquals("content", ((Notice) responseResult.getAppResponse()).getNoticeContent());
+
+        BaseResponse failed = new BaseResponse(new IllegalStateException("boom"));
+        BaseResponse failedResult = serializer.deserialize(serializer.serialize(failed), BaseResponse.class);
+        assertEquals(ResponseStatus.FAILED, failedResult.getStatus());
+        assertEquals("boom", ((Throwable) failedResult.getAppResponse()).getMessage(), "未注册的类型也可以正常序列化");
+    }
+
+    @Test
+    @DisplayName("测试注册类型不写类名，序列化结果比不注册的 kryo 更小")
+    void serializedSizeSmallerThanUnregistered() {
+        BaseRequest request = new BaseRequest((byte) 3, newMessage("hello"));
+
+        byte[] registered = serializer.serialize(request);
+        byte[] unregistered = new KryoSerializer().serialize(request);
+        assertTrue(registered.length < unregistered.length);
+        assertFalse(new String(registered, StandardCharsets.ISO_8859_1).contains("me.yq"), "注册类型不应该写入类名");
+    }
+
+    @Test
+    @DisplayName("测试直接读写堆内存和直接内存的 ByteBuf")
+    void serializeAndDeserializeByteBuf() {
+        Message message = newMessage("hello");
+        byte[] expected = serializer.serialize(message);
+
+        ByteBuf[] bufs = {Unpooled.buffer(), PooledByteBufAllocator.DEFAULT.directBuffer(),
+                Unpooled.compositeBuffer().addComponents(true, Unpooled.buffer(8, 8), Unpooled.directBuffer())};
+        for (ByteBuf buf : bufs) {
+            try {
+                buf.writeByte(0x7f);
+                serializer.serialize(message, buf);
+                buf.writeByte(0x7e);
+                buf.skipBytes(1);
+
+                Message result = serializer.deserialize(buf, Message.class);
+                assertEquals("hello", result.getMsg());
+                assertEquals(1, buf.readableBytes(), "读完后 readerIndex 应该正好停在对象末尾");
+                assertEquals(0x7e, buf.readByte());
+                assertEquals(expected.length + 2, buf.writerIndex());
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("测试超过输出缓冲区大小的大对象")
+    void serializeLargeObject() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100_000; i++)
+            sb.append((char) ('a' + i % 26));
+        Message message = newMessage(sb.toString());
+
+        assertEquals(sb.toString(), serializer.deserialize(serializer.serialize(message), Message.class).getMsg());
+
+        ByteBuf buf = Unpooled.buffer();
+        serializer.serialize(message, buf);
+        assertEquals(sb.toString(), serializer.deserialize(buf, Message.class).getMsg());
+        assertFalse(buf.isReadable());
+    }
+}
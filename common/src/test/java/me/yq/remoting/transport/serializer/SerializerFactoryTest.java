@@ -0,0 +1,79 @@
+package me.yq.remoting.transport.serializer;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SerializerFactory 测试类，主要覆盖的功能点：
+ * 1. 按 code 获取内置的序列化器，code 和序列化器自身的 code 一致
+ * 2. 不存在的 code（包括负数）抛出异常
+ * 3. 注册新的序列化器，重复注册、代号占用压缩标记位时抛出异常
+ *
+ * @author yq
+ * @version v1.0 2023-05-19 10:20
+ */
+public class SerializerFactoryTest {
+
+    @Test
+    @DisplayName("测试获取内置的序列化器")
+    void getBuiltInSerializers() {
+        byte[] codes = {Hessian2Serializer.CODE, JsonSerializer.CODE, KryoSerializer.CODE,
+                RegisteredKryoSerializer.CODE, CompactSerializer.CODE, JsonbSerializer.CODE};
+        for (byte code : codes)
+            assertEquals(code, SerializerFactory.getSerializer(code).code());
+    }
+
+    @Test
+    @DisplayName("测试不存在的序列化器")
+    void getAbsentSerializer() {
+        assertThrows(RuntimeException.class, () -> SerializerFactory.getSerializer((byte) 0));
+        assertThrows(RuntimeException.class, () -> SerializerFactory.getSerializer((byte) 100));
+        assertThrows(RuntimeException.class, () -> SerializerFactory.getSerializer((byte) -1));
+    }
+
+    @Test
+    @DisplayName("测试注册新的序列化器")
+    void registerSerializer() {
+        byte code = (byte) 120;
+        Serializer serializer = new TestSerializer(code);
+        SerializerFactory.registerSerializer(code, serializer);
+        assertSame(serializer, SerializerFactory.getSerializer(code));
+
+        assertThrows(RuntimeException.class, () -> SerializerFactory.registerSerializer(code, new TestSerializer(code)));
+        assertThrows(RuntimeException.class, () -> SerializerFactory.registerSerializer(Hessian2Serializer.CODE, new TestSerializer(code)));
+        assertSame(serializer, SerializerFactory.getSerializer(code), "重复注册不应该覆盖已有的序列化器");
+
+        // 最高位是压缩标记
+        assertThrows(RuntimeException.class, () -> SerializerFactory.registerSerializer((byte) -100, new TestSerializer((byte) -100)));
+    }
+
+    private static class TestSerializer implements Serializer {
+        private final byte code;
+
+        TestSerializer(byte code) {
+            this.code = code;
+        }
+
+        @Override
+        public byte[] serialize(Object object) {
+            return new byte[0];
+        }
+
+        @Override
+        public void serialize(Object object, ByteBuf out) {
+        }
+
+        @Override
+        public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+            return null;
+        }
+
+        @Override
+        public byte code() {
+            return code;
+        }
+    }
+}
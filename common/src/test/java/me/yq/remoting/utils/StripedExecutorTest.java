@@ -0,0 +1,178 @@
+package me.yq.remoting.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StripedExecutor 测试类，主要覆盖的功能点：
+ * 1. 同一个 key 的任务按提交顺序串行执行
+ * 2. 队列满了之后，三种拒绝策略的行为，以及拒绝数、排队深度等指标
+ * 3. 关闭后不再接收新任务，已入队的任务会执行完
+ * 4. 提交和关闭并发时，被接收的任务都会执行，没被接收的任务会被拒绝
+ *
+ * @author yq
+ * @version v1.0 2023-05-12 16:30
+ */
+class StripedExecutorTest {
+
+    private StripedExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("测试同一个 key 的任务按序执行")
+    void test_ordered_per_key() throws InterruptedException {
+        executor = newExecutor(4, 10000, StripedExecutor.RejectPolicy.ABORT);
+        int keys = 16;
+        int tasksPerKey = 500;
+        Map<Integer, List<Integer>> executed = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(keys * tasksPerKey);
+
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (int key = 0; key < keys; key++) {
+                int k = key;
+                int seq = i;
+                assertTrue(executor.execute(k, () -> {
+                    executed.computeIfAbsent(k, x -> Collections.synchronizedList(new ArrayList<>())).add(seq);
+                    done.countDown();
+                }));
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS), "所有任务都应该执行完");
+        for (int key = 0; key < keys; key++) {
+            List<Integer> seqs = executed.get(key);
+            assertEquals(tasksPerKey, seqs.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(i, seqs.get(i), "同一个 key 的任务应该按提交顺序执行");
+            }
+        }
+        assertEquals(keys * tasksPerKey, executor.getCompletedCount());
+    }
+
+    @Test
+    @DisplayName("测试 ABORT 拒绝策略")
+    void test_reject_abort() throws InterruptedException {
+        executor = newExecutor(1, 2, StripedExecutor.RejectPolicy.ABORT);
+        CountDownLatch release = blockWorker("key");
+
+        executor.execute("key", () -> {});
+        executor.execute("key", () -> {});
+        assertEquals(2, executor.getQueueDepth());
+        assertEquals(2, executor.getMaxStripeQueueDepth());
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute("key", () -> {}));
+        assertEquals(1, executor.getRejectedCount());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("测试 CALLER_RUNS 拒绝策略")
+    void test_reject_caller_runs() throws InterruptedException {
+        executor = newExecutor(1, 1, StripedExecutor.RejectPolicy.CALLER_RUNS);
+        CountDownLatch release = blockWorker("key");
+        executor.execute("key", () -> {});
+
+        AtomicReference<Thread> ranIn = new AtomicReference<>();
+        assertTrue(executor.execute("key", () -> ranIn.set(Thread.currentThread())));
+        assertEquals(Thread.currentThread(), ranIn.get(), "队列满了之后应该由提交线程直接执行");
+        assertEquals(1, executor.getRejectedCount());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("测试 DISCARD 拒绝策略")
+    void test_reject_discard() throws InterruptedException {
+        executor = newExecutor(1, 1, StripedExecutor.RejectPolicy.DISCARD);
+        CountDownLatch release = blockWorker("key");
+        executor.execute("key", () -> {});
+
+        assertFalse(executor.execute("key", () -> fail("被丢弃的任务不应该执行")));
+        assertEquals(1, executor.getRejectedCount());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("测试关闭")
+    void test_shutdown() throws InterruptedException {
+        executor = newExecutor(2, 100, StripedExecutor.RejectPolicy.ABORT);
+        CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            executor.execute(i, done::countDown);
+        }
+
+        executor.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> executor.execute("key", () -> {}), "关闭后不应该再接收新任务");
+        assertTrue(executor.awaitTermination(3, TimeUnit.SECONDS), "关闭后工作线程应该退出");
+        assertEquals(0, done.getCount(), "已入队的任务应该执行完");
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    @DisplayName("测试提交和关闭并发时不会丢任务")
+    void test_shutdown_racing_with_dispatch() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            executor = newExecutor(2, 100000, StripedExecutor.RejectPolicy.ABORT);
+            AtomicInteger accepted = new AtomicInteger();
+            AtomicInteger executed = new AtomicInteger();
+            CountDownLatch submitting = new CountDownLatch(1);
+            Thread submitter = new Thread(() -> {
+                submitting.countDown();
+                try {
+                    for (int i = 0; ; i++) {
+                        executor.execute(i, executed::incrementAndGet);
+                        accepted.incrementAndGet();
+                    }
+                } catch (RejectedExecutionException ignored) {
+                    // 关闭后被拒绝，停止提交
+                }
+            });
+            submitter.start();
+            assertTrue(submitting.await(3, TimeUnit.SECONDS));
+
+            executor.shutdown();
+            submitter.join(3000);
+            assertTrue(executor.awaitTermination(3, TimeUnit.SECONDS), "关闭后工作线程应该退出");
+            assertEquals(accepted.get(), executed.get(), "被接收的任务都应该执行");
+        }
+    }
+
+    private StripedExecutor newExecutor(int stripeNum, int queueCapacity, StripedExecutor.RejectPolicy policy) {
+        return new StripedExecutor(stripeNum, queueCapacity, policy, new NamedThreadFactory("striped-test"));
+    }
+
+    /**
+     * 提交一个阻塞任务，把 key 所在分段的工作线程卡住，返回用于放行的 latch
+     */
+    private CountDownLatch blockWorker(Object key) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(key, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(3, TimeUnit.SECONDS));
+        return release;
+    }
+}
@@ -0,0 +1,88 @@
+package me.yq.remoting.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StripedIntObjectMap 测试类，主要覆盖的功能点：
+ * 1. putIfAbsent 不会覆盖已有的值
+ * 2. remove / 条件 remove 能正确移除并维护 size
+ * 3. 多线程并发 putIfAbsent 同一个 key，只有一个线程能成功
+ *
+ * @author yq
+ * @version v1.0 2023-05-08 21:40
+ */
+class StripedIntObjectMapTest {
+
+    @Test
+    @DisplayName("测试 putIfAbsent 和 remove")
+    void test_put_if_absent_and_remove() {
+        StripedIntObjectMap<String> map = new StripedIntObjectMap<>(4, 2);
+
+        assertNull(map.putIfAbsent(1, "a"));
+        assertEquals("a", map.putIfAbsent(1, "b"), "已存在的 key 不应该被覆盖");
+        assertNull(map.putIfAbsent(-7, "c"), "负数 key 也应该能正常放入");
+        assertEquals(2, map.size());
+
+        assertFalse(map.remove(1, "b"), "value 不匹配时不应该移除");
+        assertTrue(map.remove(1, "a"));
+        assertNull(map.get(1));
+        assertEquals("c", map.remove(-7));
+        assertNull(map.remove(-7));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试扩容和清空")
+    void test_grow_and_clear() {
+        StripedIntObjectMap<Integer> map = new StripedIntObjectMap<>(3, 1);
+        for (int i = 0; i < 10000; i++) {
+            assertNull(map.putIfAbsent(i, i));
+        }
+        assertEquals(10000, map.size());
+        assertEquals(4321, map.get(4321));
+
+        List<Integer> removed = map.clear();
+        assertEquals(10000, removed.size());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试并发 putIfAbsent")
+    void test_concurrent_put_if_absent() throws InterruptedException {
+        StripedIntObjectMap<Integer> map = new StripedIntObjectMap<>(4, 8);
+        int threads = 8;
+        int keys = 5000;
+        AtomicInteger success = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int value = t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) {
+                }
+                for (int k = 0; k < keys; k++) {
+                    if (map.putIfAbsent(k, value) == null)
+                        success.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(keys, success.get(), "每个 key 只应该有一个线程放入成功");
+        assertEquals(keys, map.size());
+    }
+}
@@ -3,11 +3,14 @@ package me.yq.biz.service;
 import io.netty.channel.Channel;
 import me.yq.biz.Notice;
 import me.yq.common.BaseRequest;
+import me.yq.common.BaseResponse;
 import me.yq.common.BizCode;
 import me.yq.remoting.session.SessionMap;
 import me.yq.remoting.transport.CommandSendingDelegate;
 import me.yq.remoting.transport.Session;
 
+import java.util.concurrent.CompletableFuture;
+
 
 // todo 接收通知失败，重发？
 /**
@@ -38,4 +41,13 @@ public enum SendNoticeService {
         Channel channel = session.getChannel();
         CommandSendingDelegate.sendRequestSync(channel,request,timeoutMillis);
     }
+
+    /**
+     * 异步发送通知，不阻塞调用线程，客户端确认收到（或者超时、发送失败）时返回的 future 会被完成
+     */
+    public CompletableFuture<BaseResponse> sendNoticeAsync(Notice notice, Session session, long timeoutMillis){
+        BaseRequest request = new BaseRequest(BizCode.Noticing.code(), notice);
+        Channel channel = session.getChannel();
+        return CommandSendingDelegate.sendRequestCompletable(channel,request,timeoutMillis);
+    }
 }
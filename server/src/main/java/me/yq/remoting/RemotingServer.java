@@ -3,23 +3,30 @@ package me.yq.remoting;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
+import me.yq.remoting.codec.protocol.CommandBatcher;
+import me.yq.remoting.codec.protocol.PayloadCompressor;
 import me.yq.remoting.codec.protocol.ProtocolCodec;
+import me.yq.remoting.codec.protocol.YQCommandCodec;
 import me.yq.remoting.config.ServerConfigNames;
 import me.yq.remoting.connection.ServerHeartbeatHandler;
 import me.yq.remoting.connection.ServerIdleConnHandler;
 import me.yq.remoting.connection.ServerSideConnectionHandler;
 import me.yq.remoting.support.Config;
+import me.yq.remoting.support.TransportType;
+import me.yq.remoting.transport.PendingSendQueue;
+import me.yq.remoting.transport.RequestTimeoutWheel;
 import me.yq.remoting.transport.process.CommandHandler;
 import me.yq.remoting.utils.NamedThreadFactory;
 import me.yq.support.ChatServer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -35,16 +42,18 @@ public class RemotingServer {
 
     private final ChatServer server;
 
-    private final NioEventLoopGroup boss = new NioEventLoopGroup(
-            1,
-            new NamedThreadFactory("Server-Boss-Thread", false));
+    /**
+     * boss、worker 在启动时按配置的 IO 模型创建，参考 {@link TransportType}
+     */
+    private EventLoopGroup boss;
 
-    private final NioEventLoopGroup worker = new NioEventLoopGroup(
-            Runtime.getRuntime().availableProcessors() + 1,
-            new NamedThreadFactory("Server-Worker-Thread", false));
+    private EventLoopGroup worker;
 
 
-    private Channel serverChannel;
+    /**
+     * 监听 socket。开启 SO_REUSEPORT 时同一个端口上绑定多个，每个由一个 boss 线程负责 accept
+     */
+    private final List<Channel> serverChannels = new ArrayList<>();
 
     public RemotingServer(ChatServer chatServer) {
         this.server = chatServer;
@@ -57,24 +66,97 @@ public class RemotingServer {
     public void start() {
         Config serverConfig = server.getConfig();
 
+        // 服务端主动发出的请求（消息转发、通知）共用请求超时时间轮
+        RequestTimeoutWheel.configure(
+                serverConfig.getLong(ServerConfigNames.TIMEOUT_WHEEL_TICK_MILLIS),
+                serverConfig.getInt(ServerConfigNames.TIMEOUT_WHEEL_SIZE));
+
+        TransportType transport = TransportType.fromConfig(serverConfig.getValue(ServerConfigNames.TRANSPORT_TYPE)).resolve();
+        log.info("服务端使用的 IO 模型: {}", transport);
+        // 建联风暴（发布、网络抖动后大量客户端同时重连）时，单个监听 socket 的 accept 队列和单个 boss 线程都会成为瓶颈。
+        // SO_REUSEPORT 允许同一个端口上绑定多个监听 socket，内核按连接的四元组把新连接分散到各个 socket 上
+        int acceptorNum = serverConfig.getInt(ServerConfigNames.ACCEPTOR_NUM);
+        if (acceptorNum < 1)
+            throw new IllegalArgumentException("非法的监听 socket 数量: " + acceptorNum);
+        if (acceptorNum > 1 && transport != TransportType.EPOLL) {
+            log.warn("SO_REUSEPORT 需要 epoll，当前的 IO 模型是 {}，只绑定一个监听 socket", transport);
+            acceptorNum = 1;
+        }
+        boss = transport.newEventLoopGroup(acceptorNum, new NamedThreadFactory("Server-Boss-Thread", false));
+        worker = transport.newEventLoopGroup(Runtime.getRuntime().availableProcessors() + 1,
+                new NamedThreadFactory("Server-Worker-Thread", false));
+
         ServerBootstrap bootstrap = new ServerBootstrap();
-        bootstrap.channel(NioServerSocketChannel.class);
+        bootstrap.channel(transport.serverChannelClass());
         bootstrap.group(boss, worker);
         bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, serverConfig.getInt(ServerConfigNames.CONNECT_TIMEOUT_MILLIS)); // 建联超时时间 3 秒
         bootstrap.option(ChannelOption.ALLOCATOR, new PooledByteBufAllocator(true)); // 默认使用 1.池化 2.直接 mem
+        bootstrap.option(ChannelOption.SO_BACKLOG, serverConfig.getInt(ServerConfigNames.SO_BACKLOG)); // 实际生效的是它和 somaxconn 中较小的那个
+        if (acceptorNum > 1)
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
         bootstrap.childOption(ChannelOption.SO_KEEPALIVE, true);
         bootstrap.childOption(ChannelOption.TCP_NODELAY, true);  // 禁止粘包
+        // 出站缓冲区超过高水位后 channel 不可写，发送的消息进入待发送队列排队，避免慢客户端拖垮服务端内存
+        bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                serverConfig.getInt(ServerConfigNames.WRITE_BUFFER_LOW_WATER_MARK),
+                serverConfig.getInt(ServerConfigNames.WRITE_BUFFER_HIGH_WATER_MARK)));
+        bootstrap.childHandler(newChildChannelInitializer(serverConfig));
+
+        // 每次 bind 都会把新的监听 socket 注册到下一个 boss 线程上
+        int port = serverConfig.getInt(ServerConfigNames.SERVER_PORT);
+        for (int i = 0; i < acceptorNum; i++) {
+            ChannelFuture channelFuture = bootstrap.bind(port);
+            channelFuture.addListener(
+                    future -> {
+                        if (!future.isSuccess())
+                            log.error("服务器启动失败......");
+                        else {
+                            log.info("服务器启动成功!");
+                        }
+                    }
+            );
+
+            // block to wait，保证 start 返回时已经可以接收连接
+            channelFuture.awaitUninterruptibly();
+            this.serverChannels.add(channelFuture.channel());
+        }
+    }
+
+    /**
+     * 创建子 channel 的 pipeline 初始化器。可以共享的 handler 和压缩器在这里创建一次，所有子 channel 共用
+     *
+     * @param serverConfig 服务端配置
+     * @return 子 channel 的初始化器
+     */
+    ChannelInitializer<Channel> newChildChannelInitializer(Config serverConfig) {
+        int pendingSendCapacity = serverConfig.getInt(ServerConfigNames.PENDING_SEND_QUEUE_CAPACITY);
+        PendingSendQueue.OverflowPolicy overflowPolicy =
+                PendingSendQueue.OverflowPolicy.valueOf(serverConfig.getValue(ServerConfigNames.PENDING_SEND_OVERFLOW_POLICY));
+        long parkMillis = serverConfig.getLong(ServerConfigNames.PENDING_SEND_PARK_MILLIS);
+
+        // 压缩器线程安全，所有 channel 共享一个，字典只加载一次
+        PayloadCompressor compressor = new PayloadCompressor(
+                serverConfig.getInt(ServerConfigNames.COMPRESSION_THRESHOLD),
+                serverConfig.getInt(ServerConfigNames.COMPRESSION_LEVEL),
+                PayloadCompressor.loadDictionary(serverConfig.getValue(ServerConfigNames.COMPRESSION_DICTIONARY_PATH)),
+                serverConfig.getInt(ServerConfigNames.COMPRESSION_MAX_RAW_LENGTH));
 
         LoggingHandler loggingHandler = new LoggingHandler(LogLevel.DEBUG);
         ServerSideConnectionHandler connectionHandler = new ServerSideConnectionHandler(this.server.getSessionMap());
         ServerIdleConnHandler idleConnHandler = new ServerIdleConnHandler(this.server.getSessionMap());
         ServerHeartbeatHandler heartbeatHandler = new ServerHeartbeatHandler();
         CommandHandler commandHandler = new CommandHandler(this.server.getUserProcessor());
-        bootstrap.childHandler(new ChannelInitializer<NioSocketChannel>() {
+        return new ChannelInitializer<Channel>() {
             @Override
-            protected void initChannel(NioSocketChannel ch) {
+            protected void initChannel(Channel ch) {
                 ChannelPipeline pipeline = ch.pipeline();
 
+                // 放在最靠近 head 的位置，保证所有 handler 以及业务线程发起的 flush 都会经过合并
+                if (serverConfig.getBoolean(ServerConfigNames.FLUSH_CONSOLIDATION_ENABLE))
+                    pipeline.addLast("FlushConsolidationHandler", new FlushConsolidationHandler(
+                            serverConfig.getInt(ServerConfigNames.FLUSH_CONSOLIDATION_MAX_FLUSHES),
+                            serverConfig.getBoolean(ServerConfigNames.FLUSH_CONSOLIDATION_WHEN_NO_READ)));
+
                 Map<String, Supplier<ChannelHandler>> handlersAhead = server.getCustomHandlersAhead();
                 handlersAhead.forEach((name, supplier) -> pipeline.addLast(name, supplier.get()));
 
@@ -88,34 +170,31 @@ public class RemotingServer {
                     pipeline.addLast("ServerIdleConnHandler", idleConnHandler);
                 }
 
-                pipeline.addLast("ProtocolCodec", new ProtocolCodec());
+                boolean zeroCopyDecode = serverConfig.getBoolean(ServerConfigNames.ZERO_COPY_DECODE_ENABLE);
+                pipeline.addLast("ProtocolCodec", new ProtocolCodec(new YQCommandCodec(zeroCopyDecode, compressor, true)));
+                if (serverConfig.getBoolean(ServerConfigNames.BATCH_ENABLE))
+                    pipeline.addLast("CommandBatcher", new CommandBatcher(
+                            serverConfig.getLong(ServerConfigNames.BATCH_WINDOW_MICROS),
+                            serverConfig.getInt(ServerConfigNames.BATCH_MAX_COMMANDS)));
                 pipeline.addLast("ServerHeartbeatHandler", heartbeatHandler);
+                if (pendingSendCapacity > 0)
+                    pipeline.addLast("PendingSendQueue", new PendingSendQueue(pendingSendCapacity, overflowPolicy, parkMillis));
                 pipeline.addLast("CommandHandler", commandHandler);
             }
-        });
-
-        ChannelFuture channelFuture = bootstrap.bind(serverConfig.getInt(ServerConfigNames.SERVER_PORT));
-        channelFuture.addListener(
-                future -> {
-                    if (!future.isSuccess())
-                        log.error("服务器启动失败......");
-                    else {
-                        log.info("服务器启动成功!");
-                    }
-                }
-        );
-
-        this.serverChannel = channelFuture.channel();
+        };
     }
 
     /**
      * 关闭通信服务端
      */
     public void shutdown() {
-        if (serverChannel != null)
+        for (Channel serverChannel : serverChannels)
             serverChannel.close();
-        this.boss.shutdownGracefully();
-        this.worker.shutdownGracefully();
+        serverChannels.clear();
+        if (boss != null)
+            this.boss.shutdownGracefully();
+        if (worker != null)
+            this.worker.shutdownGracefully();
     }
 
 
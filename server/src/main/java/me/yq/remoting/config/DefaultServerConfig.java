@@ -9,14 +9,42 @@ import me.yq.remoting.support.Config;
 public class DefaultServerConfig extends Config {
     {
         putConfig(ServerConfigNames.SERVER_PORT,"9088");
+        putConfig(ServerConfigNames.TRANSPORT_TYPE,"AUTO");
+        putConfig(ServerConfigNames.ACCEPTOR_NUM,"1");
+        putConfig(ServerConfigNames.SO_BACKLOG,"4096");
         putConfig(ServerConfigNames.CONNECT_TIMEOUT_MILLIS,"3000");
         putConfig(ServerConfigNames.CLIENT_TIMEOUT_SECONDS,"90");
         putConfig(ServerConfigNames.SHUTDOWN_TIMEOUT_MILLIS,"5000");
         putConfig(ServerConfigNames.BIZ_CORE_THREAD_NUM,"20");
         putConfig(ServerConfigNames.BIZ_MAX_THREAD_NUM,"200");
         putConfig(ServerConfigNames.BIZ_EXTRA_T_ALIVE_SECONDS,"30");
+        putConfig(ServerConfigNames.BIZ_ORDERED_ENABLE,"true");
+        putConfig(ServerConfigNames.BIZ_ORDERED_THREAD_NUM,"16");
+        putConfig(ServerConfigNames.BIZ_ORDERED_QUEUE_CAPACITY,"1024");
+        putConfig(ServerConfigNames.BIZ_ORDERED_REJECT_POLICY,"ABORT");
         putConfig(ServerConfigNames.REMOVE_TIMEOUT_MILLIS,"3000");
         putConfig(ServerConfigNames.IDLE_CHECK_ENABLE,"true");
         putConfig(ServerConfigNames.WAIT_RESPONSE_MILLIS,"3000");
+        putConfig(ServerConfigNames.RELAY_PASS_THROUGH_ENABLE,"true");
+        putConfig(ServerConfigNames.PROTOCOL_NEGOTIATION_ENABLE,"true");
+        putConfig(ServerConfigNames.COMPRESSION_ENABLE,"true");
+        putConfig(ServerConfigNames.COMPRESSION_THRESHOLD,"256");
+        putConfig(ServerConfigNames.COMPRESSION_LEVEL,"6");
+        putConfig(ServerConfigNames.COMPRESSION_DICTIONARY_PATH,"none");
+        putConfig(ServerConfigNames.COMPRESSION_MAX_RAW_LENGTH,"16777216");
+        putConfig(ServerConfigNames.ZERO_COPY_DECODE_ENABLE,"true");
+        putConfig(ServerConfigNames.TIMEOUT_WHEEL_TICK_MILLIS,"10");
+        putConfig(ServerConfigNames.TIMEOUT_WHEEL_SIZE,"512");
+        putConfig(ServerConfigNames.BATCH_ENABLE,"false");
+        putConfig(ServerConfigNames.BATCH_WINDOW_MICROS,"0");
+        putConfig(ServerConfigNames.BATCH_MAX_COMMANDS,"64");
+        putConfig(ServerConfigNames.WRITE_BUFFER_HIGH_WATER_MARK,"65536");
+        putConfig(ServerConfigNames.WRITE_BUFFER_LOW_WATER_MARK,"32768");
+        putConfig(ServerConfigNames.PENDING_SEND_QUEUE_CAPACITY,"1024");
+        putConfig(ServerConfigNames.PENDING_SEND_OVERFLOW_POLICY,"REJECT");
+        putConfig(ServerConfigNames.PENDING_SEND_PARK_MILLIS,"1000");
+        putConfig(ServerConfigNames.FLUSH_CONSOLIDATION_ENABLE,"true");
+        putConfig(ServerConfigNames.FLUSH_CONSOLIDATION_MAX_FLUSHES,"256");
+        putConfig(ServerConfigNames.FLUSH_CONSOLIDATION_WHEN_NO_READ,"true");
     }
 }
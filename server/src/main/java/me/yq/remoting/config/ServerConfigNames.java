@@ -8,6 +8,14 @@ public class ServerConfigNames {
     // 服务端端口
     public static final String SERVER_PORT = "SERVER_PORT";
 
+    // IO 模型：NIO / EPOLL / AUTO，epoll 不可用时回退到 NIO
+    public static final String TRANSPORT_TYPE = "TRANSPORT_TYPE";
+
+    // 同一个端口上绑定的监听 socket 数（SO_REUSEPORT，每个由一个 boss 线程 accept），大于 1 时需要 epoll
+    public static final String ACCEPTOR_NUM = "ACCEPTOR_NUM";
+    // 监听 socket 的 accept 队列长度
+    public static final String SO_BACKLOG = "SO_BACKLOG";
+
     // 客户端请求建联 超时时间
     public static final String CONNECT_TIMEOUT_MILLIS = "CONNECT_TIMEOUT_MILLIS";
     // 客户端无响应 判定死亡的时间
@@ -23,6 +31,15 @@ public class ServerConfigNames {
     // 业务线程池存活时间
     public static final String BIZ_EXTRA_T_ALIVE_SECONDS = "BIZ_EXTRA_T_ALIVE_SECONDS";
 
+    // 按 channel 串行的业务线程池开启（同一个用户的请求按序处理），关闭则使用上面的普通业务线程池
+    public static final String BIZ_ORDERED_ENABLE = "BIZ_ORDERED_ENABLE";
+    // 按 channel 串行的业务线程池 工作线程数（分段数）
+    public static final String BIZ_ORDERED_THREAD_NUM = "BIZ_ORDERED_THREAD_NUM";
+    // 按 channel 串行的业务线程池 每个分段的队列容量
+    public static final String BIZ_ORDERED_QUEUE_CAPACITY = "BIZ_ORDERED_QUEUE_CAPACITY";
+    // 按 channel 串行的业务线程池 队列满了之后的拒绝策略：ABORT / CALLER_RUNS / DISCARD
+    public static final String BIZ_ORDERED_REJECT_POLICY = "BIZ_ORDERED_REJECT_POLICY";
+
     // 优雅移除单个 channel 超时时间
     public static final String REMOVE_TIMEOUT_MILLIS = "REMOVE_TIMEOUT_MILLIS";
 
@@ -32,4 +49,54 @@ public class ServerConfigNames {
     // 等待响应消息超时时间
     public static final String WAIT_RESPONSE_MILLIS = "WAIT_RESPONSE_MILLIS";
 
+    // 消息转发直通开启（服务端按消息头路由，不反序列化消息体，原样转发给目标用户）
+    public static final String RELAY_PASS_THROUGH_ENABLE = "RELAY_PASS_THROUGH_ENABLE";
+
+    // 登录时协商序列化方式和协议版本开启（关闭时服务端发给客户端的消息一律使用默认的序列化方式和协议版本）
+    public static final String PROTOCOL_NEGOTIATION_ENABLE = "PROTOCOL_NEGOTIATION_ENABLE";
+
+    // 消息体压缩开启（只对登录时声明了能解压的客户端压缩，解压总是支持的）
+    public static final String COMPRESSION_ENABLE = "COMPRESSION_ENABLE";
+    // 消息体压缩 阈值字节数，小于该值的消息体不压缩
+    public static final String COMPRESSION_THRESHOLD = "COMPRESSION_THRESHOLD";
+    // 消息体压缩 Deflate 压缩级别（0-9，-1 为默认级别）
+    public static final String COMPRESSION_LEVEL = "COMPRESSION_LEVEL";
+    // 消息体压缩 预置字典的文件路径，为 none 时不使用字典；客户端持有同一个字典时才会使用
+    public static final String COMPRESSION_DICTIONARY_PATH = "COMPRESSION_DICTIONARY_PATH";
+    // 消息体压缩 解压后的最大字节数，对端声明的原始长度超过该值时拒绝解压
+    public static final String COMPRESSION_MAX_RAW_LENGTH = "COMPRESSION_MAX_RAW_LENGTH";
+
+    // 零拷贝解码开启（消息体直接引用入站 ByteBuf，反序列化后释放）
+    public static final String ZERO_COPY_DECODE_ENABLE = "ZERO_COPY_DECODE_ENABLE";
+
+    // 请求超时时间轮 每格时间跨度
+    public static final String TIMEOUT_WHEEL_TICK_MILLIS = "TIMEOUT_WHEEL_TICK_MILLIS";
+    // 请求超时时间轮 格数
+    public static final String TIMEOUT_WHEEL_SIZE = "TIMEOUT_WHEEL_SIZE";
+
+    // 批量帧开启（把发往同一个连接的多个通信对象聚合成一帧写出），需要对端也能解码批量帧
+    public static final String BATCH_ENABLE = "BATCH_ENABLE";
+    // 批量帧 聚合窗口（微秒），收到 flush 后最多等这么久再写出；为 0 时只聚合 IO 线程中已经排队的写出
+    public static final String BATCH_WINDOW_MICROS = "BATCH_WINDOW_MICROS";
+    // 批量帧 一帧最多装多少个通信对象
+    public static final String BATCH_MAX_COMMANDS = "BATCH_MAX_COMMANDS";
+
+    // 出站缓冲区 高水位字节数，超过后 channel 变为不可写
+    public static final String WRITE_BUFFER_HIGH_WATER_MARK = "WRITE_BUFFER_HIGH_WATER_MARK";
+    // 出站缓冲区 低水位字节数，回落到该值以下后 channel 恢复可写
+    public static final String WRITE_BUFFER_LOW_WATER_MARK = "WRITE_BUFFER_LOW_WATER_MARK";
+    // 待发送队列容量，channel 不可写时发送的消息在队列中排队，恢复可写后写出；<= 0 表示不排队，不可写时直接报错
+    public static final String PENDING_SEND_QUEUE_CAPACITY = "PENDING_SEND_QUEUE_CAPACITY";
+    // 待发送队列 满了之后的处理策略：DROP_OLDEST / REJECT / PARK
+    public static final String PENDING_SEND_OVERFLOW_POLICY = "PENDING_SEND_OVERFLOW_POLICY";
+    // 待发送队列 PARK 策略下发送线程最多等待的时间
+    public static final String PENDING_SEND_PARK_MILLIS = "PENDING_SEND_PARK_MILLIS";
+
+    // flush 合并开启（突发写出时合并多次 flush，减少 write 系统调用）
+    public static final String FLUSH_CONSOLIDATION_ENABLE = "FLUSH_CONSOLIDATION_ENABLE";
+    // flush 合并 最多合并多少次显式 flush 后强制真正 flush 一次
+    public static final String FLUSH_CONSOLIDATION_MAX_FLUSHES = "FLUSH_CONSOLIDATION_MAX_FLUSHES";
+    // flush 合并 没有读事件进行时（业务线程写出）是否也进行合并，开启后 flush 会推迟到 eventLoop 的下一个任务中执行
+    public static final String FLUSH_CONSOLIDATION_WHEN_NO_READ = "FLUSH_CONSOLIDATION_WHEN_NO_READ";
+
 }
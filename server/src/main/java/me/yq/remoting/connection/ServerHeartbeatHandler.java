@@ -21,6 +21,8 @@ public class ServerHeartbeatHandler extends ChannelInboundHandlerAdapter {
         if (msg instanceof HeartbeatCommand){
             HeartbeatCommand heartbeat = (HeartbeatCommand) msg;
             HeartbeatAckCommand ack = new HeartbeatAckCommand(heartbeat.getMessageId());
+            // 和心跳使用相同的协议版本，客户端发得出就一定解得开
+            ack.setVersion(heartbeat.getVersion());
             ctx.writeAndFlush(ack).addListener(
                     future -> {
                         if (!future.isSuccess()){
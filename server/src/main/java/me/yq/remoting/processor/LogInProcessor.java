@@ -13,9 +13,12 @@ import me.yq.common.BaseResponse;
 import me.yq.common.exception.SystemException;
 import me.yq.remoting.config.ServerConfigNames;
 import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.support.ChannelAttributes;
 import me.yq.remoting.support.Config;
+import me.yq.remoting.support.DefaultConfig;
 import me.yq.remoting.transport.Session;
 import me.yq.remoting.transport.process.RequestProcessor;
+import me.yq.remoting.transport.serializer.SerializerFactory;
 
 import java.net.InetSocketAddress;
 import java.util.List;
@@ -66,21 +69,63 @@ public class LogInProcessor extends RequestProcessor {
         // - 没有登录，将对象添加到 session
         Session kickedSession = sessionMap.addSession(new Session(user.getUserId(),channel));
 
-        if (kickedSession != null){
-                sendNoticeService.sendNotice(
-                        newKickOffNotice(channel,user.getUserId()),
-                        kickedSession,
-                        config.getLong(ServerConfigNames.WAIT_RESPONSE_MILLIS));
+        if (kickedSession != null)
+            kickOff(kickedSession, newKickOffNotice(channel,user.getUserId()));
 
-            // 老 channel 会被强行 close
-            log.warn("发生挤掉线行为，现在强行关闭老 channel！");
-            kickedSession.getChannel().close();
-        }
+        // 协商之后发给该用户的消息（包括本次的登录响应）使用的序列化方式和协议版本
+        if (config.getBoolean(ServerConfigNames.PROTOCOL_NEGOTIATION_ENABLE))
+            negotiateProtocol(channel, logInRequest);
+
+        // 客户端能解压时，之后发给它的较大的消息体会被压缩，是否使用字典由编码时比对双方的字典 id 决定
+        if (config.getBoolean(ServerConfigNames.COMPRESSION_ENABLE) && logInRequest.isCompressionSupported())
+            channel.attr(ChannelAttributes.CHANNEL_COMPRESSION).set(logInRequest.getCompressionDictionaryId());
 
         log.debug("用户[{}]信息校验通过！登陆成功！",user.getUserId());
         return new BaseResponse(userFound);
     }
 
+    /**
+     * 序列化方式：按客户端的偏好顺序，选择第一个服务端也支持的；协议版本：选择双方都支持的最高版本。
+     * 客户端没有声明时保持默认值，老客户端不受影响
+     */
+    private void negotiateProtocol(Channel channel, LogInRequest logInRequest) {
+        byte[] supportedSerializations = logInRequest.getSupportedSerializations();
+        if (supportedSerializations != null) {
+            for (byte serialization : supportedSerializations) {
+                if (SerializerFactory.hasSerializer(serialization)) {
+                    channel.attr(ChannelAttributes.CHANNEL_SERIALIZATION).set(serialization);
+                    break;
+                }
+            }
+        }
+
+        byte clientVersion = logInRequest.getProtocolVersion();
+        if (clientVersion > 0)
+            channel.attr(ChannelAttributes.CHANNEL_PROTOCOL_VERSION).set((byte) Math.min(clientVersion, DefaultConfig.LATEST_PROTOCOL_VERSION));
+
+        log.debug("用户[{}]协商结果：序列化方式[{}]，协议版本[{}]", logInRequest.getUser().getUserId(),
+                ChannelAttributes.serializationOf(channel), ChannelAttributes.protocolVersionOf(channel));
+    }
+
+    /**
+     * 异步推送安全警告，不占用业务线程等待老客户端的确认。无论推送结果如何，老 channel 都会被强行 close
+     */
+    private void kickOff(Session kickedSession, Notice notice){
+        Channel oldChannel = kickedSession.getChannel();
+        try {
+            sendNoticeService.sendNoticeAsync(notice, kickedSession, config.getLong(ServerConfigNames.WAIT_RESPONSE_MILLIS))
+                    .whenComplete((response, cause) -> closeKickedChannel(oldChannel));
+        } catch (SystemException e) {
+            log.warn("安全警告推送失败！原因：{}", e.getMessage());
+            closeKickedChannel(oldChannel);
+        }
+    }
+
+    private void closeKickedChannel(Channel oldChannel){
+        log.warn("发生挤掉线行为，现在强行关闭老 channel！");
+        oldChannel.close();
+    }
+
     private Notice newKickOffNotice(Channel suspiciousChannel, long targetUid){
         if (suspiciousChannel == null){
             throw new SystemException("新 Channel 不能为空！");
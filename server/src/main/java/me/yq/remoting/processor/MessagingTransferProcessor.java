@@ -1,6 +1,7 @@
 package me.yq.remoting.processor;
 
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 import me.yq.biz.Message;
 import me.yq.biz.domain.User;
@@ -10,19 +11,23 @@ import me.yq.common.BizCode;
 import me.yq.common.ResponseStatus;
 import me.yq.common.exception.BusinessException;
 import me.yq.common.exception.SystemException;
+import me.yq.remoting.command.DefaultRequestCommand;
 import me.yq.remoting.config.ServerConfigNames;
 import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.support.ChannelAttributes;
 import me.yq.remoting.support.Config;
-import me.yq.remoting.transport.Callback;
 import me.yq.remoting.transport.CommandSendingDelegate;
 import me.yq.remoting.transport.process.RequestProcessor;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
 
 /**
- * 消息收发处理器, 处理 {@link Message} 对象, Messaging 的处理非常特殊，需要进行二次转发！
+ * 消息收发处理器, 处理 {@link Message} 对象, Messaging 的处理非常特殊，需要进行二次转发！<br/>
+ * 开启直通转发（{@link ServerConfigNames#RELAY_PASS_THROUGH_ENABLE}）后，只要消息头中带有目标用户 id，
+ * 服务端就不再反序列化消息体，而是把收到的消息体原样转发给目标用户，参考 {@link #processRawRequest}
  *
  * @author yq
  * @version v1.0 2023-02-14 12:07 PM
@@ -36,12 +41,15 @@ public class MessagingTransferProcessor extends RequestProcessor {
 
     private final Executor executor;
 
+    private final boolean passThrough;
+
 
     public MessagingTransferProcessor(SessionMap sessionMap, Config config, Executor executor) {
         super(true);
         this.sessionMap = sessionMap;
         this.config = config;
         this.executor = executor;
+        this.passThrough = config.getBoolean(ServerConfigNames.RELAY_PASS_THROUGH_ENABLE);
     }
 
     public MessagingTransferProcessor(SessionMap sessionMap, Config config, Executor executor, List<Runnable> preTasks, List<Runnable> postTasks) {
@@ -49,6 +57,58 @@ public class MessagingTransferProcessor extends RequestProcessor {
         this.sessionMap = sessionMap;
         this.config = config;
         this.executor = executor;
+        this.passThrough = config.getBoolean(ServerConfigNames.RELAY_PASS_THROUGH_ENABLE);
+    }
+
+    /**
+     * 直通转发：根据消息头中的目标用户 id 找到目标 channel，换一个新的消息 id 后，把消息体原样转发过去，
+     * 省去一次反序列化和一次序列化（零拷贝解码时，转发的就是入站 ByteBuf 的切片本身）。<br/>
+     * 和常规流程一样，消息写出后立即告知发送端发送成功；转发失败或者等待目标用户确认超时时，再以同一个消息 id 告知发送端发送失败。<br/>
+     * 消息头中没有目标用户、目标用户不在线（不可写）、或者目标用户协商的序列化方式和协议版本与消息不一致时，返回 false，交由常规流程处理
+     *
+     * @param ctx            当前 channelHandlerContext
+     * @param requestCommand 尚未反序列化的请求通信对象
+     * @return 是否已经转发完毕
+     */
+    @Override
+    public boolean processRawRequest(ChannelHandlerContext ctx, DefaultRequestCommand requestCommand) {
+        long targetUserId = requestCommand.getRoutingId();
+        if (!passThrough || targetUserId == BaseRequest.NO_ROUTING_ID)
+            return false;
+
+        Channel targetChannel = sessionMap.getUserChannel(targetUserId);
+        if (targetChannel == null || !targetChannel.isActive() || !targetChannel.isWritable())
+            return false;
+
+        // 原样转发要求目标用户能解开发送方的消息体，双方协商的序列化方式不一致时交由常规流程按目标用户的协商结果重新序列化。
+        // 协议版本只决定帧格式，转发时按目标用户的版本重新编码即可，不影响原样转发
+        if (ChannelAttributes.serializationOf(targetChannel) != requestCommand.getSerialization())
+            return false;
+
+        processPreTasks();
+
+        int messageId = requestCommand.getMessageId();
+        CompletableFuture<BaseResponse> relayFuture = null;
+        BaseResponse response;
+        try {
+            relayFuture = CommandSendingDelegate.relayRequestCompletable(targetChannel, requestCommand.newRelayCommand(), config.getLong(ServerConfigNames.WAIT_RESPONSE_MILLIS));
+            response = new BaseResponse(ResponseStatus.SUCCESS);
+        } catch (SystemException e) {
+            response = new BaseResponse(ResponseStatus.FAILED, e.getMessage(), e);
+        }
+        CommandSendingDelegate.sendResponseOneway(ctx, messageId, response);
+
+        // 和常规流程一样，写出失败或者等待目标用户确认超时，需要通知发送端这个消息发送失败了
+        if (relayFuture != null)
+            relayFuture.whenComplete((targetResponse, cause) -> {
+                if (cause == null)
+                    return;
+                log.warn("消息转发给用户[{}]失败！原因: {}", targetUserId, cause.getMessage());
+                CommandSendingDelegate.sendResponseOneway(ctx, messageId, newRelayFailedResponse());
+            });
+
+        processPostTasks();
+        return true;
     }
 
     /**
@@ -72,56 +132,30 @@ public class MessagingTransferProcessor extends RequestProcessor {
     }
 
     /**
-     * 将消息转发送给目标用户，异步告知用户是否发送成功
+     * 将消息转发送给目标用户，异步告知用户是否发送成功。转发不会阻塞业务线程，目标用户的响应到达后再切换到 executor 中回传
      *
      * @param message    待发送的消息
      * @param targetUser 目标用户
      */
     private void sendMessageToTarget(Message message, User targetUser, long timeoutMillis) {
         Channel targetChannel = sessionMap.getUserChannel(targetUser.getUserId());
+        Channel fromChannel = getChannelLocal().get();
+        int messageId = message.getMessageId();
         BaseRequest request = new BaseRequest(BizCode.Messaging.code(), message);
-        CommandSendingDelegate.sendRequestCallback(
-                targetChannel,
-                request,
-                timeoutMillis,
-                new MessageSendFailedCallback(getChannelLocal().get(), message.getMessageId(),this.executor));
+        CommandSendingDelegate.sendRequestCompletable(targetChannel, request, timeoutMillis)
+                .whenCompleteAsync((response, cause) -> {
+                    // 发送失败或者超时，需要通知发送端这个消息发送失败了
+                    BaseResponse relayed = cause == null ?
+                            new BaseResponse(response.getAppResponse()) :
+                            newRelayFailedResponse();
+                    CommandSendingDelegate.sendResponseOneway(fromChannel.pipeline().lastContext(), messageId, relayed);
+                }, this.executor);
     }
 
     /**
-     * 消息发送失败回调，需要通知发送端这个消息发送失败了
+     * @return 转发失败时回传给发送端的响应
      */
-    private static class MessageSendFailedCallback implements Callback {
-
-        private final Channel fromChannel;
-
-        private final int messageId;
-
-        private final Executor executor;
-
-        public MessageSendFailedCallback(Channel fromChannel, int messageId, Executor executor) {
-            this.fromChannel = fromChannel;
-            this.messageId = messageId;
-            this.executor = executor;
-        }
-
-        @Override
-        public void onResponse(BaseResponse response) {
-            CommandSendingDelegate.sendResponseOneway(fromChannel.pipeline().lastContext(), messageId, new BaseResponse(response.getAppResponse()));
-        }
-
-        @Override
-        public void onException(Throwable cause) {
-            CommandSendingDelegate.sendResponseOneway(fromChannel.pipeline().lastContext(), messageId, new BaseResponse(new SystemException("不好意思服务器开小差了，请稍后再试！")));
-        }
-
-        @Override
-        public void onTimeout() {
-            CommandSendingDelegate.sendResponseOneway(fromChannel.pipeline().lastContext(), messageId, new BaseResponse(new SystemException("不好意思服务器开小差了，请稍后再试！")));
-        }
-
-        @Override
-        public Executor getExecutor() {
-            return this.executor;
-        }
+    private static BaseResponse newRelayFailedResponse() {
+        return new BaseResponse(new SystemException("不好意思服务器开小差了，请稍后再试！"));
     }
 }
@@ -9,7 +9,6 @@ import me.yq.remoting.support.Config;
 import me.yq.remoting.transport.RequestFutureMap;
 import me.yq.remoting.transport.Session;
 
-import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -124,7 +123,11 @@ public class SessionMap {
     }
 
     /**
-     * 根据 channel 将 session 移除（一般发生在用户进程直接关闭等非手工注销的情况）
+     * 根据 channel 将 session 移除（一般发生在用户进程直接关闭等非手工注销的情况）。<br/>
+     * 通过 channel 上的 session 反向索引直接定位，不需要遍历所有 session。
+     * 只有 map 中仍然是这个 session 时才会移除，被挤掉线的老 channel 断开时，不会误删新登录的 session
+     *
+     * @return 被移除的用户 id，如果该 channel 没有对应的 session，则返回 null
      */
     public Long removeSessionUnSafe(Channel channel) {
         if (channel == null)
@@ -132,13 +135,9 @@ public class SessionMap {
 
         channel.attr(ChannelAttributes.CHANNEL_STATE).set(ChannelAttributes.ChannelState.CLOSED);
 
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            if (session != null && session.getChannel() == channel) {
-                sessions.remove(session);
-                return session.getUid();
-            }
-        }
+        Session session = channel.attr(ChannelAttributes.CHANNEL_SESSION).get();
+        if (session != null && sessionMap.remove(session.getUid(), session))
+            return session.getUid();
 
         return null;
     }
@@ -15,10 +15,12 @@ import me.yq.remoting.support.Config;
 import me.yq.remoting.transport.process.RequestProcessor;
 import me.yq.remoting.transport.process.UserProcessor;
 import me.yq.remoting.utils.NamedThreadFactory;
+import me.yq.remoting.utils.StripedExecutor;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -42,7 +44,10 @@ public class ChatServer extends Stateful {
 
     private final RemotingServer remotingServer;
 
-    private final ThreadPoolExecutor bizThreadPool;
+    /**
+     * 业务线程池，默认是按 channel 串行的 {@link StripedExecutor}
+     */
+    private final ExecutorService bizThreadPool;
 
     private final UserProcessor userProcessor;
 
@@ -125,7 +130,14 @@ public class ChatServer extends Stateful {
     }
 
 
-    private ThreadPoolExecutor initBizThreadPool(){
+    private ExecutorService initBizThreadPool(){
+        if (config.getBoolean(ServerConfigNames.BIZ_ORDERED_ENABLE))
+            return new StripedExecutor(
+                    config.getInt(ServerConfigNames.BIZ_ORDERED_THREAD_NUM),
+                    config.getInt(ServerConfigNames.BIZ_ORDERED_QUEUE_CAPACITY),
+                    StripedExecutor.RejectPolicy.valueOf(config.getValue(ServerConfigNames.BIZ_ORDERED_REJECT_POLICY)),
+                    new NamedThreadFactory("server-biz-thread"));
+
         int coreNum = config.getInt(ServerConfigNames.BIZ_CORE_THREAD_NUM);
         int maxNum = config.getInt(ServerConfigNames.BIZ_MAX_THREAD_NUM);
         int aliveSec = config.getInt(ServerConfigNames.BIZ_EXTRA_T_ALIVE_SECONDS);
@@ -228,4 +240,11 @@ public class ChatServer extends Stateful {
         return userProcessor;
     }
 
+    /**
+     * 获取业务线程池，开启 BIZ_ORDERED_ENABLE 时是 {@link StripedExecutor}，可以从中获取排队深度、拒绝数等监控指标
+     */
+    public ExecutorService getBizThreadPool(){
+        return bizThreadPool;
+    }
+
 }
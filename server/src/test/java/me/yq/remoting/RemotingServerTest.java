@@ -0,0 +1,122 @@
+package me.yq.remoting;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.remoting.config.DefaultServerConfig;
+import me.yq.remoting.config.ServerConfigNames;
+import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.support.Config;
+import me.yq.support.ChatServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RemotingServer 测试类，主要覆盖的功能点：
+ * 1. 开启 flush 合并时，FlushConsolidationHandler 位于 ProtocolCodec 靠近 head 的一侧
+ * 2. 开启 flush 合并时，不在读事件中发起的多次 flush 推迟到下一个 eventLoop 任务，合并成一次
+ * 3. 关闭 flush 合并时，pipeline 中没有合并器，每次 flush 都原样下发
+ *
+ * @author yq
+ * @version v1.0 2023-05-27 10:20
+ */
+class RemotingServerTest {
+
+    private final Config config = new DefaultServerConfig();
+
+    /**
+     * 到达 head 的 flush 次数，也就是真正触发写出系统调用的次数
+     */
+    private final AtomicInteger flushCount = new AtomicInteger();
+
+    private EmbeddedChannel channel;
+
+    @AfterEach
+    void tearDown() {
+        if (channel != null)
+            channel.finishAndReleaseAll();
+    }
+
+    @Test
+    @DisplayName("测试 flush 合并器位于协议编解码器之前")
+    void test_flush_consolidation_placement() {
+        channel = newChildChannel();
+
+        List<String> names = channel.pipeline().names();
+        assertTrue(names.contains("FlushConsolidationHandler"), "默认应该开启 flush 合并");
+        assertTrue(names.indexOf("FlushConsolidationHandler") < names.indexOf("ProtocolCodec"),
+                "flush 合并器应该位于协议编解码器靠近 head 的一侧");
+    }
+
+    @Test
+    @DisplayName("测试开启时多次 flush 合并成一次")
+    void test_flush_consolidated_when_enabled() {
+        channel = newChildChannel();
+
+        // EmbeddedChannel 每次 write 都会顺带执行排队中的任务，所以先写完再逐个 flush，模拟业务线程发起的 5 次 flush
+        for (int i = 0; i < 5; i++)
+            channel.write(newPayload(i));
+        for (int i = 0; i < 5; i++)
+            channel.pipeline().flush();
+        assertEquals(0, flushCount.get(), "不在读事件中的 flush 应该推迟下发");
+        assertNull(channel.readOutbound(), "flush 下发之前不应该写出");
+
+        channel.runPendingTasks();
+        assertEquals(1, flushCount.get(), "5 次 flush 应该合并成 1 次");
+        for (int i = 0; i < 5; i++)
+            assertOutbound(i);
+    }
+
+    @Test
+    @DisplayName("测试关闭时每次 flush 都原样下发")
+    void test_flush_untouched_when_disabled() {
+        config.putConfig(ServerConfigNames.FLUSH_CONSOLIDATION_ENABLE, "false");
+        channel = newChildChannel();
+
+        assertFalse(channel.pipeline().names().contains("FlushConsolidationHandler"), "关闭时不应该添加 flush 合并器");
+        for (int i = 0; i < 5; i++) {
+            channel.writeAndFlush(newPayload(i));
+            assertEquals(i + 1, flushCount.get(), "每次 flush 都应该立即下发");
+            assertOutbound(i);
+        }
+    }
+
+    /**
+     * 用服务端真实的初始化器搭建子 channel 的 pipeline，并在 head 一侧统计 flush 次数
+     */
+    private EmbeddedChannel newChildChannel() {
+        config.putConfig(ServerConfigNames.IDLE_CHECK_ENABLE, "false");
+        ChatServer server = Mockito.mock(ChatServer.class);
+        Mockito.when(server.getSessionMap()).thenReturn(SessionMap.getInstanceOrCreate(config));
+
+        EmbeddedChannel ch = new EmbeddedChannel(new RemotingServer(server).newChildChannelInitializer(config));
+        ch.pipeline().addFirst("FlushCounter", new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushCount.incrementAndGet();
+                super.flush(ctx);
+            }
+        });
+        return ch;
+    }
+
+    private static ByteBuf newPayload(int i) {
+        return Unpooled.buffer(4).writeInt(i);
+    }
+
+    private void assertOutbound(int expected) {
+        ByteBuf out = channel.readOutbound();
+        assertNotNull(out, "应该写出第 " + expected + " 条数据");
+        assertEquals(expected, out.readInt());
+        out.release();
+    }
+}
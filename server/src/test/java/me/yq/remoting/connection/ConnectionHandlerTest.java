@@ -10,12 +10,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * ConnectionHandler 测试类，主要覆盖的功能：
  * 1.IM 连接发生断开，能够从 session 中进行清理
+ * 2.被挤掉线的老连接断开时，不会误删新登录的 session
  * @author yq
  * @version v1.0 2023-04-08 13:42
  */
@@ -27,7 +29,7 @@ class ConnectionHandlerTest {
 
     private final SessionMap sessionMap = SessionMap.getInstanceOrCreate(config);
 
-    private final ConnectionHandler connectionHandler = new ConnectionHandler(sessionMap);
+    private final ServerSideConnectionHandler connectionHandler = new ServerSideConnectionHandler(sessionMap);
 
     private final Session userSession = new Session(157146,clientChannel);
 
@@ -51,4 +53,19 @@ class ConnectionHandlerTest {
 
         assertFalse(sessionMap.checkExists(157146),"传播 channelInactive 事件后，session 信息应该被移除");
     }
+
+    @Test
+    @DisplayName("测试被挤掉线的老连接断开")
+    void testKickedChannelInactive() {
+        EmbeddedChannel newChannel = new EmbeddedChannel();
+        Session newSession = new Session(157146, newChannel);
+        sessionMap.addSession(newSession);
+
+        clientChannel.pipeline().fireChannelInactive();
+
+        assertEquals(newSession, sessionMap.getSession(157146), "老连接断开后，新登录的 session 应该保留");
+        assertEquals(157146L, sessionMap.removeSessionUnSafe(newChannel), "新连接断开后，应该返回被移除的用户 id");
+        assertFalse(sessionMap.checkExists(157146));
+        newChannel.close();
+    }
 }
\ No newline at end of file
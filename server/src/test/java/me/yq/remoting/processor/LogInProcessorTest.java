@@ -12,9 +12,13 @@ import me.yq.remoting.command.DefaultRequestCommand;
 import me.yq.remoting.command.DefaultResponseCommand;
 import me.yq.remoting.config.DefaultServerConfig;
 import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.support.ChannelAttributes;
 import me.yq.remoting.support.Config;
+import me.yq.remoting.support.DefaultConfig;
 import me.yq.remoting.transport.Session;
 import me.yq.remoting.transport.process.CommandHandler;
+import me.yq.remoting.transport.serializer.CompactSerializer;
+import me.yq.remoting.transport.serializer.Hessian2Serializer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -30,6 +34,8 @@ import static org.junit.jupiter.api.Assertions.*;
  * 1.用户登录成功后，能够将用户信息存储到 session 中
  * 2.用户登录失败后，能够返回登录失败的响应
  * 3.发生用户挤掉线的情况，能将老 session 下线，并为其发送安全警告
+ * 4.登录时协商序列化方式和协议版本，登录响应及之后发给该用户的消息都使用协商结果；客户端没有声明时使用默认值
+ * 5.客户端声明能解压时，记录其压缩字典 id；没有声明时不压缩
  * @author yq
  * @version v1.0 2023-04-08 15:57
  */
@@ -101,6 +107,51 @@ class LogInProcessorTest {
         assertTrue(noticeReq.getAppRequest() instanceof Notice, "被挤掉之后，应该返回一个 notice 警告");
     }
 
+    @Test
+    @DisplayName("测试登录时协商序列化方式和协议版本")
+    void testLoginNegotiation() {
+        EmbeddedChannel channel = newChannelToLogIn();
+        LogInRequest logInRequest = new LogInRequest(new User(157146, "abcde"));
+        // 客户端最想要的 99 服务端不支持，应该选中第二个
+        logInRequest.setSupportedSerializations(new byte[]{99, CompactSerializer.CODE, Hessian2Serializer.CODE});
+        logInRequest.setProtocolVersion((byte) 100);
+        channel.writeInbound(new BaseRequest(BizCode.LogInRequest.code(), logInRequest));
+
+        assertEquals(CompactSerializer.CODE, ChannelAttributes.serializationOf(channel));
+        assertEquals(DefaultConfig.LATEST_PROTOCOL_VERSION, ChannelAttributes.protocolVersionOf(channel), "协议版本不能超过服务端支持的最高版本");
+
+        DefaultResponseCommand response = channel.readOutbound();
+        assertEquals(CompactSerializer.CODE, response.getSerialization(), "登录响应应该使用协商的序列化方式");
+        assertEquals(ResponseStatus.SUCCESS, response.getAppResponse().getStatus());
+    }
+
+    @Test
+    @DisplayName("测试客户端没有声明支持的序列化方式时使用默认值")
+    void testLoginWithoutNegotiation() {
+        EmbeddedChannel channel = newChannelToLogIn();
+        channel.writeInbound(new BaseRequest(BizCode.LogInRequest.code(), new LogInRequest(new User(157146, "abcde"))));
+
+        assertNull(channel.attr(ChannelAttributes.CHANNEL_SERIALIZATION).get());
+        assertNull(channel.attr(ChannelAttributes.CHANNEL_PROTOCOL_VERSION).get());
+        assertNull(channel.attr(ChannelAttributes.CHANNEL_COMPRESSION).get(), "客户端没有声明能解压时不应该压缩");
+        DefaultResponseCommand response = channel.readOutbound();
+        assertEquals(DefaultConfig.DEFAULT_SERIALIZATION, response.getSerialization());
+        assertEquals(DefaultConfig.DEFAULT_PROTOCOL_VERSION, response.getVersion());
+    }
+
+    @Test
+    @DisplayName("测试客户端声明能解压")
+    void testLoginWithCompression() {
+        EmbeddedChannel channel = newChannelToLogIn();
+        LogInRequest logInRequest = new LogInRequest(new User(157146, "abcde"));
+        logInRequest.setCompressionSupported(true);
+        logInRequest.setCompressionDictionaryId(0x1234);
+        channel.writeInbound(new BaseRequest(BizCode.LogInRequest.code(), logInRequest));
+
+        assertEquals(0x1234, channel.attr(ChannelAttributes.CHANNEL_COMPRESSION).get());
+        DefaultResponseCommand response = channel.readOutbound();
+        assertEquals(ResponseStatus.SUCCESS, response.getAppResponse().getStatus());
+    }
 
     /**
      * 模拟一个 channel，用于测试登录
@@ -0,0 +1,251 @@
+package me.yq.remoting.processor;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.yq.biz.Message;
+import me.yq.biz.domain.User;
+import me.yq.common.BaseRequest;
+import me.yq.common.BizCode;
+import me.yq.common.ResponseStatus;
+import me.yq.remoting.codec.protocol.ProtocolCodec;
+import me.yq.remoting.codec.protocol.YQCommandCodec;
+import me.yq.remoting.command.DefaultRequestCommand;
+import me.yq.remoting.command.DefaultResponseCommand;
+import me.yq.remoting.config.DefaultServerConfig;
+import me.yq.remoting.config.ServerConfigNames;
+import me.yq.remoting.session.SessionMap;
+import me.yq.remoting.support.ChannelAttributes;
+import me.yq.remoting.support.Config;
+import me.yq.remoting.transport.Session;
+import me.yq.remoting.transport.serializer.CompactSerializer;
+import me.yq.remoting.utils.DirectThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MessagingTransferProcessor 测试类，主要覆盖的功能点：
+ * 1. 直通转发：不反序列化消息体，以新的消息 id 原样转发给目标用户，并告知发送端发送成功，转发完成后入站 ByteBuf 被释放
+ * 2. 目标用户不在线、或者关闭直通转发时，交由常规流程处理
+ * 3. 目标用户协商的序列化方式和消息不一致时，交由常规流程按目标用户的序列化方式重新序列化
+ * 4. 直通转发写出失败、或者等待目标用户确认超时时，和常规流程一样告知发送端发送失败
+ *
+ * @author yq
+ * @version v1.0 2023-05-15 10:40
+ */
+class MessagingTransferProcessorTest {
+
+    private final Config config = new DefaultServerConfig();
+
+    private final SessionMap sessionMap = SessionMap.getInstanceOrCreate(config);
+
+    private final User fromUser = new User(157146, "abcde");
+
+    private final User toUser = new User(909900, "123456");
+
+    @AfterEach
+    void tearDown() {
+        sessionMap.removeAllUnSafe();
+    }
+
+    @Test
+    @DisplayName("测试直通转发消息")
+    void test_pass_through() {
+        MessagingTransferProcessor processor = new MessagingTransferProcessor(sessionMap, config, DirectThreadPool.getInstance());
+        EmbeddedChannel fromChannel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        EmbeddedChannel toChannel = new EmbeddedChannel(new ProtocolCodec());
+        sessionMap.addSession(new Session(toUser.getUserId(), toChannel));
+
+        Message message = new Message(fromUser, toUser, "hello");
+        ByteBuf inbound = encode(new BaseRequest(BizCode.Messaging.code(), message, toUser.getUserId()));
+        DefaultRequestCommand requestCommand = decode(inbound, true);
+        assertTrue(requestCommand.decodeRoutingHeader());
+
+        assertTrue(processor.processRawRequest(fromChannel.pipeline().firstContext(), requestCommand), "目标用户在线时应该直通转发");
+
+        DefaultResponseCommand response = fromChannel.readOutbound();
+        assertEquals(requestCommand.getMessageId(), response.getMessageId());
+        assertEquals(ResponseStatus.SUCCESS, response.getAppResponse().getStatus(), "应该告知发送端发送成功");
+
+        DefaultRequestCommand relayed = decode(toChannel.readOutbound(), false);
+        assertNotEquals(requestCommand.getMessageId(), relayed.getMessageId(), "转发的消息应该使用新的消息 id");
+        relayed.deserialize();
+        Message relayedMessage = (Message) relayed.getAppRequest().getAppRequest();
+        assertEquals("hello", relayedMessage.getMsg());
+        assertEquals(toUser.getUserId(), relayed.getRoutingId());
+
+        assertEquals(0, inbound.refCnt(), "转发写出后，入站 ByteBuf 应该被释放");
+    }
+
+    @Test
+    @DisplayName("测试目标用户不在线时交由常规流程处理")
+    void test_target_offline() {
+        MessagingTransferProcessor processor = new MessagingTransferProcessor(sessionMap, config, DirectThreadPool.getInstance());
+        EmbeddedChannel fromChannel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+
+        ByteBuf inbound = encode(new BaseRequest(BizCode.Messaging.code(), new Message(fromUser, toUser, "hello"), toUser.getUserId()));
+        DefaultRequestCommand requestCommand = decode(inbound, true);
+        requestCommand.decodeRoutingHeader();
+
+        assertFalse(processor.processRawRequest(fromChannel.pipeline().firstContext(), requestCommand));
+        assertNull(fromChannel.readOutbound(), "不应该有任何响应");
+        assertNotNull(requestCommand.getContentBuf(), "交由常规流程处理时，消息体应该还在");
+
+        requestCommand.deserialize();
+        assertEquals(0, inbound.refCnt());
+    }
+
+    @Test
+    @DisplayName("测试关闭直通转发")
+    void test_pass_through_disabled() {
+        Config disabledConfig = new DefaultServerConfig();
+        disabledConfig.putConfig(ServerConfigNames.RELAY_PASS_THROUGH_ENABLE, "false");
+        MessagingTransferProcessor processor = new MessagingTransferProcessor(sessionMap, disabledConfig, DirectThreadPool.getInstance());
+        EmbeddedChannel fromChannel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        EmbeddedChannel toChannel = new EmbeddedChannel(new ProtocolCodec());
+        sessionMap.addSession(new Session(toUser.getUserId(), toChannel));
+
+        ByteBuf inbound = encode(new BaseRequest(BizCode.Messaging.code(), new Message(fromUser, toUser, "hello"), toUser.getUserId()));
+        DefaultRequestCommand requestCommand = decode(inbound, true);
+        requestCommand.decodeRoutingHeader();
+
+        assertFalse(processor.processRawRequest(fromChannel.pipeline().firstContext(), requestCommand));
+        assertNull(toChannel.readOutbound());
+
+        requestCommand.release();
+        assertEquals(0, inbound.refCnt());
+    }
+
+    @Test
+    @DisplayName("测试目标用户协商的序列化方式和消息不一致时交由常规流程处理")
+    void test_serialization_mismatch() {
+        MessagingTransferProcessor processor = new MessagingTransferProcessor(sessionMap, config, DirectThreadPool.getInstance());
+        EmbeddedChannel fromChannel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        EmbeddedChannel toChannel = new EmbeddedChannel(new ProtocolCodec());
+        toChannel.attr(ChannelAttributes.CHANNEL_SERIALIZATION).set(CompactSerializer.CODE);
+        sessionMap.addSession(new Session(toUser.getUserId(), toChannel));
+
+        ByteBuf inbound = encode(new BaseRequest(BizCode.Messaging.code(), new Message(fromUser, toUser, "hello"), toUser.getUserId()));
+        DefaultRequestCommand requestCommand = decode(inbound, true);
+        requestCommand.decodeRoutingHeader();
+
+        assertFalse(processor.processRawRequest(fromChannel.pipeline().firstContext(), requestCommand), "序列化方式不一致时不能原样转发");
+        assertNull(toChannel.readOutbound());
+
+        // 常规流程转发时使用目标用户协商的序列化方式
+        requestCommand.deserialize();
+        processor.processRequest(fromChannel.pipeline().firstContext(), requestCommand.getMessageId(), requestCommand.getAppRequest());
+        ByteBuf relayedBuf = toChannel.readOutbound();
+        DefaultRequestCommand relayed = decode(relayedBuf, false);
+        assertEquals(CompactSerializer.CODE, relayed.getSerialization());
+        relayed.deserialize();
+        assertEquals("hello", ((Message) relayed.getAppRequest().getAppRequest()).getMsg());
+        assertEquals(0, inbound.refCnt());
+    }
+
+    @Test
+    @DisplayName("测试直通转发写出失败时告知发送端")
+    void test_pass_through_write_failed() throws InterruptedException {
+        MessagingTransferProcessor processor = new MessagingTransferProcessor(sessionMap, config, DirectThreadPool.getInstance());
+        BlockingQueue<DefaultResponseCommand> responses = new LinkedBlockingQueue<>();
+        EmbeddedChannel fromChannel = newFromChannel(responses);
+        // 目标连接的写出全部失败，通信对象由发送方在写出失败时释放
+        EmbeddedChannel toChannel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                promise.setFailure(new IOException("connection reset"));
+            }
+        });
+        sessionMap.addSession(new Session(toUser.getUserId(), toChannel));
+
+        ByteBuf inbound = encode(new BaseRequest(BizCode.Messaging.code(), new Message(fromUser, toUser, "hello"), toUser.getUserId()));
+        DefaultRequestCommand requestCommand = decode(inbound, true);
+        requestCommand.decodeRoutingHeader();
+
+        assertTrue(processor.processRawRequest(fromChannel.pipeline().lastContext(), requestCommand));
+        assertRelayFailed(responses, requestCommand.getMessageId());
+        assertEquals(0, inbound.refCnt(), "写出失败后，入站 ByteBuf 也应该被释放");
+    }
+
+    @Test
+    @DisplayName("测试直通转发等待目标用户确认超时时告知发送端")
+    void test_pass_through_timeout() throws InterruptedException {
+        Config timeoutConfig = new DefaultServerConfig();
+        timeoutConfig.putConfig(ServerConfigNames.WAIT_RESPONSE_MILLIS, "100");
+        MessagingTransferProcessor processor = new MessagingTransferProcessor(sessionMap, timeoutConfig, DirectThreadPool.getInstance());
+        BlockingQueue<DefaultResponseCommand> responses = new LinkedBlockingQueue<>();
+        EmbeddedChannel fromChannel = newFromChannel(responses);
+        // 目标用户收到消息后一直不确认
+        EmbeddedChannel toChannel = new EmbeddedChannel(new ProtocolCodec());
+        sessionMap.addSession(new Session(toUser.getUserId(), toChannel));
+
+        ByteBuf inbound = encode(new BaseRequest(BizCode.Messaging.code(), new Message(fromUser, toUser, "hello"), toUser.getUserId()));
+        DefaultRequestCommand requestCommand = decode(inbound, true);
+        requestCommand.decodeRoutingHeader();
+
+        assertTrue(processor.processRawRequest(fromChannel.pipeline().lastContext(), requestCommand));
+        ByteBuf relayed = toChannel.readOutbound();
+        assertNotNull(relayed, "消息应该已经转发给目标用户");
+        relayed.release();
+        assertRelayFailed(responses, requestCommand.getMessageId());
+    }
+
+    /**
+     * 发送端的连接，写出的响应都收集到 responses 中。超时场景下响应由超时时间轮线程写出，不能直接读 EmbeddedChannel
+     */
+    private EmbeddedChannel newFromChannel(BlockingQueue<DefaultResponseCommand> responses) {
+        return new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                responses.offer((DefaultResponseCommand) msg);
+                promise.setSuccess();
+            }
+        }, new ChannelInboundHandlerAdapter());
+    }
+
+    /**
+     * 发送端先收到发送成功的确认，之后收到同一个消息 id 的发送失败通知
+     */
+    private void assertRelayFailed(BlockingQueue<DefaultResponseCommand> responses, int messageId) throws InterruptedException {
+        DefaultResponseCommand ack = responses.poll(3, TimeUnit.SECONDS);
+        assertNotNull(ack);
+        assertEquals(ResponseStatus.SUCCESS, ack.getAppResponse().getStatus());
+
+        DefaultResponseCommand failed = responses.poll(3, TimeUnit.SECONDS);
+        assertNotNull(failed, "转发失败时应该告知发送端");
+        assertEquals(messageId, failed.getMessageId(), "失败通知应该对应发送端的消息 id");
+        assertEquals(ResponseStatus.FAILED, failed.getAppResponse().getStatus(), "应该告知发送端发送失败");
+    }
+
+    private ByteBuf encode(BaseRequest request) {
+        DefaultRequestCommand command = new DefaultRequestCommand();
+        command.setAppRequest(request);
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer();
+        new YQCommandCodec().encode(command, buf);
+        return buf;
+    }
+
+    /**
+     * 解码出请求通信对象，按零拷贝方式解码时，入站 ByteBuf 的引用只由解码出的通信对象持有
+     */
+    private DefaultRequestCommand decode(ByteBuf in, boolean retainedSliceDecode) {
+        List<Object> out = new ArrayList<>();
+        new YQCommandCodec(retainedSliceDecode).decode(null, in, out);
+        in.release();
+        return (DefaultRequestCommand) out.get(0);
+    }
+}